@@ -0,0 +1,129 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.common.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比IDENTITY主键与应用生成主键写入tb_order的吞吐
+ * identity 模拟Hibernate在IDENTITY下的行为：每行单独执行INSERT并取回主键；
+ * snowflake 先生成主键，再按hibernate.jdbc.batch_size分批执行
+ * 运行：mvn -P jmh test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main
+ * 或指定JDBC地址对比真实数据库：-Djmh.jdbc.url=jdbc:mysql://...
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdGenerationInsertBenchmark {
+
+    private static final int ROWS = 1000;
+
+    @Param({"50"})
+    public int batchSize;
+
+    private Connection connection;
+    private SnowflakeIdGenerator generator;
+    private Timestamp now;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        String url = System.getProperty("jmh.jdbc.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        connection = DriverManager.getConnection(url, System.getProperty("jmh.jdbc.user", "sa"),
+                System.getProperty("jmh.jdbc.password", ""));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS bench_identity_order");
+            statement.execute("DROP TABLE IF EXISTS bench_assigned_order");
+            statement.execute("CREATE TABLE bench_identity_order (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "customer_id VARCHAR(255) NOT NULL, status INT NOT NULL, total_amount DECIMAL(10, 2) NOT NULL, create_time TIMESTAMP NOT NULL)");
+            statement.execute("CREATE TABLE bench_assigned_order (id BIGINT PRIMARY KEY, "
+                    + "customer_id VARCHAR(255) NOT NULL, status INT NOT NULL, total_amount DECIMAL(10, 2) NOT NULL, create_time TIMESTAMP NOT NULL)");
+        }
+        connection.setAutoCommit(false);
+        generator = new SnowflakeIdGenerator(0);
+        now = new Timestamp(System.currentTimeMillis());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long identity() throws SQLException {
+        long last = 0;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO bench_identity_order (customer_id, status, total_amount, create_time) VALUES (?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < ROWS; i++) {
+                bind(statement, 1, i);
+                statement.executeUpdate();
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    keys.next();
+                    last = keys.getLong(1);
+                }
+            }
+        }
+        connection.commit();
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long snowflake() throws SQLException {
+        long last = 0;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO bench_assigned_order (id, customer_id, status, total_amount, create_time) VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                last = generator.nextId();
+                statement.setLong(1, last);
+                bind(statement, 2, i);
+                statement.addBatch();
+                if ((i + 1) % batchSize == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+        connection.commit();
+        return last;
+    }
+
+    @Benchmark
+    public long nextId() {
+        return generator.nextId();
+    }
+
+    private void bind(PreparedStatement statement, int from, int i) throws SQLException {
+        statement.setString(from, "customer-" + (i & 1023));
+        statement.setInt(from + 1, 0);
+        statement.setBigDecimal(from + 2, BigDecimal.TEN);
+        statement.setTimestamp(from + 3, now);
+    }
+}
@@ -0,0 +1,22 @@
+package com.yf.bookstore.cache;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 二级缓存的批量读写，键为字符串形式
+ */
+public interface BulkCacheStore {
+
+    /**
+     * 一次读取多个键
+     *
+     * @return 命中的键和值，未命中的键不在结果中
+     */
+    Map<String, Object> getAll(List<String> keys);
+
+    /**
+     * 一次写入多个键值
+     */
+    void putAll(Map<String, Object> values);
+}
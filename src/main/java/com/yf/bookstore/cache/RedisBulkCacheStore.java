@@ -0,0 +1,75 @@
+package com.yf.bookstore.cache;
+
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RedisCache的批量读写：读取用一次MGET，写入用一条流水线，键和值的序列化方式与RedisCache相同
+ */
+public class RedisBulkCacheStore implements BulkCacheStore {
+
+    private final RedisCache cache;
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisBulkCacheStore(RedisCache cache, StringRedisTemplate redisTemplate) {
+        this.cache = cache;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public Map<String, Object> getAll(List<String> keys) {
+        byte[][] rawKeys = new byte[keys.size()][];
+        for (int i = 0; i < keys.size(); i++) {
+            rawKeys[i] = rawKey(keys.get(i));
+        }
+        List<byte[]> rawValues = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.stringCommands().mGet(rawKeys));
+        Map<String, Object> values = new HashMap<>();
+        if (rawValues == null) {
+            return values;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] rawValue = rawValues.get(i);
+            if (rawValue == null) {
+                continue;
+            }
+            Object value = config().getValueSerializationPair().read(ByteBuffer.wrap(rawValue));
+            if (value != null && !(value instanceof NullValue)) {
+                values.put(keys.get(i), value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<String, Object> values) {
+        Expiration expiration = config().getTtl().isZero() || config().getTtl().isNegative()
+                ? Expiration.persistent() : Expiration.from(config().getTtl());
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) -> connection.stringCommands().set(rawKey(key),
+                    ByteUtils.getBytes(config().getValueSerializationPair().write(value)),
+                    expiration, RedisStringCommands.SetOption.upsert()));
+            return null;
+        });
+    }
+
+    private RedisCacheConfiguration config() {
+        return cache.getCacheConfiguration();
+    }
+
+    private byte[] rawKey(String key) {
+        String prefixed = config().usePrefix() ? config().getKeyPrefixFor(cache.getName()) + key : key;
+        return ByteUtils.getBytes(config().getKeySerializationPair().write(prefixed));
+    }
+}
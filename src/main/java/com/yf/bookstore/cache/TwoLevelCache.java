@@ -0,0 +1,247 @@
+package com.yf.bookstore.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 两级缓存：本节点的Caffeine为一级，共享的Redis缓存为二级
+ * 读取时先查一级，未命中再查二级并回填一级；写入和失效同时作用于两级，只有失效和清空通知其他节点失效各自的一级缓存，
+ * 写入只是回填加载到的当前值，其他节点的一级缓存要么没有该键，要么由修改时的失效消息清除
+ * 一级缓存的键统一为键的字符串形式，与失效消息中的键一致；批量读写时二级缓存通过bulkStore一次往返完成
+ * Redis不可用时二级缓存按未命中处理，不影响读取
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCache.class);
+
+    private final String name;
+    private final Cache<String, Object> local;
+    private final org.springframework.cache.Cache remote;
+    // 二级缓存的批量读写，为空时逐个键访问
+    private final BulkCacheStore bulkStore;
+    // 参数为失效的键，null表示清空
+    private final Consumer<String> invalidationPublisher;
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TwoLevelCache(String name, Cache<String, Object> local, org.springframework.cache.Cache remote,
+                         BulkCacheStore bulkStore, Consumer<String> invalidationPublisher) {
+        super(false);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.bulkStore = bulkStore;
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = String.valueOf(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        ValueWrapper wrapper = null;
+        try {
+            wrapper = remote.get(key);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to read cache {} key {} from Redis: {}", name, key, e.getMessage());
+        }
+        if (wrapper != null && wrapper.get() != null) {
+            remoteHits.increment();
+            local.put(localKey, wrapper.get());
+            return wrapper.get();
+        }
+        misses.increment();
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Object value = lookup(key);
+        if (value != null) {
+            return (T) fromStoreValue(value);
+        }
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, loaded);
+        return loaded;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        if (value == null) {
+            evict(key);
+            return;
+        }
+        try {
+            remote.put(key, value);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to write cache {} key {} to Redis: {}", name, key, e.getMessage());
+        }
+        local.put(String.valueOf(key), value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        try {
+            remote.evict(key);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to evict cache {} key {} from Redis: {}", name, key, e.getMessage());
+        }
+        local.invalidate(String.valueOf(key));
+        invalidationPublisher.accept(String.valueOf(key));
+    }
+
+    @Override
+    public void clear() {
+        try {
+            remote.clear();
+        } catch (RuntimeException e) {
+            logger.warn("Failed to clear cache {} in Redis: {}", name, e.getMessage());
+        }
+        local.invalidateAll();
+        invalidationPublisher.accept(null);
+    }
+
+    /**
+     * 批量读取：先从一级缓存取，未命中的键一次从二级缓存读取并回填一级
+     *
+     * @param keys 要读取的键
+     * @return 命中的值，键为字符串形式
+     */
+    public Map<String, Object> getAll(Collection<?> keys) {
+        Set<String> localKeys = new LinkedHashSet<>();
+        for (Object key : keys) {
+            localKeys.add(String.valueOf(key));
+        }
+        Map<String, Object> values = new HashMap<>(local.getAllPresent(localKeys));
+        localHits.add(values.size());
+        List<String> remoteKeys = new ArrayList<>(localKeys.size() - values.size());
+        for (String key : localKeys) {
+            if (!values.containsKey(key)) {
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return values;
+        }
+        Map<String, Object> remoteValues = Collections.emptyMap();
+        try {
+            remoteValues = bulkStore != null ? bulkStore.getAll(remoteKeys) : getAllOneByOne(remoteKeys);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to read {} key(s) of cache {} from Redis: {}", remoteKeys.size(), name, e.getMessage());
+        }
+        remoteHits.add(remoteValues.size());
+        misses.add(remoteKeys.size() - remoteValues.size());
+        local.putAll(remoteValues);
+        values.putAll(remoteValues);
+        return values;
+    }
+
+    /**
+     * 批量回填从数据源读取的值，两级都写入
+     * 回填的是当前值而不是修改，不通知其他节点
+     *
+     * @param values 键和值，键按字符串形式存储
+     */
+    public void putAll(Map<?, ?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        Map<String, Object> entries = new LinkedHashMap<>();
+        values.forEach((key, value) -> {
+            if (value != null) {
+                entries.put(String.valueOf(key), value);
+            }
+        });
+        try {
+            if (bulkStore != null) {
+                bulkStore.putAll(entries);
+            } else {
+                entries.forEach(remote::put);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to write {} key(s) of cache {} to Redis: {}", entries.size(), name, e.getMessage());
+        }
+        local.putAll(entries);
+    }
+
+    private Map<String, Object> getAllOneByOne(List<String> keys) {
+        Map<String, Object> values = new HashMap<>();
+        for (String key : keys) {
+            ValueWrapper wrapper = remote.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                values.put(key, wrapper.get());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 只失效本节点一级缓存中的键，收到其他节点的失效消息时调用
+     */
+    public void evictLocal(String key) {
+        local.invalidate(key);
+    }
+
+    /**
+     * 只清空本节点的一级缓存
+     */
+    public void clearLocal() {
+        local.invalidateAll();
+    }
+
+    /**
+     * 各级的命中次数和命中率
+     */
+    public Map<String, Object> stats() {
+        long l1 = localHits.sum();
+        long l2 = remoteHits.sum();
+        long miss = misses.sum();
+        long total = l1 + l2 + miss;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", total);
+        stats.put("l1Hits", l1);
+        stats.put("l2Hits", l2);
+        stats.put("misses", miss);
+        stats.put("l1HitRatio", total == 0 ? 0.0 : (double) l1 / total);
+        // 二级命中率按穿透一级的请求计算
+        stats.put("l2HitRatio", l2 + miss == 0 ? 0.0 : (double) l2 / (l2 + miss));
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (l1 + l2) / total);
+        stats.put("l1Size", local.estimatedSize());
+        return stats;
+    }
+}
@@ -0,0 +1,117 @@
+package com.yf.bookstore.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 两级缓存管理器，每个缓存由本节点的Caffeine一级缓存和remote管理器提供的二级缓存组成
+ * 只有失效和清空通过Redis频道 cache:evict 通知其他节点，写入不广播，消息为 {节点}|{缓存名}|{键}，没有键表示清空；
+ * 本节点发出的消息收到后忽略。一级缓存的过期时间兜底丢失的失效消息
+ */
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+
+    /**
+     * 一级缓存失效通知的频道
+     */
+    public static final String CHANNEL = "cache:evict";
+
+    private final CacheManager remote;
+    private final StringRedisTemplate redisTemplate;
+    private final long localMaxSize;
+    private final long localTtlSeconds;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remote, StringRedisTemplate redisTemplate, long localMaxSize, long localTtlSeconds) {
+        this.remote = remote;
+        this.redisTemplate = redisTemplate;
+        this.localMaxSize = localMaxSize;
+        this.localTtlSeconds = localTtlSeconds;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::create);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * 按缓存名列出各级的命中统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        new TreeMap<>(caches).forEach((name, cache) -> stats.put(name, cache.stats()));
+        return stats;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 3);
+        if (parts.length < 2) {
+            logger.warn("Ignoring malformed cache eviction message: {}", body);
+            return;
+        }
+        if (nodeId.equals(parts[0])) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if (parts.length == 3) {
+            cache.evictLocal(parts[2]);
+        } else {
+            cache.clearLocal();
+        }
+    }
+
+    private TwoLevelCache create(String name) {
+        Cache remoteCache = remote.getCache(name);
+        if (remoteCache == null) {
+            throw new IllegalStateException("No remote cache named " + name);
+        }
+        return new TwoLevelCache(name, Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+                .build(), remoteCache, bulkStore(remoteCache), key -> publish(name, key));
+    }
+
+    private BulkCacheStore bulkStore(Cache remoteCache) {
+        return remoteCache instanceof RedisCache ? new RedisBulkCacheStore((RedisCache) remoteCache, redisTemplate) : null;
+    }
+
+    private void publish(String name, String key) {
+        String message = nodeId + "|" + name + (key == null ? "" : "|" + key);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (RuntimeException e) {
+            // 其他节点的一级缓存在过期后读到新值
+            logger.warn("Failed to publish cache eviction {}: {}", message, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.yf.bookstore.commodity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.common.CsvReader;
+import com.yf.bookstore.common.IdGenerator;
+import com.yf.bookstore.exception.commodity.InvalidSkuException;
+import com.yf.bookstore.inventory.StockEvents;
+import com.yf.bookstore.model.commodity.Sku;
+import com.yf.bookstore.model.commodity.SkuImportError;
+import com.yf.bookstore.model.commodity.SkuImportReport;
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.search.SkuSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SKU批量导入
+ * 从请求的输入流逐行解析CSV（首行为列名）或NDJSON（每行一个JSON对象），逐行校验后攒成固定大小的批次，
+ * 交给有界的工作线程池，每批在一个事务中用JDBC批次写入tb_sku、初始库存tb_stock和库存事件；
+ * 未完成的批次数有上限，达到上限时解析线程等待，内存占用与文件大小无关。
+ * 单条记录最长64K字符：NDJSON的超长行跳过并拒绝该行；CSV的超长记录无法确定边界，中止导入。
+ * 支持的列：title（必填）、price、stock、images、indexes、own_spec（JSON对象）、enable
+ */
+@Component
+public class SkuImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(SkuImporter.class);
+
+    public static final String FORMAT_CSV = "csv";
+    public static final String FORMAT_NDJSON = "ndjson";
+
+    // 报告中最多保留的错误行数
+    private static final int MAX_ERRORS = 100;
+
+    // 单行（单条记录）的最大字符数
+    private static final int MAX_RECORD_LENGTH = CsvReader.DEFAULT_MAX_RECORD_LENGTH;
+
+    // tb_sku.price 为 DECIMAL(10,2)，超出的价格会被数据库舍入或使整批写入失败，逐行拒绝
+    private static final int PRICE_SCALE = 2;
+    private static final int PRICE_INTEGER_DIGITS = 8;
+
+    private static final String INSERT_SKU_SQL = "INSERT INTO tb_sku (id, title, images, price, indexes, own_spec, enable, create_time, modify_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_STOCK_SQL = "INSERT INTO tb_stock (id, sku_id, stock, version, create_time, modify_time) "
+            + "VALUES (?, ?, ?, 0, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdGenerator idGenerator;
+    private final OutboxPublisher outboxPublisher;
+    private final SkuSearchIndex searchIndex;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+
+    public SkuImporter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, IdGenerator idGenerator,
+                       OutboxPublisher outboxPublisher, SkuSearchIndex searchIndex, ObjectMapper objectMapper,
+                       @Value("${sku.import.batch-size:1000}") int batchSize,
+                       @Value("${sku.import.workers:4}") int workers,
+                       @Value("${sku.import.max-in-flight:8}") int maxInFlight) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.idGenerator = idGenerator;
+        this.outboxPublisher = outboxPublisher;
+        this.searchIndex = searchIndex;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "sku-import-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 导入一个文件，所有批次写完后返回
+     *
+     * @param format 文件格式，csv或ndjson
+     * @param input  文件内容，UTF-8编码
+     * @return 导入结果
+     * @throws InvalidSkuException 如果格式不支持
+     */
+    public SkuImportReport importSkus(String format, InputStream input) {
+        String normalized = format == null ? "" : format.toLowerCase(Locale.ROOT);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        RowReader rows;
+        if (FORMAT_CSV.equals(normalized)) {
+            rows = new CsvRowReader(new CsvReader(reader, MAX_RECORD_LENGTH));
+        } else if (FORMAT_NDJSON.equals(normalized)) {
+            rows = new NdjsonRowReader(reader, objectMapper);
+        } else {
+            throw new InvalidSkuException("Unsupported import format: " + format + ", expected csv or ndjson");
+        }
+        return run(normalized, rows);
+    }
+
+    private SkuImportReport run(String format, RowReader rows) {
+        long start = System.currentTimeMillis();
+        Progress progress = new Progress();
+        Semaphore permits = new Semaphore(maxInFlight);
+        List<Row> batch = new ArrayList<>(batchSize);
+        String aborted = null;
+        try {
+            while (true) {
+                Map<String, String> fields;
+                try {
+                    fields = rows.next();
+                } catch (InvalidSkuException e) {
+                    // 单行格式错误只拒绝该行
+                    progress.read.incrementAndGet();
+                    progress.reject(rows.line(), e.getMessage());
+                    continue;
+                }
+                if (fields == null) {
+                    break;
+                }
+                if (fields.isEmpty()) {
+                    continue;
+                }
+                progress.read.incrementAndGet();
+                Row row;
+                try {
+                    row = validate(rows.line(), fields);
+                } catch (InvalidSkuException e) {
+                    progress.reject(rows.line(), e.getMessage());
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    submit(batch, permits, progress);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // 文件无法继续解析，已校验的行照常写入
+            aborted = "Stopped at line " + rows.line() + ": " + e.getMessage();
+        }
+        if (!batch.isEmpty()) {
+            submit(batch, permits, progress);
+        }
+        permits.acquireUninterruptibly(maxInFlight);
+        long elapsed = System.currentTimeMillis() - start;
+        logger.info("Imported {} SKU(s) from {} row(s) in {} ms, {} rejected", progress.imported.get(), progress.read.get(),
+                elapsed, progress.rejected.get());
+        synchronized (progress.errors) {
+            return new SkuImportReport(format, progress.read.get(), progress.imported.get(), progress.rejected.get(),
+                    progress.batches.get(), elapsed, aborted, new ArrayList<>(progress.errors));
+        }
+    }
+
+    // 未完成的批次达到上限时等待，解析速度受写入速度限制
+    private void submit(List<Row> batch, Semaphore permits, Progress progress) {
+        permits.acquireUninterruptibly();
+        try {
+            executor.execute(() -> {
+                try {
+                    write(batch, progress);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void write(List<Row> batch, Progress progress) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> skuRows = new ArrayList<>(batch.size());
+        List<Object[]> stockRows = new ArrayList<>(batch.size());
+        List<OutboxEvent> events = new ArrayList<>(batch.size());
+        for (Row row : batch) {
+            Sku sku = row.sku;
+            sku.setId(idGenerator.nextId());
+            sku.setCreateTime(now);
+            sku.setModifyTime(now);
+            skuRows.add(new Object[]{sku.getId(), sku.getTitle(), sku.getImages(), sku.getPrice(), sku.getIndexes(),
+                    sku.getOwnSpec(), sku.isEnable(), now, now});
+            stockRows.add(new Object[]{idGenerator.nextId(), sku.getId(), row.stock, now, now});
+            events.add(StockEvents.changed(outboxPublisher, sku.getId(), null, row.stock));
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SKU_SQL, skuRows);
+                jdbcTemplate.batchUpdate(INSERT_STOCK_SQL, stockRows);
+                outboxPublisher.publishAll(events);
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Failed to import SKU batch at lines {}-{}: {}", batch.get(0).line,
+                    batch.get(batch.size() - 1).line, e.getMessage());
+            for (Row row : batch) {
+                progress.reject(row.line, "Failed to write batch: " + e.getMessage());
+            }
+            return;
+        }
+        for (Row row : batch) {
+            searchIndex.index(row.sku);
+        }
+        progress.imported.addAndGet(batch.size());
+        progress.batches.incrementAndGet();
+    }
+
+    private Row validate(long line, Map<String, String> fields) {
+        Sku sku = new Sku();
+        String title = trimToNull(fields.get("title"));
+        if (title == null) {
+            throw new InvalidSkuException("title is required");
+        }
+        sku.setTitle(checkLength("title", title, 255));
+        sku.setImages(checkLength("images", trimToNull(fields.get("images")), 1000));
+        sku.setIndexes(checkLength("indexes", trimToNull(fields.get("indexes")), 100));
+        String price = trimToNull(fields.get("price"));
+        try {
+            sku.setPrice(price == null ? BigDecimal.ZERO : new BigDecimal(price));
+        } catch (NumberFormatException e) {
+            throw new InvalidSkuException("price is not a number: " + price);
+        }
+        if (sku.getPrice().signum() < 0) {
+            throw new InvalidSkuException("price must not be negative");
+        }
+        checkPrice(sku.getPrice());
+        String ownSpec = checkLength("own_spec", trimToNull(fields.get("own_spec")), 1000);
+        if (ownSpec != null) {
+            try {
+                if (!objectMapper.readTree(ownSpec).isObject()) {
+                    throw new InvalidSkuException("own_spec must be a JSON object");
+                }
+            } catch (IOException e) {
+                throw new InvalidSkuException("own_spec is not valid JSON");
+            }
+        }
+        sku.setOwnSpec(ownSpec);
+        String enable = trimToNull(fields.get("enable"));
+        if (enable == null || "true".equalsIgnoreCase(enable) || "1".equals(enable)) {
+            sku.setEnable(true);
+        } else if ("false".equalsIgnoreCase(enable) || "0".equals(enable)) {
+            sku.setEnable(false);
+        } else {
+            throw new InvalidSkuException("enable must be true or false: " + enable);
+        }
+        String stock = trimToNull(fields.get("stock"));
+        int quantity;
+        try {
+            quantity = stock == null ? 0 : Integer.parseInt(stock);
+        } catch (NumberFormatException e) {
+            throw new InvalidSkuException("stock is not an integer: " + stock);
+        }
+        if (quantity < 0) {
+            throw new InvalidSkuException("stock must not be negative");
+        }
+        return new Row(line, sku, quantity);
+    }
+
+    private static String checkLength(String column, String value, int max) {
+        if (value != null && value.length() > max) {
+            throw new InvalidSkuException(column + " exceeds " + max + " characters");
+        }
+        return value;
+    }
+
+    private static void checkPrice(BigDecimal price) {
+        BigDecimal normalized = price.stripTrailingZeros();
+        if (normalized.scale() > PRICE_SCALE) {
+            throw new InvalidSkuException("price has more than " + PRICE_SCALE + " decimal places: " + price.toPlainString());
+        }
+        if (normalized.precision() - normalized.scale() > PRICE_INTEGER_DIGITS) {
+            throw new InvalidSkuException("price exceeds " + PRICE_INTEGER_DIGITS + " integer digits: " + price.toPlainString());
+        }
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * 逐行读取列名到值的映射，空行返回空映射，文件末尾返回null
+     */
+    private interface RowReader {
+        Map<String, String> next() throws IOException;
+
+        long line();
+    }
+
+    private static final class CsvRowReader implements RowReader {
+        private final CsvReader csv;
+        private List<String> header;
+
+        CsvRowReader(CsvReader csv) {
+            this.csv = csv;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (header == null) {
+                header = csv.next();
+                if (header == null) {
+                    return null;
+                }
+                header.replaceAll(column -> column.trim().toLowerCase(Locale.ROOT));
+                if (!header.contains("title")) {
+                    throw new IOException("CSV header must contain a title column");
+                }
+            }
+            List<String> record = csv.next();
+            if (record == null) {
+                return null;
+            }
+            Map<String, String> fields = new HashMap<>();
+            if (record.size() == 1 && record.get(0).isEmpty()) {
+                return fields;
+            }
+            if (record.size() != header.size()) {
+                throw new InvalidSkuException("Expected " + header.size() + " columns but found " + record.size());
+            }
+            for (int i = 0; i < header.size(); i++) {
+                fields.put(header.get(i), record.get(i));
+            }
+            return fields;
+        }
+
+        @Override
+        public long line() {
+            return csv.recordLine();
+        }
+    }
+
+    private static final class NdjsonRowReader implements RowReader {
+        private final BufferedReader reader;
+        private final ObjectMapper objectMapper;
+        private long line;
+
+        NdjsonRowReader(BufferedReader reader, ObjectMapper objectMapper) {
+            this.reader = reader;
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            line++;
+            String text = readLine(c);
+            Map<String, String> fields = new HashMap<>();
+            if (text.trim().isEmpty()) {
+                return fields;
+            }
+            JsonNode node;
+            try {
+                node = objectMapper.readTree(text);
+            } catch (IOException e) {
+                throw new InvalidSkuException("Invalid JSON");
+            }
+            if (!node.isObject()) {
+                throw new InvalidSkuException("Expected a JSON object");
+            }
+            Iterator<Map.Entry<String, JsonNode>> it = node.fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> field = it.next();
+                String name = "ownSpec".equals(field.getKey()) ? "own_spec" : field.getKey();
+                JsonNode value = field.getValue();
+                fields.put(name, value.isNull() ? null : value.isValueNode() ? value.asText() : value.toString());
+            }
+            return fields;
+        }
+
+        @Override
+        public long line() {
+            return line;
+        }
+
+        /**
+         * 从已读出的首字符开始读完一行；超过长度上限时跳过该行剩余部分后拒绝该行，下一次从下一行开始
+         */
+        private String readLine(int c) throws IOException {
+            StringBuilder text = new StringBuilder();
+            while (c != -1 && c != '\n') {
+                if (text.length() == MAX_RECORD_LENGTH) {
+                    while (c != -1 && c != '\n') {
+                        c = reader.read();
+                    }
+                    throw new InvalidSkuException("Line exceeds " + MAX_RECORD_LENGTH + " characters");
+                }
+                text.append((char) c);
+                c = reader.read();
+            }
+            int last = text.length() - 1;
+            if (last >= 0 && text.charAt(last) == '\r') {
+                text.setLength(last);
+            }
+            return text.toString();
+        }
+    }
+
+    private static final class Row {
+        final long line;
+        final Sku sku;
+        final int stock;
+
+        Row(long line, Sku sku, int stock) {
+            this.line = line;
+            this.sku = sku;
+            this.stock = stock;
+        }
+    }
+
+    /**
+     * 导入进度，工作线程和解析线程共同更新
+     */
+    private static final class Progress {
+        final AtomicLong read = new AtomicLong();
+        final AtomicLong imported = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final List<SkuImportError> errors = new ArrayList<>();
+
+        void reject(long line, String message) {
+            rejected.incrementAndGet();
+            synchronized (errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add(new SkuImportError(line, message));
+                }
+            }
+        }
+    }
+}
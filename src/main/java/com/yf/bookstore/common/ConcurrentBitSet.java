@@ -0,0 +1,104 @@
+package com.yf.bookstore.common;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+/**
+ * 线程安全的稀疏位图
+ * 位按4096个一页分配，页内用CAS修改，读取只需一次哈希查找和一次位运算；
+ * 连续的ID只占用少量页，稀疏的ID（如雪花ID）也只为实际置位的页分配内存
+ */
+public class ConcurrentBitSet {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int WORDS_PER_PAGE = (1 << PAGE_SHIFT) / Long.SIZE;
+    private static final long OFFSET_MASK = (1L << PAGE_SHIFT) - 1;
+
+    private final Map<Long, AtomicLongArray> pages = new ConcurrentHashMap<>();
+
+    /**
+     * 读取一位
+     */
+    public boolean get(long index) {
+        AtomicLongArray page = pages.get(index >>> PAGE_SHIFT);
+        if (page == null) {
+            return false;
+        }
+        int offset = (int) (index & OFFSET_MASK);
+        return (page.get(offset >>> 6) & (1L << offset)) != 0;
+    }
+
+    /**
+     * 置位
+     *
+     * @return 该位之前是否未置位
+     */
+    public boolean set(long index) {
+        AtomicLongArray page = pages.computeIfAbsent(index >>> PAGE_SHIFT, key -> new AtomicLongArray(WORDS_PER_PAGE));
+        int offset = (int) (index & OFFSET_MASK);
+        long bit = 1L << offset;
+        while (true) {
+            long word = page.get(offset >>> 6);
+            if ((word & bit) != 0) {
+                return false;
+            }
+            if (page.compareAndSet(offset >>> 6, word, word | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 清除一位，页保留以便再次置位
+     *
+     * @return 该位之前是否已置位
+     */
+    public boolean clear(long index) {
+        AtomicLongArray page = pages.get(index >>> PAGE_SHIFT);
+        if (page == null) {
+            return false;
+        }
+        int offset = (int) (index & OFFSET_MASK);
+        long bit = 1L << offset;
+        while (true) {
+            long word = page.get(offset >>> 6);
+            if ((word & bit) == 0) {
+                return false;
+            }
+            if (page.compareAndSet(offset >>> 6, word, word & ~bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 遍历所有已置位的位，遍历期间的并发修改可能可见也可能不可见
+     */
+    public void forEach(LongConsumer action) {
+        pages.forEach((pageIndex, page) -> {
+            for (int i = 0; i < WORDS_PER_PAGE; i++) {
+                long word = page.get(i);
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    action.accept((pageIndex << PAGE_SHIFT) | ((long) i << 6) | bit);
+                    word &= word - 1;
+                }
+            }
+        });
+    }
+
+    /**
+     * 已置位的数量
+     */
+    public long cardinality() {
+        long count = 0;
+        for (AtomicLongArray page : pages.values()) {
+            for (int i = 0; i < WORDS_PER_PAGE; i++) {
+                count += Long.bitCount(page.get(i));
+            }
+        }
+        return count;
+    }
+}
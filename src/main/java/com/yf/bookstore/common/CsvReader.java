@@ -0,0 +1,127 @@
+package com.yf.bookstore.common;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 逐条读取CSV记录（RFC 4180）：逗号分隔，字段可用双引号包围，引号内的逗号、换行和成对的双引号按原样保留
+ * 只缓冲当前记录，内存占用与文件大小无关；单条记录的长度有上限，未闭合的引号不会把整个文件读入内存
+ */
+public class CsvReader {
+
+    /**
+     * 默认的单条记录最大字符数
+     */
+    public static final int DEFAULT_MAX_RECORD_LENGTH = 64 * 1024;
+
+    private final Reader reader;
+    private final int maxRecordLength;
+    private int lookahead = -2;
+    private long line = 1;
+    private long recordLine;
+
+    public CsvReader(Reader reader) {
+        this(reader, DEFAULT_MAX_RECORD_LENGTH);
+    }
+
+    /**
+     * @param reader          输入
+     * @param maxRecordLength 单条记录的最大字符数，不含记录末尾的换行
+     */
+    public CsvReader(Reader reader, int maxRecordLength) {
+        this.reader = reader;
+        this.maxRecordLength = maxRecordLength;
+    }
+
+    /**
+     * 读取下一条记录
+     *
+     * @return 记录的字段，已到文件末尾时返回null
+     * @throws IOException 如果读取失败、引号未闭合或记录超过长度上限；记录边界无法确定，不能继续读取
+     */
+    public List<String> next() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        // 已完成字段的字符数，含分隔的逗号
+        int length = 0;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting at line " + recordLine);
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                length += field.length() + 1;
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    int next = read();
+                    if (next != '\n') {
+                        unread(next);
+                    }
+                }
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            if (length + field.length() > maxRecordLength) {
+                throw new IOException("Record starting at line " + recordLine + " exceeds " + maxRecordLength + " characters");
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * 最近一次读取的记录在文件中的起始行号，从1开始
+     */
+    public long recordLine() {
+        return recordLine;
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (lookahead != -2) {
+            c = lookahead;
+            lookahead = -2;
+        } else {
+            c = reader.read();
+        }
+        if (c == '\n') {
+            line++;
+        }
+        return c;
+    }
+
+    private void unread(int c) {
+        if (c == '\n') {
+            line--;
+        }
+        lookahead = c;
+    }
+}
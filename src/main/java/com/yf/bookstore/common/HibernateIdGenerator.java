@@ -0,0 +1,23 @@
+package com.yf.bookstore.common;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.io.Serializable;
+
+/**
+ * 把 {@link IdGenerator} 接入Hibernate的主键生成器
+ * 主键在插入之前就已确定，Hibernate因此可以把多条INSERT合并为JDBC批量执行，而IDENTITY每插入一行都要立即执行取回主键
+ */
+public class HibernateIdGenerator implements IdentifierGenerator {
+
+    /**
+     * 实体上 {@code @GenericGenerator} 使用的策略类名
+     */
+    public static final String STRATEGY = "com.yf.bookstore.common.HibernateIdGenerator";
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return IdGenerators.nextId();
+    }
+}
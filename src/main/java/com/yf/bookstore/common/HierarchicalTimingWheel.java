@@ -0,0 +1,176 @@
+package com.yf.bookstore.common;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分层时间轮
+ * 第0层每格一个tick，第n层每格等于第n-1层转一圈的时长；任务放在能在一圈内容纳其到期时间的最低一层，
+ * 上层的格子轮到时把其中的任务重新分配到下层。相比单层时间轮，到期时间远大于一圈时不必每圈都检查一遍，
+ * 每个任务最多被搬动“层数”次，适合数量多、超时时间长（如数十分钟）的任务
+ * 登记与 {@link TimingWheel} 一样先进入无锁队列，由推进时间轮的单个线程处理
+ *
+ * @param <T> 到期时返回的对象
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickMillis;
+    private final int bits;
+    private final int mask;
+    // 层数上限，足以覆盖任意long范围的格数
+    private final int maxLevels;
+    private final List<List<ArrayDeque<TimingWheel.Timeout<T>>>> levels = new ArrayList<>();
+    private final Queue<TimingWheel.Timeout<T>> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final long startTime;
+    // 第0层当前所在的格，第n层当前所在的格为 currentTick >> (bits * n)
+    private long currentTick;
+
+    /**
+     * @param tickMillis 第0层每一格的时长（毫秒）
+     * @param wheelSize  每层的格数，会向上取整为2的幂
+     * @param startTime  起始时间（毫秒时间戳）
+     */
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, long startTime) {
+        int normalized = 2;
+        while (normalized < wheelSize) {
+            normalized <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.bits = Integer.numberOfTrailingZeros(normalized);
+        this.mask = normalized - 1;
+        this.maxLevels = (Long.SIZE - 1 + bits - 1) / bits;
+        this.startTime = startTime;
+        addLevel();
+    }
+
+    /**
+     * 登记一个到期任务
+     *
+     * @param item     到期时返回的对象
+     * @param deadline 到期时间（毫秒时间戳）
+     * @return 可用于取消的句柄
+     */
+    public TimingWheel.Timeout<T> schedule(T item, long deadline) {
+        TimingWheel.Timeout<T> timeout = new TimingWheel.Timeout<>(item, deadline);
+        pendingTimeouts.add(timeout);
+        size.incrementAndGet();
+        return timeout;
+    }
+
+    /**
+     * 推进时间轮到指定时间，返回期间到期的全部任务；同一时刻只能由一个线程调用
+     *
+     * @param now 当前时间（毫秒时间戳）
+     * @return 到期且未取消的任务
+     */
+    public List<T> advance(long now) {
+        List<T> expired = new ArrayList<>();
+        transferPending(expired, now);
+        long targetTick = Math.max(currentTick, (now - startTime) / tickMillis);
+        while (true) {
+            expireBucket(levels.get(0).get((int) (currentTick & mask)), now, expired);
+            // 停在目标格上：其中到期时间晚于now的任务留到下次推进
+            if (currentTick == targetTick) {
+                break;
+            }
+            currentTick++;
+            cascade();
+        }
+        return expired;
+    }
+
+    /**
+     * 已登记且尚未到期或清理的任务数
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * 当前的层数
+     */
+    public int levels() {
+        return levels.size();
+    }
+
+    private void transferPending(List<T> expired, long now) {
+        TimingWheel.Timeout<T> timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                size.decrementAndGet();
+            } else if (timeout.getDeadline() <= now) {
+                size.decrementAndGet();
+                expired.add(timeout.getItem());
+            } else {
+                place(timeout);
+            }
+        }
+    }
+
+    // 放入能在一圈内容纳该任务的最低一层
+    private void place(TimingWheel.Timeout<T> timeout) {
+        long tick = Math.max((timeout.getDeadline() - startTime) / tickMillis, currentTick);
+        for (int level = 0; ; level++) {
+            int shift = bits * level;
+            long levelTick = tick >> shift;
+            if (levelTick - (currentTick >> shift) <= mask || level == maxLevels - 1) {
+                while (levels.size() <= level) {
+                    addLevel();
+                }
+                levels.get(level).get((int) (levelTick & mask)).add(timeout);
+                return;
+            }
+        }
+    }
+
+    // 第0层进入新的一格时，从最高的一层开始，把刚轮到的上层格子中的任务重新分配到下层
+    private void cascade() {
+        int top = 0;
+        for (int level = 1; level < levels.size(); level++) {
+            if ((currentTick & ((1L << (bits * level)) - 1)) != 0) {
+                break;
+            }
+            top = level;
+        }
+        for (int level = top; level >= 1; level--) {
+            ArrayDeque<TimingWheel.Timeout<T>> bucket = levels.get(level).get((int) ((currentTick >> (bits * level)) & mask));
+            TimingWheel.Timeout<T> timeout;
+            while ((timeout = bucket.poll()) != null) {
+                if (timeout.isCancelled()) {
+                    size.decrementAndGet();
+                } else {
+                    place(timeout);
+                }
+            }
+        }
+    }
+
+    private void expireBucket(ArrayDeque<TimingWheel.Timeout<T>> bucket, long now, List<T> expired) {
+        Iterator<TimingWheel.Timeout<T>> iterator = bucket.iterator();
+        while (iterator.hasNext()) {
+            TimingWheel.Timeout<T> timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+                size.decrementAndGet();
+            } else if (timeout.getDeadline() <= now) {
+                iterator.remove();
+                size.decrementAndGet();
+                expired.add(timeout.getItem());
+            }
+        }
+    }
+
+    private void addLevel() {
+        List<ArrayDeque<TimingWheel.Timeout<T>>> buckets = new ArrayList<>(mask + 1);
+        for (int i = 0; i <= mask; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        levels.add(buckets);
+    }
+}
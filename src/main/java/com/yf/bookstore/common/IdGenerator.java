@@ -0,0 +1,12 @@
+package com.yf.bookstore.common;
+
+/**
+ * 主键生成器，生成的ID在所有节点间唯一并大致按时间递增
+ */
+public interface IdGenerator {
+
+    /**
+     * 生成下一个ID
+     */
+    long nextId();
+}
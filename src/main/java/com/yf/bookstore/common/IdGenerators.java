@@ -0,0 +1,32 @@
+package com.yf.bookstore.common;
+
+/**
+ * 持有当前节点使用的ID生成器，供无法注入Spring Bean的Hibernate主键生成器使用
+ */
+public final class IdGenerators {
+
+    private static volatile IdGenerator generator;
+
+    private IdGenerators() {
+    }
+
+    /**
+     * 安装ID生成器，在EntityManagerFactory创建之前调用
+     */
+    public static void install(IdGenerator idGenerator) {
+        generator = idGenerator;
+    }
+
+    /**
+     * 生成下一个ID
+     *
+     * @throws IllegalStateException 如果尚未安装ID生成器
+     */
+    public static long nextId() {
+        IdGenerator current = generator;
+        if (current == null) {
+            throw new IllegalStateException("No IdGenerator installed");
+        }
+        return current.nextId();
+    }
+}
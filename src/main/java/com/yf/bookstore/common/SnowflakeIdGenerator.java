@@ -0,0 +1,90 @@
+package com.yf.bookstore.common;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 雪花算法ID生成器
+ * 64位ID由 41位毫秒时间戳（自2020-01-01起）| 10位节点号 | 12位毫秒内序号 组成，节点之间无需协调；
+ * 时间戳和序号合并在一个long里用CAS推进，同一毫秒内序号用尽时借用下一毫秒，
+ * 时钟小幅回拨时沿用上次的时间戳继续递增，因此同一节点生成的ID严格递增
+ */
+public class SnowflakeIdGenerator implements IdGenerator {
+
+    /**
+     * 时间戳起点 2020-01-01T00:00:00Z
+     */
+    public static final long EPOCH = 1577836800000L;
+
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    /**
+     * 节点号上限
+     */
+    public static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    // 允许ID时间戳领先系统时钟的最大毫秒数，超过说明时钟发生了大幅回拨
+    private static final long MAX_DRIFT_MILLIS = 1000;
+
+    private final long workerId;
+    private final LongSupplier clock;
+    // 上次使用的 (时间戳 << SEQUENCE_BITS) | 序号
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(long workerId) {
+        this(workerId, System::currentTimeMillis);
+    }
+
+    public SnowflakeIdGenerator(long workerId, LongSupplier clock) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("Worker ID must be between 0 and " + MAX_WORKER_ID + ": " + workerId);
+        }
+        this.workerId = workerId;
+        this.clock = clock;
+    }
+
+    /**
+     * @throws IllegalStateException 如果系统时钟回拨超过允许范围
+     */
+    @Override
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long lastMillis = last >>> SEQUENCE_BITS;
+            long now = clock.getAsLong() - EPOCH;
+            long next;
+            if (now > lastMillis) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                if (lastMillis - now > MAX_DRIFT_MILLIS) {
+                    throw new IllegalStateException("Clock moved backwards by " + (lastMillis - now) + " ms");
+                }
+                // 序号溢出时自然进位到时间戳
+                next = last + 1;
+            }
+            if (state.compareAndSet(last, next)) {
+                return ((next >>> SEQUENCE_BITS) << (WORKER_BITS + SEQUENCE_BITS))
+                        | (workerId << SEQUENCE_BITS)
+                        | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 从ID中取出生成时间
+     *
+     * @return 毫秒时间戳
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (WORKER_BITS + SEQUENCE_BITS)) + EPOCH;
+    }
+
+    /**
+     * 从ID中取出节点号
+     */
+    public static long workerIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_WORKER_ID;
+    }
+}
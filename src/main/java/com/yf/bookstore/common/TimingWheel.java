@@ -0,0 +1,146 @@
+package com.yf.bookstore.common;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 哈希时间轮
+ * 任意线程都可以登记到期任务，登记先进入无锁队列，由推进时间轮的单个线程搬入对应的槽；
+ * 每次推进只检查经过的槽，到期任务成批返回，代价与到期数量成正比，而不是与登记总数成正比
+ *
+ * @param <T> 到期时返回的对象
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<LinkedList<Timeout<T>>> buckets;
+    private final Queue<Timeout<T>> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final long startTime;
+    private long currentTick;
+
+    /**
+     * @param tickMillis 每一格的时长（毫秒）
+     * @param wheelSize  格数，会向上取整为2的幂
+     */
+    public TimingWheel(long tickMillis, int wheelSize) {
+        int normalized = 1;
+        while (normalized < wheelSize) {
+            normalized <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.mask = normalized - 1;
+        this.buckets = new ArrayList<>(normalized);
+        for (int i = 0; i < normalized; i++) {
+            buckets.add(new LinkedList<>());
+        }
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 登记一个到期任务
+     *
+     * @param item       到期时返回的对象
+     * @param deadline   到期时间（毫秒时间戳）
+     * @return 可用于取消的句柄
+     */
+    public Timeout<T> schedule(T item, long deadline) {
+        Timeout<T> timeout = new Timeout<>(item, deadline);
+        pendingTimeouts.add(timeout);
+        size.incrementAndGet();
+        return timeout;
+    }
+
+    /**
+     * 推进时间轮到指定时间，返回期间到期的全部任务；同一时刻只能由一个线程调用
+     *
+     * @param now 当前时间（毫秒时间戳）
+     * @return 到期且未取消的任务
+     */
+    public List<T> advance(long now) {
+        List<T> expired = new ArrayList<>();
+        transferPending(expired, now);
+        long targetTick = (now - startTime) / tickMillis;
+        // 一次最多转一圈，超过一圈时整轮扫描即可覆盖所有槽
+        long fromTick = Math.max(currentTick, targetTick - mask);
+        for (long tick = fromTick; tick <= targetTick; tick++) {
+            Iterator<Timeout<T>> iterator = buckets.get((int) (tick & mask)).iterator();
+            while (iterator.hasNext()) {
+                Timeout<T> timeout = iterator.next();
+                if (timeout.cancelled) {
+                    iterator.remove();
+                    size.decrementAndGet();
+                } else if (timeout.deadline <= now) {
+                    iterator.remove();
+                    size.decrementAndGet();
+                    expired.add(timeout.item);
+                }
+            }
+        }
+        currentTick = targetTick + 1;
+        return expired;
+    }
+
+    /**
+     * 已登记且尚未到期或清理的任务数
+     */
+    public int size() {
+        return size.get();
+    }
+
+    private void transferPending(List<T> expired, long now) {
+        Timeout<T> timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.cancelled) {
+                size.decrementAndGet();
+                continue;
+            }
+            if (timeout.deadline <= now) {
+                size.decrementAndGet();
+                expired.add(timeout.item);
+                continue;
+            }
+            long tick = Math.max((timeout.deadline - startTime) / tickMillis, currentTick);
+            buckets.get((int) (tick & mask)).add(timeout);
+        }
+    }
+
+    /**
+     * 到期任务的句柄
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private volatile boolean cancelled;
+
+        Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * 取消任务，槽中的记录在下次经过时清理
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package com.yf.bookstore.config;
 
 
+import com.yf.bookstore.cache.TwoLevelCacheManager;
+import com.yf.bookstore.model.commodity.Sku;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -18,6 +23,11 @@ import java.time.Duration;
 @EnableCaching
 public class CacheConfig {
 
+    /**
+     * SKU详情缓存，键为SKU ID
+     */
+    public static final String SKU_CACHE = "skus";
+
     @Bean
     public RedisCacheManager redisCacheManager(RedisConnectionFactory connectionFactory) {
         Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(Object.class);
@@ -27,13 +37,30 @@ public class CacheConfig {
                 .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
                 .entryTtl(Duration.ofMinutes(5)); // Default expiration time of 5 minutes
 
+        // SKU缓存按实体类型序列化，读回的是Sku而不是Map
+        RedisCacheConfiguration skuCacheConfig = defaultCacheConfig
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(new Jackson2JsonRedisSerializer<>(Sku.class)))
+                .disableCachingNullValues();
+
         RedisCacheManager cacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultCacheConfig)
+                .withCacheConfiguration(SKU_CACHE, skuCacheConfig)
                 .build();
 
         return cacheManager;
     }
 
+    /**
+     * 注解缓存默认使用的两级缓存：本节点Caffeine在前，Redis在后
+     */
+    @Bean
+    @Primary
+    public TwoLevelCacheManager twoLevelCacheManager(RedisCacheManager redisCacheManager, StringRedisTemplate redisTemplate,
+                                                     @Value("${cache.local.max-size:10000}") long localMaxSize,
+                                                     @Value("${cache.local.ttl-seconds:60}") long localTtlSeconds) {
+        return new TwoLevelCacheManager(redisCacheManager, redisTemplate, localMaxSize, localTtlSeconds);
+    }
+
     @Bean
     public KeyGenerator cacheKeyGenerator() {
         return (target, method, params) -> {
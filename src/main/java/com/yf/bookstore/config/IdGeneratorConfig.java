@@ -0,0 +1,34 @@
+package com.yf.bookstore.config;
+
+import com.yf.bookstore.common.IdGenerator;
+import com.yf.bookstore.common.IdGenerators;
+import com.yf.bookstore.common.SnowflakeIdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.stereotype.Component;
+
+@Configuration
+public class IdGeneratorConfig {
+
+    /**
+     * 当前节点的ID生成器，每个节点必须配置不同的 id.worker-id
+     */
+    @Bean
+    public IdGenerator idGenerator(@Value("${id.worker-id:0}") long workerId) {
+        IdGenerator generator = new SnowflakeIdGenerator(workerId);
+        IdGenerators.install(generator);
+        return generator;
+    }
+
+    /**
+     * 保证EntityManagerFactory在ID生成器安装之后创建
+     */
+    @Component
+    static class EntityManagerFactoryDependsOnIdGenerator extends EntityManagerFactoryDependsOnPostProcessor {
+        EntityManagerFactoryDependsOnIdGenerator() {
+            super("idGenerator");
+        }
+    }
+}
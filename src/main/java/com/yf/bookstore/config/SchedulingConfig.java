@@ -0,0 +1,12 @@
+package com.yf.bookstore.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 启用定时任务，供库存写回等后台任务使用
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
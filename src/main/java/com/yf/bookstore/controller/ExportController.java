@@ -0,0 +1,119 @@
+package com.yf.bookstore.controller;
+
+import com.yf.bookstore.exception.export.ExportBusyException;
+import com.yf.bookstore.export.NdjsonExporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 数据导出控制器，以NDJSON流的形式输出整张表，供下游同步和分析使用
+ * 响应体由异步线程边查询边写出，不在内存中组装整个结果
+ * 每个导出占用一个数据库连接和一个异步线程直到写完，同时进行的导出数有上限，超过时返回429
+ */
+@RestController
+@RequestMapping("/exports")
+public class ExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+    /**
+     * NDJSON导出
+     */
+    private final NdjsonExporter exporter;
+
+    /**
+     * 同时进行的导出许可，响应体写完或失败时归还
+     */
+    private final Semaphore permits;
+
+    /**
+     * 构造器注入
+     *
+     * @param exporter      NDJSON导出
+     * @param maxConcurrent 最多同时进行的导出数
+     */
+    @Autowired
+    public ExportController(NdjsonExporter exporter, @Value("${export.max-concurrent:2}") int maxConcurrent) {
+        this.exporter = exporter;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * 导出所有SKU
+     *
+     * @param gzip 是否以gzip压缩文件下载
+     * @return 每行一个SKU的NDJSON流
+     * @throws ExportBusyException 如果同时进行的导出已达上限
+     */
+    @GetMapping("/skus")
+    public ResponseEntity<StreamingResponseBody> exportSkus(@RequestParam(defaultValue = "false") boolean gzip) {
+        return stream("skus", gzip, exporter::exportSkus);
+    }
+
+    /**
+     * 导出所有库存记录
+     *
+     * @param gzip 是否以gzip压缩文件下载
+     * @return 每行一条库存记录的NDJSON流
+     * @throws ExportBusyException 如果同时进行的导出已达上限
+     */
+    @GetMapping("/stocks")
+    public ResponseEntity<StreamingResponseBody> exportStocks(@RequestParam(defaultValue = "false") boolean gzip) {
+        return stream("stocks", gzip, exporter::exportStocks);
+    }
+
+    /**
+     * 导出所有订单，明细内嵌在订单中
+     *
+     * @param gzip 是否以gzip压缩文件下载
+     * @return 每行一个订单的NDJSON流
+     * @throws ExportBusyException 如果同时进行的导出已达上限
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<StreamingResponseBody> exportOrders(@RequestParam(defaultValue = "false") boolean gzip) {
+        return stream("orders", gzip, exporter::exportOrders);
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String name, boolean gzip, Export export) {
+        // 在返回响应头之前取得许可，超过上限时直接返回429
+        if (!permits.tryAcquire()) {
+            throw new ExportBusyException();
+        }
+        // 压缩后作为.gz文件下载，不设置Content-Encoding，避免客户端透明解压
+        return ResponseEntity.ok()
+                .contentType(gzip ? GZIP : NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + name + (gzip ? ".ndjson.gz" : ".ndjson") + "\"")
+                .body(out -> {
+                    try {
+                        if (!gzip) {
+                            export.write(out);
+                            return;
+                        }
+                        GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                        export.write(compressed);
+                        compressed.finish();
+                    } finally {
+                        permits.release();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface Export {
+        long write(OutputStream out) throws IOException;
+    }
+}
@@ -1,49 +1,126 @@
 package com.yf.bookstore.controller;
 
 import com.yf.bookstore.exception.commodity.SkuNotFoundException;
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.inventory.SoldOutRegistry;
 import com.yf.bookstore.model.commodity.Sku;
+import com.yf.bookstore.model.order.CreateOrderRequest;
 import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLineRequest;
+import com.yf.bookstore.model.order.OrderPage;
 import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.order.OrderTicket;
+import com.yf.bookstore.model.order.OrderTransitionRequest;
+import com.yf.bookstore.model.order.OrderTransitionResult;
+import com.yf.bookstore.order.IdempotencyGuard;
+import com.yf.bookstore.order.OrderIngestionPipeline;
 import com.yf.bookstore.service.OrderService;
 import com.yf.bookstore.service.SkuService;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
 @RestController
 @RequestMapping("/orders")
 public class OrderController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     // 注入订单服务
     private final OrderService orderService;
     // 注入库存单位服务
     private final SkuService skuService;
+    // 本节点已知售罄的SKU
+    private final SoldOutRegistry soldOutRegistry;
+    // 异步下单管道，启用时下单只返回凭证
+    private final OrderIngestionPipeline ingestionPipeline;
+    // 下单请求去重
+    private final IdempotencyGuard idempotencyGuard;
 
     // 构造函数，用于注入服务层对象
-    public OrderController(OrderService orderService, SkuService skuService) {
+    public OrderController(OrderService orderService, SkuService skuService, SoldOutRegistry soldOutRegistry,
+                           OrderIngestionPipeline ingestionPipeline, IdempotencyGuard idempotencyGuard) {
         this.orderService = orderService;
         this.skuService = skuService;
+        this.soldOutRegistry = soldOutRegistry;
+        this.ingestionPipeline = ingestionPipeline;
+        this.idempotencyGuard = idempotencyGuard;
     }
 
     /**
      * 创建订单
+     * 带Idempotency-Key请求头时，同一顾客的同一个key只会下单一次，重试返回首次的响应
      *
-     * @param customerId 顾客ID
-     * @param skuId      商品库存单位ID
-     * @return 创建完成的订单
+     * @param customerId     顾客ID
+     * @param skuId          商品库存单位ID
+     * @param idempotencyKey 幂等键，可选
+     * @return 创建完成的订单；启用异步下单时返回202和订单凭证
      * @throws SkuNotFoundException 如果库存单位不存在
+     * @throws InsufficientStockException 如果库存单位已售罄
      */
     @PostMapping
-    public ResponseEntity<Order> createOrder(@RequestParam String customerId,
-                                             @RequestParam Long skuId) {
-        // 根据ID获取商品库存单位
-        Sku sku = skuService.getSkuById(skuId);
-        if (sku == null) {
-            // 如果商品库存单位不存在，则抛出异常
-            throw new SkuNotFoundException(skuId);
-        }
-        // 创建订单并返回
-        Order order = orderService.createOrder(customerId, sku);
-        return ResponseEntity.ok(order);
+    public ResponseEntity<?> createOrder(@RequestParam String customerId,
+                                         @RequestParam Long skuId,
+                                         @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotent(customerId, idempotencyKey, () -> placeOrder(customerId, skuId));
+    }
+
+    /**
+     * 创建包含多个商品的订单，所有明细的库存一起预占，任一SKU不足时整单失败
+     *
+     * @param request        顾客ID和订单明细
+     * @param idempotencyKey 幂等键，可选
+     * @return 创建完成的订单；启用异步下单时返回202和订单凭证
+     * @throws SkuNotFoundException 如果有库存单位不存在
+     * @throws InsufficientStockException 如果有库存单位已售罄或库存不足
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> createOrder(@RequestBody CreateOrderRequest request,
+                                         @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
+        return idempotent(request.getCustomerId(), idempotencyKey, () -> placeOrder(request));
+    }
+
+    /**
+     * 按创建时间倒序分页查询顾客的订单
+     *
+     * @param customerId 顾客ID
+     * @param after      上一页返回的nextCursor，第一页不传
+     * @param limit      每页条数，最多100
+     * @return 本页订单摘要和下一页的游标，没有更多时游标为空
+     */
+    @GetMapping
+    public ResponseEntity<OrderPage> listOrders(@RequestParam String customerId,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(orderService.listOrders(customerId, after, limit));
+    }
+
+    /**
+     * 批量变更订单状态，供履约系统把订单变更为处理中或已完成
+     * 不允许的变更只影响对应的订单，其余订单照常变更
+     *
+     * @param request 订单ID列表和目标状态
+     * @return 每个订单的变更结果
+     */
+    @PostMapping("/transitions")
+    public ResponseEntity<List<OrderTransitionResult>> transitionOrders(@RequestBody OrderTransitionRequest request) {
+        return ResponseEntity.ok(orderService.transitionOrders(request.getOrderIds(), request.getTargetStatus()));
+    }
+
+    /**
+     * 查询异步下单的凭证状态
+     *
+     * @param ticket 下单时返回的凭证
+     * @return 凭证状态，订单写入后包含订单ID
+     */
+    @GetMapping("/tickets/{ticket}")
+    public ResponseEntity<OrderTicket> getOrderTicket(@PathVariable String ticket) {
+        return ResponseEntity.ok(orderService.getOrderTicket(ticket));
     }
 
     /**
@@ -59,6 +136,17 @@ public class OrderController {
         return ResponseEntity.ok(order);
     }
 
+    /**
+     * 查询订单及其明细，已归档的订单同样可以查询
+     *
+     * @param orderId 订单ID
+     * @return 订单信息
+     */
+    @GetMapping("/{orderId}")
+    public ResponseEntity<Order> getOrder(@PathVariable Long orderId) {
+        return ResponseEntity.ok(orderService.getOrder(orderId));
+    }
+
     /**
      * 获取订单状态
      *
@@ -71,4 +159,48 @@ public class OrderController {
         OrderStatus status = orderService.getOrderStatus(orderId);
         return ResponseEntity.ok(status);
     }
+
+    // 幂等键按顾客隔离，不同顾客使用相同的key互不影响
+    private ResponseEntity<?> idempotent(String customerId, String idempotencyKey, Supplier<ResponseEntity<?>> action) {
+        if (!StringUtils.hasText(idempotencyKey)) {
+            return action.get();
+        }
+        return idempotencyGuard.execute(customerId + ":" + idempotencyKey, action);
+    }
+
+    private ResponseEntity<?> placeOrder(String customerId, Long skuId) {
+        // 已售罄的SKU直接拒绝，不再查询商品和扣减库存
+        if (soldOutRegistry.isSoldOut(skuId)) {
+            throw new InsufficientStockException(skuId);
+        }
+        if (ingestionPipeline.isEnabled()) {
+            OrderTicket ticket = orderService.submitOrder(customerId, Collections.singletonList(new OrderLineRequest(skuId, 1)));
+            return ResponseEntity.accepted().body(ticket);
+        }
+        // 根据ID获取商品库存单位
+        Sku sku = skuService.getSkuById(skuId);
+        if (sku == null) {
+            // 如果商品库存单位不存在，则抛出异常
+            throw new SkuNotFoundException(skuId);
+        }
+        // 创建订单并返回
+        Order order = orderService.createOrder(customerId, sku);
+        return ResponseEntity.ok(order);
+    }
+
+    private ResponseEntity<?> placeOrder(CreateOrderRequest request) {
+        if (request.getLines() != null) {
+            for (OrderLineRequest line : request.getLines()) {
+                if (line != null && line.getSkuId() != null && soldOutRegistry.isSoldOut(line.getSkuId())) {
+                    throw new InsufficientStockException(line.getSkuId());
+                }
+            }
+        }
+        if (ingestionPipeline.isEnabled()) {
+            OrderTicket ticket = orderService.submitOrder(request.getCustomerId(), request.getLines());
+            return ResponseEntity.accepted().body(ticket);
+        }
+        Order order = orderService.createOrder(request.getCustomerId(), request.getLines());
+        return ResponseEntity.ok(order);
+    }
 }
@@ -1,11 +1,21 @@
 package com.yf.bookstore.controller;
 
+import com.yf.bookstore.cache.TwoLevelCacheManager;
+import com.yf.bookstore.commodity.SkuImporter;
 import com.yf.bookstore.model.commodity.Sku;
+import com.yf.bookstore.model.commodity.SkuImportReport;
+import com.yf.bookstore.model.commodity.SkuSearchResult;
+import com.yf.bookstore.search.SkuSearchIndex;
 import com.yf.bookstore.service.SkuService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
 /**
  * SkuController 类用于处理与Sku相关的HTTP请求
  */
@@ -18,14 +28,36 @@ public class SkuController {
      */
     private final SkuService skuService;
 
+    /**
+     * cacheManager 提供SKU缓存的命中统计
+     */
+    private final TwoLevelCacheManager cacheManager;
+
+    /**
+     * searchIndex 是SKU的堆内搜索索引
+     */
+    private final SkuSearchIndex searchIndex;
+
+    /**
+     * skuImporter 负责流式批量导入Sku
+     */
+    private final SkuImporter skuImporter;
+
     /**
      * 构造函数注入SkuService
      *
-     * @param skuService SkuService实例
+     * @param skuService   SkuService实例
+     * @param cacheManager 两级缓存管理器
+     * @param searchIndex  SKU搜索索引
+     * @param skuImporter  Sku批量导入
      */
     @Autowired
-    public SkuController(SkuService skuService) {
+    public SkuController(SkuService skuService, TwoLevelCacheManager cacheManager, SkuSearchIndex searchIndex,
+                         SkuImporter skuImporter) {
         this.skuService = skuService;
+        this.cacheManager = cacheManager;
+        this.searchIndex = searchIndex;
+        this.skuImporter = skuImporter;
     }
 
     /**
@@ -40,6 +72,26 @@ public class SkuController {
         return ResponseEntity.ok(createdSku);
     }
 
+    /**
+     * 批量导入Sku，请求体为CSV（首行为列名）或NDJSON，边读取边写入
+     * 格式由format参数指定，未指定时按Content-Type判断：text/csv 或 application/x-ndjson
+     *
+     * @param format      文件格式，csv或ndjson，可选
+     * @param contentType 请求体的类型
+     * @param body        请求体
+     * @return 导入的行数、被拒绝的行及原因和吞吐量
+     */
+    @PostMapping("/import")
+    public ResponseEntity<SkuImportReport> importSkus(@RequestParam(required = false) String format,
+                                                      @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+                                                      InputStream body) {
+        if (format == null && contentType != null) {
+            format = contentType.contains("csv") ? SkuImporter.FORMAT_CSV
+                    : contentType.contains("ndjson") ? SkuImporter.FORMAT_NDJSON : null;
+        }
+        return ResponseEntity.ok(skuImporter.importSkus(format, body));
+    }
+
     /**
      * 更新现有的Sku
      *
@@ -76,4 +128,39 @@ public class SkuController {
         Sku sku = skuService.getSkuById(id);
         return ResponseEntity.ok(sku);
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量获取Sku，商品列表页一次请求取回整页的Sku
+     *
+     * @param ids Sku的ID，逗号分隔，最多2000个
+     * @return 按请求顺序排列的Sku，不存在的ID被忽略
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<Sku>> getSkusByIds(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(skuService.getSkusByIds(ids));
+    }
+
+    /**
+     * 按标题和规格参数搜索Sku，只查询堆内索引
+     * 空格分隔的词同时匹配，词之间加 OR 表示任一匹配，-词 排除，词* 前缀匹配
+     *
+     * @param q     查询语句
+     * @param limit 最多返回的条数，最多100
+     * @return 匹配总数和按相关度排序的Sku
+     */
+    @GetMapping("/search")
+    public ResponseEntity<SkuSearchResult> searchSkus(@RequestParam String q,
+                                                      @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(searchIndex.search(q, Math.max(0, Math.min(limit, 100))));
+    }
+
+    /**
+     * 查询缓存各级的命中次数和命中率
+     *
+     * @return 按缓存名列出的统计
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(cacheManager.stats());
+    }
+}
@@ -1,11 +1,19 @@
 package com.yf.bookstore.controller;
 
+import com.yf.bookstore.inventory.StockMetrics;
 import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.model.inventory.StockAdjustment;
+import com.yf.bookstore.model.inventory.StockAdjustmentResult;
+import com.yf.bookstore.model.inventory.StockHold;
+import com.yf.bookstore.model.inventory.StockLevel;
 import com.yf.bookstore.service.StockService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * 库存控制器，处理与库存相关的HTTP请求
  */
@@ -18,14 +26,21 @@ public class StockController {
      */
     private final StockService stockService;
 
+    /**
+     * 库存运行指标
+     */
+    private final StockMetrics stockMetrics;
+
     /**
      * 构造器注入库存服务
      *
      * @param stockService 库存服务层实例
+     * @param stockMetrics 库存运行指标
      */
     @Autowired
-    public StockController(StockService stockService) {
+    public StockController(StockService stockService, StockMetrics stockMetrics) {
         this.stockService = stockService;
+        this.stockMetrics = stockMetrics;
     }
 
     /**
@@ -40,6 +55,17 @@ public class StockController {
         return ResponseEntity.ok(createdStock);
     }
 
+    /**
+     * 批量调整库存，每项给出增量(delta)或绝对值(stock)，整批在一个事务中生效
+     *
+     * @param adjustments 调整列表
+     * @return 与请求顺序一致的逐项结果
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<StockAdjustmentResult>> adjustStocks(@RequestBody List<StockAdjustment> adjustments) {
+        return ResponseEntity.ok(stockService.adjustStocks(adjustments));
+    }
+
     /**
      * 更新库存记录
      *
@@ -76,4 +102,61 @@ public class StockController {
         Stock stock = stockService.getStockBySkuId(id);
         return ResponseEntity.ok(stock);
     }
+
+    /**
+     * 预留库存，过期前未确认的预留会被自动释放
+     *
+     * @param id         商品SKU ID
+     * @param quantity   预留数量
+     * @param ttlSeconds 预留时长（秒），不传时使用默认值
+     * @return 预留记录
+     */
+    @PostMapping("/{id}/holds")
+    public ResponseEntity<StockHold> holdStock(@PathVariable Long id, @RequestParam int quantity,
+                                               @RequestParam(defaultValue = "0") long ttlSeconds) {
+        return ResponseEntity.ok(stockService.holdStock(id, quantity, ttlSeconds));
+    }
+
+    /**
+     * 确认预留，预留数量计入已售
+     *
+     * @param holdId 预留ID
+     * @return 确认后的库存概况
+     */
+    @PostMapping("/holds/{holdId}/confirm")
+    public ResponseEntity<StockLevel> confirmHold(@PathVariable String holdId) {
+        return ResponseEntity.ok(stockService.confirmHold(holdId));
+    }
+
+    /**
+     * 释放预留，预留数量归还到可用库存
+     *
+     * @param holdId 预留ID
+     * @return 释放后的库存概况
+     */
+    @DeleteMapping("/holds/{holdId}")
+    public ResponseEntity<StockLevel> releaseHold(@PathVariable String holdId) {
+        return ResponseEntity.ok(stockService.releaseHold(holdId));
+    }
+
+    /**
+     * 查询库存概况（可用、已预留、已售）
+     *
+     * @param id 商品SKU ID
+     * @return 库存概况
+     */
+    @GetMapping("/{id}/level")
+    public ResponseEntity<StockLevel> getStockLevel(@PathVariable Long id) {
+        return ResponseEntity.ok(stockService.getStockLevel(id));
+    }
+
+    /**
+     * 查询库存运行指标，包括按SKU统计的版本冲突次数
+     *
+     * @return 指标快照
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> getMetrics() {
+        return ResponseEntity.ok(stockMetrics.snapshot());
+    }
 }
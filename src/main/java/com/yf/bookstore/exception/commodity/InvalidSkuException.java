@@ -0,0 +1,9 @@
+package com.yf.bookstore.exception.commodity;
+
+import com.yf.bookstore.exception.BaseException;
+
+public class InvalidSkuException extends BaseException {
+    public InvalidSkuException(String message) {
+        super(message, 400);
+    }
+}
@@ -0,0 +1,9 @@
+package com.yf.bookstore.exception.export;
+
+import com.yf.bookstore.exception.BaseException;
+
+public class ExportBusyException extends BaseException {
+    public ExportBusyException() {
+        super("Too many exports in progress, please retry later", 429);
+    }
+}
@@ -0,0 +1,9 @@
+package com.yf.bookstore.exception.inventory;
+
+import com.yf.bookstore.exception.BaseException;
+
+public class StockHoldNotFoundException extends BaseException {
+    public StockHoldNotFoundException(String holdId) {
+        super("Stock hold not found or already expired: " + holdId, 404);
+    }
+}
@@ -0,0 +1,9 @@
+package com.yf.bookstore.exception.order;
+
+import com.yf.bookstore.exception.BaseException;
+
+public class IdempotencyConflictException extends BaseException {
+    public IdempotencyConflictException(String key) {
+        super("A request with the same idempotency key is still in progress: " + key, 409);
+    }
+}
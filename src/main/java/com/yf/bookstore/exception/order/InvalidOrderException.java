@@ -0,0 +1,9 @@
+package com.yf.bookstore.exception.order;
+
+import com.yf.bookstore.exception.BaseException;
+
+public class InvalidOrderException extends BaseException {
+    public InvalidOrderException(String message) {
+        super(message, 400);
+    }
+}
@@ -0,0 +1,9 @@
+package com.yf.bookstore.exception.order;
+
+import com.yf.bookstore.exception.BaseException;
+
+public class OrderBackpressureException extends BaseException {
+    public OrderBackpressureException() {
+        super("Order ingestion buffer is full, please retry later", 429);
+    }
+}
@@ -0,0 +1,9 @@
+package com.yf.bookstore.exception.order;
+
+import com.yf.bookstore.exception.BaseException;
+
+public class OrderTicketNotFoundException extends BaseException {
+    public OrderTicketNotFoundException(String ticket) {
+        super("Order ticket not found or expired: " + ticket, 404);
+    }
+}
@@ -0,0 +1,222 @@
+package com.yf.bookstore.export;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.model.order.OrderStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * 按NDJSON格式导出tb_sku、tb_stock和tb_order，每行一个JSON对象
+ * 用只进只读的JDBC游标按fetch-size分批取行，每读一行立即写入输出流，不创建实体也不经过持久化上下文，
+ * 内存占用与表的行数无关；订单和明细按订单ID排序后连接读取，同一订单的明细连续出现，逐个订单输出
+ * MySQL需要在连接串中加 useCursorFetch=true，或把 export.fetch-size 设为 -2147483648，驱动才会按批取行
+ */
+@Component
+public class NdjsonExporter {
+
+    private static final String SKU_SQL = "SELECT id, title, images, price, indexes, own_spec, enable, create_time, modify_time "
+            + "FROM tb_sku ORDER BY id";
+    private static final String STOCK_SQL = "SELECT id, sku_id, stock, version, create_time, modify_time FROM tb_stock ORDER BY id";
+    private static final String ORDER_SQL = "SELECT o.id, o.customer_id, o.status, o.sku_id, o.price, o.total_amount, "
+            + "o.create_time, o.modify_time, l.sku_id AS line_sku_id, l.quantity AS line_quantity, l.price AS line_price "
+            + "FROM tb_order o LEFT JOIN tb_order_line l ON l.order_id = o.id ORDER BY o.id, l.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public NdjsonExporter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                          @Value("${export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        // 游标在只读事务中打开，PostgreSQL等数据库只有关闭自动提交才会按fetch-size分批取行
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * 导出所有SKU
+     *
+     * @return 导出的行数
+     */
+    public long exportSkus(OutputStream out) throws IOException {
+        return export(SKU_SQL, out, (rs, gen) -> {
+            gen.writeStartObject();
+            gen.writeNumberField("id", rs.getLong("id"));
+            gen.writeStringField("title", rs.getString("title"));
+            gen.writeStringField("images", rs.getString("images"));
+            writeDecimal(gen, "price", rs.getBigDecimal("price"));
+            gen.writeStringField("indexes", rs.getString("indexes"));
+            gen.writeStringField("ownSpec", rs.getString("own_spec"));
+            gen.writeBooleanField("enable", rs.getBoolean("enable"));
+            writeTime(gen, "createTime", rs.getTimestamp("create_time"));
+            writeTime(gen, "modifyTime", rs.getTimestamp("modify_time"));
+            gen.writeEndObject();
+        });
+    }
+
+    /**
+     * 导出所有库存记录
+     *
+     * @return 导出的行数
+     */
+    public long exportStocks(OutputStream out) throws IOException {
+        return export(STOCK_SQL, out, (rs, gen) -> {
+            gen.writeStartObject();
+            gen.writeNumberField("id", rs.getLong("id"));
+            gen.writeNumberField("skuId", rs.getLong("sku_id"));
+            gen.writeNumberField("stock", rs.getInt("stock"));
+            gen.writeNumberField("version", rs.getLong("version"));
+            writeTime(gen, "createTime", rs.getTimestamp("create_time"));
+            writeTime(gen, "modifyTime", rs.getTimestamp("modify_time"));
+            gen.writeEndObject();
+        });
+    }
+
+    /**
+     * 导出所有订单，明细内嵌在所属订单的lines字段中
+     *
+     * @return 导出的订单数
+     */
+    public long exportOrders(OutputStream out) throws IOException {
+        long[] current = {0};
+        boolean[] open = {false};
+        return export(ORDER_SQL, out, (rs, gen) -> {
+            long orderId = rs.getLong("id");
+            boolean started = !open[0] || orderId != current[0];
+            if (started) {
+                if (open[0]) {
+                    endOrder(gen);
+                }
+                startOrder(rs, gen);
+                current[0] = orderId;
+                open[0] = true;
+            }
+            long lineSkuId = rs.getLong("line_sku_id");
+            if (!rs.wasNull()) {
+                gen.writeStartObject();
+                gen.writeNumberField("skuId", lineSkuId);
+                gen.writeNumberField("quantity", rs.getInt("line_quantity"));
+                writeDecimal(gen, "price", rs.getBigDecimal("line_price"));
+                gen.writeEndObject();
+            }
+            return started;
+        }, gen -> {
+            if (open[0]) {
+                endOrder(gen);
+            }
+        });
+    }
+
+    private void startOrder(ResultSet rs, JsonGenerator gen) throws SQLException, IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("id", rs.getLong("id"));
+        gen.writeStringField("customerId", rs.getString("customer_id"));
+        int status = rs.getInt("status");
+        gen.writeStringField("status", rs.wasNull() ? null : OrderStatus.values()[status].name());
+        long skuId = rs.getLong("sku_id");
+        if (rs.wasNull()) {
+            gen.writeNullField("skuId");
+        } else {
+            gen.writeNumberField("skuId", skuId);
+        }
+        writeDecimal(gen, "price", rs.getBigDecimal("price"));
+        writeDecimal(gen, "totalAmount", rs.getBigDecimal("total_amount"));
+        writeTime(gen, "createTime", rs.getTimestamp("create_time"));
+        writeTime(gen, "modifyTime", rs.getTimestamp("modify_time"));
+        gen.writeArrayFieldStart("lines");
+    }
+
+    private static void endOrder(JsonGenerator gen) throws IOException {
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeRaw('\n');
+    }
+
+    private long export(String sql, OutputStream out, RecordWriter writer) throws IOException {
+        return export(sql, out, (rs, gen) -> {
+            writer.write(rs, gen);
+            gen.writeRaw('\n');
+            return true;
+        }, gen -> {
+        });
+    }
+
+    // 在只读事务中用只进游标读取，每行交给writer写入；writer返回true表示开始了一条新记录
+    private long export(String sql, OutputStream out, RowWriter writer, Finisher finisher) throws IOException {
+        JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // 每个对象之间由换行分隔，不使用默认的空格
+        gen.setRootValueSeparator(null);
+        long[] count = {0};
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                return ps;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    if (writer.write(rs, gen)) {
+                        count[0]++;
+                    }
+                } catch (IOException e) {
+                    // 客户端断开等写入失败时中止查询，游标随语句关闭
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            finisher.finish(gen);
+            gen.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count[0];
+    }
+
+    private static void writeDecimal(JsonGenerator gen, String field, BigDecimal value) throws IOException {
+        if (value == null) {
+            gen.writeNullField(field);
+        } else {
+            gen.writeNumberField(field, value);
+        }
+    }
+
+    private static void writeTime(JsonGenerator gen, String field, Timestamp value) throws IOException {
+        gen.writeStringField(field, value == null ? null : value.toLocalDateTime().toString());
+    }
+
+    /**
+     * 把一行写成一条记录
+     */
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(ResultSet rs, JsonGenerator gen) throws SQLException, IOException;
+    }
+
+    /**
+     * 处理一行，多行可能组成一条记录
+     */
+    @FunctionalInterface
+    private interface RowWriter {
+        boolean write(ResultSet rs, JsonGenerator gen) throws SQLException, IOException;
+    }
+
+    @FunctionalInterface
+    private interface Finisher {
+        void finish(JsonGenerator gen) throws IOException;
+    }
+}
@@ -0,0 +1,49 @@
+package com.yf.bookstore.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 不属于数据库事务的库存预占（Redis计数器、热点分片、进程内账本）在调用方事务回滚时的补偿
+ * 预占成功后登记，事务回滚时按原数量归还，归还同样先写入写回队列，数据库最终不受影响
+ */
+public final class RollbackRelease {
+
+    private static final Logger logger = LoggerFactory.getLogger(RollbackRelease.class);
+
+    private RollbackRelease() {
+    }
+
+    /**
+     * 登记一笔已生效的预占，没有活动事务时不登记（预占由调用方自行负责）
+     *
+     * @param reserved 已预占的SKU及数量
+     * @param release  归还库存的方法
+     */
+    public static void register(Map<Long, Integer> reserved, Consumer<Map<Long, Integer>> release) {
+        if (reserved.isEmpty() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Map<Long, Integer> quantities = new TreeMap<>(reserved);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_ROLLED_BACK) {
+                    return;
+                }
+                try {
+                    release.accept(quantities);
+                } catch (RuntimeException e) {
+                    // 预占的增量已在写回日志中，归还失败时由对账任务发现偏差
+                    logger.error("Failed to release stock {} after rollback: {}", quantities, e.getMessage(), e);
+                }
+            }
+        });
+    }
+}
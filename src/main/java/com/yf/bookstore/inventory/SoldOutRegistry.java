@@ -0,0 +1,151 @@
+package com.yf.bookstore.inventory;
+
+import com.yf.bookstore.common.ConcurrentBitSet;
+import com.yf.bookstore.service.StockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本节点已知售罄的SKU
+ * 库存扣到0时置位，补货时清除，并通过Redis频道 stock:soldout 通知其他节点；在事务中调用时等到提交后才生效，
+ * 回滚的扣减不会把SKU误标为售罄；
+ * 下单前先查询位图，售罄期间的请求只需一次位运算即可拒绝。
+ * 位图只作为快速拒绝的依据：漏置位只是走正常扣减路径，消息丢失导致的误置位由定期校验清除
+ */
+@Component
+public class SoldOutRegistry implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SoldOutRegistry.class);
+
+    /**
+     * 售罄状态变化的通知频道，消息为 +{skuId}（售罄）或 -{skuId}（补货）
+     */
+    public static final String CHANNEL = "stock:soldout";
+
+    private final ConcurrentBitSet soldOut = new ConcurrentBitSet();
+    private final StringRedisTemplate redisTemplate;
+    // 与StockService互相依赖，延迟获取
+    private final ObjectProvider<StockService> stockService;
+
+    public SoldOutRegistry(StringRedisTemplate redisTemplate, ObjectProvider<StockService> stockService) {
+        this.redisTemplate = redisTemplate;
+        this.stockService = stockService;
+    }
+
+    /**
+     * 判断SKU是否已售罄
+     */
+    public boolean isSoldOut(Long skuId) {
+        return skuId != null && skuId >= 0 && soldOut.get(skuId);
+    }
+
+    /**
+     * 库存变化后更新售罄状态，只在状态翻转时通知其他节点
+     *
+     * @param skuId     商品SKU ID
+     * @param available 变化后的可用库存
+     */
+    public void onStockChanged(Long skuId, int available) {
+        if (skuId == null || skuId < 0) {
+            return;
+        }
+        afterCommit(() -> apply(skuId, available));
+    }
+
+    /**
+     * 补货后清除售罄状态
+     */
+    public void onRestocked(Long skuId) {
+        if (skuId != null && skuId >= 0) {
+            afterCommit(() -> {
+                if (soldOut.clear(skuId)) {
+                    publish("-" + skuId);
+                }
+            });
+        }
+    }
+
+    private void apply(Long skuId, int available) {
+        if (available <= 0) {
+            if (soldOut.set(skuId)) {
+                publish("+" + skuId);
+            }
+        } else if (soldOut.clear(skuId)) {
+            publish("-" + skuId);
+        }
+    }
+
+    /**
+     * 已售罄的SKU数量
+     */
+    public long soldOutCount() {
+        return soldOut.cardinality();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            long skuId = Long.parseLong(body.substring(1));
+            if (body.charAt(0) == '+') {
+                soldOut.set(skuId);
+            } else {
+                soldOut.clear(skuId);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Ignoring malformed sold-out message: {}", body);
+        }
+    }
+
+    /**
+     * 定期按实际库存校验已置位的SKU，清除因补货消息丢失而残留的售罄标记
+     */
+    @Scheduled(fixedDelayString = "${stock.soldout.verify-interval-ms:30000}")
+    public void verify() {
+        List<Long> marked = new ArrayList<>();
+        soldOut.forEach(marked::add);
+        for (Long skuId : marked) {
+            try {
+                if (stockService.getObject().getStockBySkuId(skuId).getStock() > 0) {
+                    soldOut.clear(skuId);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Failed to verify sold-out SKU {}: {}", skuId, e.getMessage());
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (RuntimeException e) {
+            // 其他节点会在定期校验或自身扣减时得到正确状态
+            logger.warn("Failed to publish sold-out change {}: {}", message, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.yf.bookstore.inventory;
+
+import com.yf.bookstore.common.IdGenerator;
+import com.yf.bookstore.model.inventory.StockAdjustment;
+import com.yf.bookstore.model.inventory.StockAdjustmentResult;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.ToIntFunction;
+
+/**
+ * 在一个事务中把一批库存调整写入tb_stock
+ * 先按SKU顺序分块锁定涉及的行，在内存中按提交顺序逐项计算结果，再用JDBC批量更新和插入，
+ * 每一项都能得到准确的成功或失败结果，而整批只需要少量往返
+ */
+@Component
+public class StockBatchUpdater {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final String UPDATE_SQL = "UPDATE tb_stock SET stock = ?, version = version + 1, modify_time = ? WHERE sku_id = ?";
+    private static final String INSERT_SQL = "INSERT INTO tb_stock (id, sku_id, stock, version, create_time, modify_time) VALUES (?, ?, ?, 0, ?, ?)";
+    private static final String DECREASE_SQL = "UPDATE tb_stock SET stock = stock - ?, version = version + 1, modify_time = ? WHERE sku_id = ? AND stock >= ?";
+    private static final String INCREASE_SQL = "UPDATE tb_stock SET stock = stock + ?, version = version + 1, modify_time = ? WHERE sku_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdGenerator idGenerator;
+    private final OutboxPublisher outboxPublisher;
+
+    public StockBatchUpdater(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, IdGenerator idGenerator,
+                             OutboxPublisher outboxPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.idGenerator = idGenerator;
+        this.outboxPublisher = outboxPublisher;
+    }
+
+    /**
+     * 批量调整的结果
+     */
+    public static final class Outcome {
+        private final List<StockAdjustmentResult> results;
+        private final Map<Long, Integer> deltas;
+
+        Outcome(List<StockAdjustmentResult> results, Map<Long, Integer> deltas) {
+            this.results = results;
+            this.deltas = deltas;
+        }
+
+        /**
+         * 与请求顺序一致的逐项结果
+         */
+        public List<StockAdjustmentResult> getResults() {
+            return results;
+        }
+
+        /**
+         * 每个SKU实际发生的净变化，用于同步Redis计数器
+         */
+        public Map<Long, Integer> getDeltas() {
+            return deltas;
+        }
+    }
+
+    /**
+     * 校验单项调整
+     *
+     * @return 错误信息，合法时返回null
+     */
+    public static String validate(StockAdjustment adjustment) {
+        if (adjustment == null || adjustment.getSkuId() == null) {
+            return "SKU ID is required";
+        }
+        if ((adjustment.getDelta() == null) == (adjustment.getStock() == null)) {
+            return "Exactly one of delta or stock must be set";
+        }
+        if (adjustment.getStock() != null && adjustment.getStock() < 0) {
+            return "Stock must not be negative";
+        }
+        return null;
+    }
+
+    /**
+     * 应用一批调整，同一SKU的多项按提交顺序依次生效，使可用库存为负的项被拒绝；各SKU的净变化作为库存事件在同一事务中写入发件箱
+     *
+     * @param adjustments  调整列表
+     * @param pendingDelta 各SKU尚未写回tb_stock的增量，可用库存 = 数据库库存 + 未写回增量；
+     *                     调用方需在 {@link StockWriteBehindQueue#readConsistent} 中调用本方法
+     * @return 逐项结果和各SKU的净变化
+     */
+    public Outcome apply(List<StockAdjustment> adjustments, ToIntFunction<Long> pendingDelta) {
+        TreeSet<Long> skuIds = new TreeSet<>();
+        for (StockAdjustment adjustment : adjustments) {
+            if (validate(adjustment) == null) {
+                skuIds.add(adjustment.getSkuId());
+            }
+        }
+        return transactionTemplate.execute(status -> {
+            Map<Long, Integer> stored = lock(new ArrayList<>(skuIds));
+            Map<Long, Integer> current = new HashMap<>();
+            for (Long skuId : skuIds) {
+                current.put(skuId, stored.getOrDefault(skuId, 0) + pendingDelta.applyAsInt(skuId));
+            }
+            Map<Long, Integer> original = new HashMap<>(current);
+            List<StockAdjustmentResult> results = new ArrayList<>(adjustments.size());
+            for (StockAdjustment adjustment : adjustments) {
+                String error = validate(adjustment);
+                if (error != null) {
+                    results.add(StockAdjustmentResult.failure(adjustment == null ? null : adjustment.getSkuId(), null, error));
+                    continue;
+                }
+                Long skuId = adjustment.getSkuId();
+                int before = current.get(skuId);
+                long after = adjustment.getDelta() != null ? (long) before + adjustment.getDelta() : adjustment.getStock();
+                if (after < 0) {
+                    results.add(StockAdjustmentResult.failure(skuId, before, "Insufficient stock for SKU: " + skuId));
+                } else if (after > Integer.MAX_VALUE) {
+                    results.add(StockAdjustmentResult.failure(skuId, before, "Stock overflow for SKU: " + skuId));
+                } else {
+                    current.put(skuId, (int) after);
+                    results.add(StockAdjustmentResult.success(skuId, (int) after));
+                }
+            }
+            Map<Long, Integer> deltas = new LinkedHashMap<>();
+            for (Long skuId : skuIds) {
+                int delta = current.get(skuId) - original.get(skuId);
+                if (delta != 0) {
+                    deltas.put(skuId, delta);
+                }
+            }
+            write(deltas, stored);
+            outboxPublisher.publishAll(StockEvents.deltas(outboxPublisher, deltas));
+            return new Outcome(results, deltas);
+        });
+    }
+
+    /**
+     * 用一个JDBC批次按SKU顺序条件扣减多个SKU，需要在调用方的事务中执行，
+     * 有SKU不足时由调用方回滚整个事务，已执行的扣减随之撤销
+     *
+     * @param sorted 按SKU排序的扣减数量
+     * @return 第一个库存不足（或不存在）的SKU，全部扣减成功时返回null
+     */
+    public Long decreaseAll(Map<Long, Integer> sorted) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Long> skuIds = new ArrayList<>(sorted.keySet());
+        List<Object[]> updates = new ArrayList<>(sorted.size());
+        sorted.forEach((skuId, quantity) -> updates.add(new Object[]{quantity, now, skuId, quantity}));
+        int[] counts = jdbcTemplate.batchUpdate(DECREASE_SQL, updates);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                return skuIds.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 用一个JDBC批次按SKU顺序增加多个SKU的库存，不存在的记录随后批量插入，需要在调用方的事务中执行
+     *
+     * @param sorted 按SKU排序的增加数量
+     */
+    public void increaseAll(Map<Long, Integer> sorted) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> updates = new ArrayList<>(sorted.size());
+        sorted.forEach((skuId, quantity) -> updates.add(new Object[]{quantity, now, skuId}));
+        int[] counts = jdbcTemplate.batchUpdate(INCREASE_SQL, updates);
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                Object[] update = updates.get(i);
+                inserts.add(new Object[]{idGenerator.nextId(), update[2], update[0], now, now});
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+    }
+
+    /**
+     * 分块读取多个SKU的当前库存，在调用方的事务中执行时能读到本事务已做的扣减
+     *
+     * @param skuIds 商品SKU ID
+     * @return SKU到库存的映射，不存在的SKU不在其中
+     */
+    public Map<Long, Integer> stocks(List<Long> skuIds) {
+        return select(skuIds, "");
+    }
+
+    // 按SKU顺序分块加行锁，与其他批量写入的加锁顺序一致，避免死锁
+    private Map<Long, Integer> lock(List<Long> skuIds) {
+        return select(skuIds, " ORDER BY sku_id FOR UPDATE");
+    }
+
+    private Map<Long, Integer> select(List<Long> skuIds, String suffix) {
+        Map<Long, Integer> stored = new HashMap<>();
+        for (int from = 0; from < skuIds.size(); from += CHUNK_SIZE) {
+            List<Long> chunk = skuIds.subList(from, Math.min(from + CHUNK_SIZE, skuIds.size()));
+            String sql = "SELECT sku_id, stock FROM tb_stock WHERE sku_id IN ("
+                    + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")" + suffix;
+            jdbcTemplate.query(sql, rs -> {
+                stored.put(rs.getLong(1), rs.getInt(2));
+            }, chunk.toArray());
+        }
+        return stored;
+    }
+
+    private void write(Map<Long, Integer> deltas, Map<Long, Integer> stored) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (Map.Entry<Long, Integer> delta : deltas.entrySet()) {
+            Integer row = stored.get(delta.getKey());
+            // 数据库只记录自身的值，未写回的增量仍由写回队列负责
+            if (row != null) {
+                updates.add(new Object[]{row + delta.getValue(), now, delta.getKey()});
+            } else {
+                inserts.add(new Object[]{idGenerator.nextId(), delta.getKey(), delta.getValue(), now, now});
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.yf.bookstore.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 启动时预热Redis库存计数器
+ * 先同步加载近期订单明细中出现最多的N个SKU，在预算时间内完成后应用才进入就绪状态（ApplicationRunner先于就绪事件执行）；
+ * 其余SKU按sku_id区间分给多个线程，各自键集分页读取tb_stock，并用管道批量SET NX写入Redis，在后台继续完成。
+ * 只写入不存在的计数器，不会覆盖运行中已经变化的值
+ */
+@Component
+@Order(0)
+@ConditionalOnProperty(name = "stock.mode", havingValue = "default", matchIfMissing = true)
+public class StockCacheWarmer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockCacheWarmer.class);
+
+    // 按订单明细统计；没有明细的历史单商品订单按tb_order.sku_id计入
+    private static final String HOT_SQL = "SELECT sku_id FROM ("
+            + "SELECT l.sku_id FROM tb_order_line l JOIN tb_order o ON l.order_id = o.id WHERE o.create_time >= ? "
+            + "UNION ALL "
+            + "SELECT o.sku_id FROM tb_order o WHERE o.create_time >= ? AND o.sku_id IS NOT NULL "
+            + "AND NOT EXISTS (SELECT 1 FROM tb_order_line l WHERE l.order_id = o.id)"
+            + ") t GROUP BY sku_id ORDER BY COUNT(*) DESC LIMIT ?";
+    private static final String RANGE_SQL = "SELECT MIN(sku_id), MAX(sku_id) FROM tb_stock";
+    private static final String PAGE_SQL = "SELECT sku_id, stock FROM tb_stock WHERE sku_id > ? AND sku_id <= ? "
+            + "ORDER BY sku_id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final StockWriteBehindQueue writeBehindQueue;
+    private final StripedStockCounter stripedCounter;
+    private final boolean enabled;
+    private final int threads;
+    private final int pageSize;
+    private final int hotSkus;
+    private final int hotWindowDays;
+    private final long budgetMillis;
+    private final long ttlSeconds;
+    private final boolean redisFirst;
+    private final ExecutorService executor;
+
+    public StockCacheWarmer(JdbcTemplate jdbcTemplate, StringRedisTemplate redisTemplate,
+                            StockWriteBehindQueue writeBehindQueue, StripedStockCounter stripedCounter,
+                            @Value("${stock.warmup.enabled:true}") boolean enabled,
+                            @Value("${stock.warmup.threads:4}") int threads,
+                            @Value("${stock.warmup.page-size:1000}") int pageSize,
+                            @Value("${stock.warmup.hot-skus:1000}") int hotSkus,
+                            @Value("${stock.warmup.hot-window-days:7}") int hotWindowDays,
+                            @Value("${stock.warmup.budget-ms:10000}") long budgetMillis,
+                            @Value("${stock.warmup.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${stock.reservation.redis-first:false}") boolean redisFirst) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisTemplate = redisTemplate;
+        this.writeBehindQueue = writeBehindQueue;
+        this.stripedCounter = stripedCounter;
+        this.enabled = enabled;
+        this.threads = Math.max(1, threads);
+        this.pageSize = pageSize;
+        this.hotSkus = hotSkus;
+        this.hotWindowDays = hotWindowDays;
+        this.budgetMillis = budgetMillis;
+        this.ttlSeconds = ttlSeconds;
+        this.redisFirst = redisFirst;
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "stock-warmup-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Future<Integer> hot = executor.submit(this::warmHotSkus);
+        try {
+            int warmed = hot.get(budgetMillis, TimeUnit.MILLISECONDS);
+            logger.info("Warmed {} hot stock counter(s) in {} ms", warmed, System.currentTimeMillis() - start);
+        } catch (TimeoutException e) {
+            logger.warn("Hot stock warm-up exceeded its {} ms budget, continuing in background", budgetMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            logger.warn("Hot stock warm-up failed: {}", e.getMessage());
+        }
+        warmAllInBackground();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private int warmHotSkus() {
+        List<Long> skuIds;
+        try {
+            Timestamp since = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(hotWindowDays));
+            skuIds = jdbcTemplate.queryForList(HOT_SQL, Long.class, since, since, hotSkus);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to find hot SKUs for stock warm-up: {}", e.getMessage());
+            return 0;
+        }
+        int warmed = 0;
+        for (int from = 0; from < skuIds.size(); from += pageSize) {
+            List<Long> chunk = skuIds.subList(from, Math.min(from + pageSize, skuIds.size()));
+            String sql = "SELECT sku_id, stock FROM tb_stock WHERE sku_id IN ("
+                    + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            Map<byte[], byte[]> counters = writeBehindQueue.readConsistent(() -> {
+                Map<Long, Integer> page = new LinkedHashMap<>();
+                jdbcTemplate.query(sql, rs -> {
+                    page.put(rs.getLong(1), rs.getInt(2));
+                }, chunk.toArray());
+                return counters(page);
+            });
+            warmed += load(counters);
+        }
+        return warmed;
+    }
+
+    /**
+     * 按sku_id把整张表切成与线程数相同的区间，每个线程独立键集分页
+     */
+    private void warmAllInBackground() {
+        long[] bounds = jdbcTemplate.queryForObject(RANGE_SQL,
+                (rs, rowNum) -> rs.getObject(1) == null ? null : new long[]{rs.getLong(1), rs.getLong(2)});
+        if (bounds == null) {
+            return;
+        }
+        long min = bounds[0];
+        long max = bounds[1];
+        long span = Math.max(1, (max - min) / threads + 1);
+        long start = System.currentTimeMillis();
+        AtomicLong warmed = new AtomicLong();
+        AtomicInteger remaining = new AtomicInteger(threads);
+        for (int i = 0; i < threads; i++) {
+            long lower = min - 1 + span * i;
+            long upper = i == threads - 1 ? max : Math.min(max, lower + span);
+            executor.execute(() -> {
+                try {
+                    warmed.addAndGet(warmRange(lower, upper));
+                } catch (RuntimeException e) {
+                    logger.warn("Stock warm-up of SKU range ({}, {}] failed: {}", lower, upper, e.getMessage());
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        logger.info("Warmed {} stock counter(s) in {} ms", warmed.get(), System.currentTimeMillis() - start);
+                    }
+                }
+            });
+        }
+    }
+
+    private long warmRange(long lower, long upper) {
+        long warmed = 0;
+        long[] after = {lower};
+        while (!Thread.currentThread().isInterrupted()) {
+            int[] rows = {0};
+            Map<byte[], byte[]> counters = writeBehindQueue.readConsistent(() -> {
+                Map<Long, Integer> page = new LinkedHashMap<>();
+                jdbcTemplate.query(PAGE_SQL, rs -> {
+                    after[0] = rs.getLong(1);
+                    page.put(after[0], rs.getInt(2));
+                }, after[0], upper, pageSize);
+                rows[0] = page.size();
+                return counters(page);
+            });
+            warmed += load(counters);
+            if (rows[0] < pageSize) {
+                break;
+            }
+        }
+        return warmed;
+    }
+
+    /**
+     * 一页库存加上未写回的增量作为计数器的值，热点SKU由分片计数器负责，跳过；需要与读库在同一次一致性读取中调用
+     */
+    private Map<byte[], byte[]> counters(Map<Long, Integer> page) {
+        Map<byte[], byte[]> counters = new LinkedHashMap<>();
+        page.forEach((skuId, stock) -> {
+            if (!stripedCounter.isHot(skuId)) {
+                int available = stock + writeBehindQueue.pendingDelta(skuId);
+                counters.put(("stock:" + skuId).getBytes(StandardCharsets.UTF_8),
+                        String.valueOf(available).getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        return counters;
+    }
+
+    /**
+     * 一页计数器通过一次管道写入Redis，计数器已存在时保持不变
+     *
+     * @return 本页提交的计数器数量
+     */
+    private int load(Map<byte[], byte[]> counters) {
+        if (counters.isEmpty()) {
+            return 0;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            counters.forEach((key, value) -> connection.stringCommands().set(key, value, expiration(),
+                    RedisStringCommands.SetOption.SET_IF_ABSENT));
+            return null;
+        });
+        return counters.size();
+    }
+
+    // redis-first模式下计数器是唯一可信来源，不能过期；数据库模式下作为缓存，过期时间加随机抖动避免同时失效
+    private Expiration expiration() {
+        if (redisFirst) {
+            return Expiration.persistent();
+        }
+        long jitter = ThreadLocalRandom.current().nextLong(Math.max(1, ttlSeconds / 5));
+        return Expiration.seconds(ttlSeconds + jitter);
+    }
+}
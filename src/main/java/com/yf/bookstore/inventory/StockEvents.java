@@ -0,0 +1,50 @@
+package com.yf.bookstore.inventory;
+
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import com.yf.bookstore.outbox.OutboxPublisher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 库存事件的内容
+ * STOCK_CHANGED 带 skuId、变化量 delta（覆盖写入时为空）和已知时的最新库存 stock
+ */
+public final class StockEvents {
+
+    private StockEvents() {
+    }
+
+    public static OutboxEvent changed(OutboxPublisher publisher, Long skuId, Integer delta, Integer stock) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("skuId", skuId);
+        if (delta != null) {
+            payload.put("delta", delta);
+        }
+        if (stock != null) {
+            payload.put("stock", stock);
+        }
+        return publisher.event(OutboxEvent.AGGREGATE_STOCK, skuId, OutboxEvent.STOCK_CHANGED, payload);
+    }
+
+    public static OutboxEvent deleted(OutboxPublisher publisher, Long skuId) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("skuId", skuId);
+        return publisher.event(OutboxEvent.AGGREGATE_STOCK, skuId, OutboxEvent.STOCK_DELETED, payload);
+    }
+
+    /**
+     * 每个SKU一条只带变化量的事件
+     */
+    public static List<OutboxEvent> deltas(OutboxPublisher publisher, Map<Long, Integer> deltas) {
+        List<OutboxEvent> events = new ArrayList<>(deltas.size());
+        deltas.forEach((skuId, delta) -> {
+            if (delta != 0) {
+                events.add(changed(publisher, skuId, delta, null));
+            }
+        });
+        return events;
+    }
+}
@@ -0,0 +1,273 @@
+package com.yf.bookstore.inventory;
+
+import com.yf.bookstore.common.TimingWheel;
+import com.yf.bookstore.exception.inventory.StockHoldNotFoundException;
+import com.yf.bookstore.model.inventory.StockHold;
+import com.yf.bookstore.model.inventory.StockLevel;
+import com.yf.bookstore.service.StockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带过期时间的库存预留
+ * 预留时库存通过 {@link StockService} 从可用库存中扣出，预留记录只写Redis，确认时计入已售，释放或过期时归还库存；
+ * 本节点创建的预留登记在哈希时间轮上，到期后成批认领并按SKU合并归还，
+ * 其他节点宕机遗留的预留由定期扫描过期索引兜底
+ */
+@Component
+public class StockHoldManager implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockHoldManager.class);
+
+    private static final String HOLD_KEY_PREFIX = "stock-hold:";
+    private static final String EXPIRY_KEY = "stock-hold:expiry";
+    private static final String HELD_KEY = "stock-level:held";
+    private static final String SOLD_KEY = "stock-level:sold";
+    private static final int BATCH_SIZE = 500;
+
+    private final StringRedisTemplate redisTemplate;
+    private final StockScriptRegistry scriptRegistry;
+    // 与StockService互相依赖，延迟获取
+    private final ObjectProvider<StockService> stockService;
+    private final long defaultTtlSeconds;
+    private final long scanIntervalMillis;
+    private final TimingWheel<String> wheel;
+    private final Map<String, TimingWheel.Timeout<String>> timeouts = new ConcurrentHashMap<>();
+    // 已认领但归还库存失败的数量，下一轮重试
+    private final Map<Long, Integer> unreturned = new ConcurrentHashMap<>();
+    private long lastScanTime;
+
+    public StockHoldManager(StringRedisTemplate redisTemplate, StockScriptRegistry scriptRegistry,
+                            ObjectProvider<StockService> stockService,
+                            @Value("${stock.hold.default-ttl-seconds:900}") long defaultTtlSeconds,
+                            @Value("${stock.hold.tick-ms:100}") long tickMillis,
+                            @Value("${stock.hold.wheel-size:1024}") int wheelSize,
+                            @Value("${stock.hold.scan-interval-ms:30000}") long scanIntervalMillis) {
+        this.redisTemplate = redisTemplate;
+        this.scriptRegistry = scriptRegistry;
+        this.stockService = stockService;
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.scanIntervalMillis = scanIntervalMillis;
+        this.wheel = new TimingWheel<>(tickMillis, wheelSize);
+    }
+
+    /**
+     * 启动时把Redis中尚未过期的预留重新登记到时间轮
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            long offset = 0;
+            Set<ZSetOperations.TypedTuple<String>> page;
+            do {
+                page = redisTemplate.opsForZSet().rangeByScoreWithScores(EXPIRY_KEY,
+                        Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, offset, BATCH_SIZE);
+                if (page == null) {
+                    break;
+                }
+                for (ZSetOperations.TypedTuple<String> hold : page) {
+                    schedule(hold.getValue(), hold.getScore().longValue());
+                }
+                offset += page.size();
+            } while (page.size() == BATCH_SIZE);
+            logger.info("Scheduled {} outstanding stock hold(s)", offset);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to load outstanding stock holds, relying on expiry scan: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 预留库存
+     *
+     * @param skuId      商品SKU ID
+     * @param quantity   预留数量
+     * @param ttlSeconds 预留时长（秒），不大于0时使用默认值
+     * @return 预留记录
+     * @throws com.yf.bookstore.exception.inventory.InsufficientStockException 如果可用库存不足
+     */
+    public StockHold hold(Long skuId, int quantity, long ttlSeconds) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Hold quantity must be positive");
+        }
+        long ttl = TimeUnit.SECONDS.toMillis(ttlSeconds > 0 ? ttlSeconds : defaultTtlSeconds);
+        String holdId = skuId + "-" + UUID.randomUUID().toString().replace("-", "");
+        long expireAt = System.currentTimeMillis() + ttl;
+        stockService.getObject().decreaseStock(skuId, quantity);
+        try {
+            scriptRegistry.execute(StockScript.HOLD_CREATE,
+                    Arrays.asList(holdKey(holdId), EXPIRY_KEY, HELD_KEY),
+                    Arrays.asList(holdId, String.valueOf(skuId), String.valueOf(quantity), String.valueOf(expireAt)));
+        } catch (RuntimeException e) {
+            stockService.getObject().increaseStock(skuId, quantity);
+            throw e;
+        }
+        schedule(holdId, expireAt);
+        return new StockHold(holdId, skuId, quantity, expireAt);
+    }
+
+    /**
+     * 确认预留，预留数量计入已售
+     *
+     * @param holdId 预留ID
+     * @return 被确认的预留
+     * @throws StockHoldNotFoundException 如果预留不存在、已过期或已处理
+     */
+    public StockHold confirm(String holdId) {
+        return claim(holdId, true);
+    }
+
+    /**
+     * 释放预留，预留数量归还到可用库存
+     *
+     * @param holdId 预留ID
+     * @return 被释放的预留
+     * @throws StockHoldNotFoundException 如果预留不存在、已过期或已处理
+     */
+    public StockHold release(String holdId) {
+        StockHold hold = claim(holdId, false);
+        stockService.getObject().increaseStock(hold.getSkuId(), hold.getQuantity());
+        return hold;
+    }
+
+    /**
+     * 查询SKU的可用、已预留和已售数量
+     */
+    public StockLevel level(Long skuId) {
+        int available = stockService.getObject().getStockBySkuId(skuId).getStock();
+        String field = String.valueOf(skuId);
+        return new StockLevel(skuId, available,
+                parseCount(redisTemplate.opsForHash().get(HELD_KEY, field)),
+                parseCount(redisTemplate.opsForHash().get(SOLD_KEY, field)));
+    }
+
+    /**
+     * 推进时间轮，成批释放到期的预留；定期扫描过期索引，兜底其他节点遗留的预留
+     */
+    @Scheduled(fixedDelayString = "${stock.hold.tick-ms:100}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        restoreUnreturned();
+        List<String> expired = wheel.advance(now);
+        for (String holdId : expired) {
+            timeouts.remove(holdId);
+        }
+        try {
+            if (now - lastScanTime >= scanIntervalMillis) {
+                lastScanTime = now;
+                Set<String> overdue = redisTemplate.opsForZSet().rangeByScore(EXPIRY_KEY, 0, now, 0, BATCH_SIZE);
+                if (overdue != null) {
+                    expired.addAll(overdue);
+                }
+            }
+            for (int from = 0; from < expired.size(); from += BATCH_SIZE) {
+                releaseExpired(expired.subList(from, Math.min(from + BATCH_SIZE, expired.size())));
+            }
+        } catch (RuntimeException e) {
+            // 未认领的预留仍在过期索引中，由下一次扫描处理
+            logger.warn("Failed to release expired stock holds: {}", e.getMessage());
+        }
+    }
+
+    private void releaseExpired(List<String> holdIds) {
+        List<List<String>> keys = new ArrayList<>(holdIds.size());
+        List<List<String>> args = new ArrayList<>(holdIds.size());
+        for (String holdId : holdIds) {
+            keys.add(Arrays.asList(holdKey(holdId), EXPIRY_KEY, HELD_KEY, SOLD_KEY));
+            args.add(Arrays.asList(holdId, "0"));
+        }
+        List<Long> quantities = scriptRegistry.executePipelined(StockScript.HOLD_CLAIM, keys, args);
+        Map<Long, Integer> released = new TreeMap<>();
+        for (int i = 0; i < holdIds.size(); i++) {
+            Long quantity = quantities.get(i);
+            // 同一预留可能同时出现在时间轮和过期索引中，或已被确认，认领失败时跳过
+            if (quantity != null && quantity > 0) {
+                released.merge(skuIdOf(holdIds.get(i)), quantity.intValue(), Integer::sum);
+            }
+        }
+        if (!released.isEmpty()) {
+            logger.debug("Releasing {} expired stock hold(s) across {} SKU(s)", holdIds.size(), released.size());
+            returnStock(released);
+        }
+    }
+
+    private void restoreUnreturned() {
+        if (unreturned.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> retry = new TreeMap<>();
+        for (Long skuId : new ArrayList<>(unreturned.keySet())) {
+            Integer quantity = unreturned.remove(skuId);
+            if (quantity != null) {
+                retry.put(skuId, quantity);
+            }
+        }
+        returnStock(retry);
+    }
+
+    private void returnStock(Map<Long, Integer> quantities) {
+        try {
+            stockService.getObject().increaseStocks(quantities);
+        } catch (RuntimeException e) {
+            logger.error("Failed to return expired holds to stock, will retry: {}", e.getMessage(), e);
+            quantities.forEach((skuId, quantity) -> unreturned.merge(skuId, quantity, Integer::sum));
+        }
+    }
+
+    private StockHold claim(String holdId, boolean confirm) {
+        Long skuId = skuIdOf(holdId);
+        Long quantity = scriptRegistry.execute(StockScript.HOLD_CLAIM,
+                Arrays.asList(holdKey(holdId), EXPIRY_KEY, HELD_KEY, SOLD_KEY),
+                Arrays.asList(holdId, confirm ? "1" : "0"));
+        if (quantity == null || quantity <= 0) {
+            throw new StockHoldNotFoundException(holdId);
+        }
+        TimingWheel.Timeout<String> timeout = timeouts.remove(holdId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        return new StockHold(holdId, skuId, quantity.intValue(), 0);
+    }
+
+    private void schedule(String holdId, long expireAt) {
+        timeouts.put(holdId, wheel.schedule(holdId, expireAt));
+    }
+
+    // 预留ID以SKU ID开头，释放时无需再读取预留记录
+    private static Long skuIdOf(String holdId) {
+        int separator = holdId == null ? -1 : holdId.indexOf('-');
+        try {
+            if (separator > 0) {
+                return Long.valueOf(holdId.substring(0, separator));
+            }
+        } catch (NumberFormatException e) {
+            // 按不存在处理
+        }
+        throw new StockHoldNotFoundException(holdId);
+    }
+
+    private static long parseCount(Object value) {
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    private static String holdKey(String holdId) {
+        return HOLD_KEY_PREFIX + holdId;
+    }
+}
@@ -0,0 +1,268 @@
+package com.yf.bookstore.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 库存增量的本地追加日志
+ * 日志按段滚动，每条记录为 skuId(8字节) + delta(4字节)；
+ * 一个段写回tb_stock成功后整段删除，进程崩溃后未删除的段会被重放
+ * 开启fsync时采用组提交：写入在锁内完成，刷盘在锁外进行，一次force覆盖此前所有已写入的记录，
+ * 并发的追加者排队等待时由第一个拿到刷盘锁的线程代为刷盘，其余线程发现自己的记录已落盘后直接返回
+ */
+@Component
+public class StockJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockJournal.class);
+
+    private static final int RECORD_SIZE = Long.BYTES + Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INSTANCE_FILE = "journal.id";
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    // 刷盘、滚动和关闭互斥，先于对象锁获取
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    // 已写入的记录序号，受对象锁保护
+    private long written;
+    // 已确认落盘的记录序号
+    private volatile long forced;
+
+    private String instanceId;
+    private FileChannel activeChannel;
+    private long activeSegmentId;
+
+    public StockJournal(@Value("${stock.journal.dir:data/stock-journal}") String directory,
+                        @Value("${stock.journal.fsync:true}") boolean fsync) {
+        this.directory = Paths.get(directory);
+        this.fsync = fsync;
+    }
+
+    @PostConstruct
+    public synchronized void open() {
+        try {
+            Files.createDirectories(directory);
+            Path instanceFile = directory.resolve(INSTANCE_FILE);
+            if (Files.exists(instanceFile)) {
+                instanceId = new String(Files.readAllBytes(instanceFile), StandardCharsets.UTF_8).trim();
+            } else {
+                instanceId = UUID.randomUUID().toString();
+                Files.write(instanceFile, instanceId.getBytes(StandardCharsets.UTF_8));
+            }
+            List<Long> existing = listSegments();
+            long last = existing.isEmpty() ? 0 : existing.get(existing.size() - 1);
+            openSegment(nextSegmentId(last));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open stock journal in " + directory, e);
+        }
+    }
+
+    /**
+     * 追加一条库存增量记录
+     *
+     * @param skuId 商品SKU ID
+     * @param delta 库存增量，扣减时为负数
+     */
+    public void append(long skuId, int delta) {
+        long sequence;
+        synchronized (this) {
+            recordBuffer.clear();
+            recordBuffer.putLong(skuId).putInt(delta).flip();
+            try {
+                while (recordBuffer.hasRemaining()) {
+                    activeChannel.write(recordBuffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to append stock journal record for SKU ID: " + skuId, e);
+            }
+            sequence = ++written;
+        }
+        if (fsync) {
+            awaitForced(sequence);
+        }
+    }
+
+    /**
+     * 等待指定序号之前的记录落盘，尚未落盘时由当前线程刷盘，一次覆盖所有已写入的记录
+     */
+    private void awaitForced(long sequence) {
+        forceLock.lock();
+        try {
+            if (forced >= sequence) {
+                return;
+            }
+            long target;
+            FileChannel channel;
+            synchronized (this) {
+                target = written;
+                channel = activeChannel;
+            }
+            // 刷盘期间其他线程可以继续写入，它们的记录由下一次刷盘覆盖
+            channel.force(false);
+            forced = target;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to force stock journal segment " + activeSegmentId, e);
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * 封存当前段并开启新段
+     *
+     * @return 被封存的段ID
+     */
+    public long rotate() {
+        forceLock.lock();
+        try {
+            synchronized (this) {
+                long sealed = activeSegmentId;
+                try {
+                    activeChannel.force(false);
+                    forced = written;
+                    activeChannel.close();
+                    openSegment(nextSegmentId(sealed));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to rotate stock journal segment " + sealed, e);
+                }
+                return sealed;
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * 列出所有已封存（非当前写入）的段，按段ID升序
+     */
+    public synchronized List<Long> sealedSegments() {
+        List<Long> sealed = new ArrayList<>();
+        for (Long segmentId : listSegments()) {
+            if (segmentId != activeSegmentId) {
+                sealed.add(segmentId);
+            }
+        }
+        return sealed;
+    }
+
+    /**
+     * 读取一个段，并按SKU合并其中的增量
+     * 崩溃时写了一半的末尾记录会被忽略
+     *
+     * @param segmentId 段ID
+     * @return SKU ID到合并后增量的映射
+     */
+    public Map<Long, Integer> read(long segmentId) {
+        Map<Long, Integer> deltas = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(segmentPath(segmentId), StandardOpenOption.READ)) {
+            // 只读取完整记录，忽略末尾不完整的部分
+            long remaining = channel.size() / RECORD_SIZE;
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+            while (remaining > 0) {
+                buffer.clear();
+                buffer.limit((int) Math.min(remaining, 1024) * RECORD_SIZE);
+                while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                    // 读满当前批次
+                }
+                buffer.flip();
+                if (buffer.remaining() < RECORD_SIZE) {
+                    break;
+                }
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    deltas.merge(buffer.getLong(), buffer.getInt(), Integer::sum);
+                    remaining--;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read stock journal segment " + segmentId, e);
+        }
+        return deltas;
+    }
+
+    public void delete(long segmentId) {
+        try {
+            Files.deleteIfExists(segmentPath(segmentId));
+        } catch (IOException e) {
+            logger.warn("Failed to delete stock journal segment {}: {}", segmentId, e.getMessage());
+        }
+    }
+
+    /**
+     * 段的全局唯一标识，由日志实例ID和段ID组成
+     */
+    public String segmentKey(long segmentId) {
+        return instanceId + "-" + segmentId;
+    }
+
+    @PreDestroy
+    public void close() {
+        forceLock.lock();
+        try {
+            synchronized (this) {
+                if (activeChannel != null && activeChannel.isOpen()) {
+                    activeChannel.force(false);
+                    forced = written;
+                    activeChannel.close();
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to close stock journal: {}", e.getMessage());
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    private void openSegment(long segmentId) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(segmentId),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeSegmentId = segmentId;
+    }
+
+    // 段ID取当前毫秒时间且严格递增，保证段被删除后重启也不会与历史标记冲突
+    private long nextSegmentId(long last) {
+        return Math.max(last + 1, System.currentTimeMillis());
+    }
+
+    private Path segmentPath(long segmentId) {
+        return directory.resolve(SEGMENT_PREFIX + segmentId + SEGMENT_SUFFIX);
+    }
+
+    private List<Long> listSegments() {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> segments.add(Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list stock journal segments in " + directory, e);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+}
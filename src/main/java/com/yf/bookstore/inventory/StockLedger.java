@@ -0,0 +1,246 @@
+package com.yf.bookstore.inventory;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 进程内的库存账本，SKU ID 到可用库存的原始类型哈希表
+ * 查询和扣减都基于CAS，不加锁也不装箱；只有新增SKU时加锁。
+ * 表满时不搬迁旧数据，而是追加一张容量翻倍的新表，因此已有槽位上的CAS永远不会丢失
+ */
+public class StockLedger {
+
+    /**
+     * 表示SKU不存在的库存值
+     */
+    public static final int ABSENT = Integer.MIN_VALUE;
+    /**
+     * 扣减时库存不足的返回值
+     */
+    public static final int INSUFFICIENT = -1;
+
+    private static final long EMPTY_KEY = 0L;
+
+    private volatile Table[] tables;
+
+    public StockLedger(int initialCapacity) {
+        this.tables = new Table[]{new Table(tableSizeFor(initialCapacity))};
+    }
+
+    /**
+     * 查询可用库存
+     *
+     * @return 可用库存，不存在时返回 {@link #ABSENT}
+     */
+    public int get(long skuId) {
+        Table table = null;
+        int slot = -1;
+        for (Table candidate : tables) {
+            slot = candidate.find(skuId);
+            if (slot >= 0) {
+                table = candidate;
+                break;
+            }
+        }
+        return table == null ? ABSENT : table.counts.get(slot);
+    }
+
+    /**
+     * SKU不存在时写入初始库存
+     *
+     * @return 写入后（或已存在时）的库存
+     */
+    public int putIfAbsent(long skuId, int count) {
+        int slot;
+        Table table = locate(skuId);
+        if (table == null) {
+            table = insertKey(skuId);
+        }
+        slot = table.find(skuId);
+        while (true) {
+            int current = table.counts.get(slot);
+            if (current != ABSENT) {
+                return current;
+            }
+            if (table.counts.compareAndSet(slot, ABSENT, count)) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * 库存充足时原子扣减
+     *
+     * @return 扣减后的库存；不足时返回 {@link #INSUFFICIENT}，不存在时返回 {@link #ABSENT}
+     */
+    public int tryDecrement(long skuId, int quantity) {
+        Table table = locate(skuId);
+        if (table == null) {
+            return ABSENT;
+        }
+        int slot = table.find(skuId);
+        while (true) {
+            int current = table.counts.get(slot);
+            if (current == ABSENT) {
+                return ABSENT;
+            }
+            if (current < quantity) {
+                return INSUFFICIENT;
+            }
+            if (table.counts.compareAndSet(slot, current, current - quantity)) {
+                return current - quantity;
+            }
+        }
+    }
+
+    /**
+     * 原子增加库存
+     *
+     * @return 增加后的库存，不存在时返回 {@link #ABSENT}
+     */
+    public int add(long skuId, int delta) {
+        Table table = locate(skuId);
+        if (table == null) {
+            return ABSENT;
+        }
+        int slot = table.find(skuId);
+        while (true) {
+            int current = table.counts.get(slot);
+            if (current == ABSENT) {
+                return ABSENT;
+            }
+            if (table.counts.compareAndSet(slot, current, current + delta)) {
+                return current + delta;
+            }
+        }
+    }
+
+    /**
+     * 覆盖库存，不存在时新增
+     */
+    public void set(long skuId, int count) {
+        Table table = locate(skuId);
+        if (table == null) {
+            table = insertKey(skuId);
+        }
+        table.counts.set(table.find(skuId), count);
+    }
+
+    /**
+     * 原子覆盖库存，不存在时新增
+     *
+     * @return 覆盖前的库存，不存在时返回 {@link #ABSENT}
+     */
+    public int getAndSet(long skuId, int count) {
+        Table table = locate(skuId);
+        if (table == null) {
+            table = insertKey(skuId);
+        }
+        return table.counts.getAndSet(table.find(skuId), count);
+    }
+
+    /**
+     * 移除SKU，槽位保留，之后可以重新写入
+     */
+    public void remove(long skuId) {
+        Table table = locate(skuId);
+        if (table != null) {
+            table.counts.set(table.find(skuId), ABSENT);
+        }
+    }
+
+    private Table locate(long skuId) {
+        for (Table table : tables) {
+            if (table.find(skuId) >= 0) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    // 新增SKU很少发生，加锁保证同一个SKU只会出现在一张表中
+    private synchronized Table insertKey(long skuId) {
+        if (skuId == EMPTY_KEY) {
+            throw new IllegalArgumentException("SKU ID must not be " + EMPTY_KEY);
+        }
+        Table existing = locate(skuId);
+        if (existing != null) {
+            return existing;
+        }
+        Table[] current = tables;
+        Table newest = current[current.length - 1];
+        if (!newest.insert(skuId)) {
+            Table grown = new Table(newest.keys.length() << 1);
+            grown.insert(skuId);
+            Table[] chain = new Table[current.length + 1];
+            System.arraycopy(current, 0, chain, 0, current.length);
+            chain[current.length] = grown;
+            tables = chain;
+            return grown;
+        }
+        return newest;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = 16;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    private static int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * 开放寻址表，装载因子超过3/4后不再接受新的SKU
+     */
+    private static final class Table {
+        final AtomicLongArray keys;
+        final AtomicIntegerArray counts;
+        final int mask;
+        final int threshold;
+        int size;
+
+        Table(int capacity) {
+            keys = new AtomicLongArray(capacity);
+            counts = new AtomicIntegerArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                counts.set(i, ABSENT);
+            }
+            mask = capacity - 1;
+            threshold = capacity - (capacity >>> 2);
+        }
+
+        int find(long skuId) {
+            for (int i = hash(skuId) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long key = keys.get(i);
+                if (key == skuId) {
+                    return i;
+                }
+                if (key == EMPTY_KEY) {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        // 只在持有外层锁时调用
+        boolean insert(long skuId) {
+            if (size >= threshold) {
+                return false;
+            }
+            int i = hash(skuId) & mask;
+            while (keys.get(i) != EMPTY_KEY) {
+                i = (i + 1) & mask;
+            }
+            keys.set(i, skuId);
+            size++;
+            return true;
+        }
+    }
+}
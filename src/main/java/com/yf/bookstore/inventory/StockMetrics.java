@@ -0,0 +1,118 @@
+package com.yf.bookstore.inventory;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 库存相关的运行指标
+ * 按SKU统计数据库版本冲突次数，用于定位竞争最激烈的SKU；并记录Redis与数据库对账发现和修复的漂移
+ */
+@Component
+public class StockMetrics {
+
+    private static final int TOP_SKUS = 100;
+
+    private final Map<Long, LongAdder> conflicts = new ConcurrentHashMap<>();
+    private final LongAdder totalConflicts = new LongAdder();
+    private final LongAdder retriesExhausted = new LongAdder();
+    private final LongAdder reconciled = new LongAdder();
+    private final LongAdder driftDetected = new LongAdder();
+    private final LongAdder driftUnits = new LongAdder();
+    private final LongAdder driftRepaired = new LongAdder();
+    private final LongAdder driftUnrepaired = new LongAdder();
+    private final LongAdder reconcileCycles = new LongAdder();
+    private volatile long lastReconcileCycleTime;
+
+    /**
+     * 记录一次版本冲突
+     */
+    public void recordConflict(Long skuId) {
+        conflicts.computeIfAbsent(skuId, id -> new LongAdder()).increment();
+        totalConflicts.increment();
+    }
+
+    /**
+     * 记录一次重试耗尽后的失败
+     */
+    public void recordRetriesExhausted(Long skuId) {
+        retriesExhausted.increment();
+    }
+
+    /**
+     * 记录对账核对过的SKU数量
+     */
+    public void recordReconciled(int count) {
+        reconciled.add(count);
+    }
+
+    /**
+     * 记录一次发现的漂移
+     *
+     * @param drift Redis计数器与期望值的差
+     */
+    public void recordDrift(int drift) {
+        driftDetected.increment();
+        driftUnits.add(Math.abs((long) drift));
+    }
+
+    /**
+     * 记录一次漂移修复
+     */
+    public void recordRepair() {
+        driftRepaired.increment();
+    }
+
+    /**
+     * 记录一次确认存在但未自动修复的漂移
+     */
+    public void recordUnrepaired() {
+        driftUnrepaired.increment();
+    }
+
+    /**
+     * 记录完成一轮完整对账
+     */
+    public void recordReconcileCycle() {
+        reconcileCycles.increment();
+        lastReconcileCycleTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 某个SKU累计的版本冲突次数
+     */
+    public long conflicts(Long skuId) {
+        LongAdder counter = conflicts.get(skuId);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * 指标快照，冲突次数只列出最多的前100个SKU
+     */
+    public Map<String, Object> snapshot() {
+        Map<Long, Long> topConflicts = new LinkedHashMap<>();
+        conflicts.entrySet().stream()
+                .map(entry -> new long[]{entry.getKey(), entry.getValue().sum()})
+                .sorted(Comparator.comparingLong((long[] entry) -> entry[1]).reversed())
+                .limit(TOP_SKUS)
+                .forEach(entry -> topConflicts.put(entry[0], entry[1]));
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("conflicts", totalConflicts.sum());
+        snapshot.put("retriesExhausted", retriesExhausted.sum());
+        snapshot.put("conflictsBySku", topConflicts);
+        Map<String, Object> reconciliation = new LinkedHashMap<>();
+        reconciliation.put("reconciled", reconciled.sum());
+        reconciliation.put("driftDetected", driftDetected.sum());
+        reconciliation.put("driftUnits", driftUnits.sum());
+        reconciliation.put("driftRepaired", driftRepaired.sum());
+        reconciliation.put("driftUnrepaired", driftUnrepaired.sum());
+        reconciliation.put("cycles", reconcileCycles.sum());
+        reconciliation.put("lastCycleTime", lastReconcileCycleTime);
+        snapshot.put("reconciliation", reconciliation);
+        return snapshot;
+    }
+}
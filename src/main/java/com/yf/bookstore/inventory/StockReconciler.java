@@ -0,0 +1,255 @@
+package com.yf.bookstore.inventory;
+
+import io.lettuce.core.KeyScanCursor;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.api.async.RedisKeyAsyncCommands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Redis库存计数器与tb_stock的增量对账
+ * 每次调度只处理一块：先按sku_id键集分页遍历tb_stock，再用SCAN遍历 stock:* 找出数据库中没有记录的计数器，
+ * 每块用一次MGET与期望值（数据库库存 + 未写回增量）比较；发现差异的SKU在下一轮复核，差异稳定后才修复，
+ * 避免把正在进行中的扣减误判为漂移；redis-first模式下只报告不修复。每轮处理量固定，可以在高峰期常开
+ */
+@Component
+@ConditionalOnProperty(name = "stock.mode", havingValue = "default", matchIfMissing = true)
+public class StockReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReconciler.class);
+
+    private static final String PAGE_SQL = "SELECT sku_id, stock FROM tb_stock WHERE sku_id > ? ORDER BY sku_id LIMIT ?";
+    private static final String KEY_PATTERN = "stock:*";
+    private static final Pattern COUNTER_KEY = Pattern.compile("stock:\\d+");
+    private static final int UNKNOWN_DRIFT = Integer.MIN_VALUE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final StockWriteBehindQueue writeBehindQueue;
+    private final StripedStockCounter stripedCounter;
+    private final StockMetrics stockMetrics;
+    private final boolean enabled;
+    private final int batchSize;
+    private final boolean redisFirst;
+
+    // 待复核的SKU及上次观察到的差异（Redis - 期望值）
+    private final Map<Long, Integer> suspects = new ConcurrentHashMap<>();
+    private long lastSkuId;
+    private String scanCursor;
+
+    public StockReconciler(JdbcTemplate jdbcTemplate, StringRedisTemplate redisTemplate,
+                           StockWriteBehindQueue writeBehindQueue, StripedStockCounter stripedCounter,
+                           StockMetrics stockMetrics,
+                           @Value("${stock.reconcile.enabled:true}") boolean enabled,
+                           @Value("${stock.reconcile.batch-size:500}") int batchSize,
+                           @Value("${stock.reservation.redis-first:false}") boolean redisFirst) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisTemplate = redisTemplate;
+        this.writeBehindQueue = writeBehindQueue;
+        this.stripedCounter = stripedCounter;
+        this.stockMetrics = stockMetrics;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.redisFirst = redisFirst;
+    }
+
+    /**
+     * 标记某个SKU可能已漂移（如Redis更新重试失败），下一轮优先核对
+     */
+    public void markSuspect(Long skuId) {
+        suspects.putIfAbsent(skuId, UNKNOWN_DRIFT);
+    }
+
+    /**
+     * 执行一步对账：复核上一步发现的差异，再处理下一块
+     */
+    @Scheduled(fixedDelayString = "${stock.reconcile.interval-ms:1000}")
+    public synchronized void step() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            recheckSuspects();
+            if (scanCursor == null) {
+                reconcileTablePage();
+            } else {
+                reconcileKeyPage();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Stock reconciliation step failed: {}", e.getMessage());
+        }
+    }
+
+    private void reconcileTablePage() {
+        List<Long> skuIds = new ArrayList<>(batchSize);
+        Map<Long, Integer> expected = writeBehindQueue.readConsistent(() -> {
+            Map<Long, Integer> stored = new HashMap<>();
+            jdbcTemplate.query(PAGE_SQL, rs -> {
+                skuIds.add(rs.getLong(1));
+                stored.put(rs.getLong(1), rs.getInt(2));
+            }, lastSkuId, batchSize);
+            return withPending(skuIds, stored);
+        });
+        compare(skuIds, expected);
+        if (skuIds.size() < batchSize) {
+            // 表已遍历完，转入Redis侧的SCAN
+            lastSkuId = 0;
+            scanCursor = ScanCursor.INITIAL.getCursor();
+        } else {
+            lastSkuId = skuIds.get(skuIds.size() - 1);
+        }
+    }
+
+    private void reconcileKeyPage() {
+        KeyScanCursor<byte[]> page = scan(scanCursor);
+        List<Long> skuIds = new ArrayList<>(page.getKeys().size());
+        for (byte[] key : page.getKeys()) {
+            String name = new String(key, StandardCharsets.UTF_8);
+            // 跳过热点分片 stock:{skuId}:{i}
+            if (COUNTER_KEY.matcher(name).matches()) {
+                skuIds.add(Long.valueOf(name.substring("stock:".length())));
+            }
+        }
+        compare(skuIds, expected(skuIds));
+        if (page.isFinished()) {
+            scanCursor = null;
+            stockMetrics.recordReconcileCycle();
+        } else {
+            scanCursor = page.getCursor();
+        }
+    }
+
+    private void recheckSuspects() {
+        if (suspects.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> previous = new HashMap<>(suspects);
+        previous.keySet().forEach(suspects::remove);
+        List<Long> skuIds = new ArrayList<>(previous.keySet());
+        Map<Long, Integer> current = drifts(skuIds, expected(skuIds));
+        current.forEach((skuId, drift) -> {
+            if (drift.equals(previous.get(skuId))) {
+                repair(skuId, drift);
+            } else {
+                suspects.put(skuId, drift);
+            }
+        });
+    }
+
+    private void compare(List<Long> skuIds, Map<Long, Integer> expected) {
+        stockMetrics.recordReconciled(skuIds.size());
+        drifts(skuIds, expected).forEach((skuId, drift) -> {
+            stockMetrics.recordDrift(drift);
+            suspects.putIfAbsent(skuId, drift);
+        });
+    }
+
+    /**
+     * 比较一组SKU的计数器与期望值，返回有差异的SKU；计数器未加载的SKU下次访问时会按期望值加载，不算差异
+     */
+    private Map<Long, Integer> drifts(List<Long> skuIds, Map<Long, Integer> expected) {
+        List<Long> checked = new ArrayList<>(skuIds.size());
+        List<String> keys = new ArrayList<>(skuIds.size());
+        for (Long skuId : skuIds) {
+            if (!stripedCounter.isHot(skuId)) {
+                checked.add(skuId);
+                keys.add("stock:" + skuId);
+            }
+        }
+        Map<Long, Integer> drifts = new HashMap<>();
+        if (keys.isEmpty()) {
+            return drifts;
+        }
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; values != null && i < checked.size(); i++) {
+            if (values.get(i) == null) {
+                continue;
+            }
+            Long skuId = checked.get(i);
+            int drift = Integer.parseInt(values.get(i)) - expected.get(skuId);
+            if (drift != 0) {
+                drifts.put(skuId, drift);
+            }
+        }
+        return drifts;
+    }
+
+    /**
+     * 数据库模式下计数器只是缓存，直接失效；
+     * redis-first模式下计数器是库存的权威值，期望值只含本节点未写回的增量，看不到其他节点未落库的日志段
+     * 和崩溃节点待重放的日志，按它修正会把正确的计数器改错，因此只记录指标和日志，由人工核实后处理
+     */
+    private void repair(Long skuId, int drift) {
+        if (redisFirst) {
+            stockMetrics.recordUnrepaired();
+            logger.warn("Stock counter drift of {} for SKU ID: {} left unrepaired in redis-first mode", drift, skuId);
+            return;
+        }
+        redisTemplate.delete("stock:" + skuId);
+        stockMetrics.recordRepair();
+        logger.warn("Repaired stock counter drift of {} for SKU ID: {}", drift, skuId);
+    }
+
+    /**
+     * 一组SKU的期望计数器值：数据库库存加上未写回的增量，两者在同一次一致性读取中得到
+     */
+    private Map<Long, Integer> expected(Collection<Long> skuIds) {
+        if (skuIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        String sql = "SELECT sku_id, stock FROM tb_stock WHERE sku_id IN ("
+                + String.join(",", Collections.nCopies(skuIds.size(), "?")) + ")";
+        return writeBehindQueue.readConsistent(() -> {
+            Map<Long, Integer> stored = new HashMap<>();
+            jdbcTemplate.query(sql, rs -> {
+                stored.put(rs.getLong(1), rs.getInt(2));
+            }, skuIds.toArray());
+            return withPending(skuIds, stored);
+        });
+    }
+
+    // 在一致性读取中调用，数据库中不存在的SKU按0计
+    private Map<Long, Integer> withPending(Collection<Long> skuIds, Map<Long, Integer> stored) {
+        Map<Long, Integer> expected = new HashMap<>();
+        for (Long skuId : skuIds) {
+            expected.put(skuId, stored.getOrDefault(skuId, 0) + writeBehindQueue.pendingDelta(skuId));
+        }
+        return expected;
+    }
+
+    // Spring Data Redis的Cursor不能跨调用续扫，直接使用Lettuce的SCAN并保存游标
+    @SuppressWarnings("unchecked")
+    private KeyScanCursor<byte[]> scan(String cursor) {
+        return redisTemplate.execute((RedisCallback<KeyScanCursor<byte[]>>) connection -> {
+            RedisKeyAsyncCommands<byte[], byte[]> commands = (RedisKeyAsyncCommands<byte[], byte[]>) connection.getNativeConnection();
+            try {
+                return commands.scan(ScanCursor.of(cursor), ScanArgs.Builder.matches(KEY_PATTERN).limit(batchSize))
+                        .get(10, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("Failed to scan stock counters", e);
+            }
+        });
+    }
+}
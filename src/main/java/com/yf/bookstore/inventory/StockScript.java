@@ -0,0 +1,26 @@
+package com.yf.bookstore.inventory;
+
+/**
+ * 库存相关的Lua脚本，脚本文件位于 classpath:scripts/stock/
+ */
+public enum StockScript {
+    RESERVE("reserve.lua"), // 扣减单个SKU
+    RELEASE("release.lua"), // 归还单个SKU
+    SET_IF_EXISTS("set_if_exists.lua"), // 覆盖已存在的计数器
+    RESERVE_MULTI("reserve_multi.lua"), // 原子扣减多个SKU
+    RELEASE_MULTI("release_multi.lua"), // 原子归还多个SKU
+    HOLD_CREATE("hold_create.lua"), // 登记库存预留
+    HOLD_CLAIM("hold_claim.lua"), // 确认或释放库存预留，只有一方能成功
+    STRIPE_INIT("stripe_init.lua"), // 一次性创建热点SKU的全部分片
+    STRIPE_MOVE("stripe_move.lua"); // 在热点SKU的分片之间原子搬运库存
+
+    private final String fileName;
+
+    StockScript(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+}
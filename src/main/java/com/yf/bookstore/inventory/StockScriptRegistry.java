@@ -0,0 +1,176 @@
+package com.yf.bookstore.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 库存Lua脚本注册表
+ * 启动时加载全部脚本并记录SHA，之后统一通过EVALSHA调用；Redis返回NOSCRIPT（如重启或SCRIPT FLUSH）时重新加载后重试
+ * 注意：多SKU脚本要求所有key位于同一节点，Redis Cluster下需为key加上相同的hash tag
+ */
+@Component
+public class StockScriptRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockScriptRegistry.class);
+
+    private static final String SCRIPT_LOCATION = "scripts/stock/";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Map<StockScript, byte[]> sources = new EnumMap<>(StockScript.class);
+    private final Map<StockScript, String> shas = new EnumMap<>(StockScript.class);
+
+    public StockScriptRegistry(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+        for (StockScript script : StockScript.values()) {
+            byte[] source = readScript(script);
+            sources.put(script, source);
+            shas.put(script, sha1Hex(source));
+        }
+    }
+
+    /**
+     * 启动时预加载全部脚本，Redis暂不可用时不影响启动，首次调用时会按NOSCRIPT重新加载
+     */
+    @PostConstruct
+    public void preload() {
+        try {
+            redisTemplate.execute((RedisCallback<Void>) connection -> {
+                for (StockScript script : StockScript.values()) {
+                    load(connection, script);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Failed to preload stock scripts, they will be loaded on first use: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 通过EVALSHA执行脚本
+     *
+     * @param script 脚本
+     * @param keys   脚本的KEYS
+     * @param args   脚本的ARGV
+     * @return 脚本返回的整数结果
+     */
+    public Long execute(StockScript script, List<String> keys, List<String> args) {
+        byte[][] keysAndArgs = keysAndArgs(keys, args);
+        return redisTemplate.execute((RedisCallback<Long>) connection -> {
+            try {
+                return connection.scriptingCommands().evalSha(shas.get(script), ReturnType.INTEGER, keys.size(), keysAndArgs);
+            } catch (RuntimeException e) {
+                if (!isNoScript(e)) {
+                    throw e;
+                }
+                logger.info("Stock script {} missing in Redis, reloading", script);
+                load(connection, script);
+                return connection.scriptingCommands().evalSha(shas.get(script), ReturnType.INTEGER, keys.size(), keysAndArgs);
+            }
+        });
+    }
+
+    /**
+     * 在一次管道中对多组KEYS/ARGV执行同一脚本
+     * 整个管道遇到NOSCRIPT时说明脚本在此之前已丢失，此时所有调用都未执行，重新加载后整体重试
+     *
+     * @param script 脚本
+     * @param keys   每次调用的KEYS
+     * @param args   每次调用的ARGV，与keys一一对应
+     * @return 每次调用返回的整数结果，顺序与参数一致
+     */
+    public List<Long> executePipelined(StockScript script, List<List<String>> keys, List<List<String>> args) {
+        try {
+            return pipeline(script, keys, args);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            logger.info("Stock script {} missing in Redis, reloading", script);
+            preload();
+            return pipeline(script, keys, args);
+        }
+    }
+
+    private List<Long> pipeline(StockScript script, List<List<String>> keys, List<List<String>> args) {
+        String sha = shas.get(script);
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.size(); i++) {
+                connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, keys.get(i).size(),
+                        keysAndArgs(keys.get(i), args.get(i)));
+            }
+            return null;
+        });
+        List<Long> values = new ArrayList<>(results.size());
+        for (Object result : results) {
+            values.add(result == null ? null : ((Number) result).longValue());
+        }
+        return values;
+    }
+
+    private void load(RedisConnection connection, StockScript script) {
+        String sha = connection.scriptingCommands().scriptLoad(sources.get(script));
+        if (sha != null && !sha.equals(shas.get(script))) {
+            logger.warn("Unexpected SHA {} for stock script {}", sha, script);
+        }
+    }
+
+    private static byte[][] keysAndArgs(List<String> keys, List<String> args) {
+        byte[][] keysAndArgs = new byte[keys.size() + args.size()][];
+        int i = 0;
+        for (String key : keys) {
+            keysAndArgs[i++] = key.getBytes(StandardCharsets.UTF_8);
+        }
+        for (String arg : args) {
+            keysAndArgs[i++] = arg.getBytes(StandardCharsets.UTF_8);
+        }
+        return keysAndArgs;
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] readScript(StockScript script) {
+        try {
+            return StreamUtils.copyToByteArray(new ClassPathResource(SCRIPT_LOCATION + script.getFileName()).getInputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read stock script " + script.getFileName(), e);
+        }
+    }
+
+    private static String sha1Hex(byte[] source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.yf.bookstore.inventory;
+
+import com.yf.bookstore.common.IdGenerator;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 库存增量的异步写回队列
+ * 已被Redis或进程内账本接受的库存增量先写入本地日志，再按SKU合并，由后台任务批量写回tb_stock；
+ * 每个日志段与其增量、对应的库存事件在同一事务中落库并打上标记，崩溃后重放时不会丢失也不会重复
+ * 可用库存 = 数据库库存 + 未写回增量，两者必须在 {@link #readConsistent} 中一起读取，
+ * 否则可能读到已落库但尚未移出队列的段（重复计算），或读库之后才落库并移出的段（漏算）
+ */
+@Component
+public class StockWriteBehindQueue implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockWriteBehindQueue.class);
+
+    private static final String UPDATE_SQL = "UPDATE tb_stock SET stock = stock + ?, version = version + 1, modify_time = ? WHERE sku_id = ?";
+    private static final String INSERT_SQL = "INSERT INTO tb_stock (id, sku_id, stock, version, create_time, modify_time) VALUES (?, ?, ?, 0, ?, ?)";
+    private static final String MARK_SQL = "INSERT INTO tb_stock_flush_segment (segment_key, flush_time) VALUES (?, ?)";
+    private static final String MARKED_SQL = "SELECT COUNT(*) FROM tb_stock_flush_segment WHERE segment_key = ?";
+    private static final String PRUNE_SQL = "DELETE FROM tb_stock_flush_segment WHERE flush_time < ?";
+
+    private final StockJournal journal;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdGenerator idGenerator;
+    private final OutboxPublisher outboxPublisher;
+    private final ReentrantReadWriteLock sealLock = new ReentrantReadWriteLock();
+    // 写锁覆盖一个段从落库到移出队列的全过程，读锁由readConsistent持有
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    // 当前段内尚未封存的增量
+    private volatile ConcurrentHashMap<Long, Integer> pending = new ConcurrentHashMap<>();
+    // 已封存但尚未写回数据库的段
+    private final ConcurrentSkipListMap<Long, Map<Long, Integer>> unflushed = new ConcurrentSkipListMap<>();
+    private volatile long lastPruneTime;
+
+    public StockWriteBehindQueue(StockJournal journal, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                 IdGenerator idGenerator, OutboxPublisher outboxPublisher) {
+        this.journal = journal;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.idGenerator = idGenerator;
+        this.outboxPublisher = outboxPublisher;
+    }
+
+    /**
+     * 在所有单例（包括建表的EntityManagerFactory）就绪后，重放上次未写回的日志段
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (Long segmentId : journal.sealedSegments()) {
+            unflushed.put(segmentId, journal.read(segmentId));
+        }
+        if (!unflushed.isEmpty()) {
+            logger.info("Replaying {} stock journal segment(s)", unflushed.size());
+            flush();
+        }
+    }
+
+    /**
+     * 记录一笔库存增量，调用返回时该增量已写入本地日志
+     *
+     * @param skuId 商品SKU ID
+     * @param delta 库存增量，扣减时为负数
+     */
+    public void enqueue(Long skuId, int delta) {
+        sealLock.readLock().lock();
+        try {
+            journal.append(skuId, delta);
+            pending.merge(skuId, delta, Integer::sum);
+        } finally {
+            sealLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询某个SKU尚未写回数据库的增量之和
+     * 与数据库库存相加时，读库和调用本方法都要放在 {@link #readConsistent} 中
+     *
+     * @param skuId 商品SKU ID
+     * @return 未写回的增量
+     */
+    public int pendingDelta(Long skuId) {
+        // 封存时当前段先换出再加入未写回的段，不加锁可能两边都看不到
+        sealLock.readLock().lock();
+        try {
+            int delta = pending.getOrDefault(skuId, 0);
+            for (Map<Long, Integer> deltas : unflushed.values()) {
+                delta += deltas.getOrDefault(skuId, 0);
+            }
+            return delta;
+        } finally {
+            sealLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在没有日志段正在落库时执行读取，其中读到的数据库库存与 {@link #pendingDelta} 互相一致
+     * 调用前不能已持有tb_stock的行锁，否则与正在落库的段互相等待；读取过程中可以再加行锁
+     *
+     * @param reader 读取数据库库存并加上未写回增量
+     * @return reader的结果
+     */
+    public <T> T readConsistent(Supplier<T> reader) {
+        flushLock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 封存当前段并将所有未写回的段批量写入tb_stock
+     */
+    @Scheduled(fixedDelayString = "${stock.write-behind.flush-interval-ms:200}")
+    public synchronized void flush() {
+        if (!pending.isEmpty()) {
+            seal();
+        }
+        drainUnflushed();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void seal() {
+        sealLock.writeLock().lock();
+        try {
+            Map<Long, Integer> snapshot = pending;
+            pending = new ConcurrentHashMap<>();
+            unflushed.put(journal.rotate(), snapshot);
+        } finally {
+            sealLock.writeLock().unlock();
+        }
+    }
+
+    private void drainUnflushed() {
+        for (Map.Entry<Long, Map<Long, Integer>> entry : unflushed.entrySet()) {
+            if (!drain(entry.getKey(), entry.getValue())) {
+                return;
+            }
+        }
+        pruneMarks();
+    }
+
+    // 落库和移出队列之间不允许一致性读取，读者要么看到段在队列中而数据库中没有，要么相反
+    private boolean drain(long segmentId, Map<Long, Integer> deltas) {
+        flushLock.writeLock().lock();
+        try {
+            try {
+                if (!deltas.isEmpty()) {
+                    persist(segmentId, deltas);
+                }
+            } catch (RuntimeException e) {
+                // 保留该段，下一轮按原段重试，保证段内增量只落库一次
+                logger.error("Failed to flush stock journal segment {}: {}", segmentId, e.getMessage(), e);
+                return false;
+            }
+            journal.delete(segmentId);
+            unflushed.remove(segmentId);
+            return true;
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private void persist(long segmentId, Map<Long, Integer> deltas) {
+        String segmentKey = journal.segmentKey(segmentId);
+        transactionTemplate.executeWithoutResult(status -> {
+            Integer marked = jdbcTemplate.queryForObject(MARKED_SQL, Integer.class, segmentKey);
+            if (marked != null && marked > 0) {
+                return;
+            }
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            // 按SKU排序写入，避免多个节点并发写回时互相死锁
+            List<Object[]> updates = new ArrayList<>();
+            for (Map.Entry<Long, Integer> delta : new TreeMap<>(deltas).entrySet()) {
+                if (delta.getValue() != 0) {
+                    updates.add(new Object[]{delta.getValue(), now, delta.getKey()});
+                }
+            }
+            int[] counts = jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+            List<Object[]> inserts = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    Object[] update = updates.get(i);
+                    inserts.add(new Object[]{idGenerator.nextId(), update[2], update[0], now, now});
+                }
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+            }
+            jdbcTemplate.update(MARK_SQL, segmentKey, now);
+            // 经由写回队列的库存变化在落库的同一事务中写入发件箱
+            outboxPublisher.publishAll(StockEvents.deltas(outboxPublisher, deltas));
+        });
+    }
+
+    // 段文件删除后其标记已无用，定期清理一天前的标记
+    private void pruneMarks() {
+        long now = System.currentTimeMillis();
+        if (now - lastPruneTime < TimeUnit.HOURS.toMillis(1)) {
+            return;
+        }
+        lastPruneTime = now;
+        try {
+            jdbcTemplate.update(PRUNE_SQL, new Timestamp(now - TimeUnit.DAYS.toMillis(1)));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to prune stock flush marks: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.yf.bookstore.inventory;
+
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.repository.StockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 热点SKU的分片库存计数器
+ * 热点SKU的库存被拆分到N个子计数器 stock:{skuId}:{i}，按调用方哈希选择分片扣减，
+ * 某个分片不足时从库存最多的分片搬运补足；数据库由写回队列按SKU合并后异步更新，
+ * 因此单个SKU的扣减吞吐随分片数增长，而不再串行在一个key和一行tb_stock上
+ */
+@Component
+public class StripedStockCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StripedStockCounter.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long STRIPES_REBUILT = 2L;
+
+    private final StringRedisTemplate redisTemplate;
+    private final StockScriptRegistry scriptRegistry;
+    private final StockWriteBehindQueue writeBehindQueue;
+    private final StockRepository stockRepository;
+    private final Set<Long> hotSkus;
+    private final int stripes;
+
+    public StripedStockCounter(StringRedisTemplate redisTemplate, StockScriptRegistry scriptRegistry,
+                               StockWriteBehindQueue writeBehindQueue, StockRepository stockRepository,
+                               @Value("${stock.striping.hot-skus:}") String hotSkus,
+                               @Value("${stock.striping.stripes:8}") int stripes) {
+        this.redisTemplate = redisTemplate;
+        this.scriptRegistry = scriptRegistry;
+        this.writeBehindQueue = writeBehindQueue;
+        this.stockRepository = stockRepository;
+        this.hotSkus = StringUtils.commaDelimitedListToSet(hotSkus).stream()
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .map(Long::valueOf)
+                .collect(Collectors.toSet());
+        this.stripes = Math.max(1, stripes);
+    }
+
+    /**
+     * 判断SKU是否被标记为热点
+     */
+    public boolean isHot(Long skuId) {
+        return hotSkus.contains(skuId);
+    }
+
+    /**
+     * 扣减热点SKU的库存
+     *
+     * @param skuId    商品SKU ID
+     * @param quantity 扣减数量
+     * @return 扣减后所有分片的库存总和
+     * @throws InsufficientStockException 如果所有分片的库存之和不足
+     */
+    public int reserve(Long skuId, int quantity) {
+        int stripe = pickStripe();
+        writeBehindQueue.enqueue(skuId, -quantity);
+        boolean reserved = false;
+        try {
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                if (tryReserve(skuId, stripe, quantity)) {
+                    reserved = true;
+                    break;
+                }
+                // 分片被扣空时从其他分片搬运，总量不足时直接失败
+                if (!rebalance(skuId, stripe, quantity)) {
+                    break;
+                }
+            }
+        } finally {
+            if (!reserved) {
+                writeBehindQueue.enqueue(skuId, quantity);
+            }
+        }
+        if (!reserved) {
+            throw new InsufficientStockException(skuId);
+        }
+        return total(skuId);
+    }
+
+    /**
+     * 归还热点SKU的库存
+     *
+     * @param skuId    商品SKU ID
+     * @param quantity 归还数量
+     * @return 归还后所有分片的库存总和
+     */
+    public int release(Long skuId, int quantity) {
+        writeBehindQueue.enqueue(skuId, quantity);
+        Long result = scriptRegistry.execute(StockScript.RELEASE, Collections.singletonList(stripeKey(skuId, pickStripe())),
+                Collections.singletonList(String.valueOf(quantity)));
+        if (result == null || result < 0) {
+            // 分片未初始化时，初始化会包含这笔尚未写回的增量
+            initialize(skuId);
+        }
+        return total(skuId);
+    }
+
+    /**
+     * 所有分片的库存总和，与未分片时 stock:{skuId} 的含义一致
+     */
+    public int total(Long skuId) {
+        List<String> values = redisTemplate.opsForValue().multiGet(stripeKeys(skuId));
+        if (values == null || values.contains(null)) {
+            initialize(skuId);
+            values = redisTemplate.opsForValue().multiGet(stripeKeys(skuId));
+        }
+        int total = 0;
+        for (String value : values) {
+            total += value == null ? 0 : Integer.parseInt(value);
+        }
+        return total;
+    }
+
+    /**
+     * 删除全部分片，下次访问时按数据库重新拆分（用于库存被整体覆盖或删除后）
+     */
+    public void reset(Long skuId) {
+        redisTemplate.delete(stripeKeys(skuId));
+    }
+
+    private boolean tryReserve(Long skuId, int stripe, int quantity) {
+        List<String> key = Collections.singletonList(stripeKey(skuId, stripe));
+        List<String> args = Collections.singletonList(String.valueOf(quantity));
+        Long result = scriptRegistry.execute(StockScript.RESERVE, key, args);
+        if (result != null && result == -1) {
+            // 初始化时会计入未写回的增量，先撤销本次扣减的记录，避免重复扣减
+            writeBehindQueue.enqueue(skuId, quantity);
+            initialize(skuId);
+            writeBehindQueue.enqueue(skuId, -quantity);
+            result = scriptRegistry.execute(StockScript.RESERVE, key, args);
+        }
+        return result != null && result >= 0;
+    }
+
+    /**
+     * 把其他分片的库存搬运到目标分片，至少补足本次扣减所需，并尽量补到平均值
+     * 来源分片的扣减和目标分片的增加在一个脚本中完成，库存总量始终不变，不会超卖也不会因中途失败丢失
+     *
+     * @return 目标分片是否已补足
+     */
+    private boolean rebalance(Long skuId, int target, int quantity) {
+        List<String> keys = stripeKeys(skuId);
+        List<String> values = redisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return false;
+        }
+        int[] counts = new int[stripes];
+        int total = 0;
+        for (int i = 0; i < stripes; i++) {
+            counts[i] = values.get(i) == null ? 0 : Integer.parseInt(values.get(i));
+            total += counts[i];
+        }
+        if (total < quantity) {
+            return false;
+        }
+        int needed = quantity - counts[target];
+        int wanted = Math.max(needed, total / stripes - counts[target]);
+        List<Integer> donors = new ArrayList<>();
+        for (int i = 0; i < stripes; i++) {
+            if (i != target && counts[i] > 0) {
+                donors.add(i);
+            }
+        }
+        if (donors.isEmpty()) {
+            return false;
+        }
+        // 先从库存最多的分片搬运，脚本按当前值计算，多取的部分不会超过来源分片的剩余
+        donors.sort((a, b) -> Integer.compare(counts[b], counts[a]));
+        List<String> moveKeys = new ArrayList<>(donors.size() + 1);
+        moveKeys.add(keys.get(target));
+        donors.forEach(donor -> moveKeys.add(keys.get(donor)));
+        Long moved = scriptRegistry.execute(StockScript.STRIPE_MOVE, moveKeys, Collections.singletonList(String.valueOf(wanted)));
+        return moved != null && moved >= needed;
+    }
+
+    /**
+     * 按数据库库存加上未写回的增量，均匀拆分到各分片，由一个脚本原子地创建全部分片，已全部存在时保持不变
+     * 逐个setIfAbsent时，部分分片过期或被淘汰后剩余分片的库存会与新拆分的份额重复计算；
+     * 只剩部分分片时它们的和已无意义，脚本按新值整体重建
+     */
+    private void initialize(Long skuId) {
+        int stored = writeBehindQueue.readConsistent(() -> stockRepository.findBySkuId(skuId).map(Stock::getStock).orElse(0)
+                + writeBehindQueue.pendingDelta(skuId));
+        int base = Math.floorDiv(stored, stripes);
+        int remainder = Math.floorMod(stored, stripes);
+        List<String> shares = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            shares.add(String.valueOf(base + (i < remainder ? 1 : 0)));
+        }
+        Long result = scriptRegistry.execute(StockScript.STRIPE_INIT, stripeKeys(skuId), shares);
+        if (result != null && result == STRIPES_REBUILT) {
+            logger.warn("Stock stripes for SKU ID {} were partially missing, rebuilt from {}", skuId, stored);
+        }
+    }
+
+    // 按调用线程哈希选择分片，同一线程的连续请求落在同一分片上
+    private int pickStripe() {
+        long hash = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return Math.floorMod((int) (hash ^ (hash >>> 32)), stripes);
+    }
+
+    private List<String> stripeKeys(Long skuId) {
+        List<String> keys = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            keys.add(stripeKey(skuId, i));
+        }
+        return keys;
+    }
+
+    private static String stripeKey(Long skuId, int stripe) {
+        return "stock:" + skuId + ":" + stripe;
+    }
+}
@@ -1,5 +1,8 @@
 package com.yf.bookstore.model.commodity;
 
+import com.yf.bookstore.common.HibernateIdGenerator;
+import org.hibernate.annotations.GenericGenerator;
+
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.util.Date;
@@ -9,7 +12,8 @@ import java.util.Date;
 public class Sku {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "id-generator")
+    @GenericGenerator(name = "id-generator", strategy = HibernateIdGenerator.STRATEGY)
     private Long id;
 
     @Column(nullable = false)
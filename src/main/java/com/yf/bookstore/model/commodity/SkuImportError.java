@@ -0,0 +1,24 @@
+package com.yf.bookstore.model.commodity;
+
+/**
+ * 导入时被拒绝的一行及原因
+ */
+public class SkuImportError {
+
+    private final long line;
+
+    private final String message;
+
+    public SkuImportError(long line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,77 @@
+package com.yf.bookstore.model.commodity;
+
+import java.util.List;
+
+/**
+ * SKU批量导入的结果
+ * errors只保留前若干条，rejected是被拒绝的总行数；aborted不为空表示文件无法继续解析，之前已写入的批次仍然有效
+ */
+public class SkuImportReport {
+
+    private final String format;
+
+    private final long rowsRead;
+
+    private final long imported;
+
+    private final long rejected;
+
+    private final long batches;
+
+    private final long elapsedMillis;
+
+    private final double rowsPerSecond;
+
+    private final String aborted;
+
+    private final List<SkuImportError> errors;
+
+    public SkuImportReport(String format, long rowsRead, long imported, long rejected, long batches, long elapsedMillis,
+                           String aborted, List<SkuImportError> errors) {
+        this.format = format;
+        this.rowsRead = rowsRead;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.batches = batches;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = elapsedMillis == 0 ? imported * 1000.0 : imported * 1000.0 / elapsedMillis;
+        this.aborted = aborted;
+        this.errors = errors;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public String getAborted() {
+        return aborted;
+    }
+
+    public List<SkuImportError> getErrors() {
+        return errors;
+    }
+}
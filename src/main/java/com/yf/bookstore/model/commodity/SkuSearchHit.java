@@ -0,0 +1,31 @@
+package com.yf.bookstore.model.commodity;
+
+/**
+ * 搜索命中的SKU及其相关度得分
+ */
+public class SkuSearchHit {
+
+    private final Long skuId;
+
+    private final String title;
+
+    private final double score;
+
+    public SkuSearchHit(Long skuId, String title, double score) {
+        this.skuId = skuId;
+        this.title = title;
+        this.score = score;
+    }
+
+    public Long getSkuId() {
+        return skuId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public double getScore() {
+        return score;
+    }
+}
@@ -0,0 +1,26 @@
+package com.yf.bookstore.model.commodity;
+
+import java.util.List;
+
+/**
+ * 搜索结果：匹配的总数和按得分排序的前若干条
+ */
+public class SkuSearchResult {
+
+    private final int total;
+
+    private final List<SkuSearchHit> hits;
+
+    public SkuSearchResult(int total, List<SkuSearchHit> hits) {
+        this.total = total;
+        this.hits = hits;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public List<SkuSearchHit> getHits() {
+        return hits;
+    }
+}
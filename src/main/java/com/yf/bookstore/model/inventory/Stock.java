@@ -1,5 +1,8 @@
 package com.yf.bookstore.model.inventory;
 
+import com.yf.bookstore.common.HibernateIdGenerator;
+import org.hibernate.annotations.GenericGenerator;
+
 import javax.persistence.*;
 import java.util.Date;
 
@@ -8,13 +11,18 @@ import java.util.Date;
 public class Stock {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "id-generator")
+    @GenericGenerator(name = "id-generator", strategy = HibernateIdGenerator.STRATEGY)
     private Long id;
 
+    @Column(name = "sku_id", unique = true)
     private Long skuId;
 
     private int stock;
 
+    @Version
+    private long version;
+
     @Column(name = "create_time")
     @Temporal(TemporalType.TIMESTAMP)
     private Date createTime;
@@ -47,6 +55,14 @@ public class Stock {
         this.stock = stock;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public Date getCreateTime() {
         return createTime;
     }
@@ -0,0 +1,46 @@
+package com.yf.bookstore.model.inventory;
+
+/**
+ * 批量库存调整中的一项，delta与stock二选一：delta为增量，stock为覆盖后的绝对值
+ */
+public class StockAdjustment {
+
+    private Long skuId;
+
+    private Integer delta;
+
+    private Integer stock;
+
+    public StockAdjustment() {
+    }
+
+    public StockAdjustment(Long skuId, Integer delta, Integer stock) {
+        this.skuId = skuId;
+        this.delta = delta;
+        this.stock = stock;
+    }
+
+    public Long getSkuId() {
+        return skuId;
+    }
+
+    public void setSkuId(Long skuId) {
+        this.skuId = skuId;
+    }
+
+    public Integer getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Integer delta) {
+        this.delta = delta;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+}
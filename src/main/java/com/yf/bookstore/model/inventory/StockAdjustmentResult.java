@@ -0,0 +1,68 @@
+package com.yf.bookstore.model.inventory;
+
+/**
+ * 批量库存调整中单项的处理结果
+ */
+public class StockAdjustmentResult {
+
+    private Long skuId;
+
+    private boolean success;
+
+    /**
+     * 调整后的可用库存，失败时为调整前的值
+     */
+    private Integer stock;
+
+    private String message;
+
+    public StockAdjustmentResult() {
+    }
+
+    public StockAdjustmentResult(Long skuId, boolean success, Integer stock, String message) {
+        this.skuId = skuId;
+        this.success = success;
+        this.stock = stock;
+        this.message = message;
+    }
+
+    public static StockAdjustmentResult success(Long skuId, int stock) {
+        return new StockAdjustmentResult(skuId, true, stock, null);
+    }
+
+    public static StockAdjustmentResult failure(Long skuId, Integer stock, String message) {
+        return new StockAdjustmentResult(skuId, false, stock, message);
+    }
+
+    public Long getSkuId() {
+        return skuId;
+    }
+
+    public void setSkuId(Long skuId) {
+        this.skuId = skuId;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
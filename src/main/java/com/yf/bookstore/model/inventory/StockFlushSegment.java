@@ -0,0 +1,37 @@
+package com.yf.bookstore.model.inventory;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * 已写回tb_stock的库存日志段标记
+ * 与库存增量在同一事务中写入，用于崩溃恢复时跳过已落库的日志段
+ */
+@Entity
+@Table(name = "tb_stock_flush_segment")
+public class StockFlushSegment {
+
+    @Id
+    @Column(name = "segment_key", length = 64)
+    private String segmentKey;
+
+    @Column(name = "flush_time", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date flushTime;
+
+    public String getSegmentKey() {
+        return segmentKey;
+    }
+
+    public void setSegmentKey(String segmentKey) {
+        this.segmentKey = segmentKey;
+    }
+
+    public Date getFlushTime() {
+        return flushTime;
+    }
+
+    public void setFlushTime(Date flushTime) {
+        this.flushTime = flushTime;
+    }
+}
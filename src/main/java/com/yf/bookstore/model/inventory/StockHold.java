@@ -0,0 +1,60 @@
+package com.yf.bookstore.model.inventory;
+
+/**
+ * 库存预留，过期前未确认的预留会被自动释放
+ */
+public class StockHold {
+
+    private String holdId;
+
+    private Long skuId;
+
+    private int quantity;
+
+    /**
+     * 过期时间（毫秒时间戳）
+     */
+    private long expireAt;
+
+    public StockHold() {
+    }
+
+    public StockHold(String holdId, Long skuId, int quantity, long expireAt) {
+        this.holdId = holdId;
+        this.skuId = skuId;
+        this.quantity = quantity;
+        this.expireAt = expireAt;
+    }
+
+    public String getHoldId() {
+        return holdId;
+    }
+
+    public void setHoldId(String holdId) {
+        this.holdId = holdId;
+    }
+
+    public Long getSkuId() {
+        return skuId;
+    }
+
+    public void setSkuId(Long skuId) {
+        this.skuId = skuId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public long getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(long expireAt) {
+        this.expireAt = expireAt;
+    }
+}
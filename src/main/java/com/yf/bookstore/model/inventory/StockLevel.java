@@ -0,0 +1,57 @@
+package com.yf.bookstore.model.inventory;
+
+/**
+ * SKU的库存概况：可用、已预留、已售分别统计
+ */
+public class StockLevel {
+
+    private Long skuId;
+
+    private int available;
+
+    private long held;
+
+    private long sold;
+
+    public StockLevel() {
+    }
+
+    public StockLevel(Long skuId, int available, long held, long sold) {
+        this.skuId = skuId;
+        this.available = available;
+        this.held = held;
+        this.sold = sold;
+    }
+
+    public Long getSkuId() {
+        return skuId;
+    }
+
+    public void setSkuId(Long skuId) {
+        this.skuId = skuId;
+    }
+
+    public int getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(int available) {
+        this.available = available;
+    }
+
+    public long getHeld() {
+        return held;
+    }
+
+    public void setHeld(long held) {
+        this.held = held;
+    }
+
+    public long getSold() {
+        return sold;
+    }
+
+    public void setSold(long sold) {
+        this.sold = sold;
+    }
+}
@@ -0,0 +1,94 @@
+package com.yf.bookstore.model.order;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 已归档的订单
+ * 已结束的订单从tb_order移到这里，ID保持不变；按ID查询和查询状态只需要主键和状态列，
+ * 订单连同明细以gzip压缩的JSON保存在payload中，需要完整订单时再解压
+ */
+@Entity
+@Table(name = "tb_order_archive")
+public class ArchivedOrder {
+
+    @Id
+    private Long id; // 原订单ID
+
+    @Column(name = "customer_id", nullable = false, length = 255)
+    private String customerId; // 客户ID
+
+    @Enumerated(EnumType.ORDINAL)
+    @Column(name = "status", nullable = false)
+    private OrderStatus status; // 归档时的状态，只会是已取消或已完成
+
+    @Column(name = "total_amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal totalAmount; // 总金额
+
+    @Column(name = "create_time", nullable = false)
+    private LocalDateTime createTime; // 下单时间
+
+    @Column(name = "archive_time", nullable = false)
+    private LocalDateTime archiveTime; // 归档时间
+
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private byte[] payload; // gzip压缩的订单JSON，包含明细
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OrderStatus status) {
+        this.status = status;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+
+    public LocalDateTime getArchiveTime() {
+        return archiveTime;
+    }
+
+    public void setArchiveTime(LocalDateTime archiveTime) {
+        this.archiveTime = archiveTime;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+}
@@ -0,0 +1,29 @@
+package com.yf.bookstore.model.order;
+
+import java.util.List;
+
+/**
+ * 多商品下单请求
+ */
+public class CreateOrderRequest {
+
+    private String customerId;
+
+    private List<OrderLineRequest> lines;
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public List<OrderLineRequest> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<OrderLineRequest> lines) {
+        this.lines = lines;
+    }
+}
@@ -1,20 +1,26 @@
 package com.yf.bookstore.model.order;
 
-import org.springframework.data.annotation.Id;
+import com.yf.bookstore.common.HibernateIdGenerator;
+import org.hibernate.annotations.GenericGenerator;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
-@Table(name = "tb_order")
+@Table(name = "tb_order", indexes = {
+        @Index(name = "idx_order_customer", columnList = "customer_id, create_time, id, status, total_amount"),
+        @Index(name = "idx_order_status_modified", columnList = "status, modify_time"),
+        @Index(name = "idx_order_status_created", columnList = "status, create_time")})
 public class Order {
 
     public Order(){}
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "id-generator")
+    @GenericGenerator(name = "id-generator", strategy = HibernateIdGenerator.STRATEGY)
     private Long id; // 主键字段
 
     @Column(name = "customer_id", nullable = false, length = 255)
@@ -23,11 +29,11 @@ public class Order {
     @Enumerated(EnumType.ORDINAL)
     private OrderStatus status;
 
-    @Column(name = "sku_id", nullable = false)
-    private Long skuId; // SKU ID
+    @Column(name = "sku_id")
+    private Long skuId; // SKU ID，仅单商品订单填写，多商品订单以明细为准
 
-    @Column(name = "price", nullable = false, precision = 10, scale = 2)
-    private BigDecimal price; // 单价
+    @Column(name = "price", precision = 10, scale = 2)
+    private BigDecimal price; // 单价，仅单商品订单填写
 
     @Column(name = "total_amount", nullable = false, precision = 10, scale = 2)
     private BigDecimal totalAmount; // 总金额
@@ -38,7 +44,9 @@ public class Order {
     @Column(name = "modify_time", nullable = false)
     private LocalDateTime modifyTime; // 修改时间
 
-
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("skuId ASC")
+    private List<OrderLine> lines = new ArrayList<>(); // 订单明细
 
     public Long getId() {
         return id;
@@ -79,4 +87,44 @@ public class Order {
     public void setSkuId(Long skuId) {
         this.skuId = skuId;
     }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+
+    public LocalDateTime getModifyTime() {
+        return modifyTime;
+    }
+
+    public void setModifyTime(LocalDateTime modifyTime) {
+        this.modifyTime = modifyTime;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<OrderLine> lines) {
+        this.lines = lines;
+    }
+
+    /**
+     * 添加一条订单明细并维护双向关联
+     */
+    public void addLine(OrderLine line) {
+        line.setOrder(this);
+        lines.add(line);
+    }
 }
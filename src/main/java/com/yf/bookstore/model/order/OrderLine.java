@@ -0,0 +1,84 @@
+package com.yf.bookstore.model.order;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.yf.bookstore.common.HibernateIdGenerator;
+import org.hibernate.annotations.GenericGenerator;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+
+/**
+ * 订单明细，一个订单包含一个或多个SKU
+ */
+@Entity
+@Table(name = "tb_order_line")
+public class OrderLine {
+
+    public OrderLine() {
+    }
+
+    public OrderLine(Long skuId, int quantity, BigDecimal price) {
+        this.skuId = skuId;
+        this.quantity = quantity;
+        this.price = price;
+    }
+
+    @Id
+    @GeneratedValue(generator = "id-generator")
+    @GenericGenerator(name = "id-generator", strategy = HibernateIdGenerator.STRATEGY)
+    private Long id; // 主键字段
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "order_id", nullable = false)
+    private Order order; // 所属订单
+
+    @Column(name = "sku_id", nullable = false)
+    private Long skuId; // SKU ID
+
+    @Column(name = "quantity", nullable = false)
+    private int quantity; // 数量
+
+    @Column(name = "price", nullable = false, precision = 10, scale = 2)
+    private BigDecimal price; // 下单时的单价
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    public void setOrder(Order order) {
+        this.order = order;
+    }
+
+    public Long getSkuId() {
+        return skuId;
+    }
+
+    public void setSkuId(Long skuId) {
+        this.skuId = skuId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+}
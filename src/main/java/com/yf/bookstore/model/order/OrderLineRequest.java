@@ -0,0 +1,35 @@
+package com.yf.bookstore.model.order;
+
+/**
+ * 下单请求中的一行：SKU和购买数量
+ */
+public class OrderLineRequest {
+
+    private Long skuId;
+
+    private Integer quantity;
+
+    public OrderLineRequest() {
+    }
+
+    public OrderLineRequest(Long skuId, Integer quantity) {
+        this.skuId = skuId;
+        this.quantity = quantity;
+    }
+
+    public Long getSkuId() {
+        return skuId;
+    }
+
+    public void setSkuId(Long skuId) {
+        this.skuId = skuId;
+    }
+
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
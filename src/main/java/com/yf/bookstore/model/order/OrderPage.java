@@ -0,0 +1,26 @@
+package com.yf.bookstore.model.order;
+
+import java.util.List;
+
+/**
+ * 订单列表的一页，nextCursor为空表示没有更多
+ */
+public class OrderPage {
+
+    private final List<OrderSummary> items;
+
+    private final String nextCursor;
+
+    public OrderPage(List<OrderSummary> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<OrderSummary> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -24,4 +24,19 @@ public enum OrderStatus {
     public int getValue() {
         return value;
     }
+
+    /**
+     * 是否允许从当前状态变更为目标状态
+     * 已创建的订单可以开始处理或取消，处理中的订单只能完成；已取消和已完成是终态
+     */
+    public boolean canTransitionTo(OrderStatus target) {
+        switch (this) {
+            case CREATED:
+                return target == PROCESSING || target == CANCELLED;
+            case PROCESSING:
+                return target == COMPLETED;
+            default:
+                return false;
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package com.yf.bookstore.model.order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 订单列表中的一项，只包含订单表上的列，查询时直接投影，不加载订单实体和明细
+ */
+public class OrderSummary {
+
+    private final Long id;
+
+    private final OrderStatus status;
+
+    private final BigDecimal totalAmount;
+
+    private final LocalDateTime createTime;
+
+    public OrderSummary(Long id, OrderStatus status, BigDecimal totalAmount, LocalDateTime createTime) {
+        this.id = id;
+        this.status = status;
+        this.totalAmount = totalAmount;
+        this.createTime = createTime;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public LocalDateTime getCreateTime() {
+        return createTime;
+    }
+}
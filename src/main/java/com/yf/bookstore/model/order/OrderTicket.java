@@ -0,0 +1,50 @@
+package com.yf.bookstore.model.order;
+
+/**
+ * 异步下单返回的凭证，订单ID在入队时已分配，通过凭证查询订单是否已写入数据库
+ */
+public class OrderTicket {
+
+    private final String ticket;
+
+    private final OrderTicketStatus status;
+
+    private final Long orderId;
+
+    private final String message;
+
+    private OrderTicket(String ticket, OrderTicketStatus status, Long orderId, String message) {
+        this.ticket = ticket;
+        this.status = status;
+        this.orderId = orderId;
+        this.message = message;
+    }
+
+    public static OrderTicket pending(String ticket, Long orderId) {
+        return new OrderTicket(ticket, OrderTicketStatus.PENDING, orderId, null);
+    }
+
+    public static OrderTicket created(String ticket, Long orderId) {
+        return new OrderTicket(ticket, OrderTicketStatus.CREATED, orderId, null);
+    }
+
+    public static OrderTicket failed(String ticket, String message) {
+        return new OrderTicket(ticket, OrderTicketStatus.FAILED, null, message);
+    }
+
+    public String getTicket() {
+        return ticket;
+    }
+
+    public OrderTicketStatus getStatus() {
+        return status;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,7 @@
+package com.yf.bookstore.model.order;
+
+public enum OrderTicketStatus {
+    PENDING,  // 库存已预占，等待写入数据库
+    CREATED,  // 订单已写入数据库
+    FAILED    // 写入失败，预占的库存已归还
+}
@@ -0,0 +1,8 @@
+package com.yf.bookstore.model.order;
+
+public enum OrderTransitionOutcome {
+    APPLIED, // 已变更
+    UNCHANGED, // 已经是目标状态，重试时不会重复变更
+    REJECTED, // 当前状态不允许变更为目标状态
+    NOT_FOUND // 订单不存在或已归档
+}
@@ -0,0 +1,29 @@
+package com.yf.bookstore.model.order;
+
+import java.util.List;
+
+/**
+ * 批量变更订单状态的请求
+ */
+public class OrderTransitionRequest {
+
+    private List<Long> orderIds;
+
+    private OrderStatus targetStatus;
+
+    public List<Long> getOrderIds() {
+        return orderIds;
+    }
+
+    public void setOrderIds(List<Long> orderIds) {
+        this.orderIds = orderIds;
+    }
+
+    public OrderStatus getTargetStatus() {
+        return targetStatus;
+    }
+
+    public void setTargetStatus(OrderStatus targetStatus) {
+        this.targetStatus = targetStatus;
+    }
+}
@@ -0,0 +1,31 @@
+package com.yf.bookstore.model.order;
+
+/**
+ * 批量变更中单个订单的结果，previousStatus为变更前的状态，订单不存在时为空
+ */
+public class OrderTransitionResult {
+
+    private final Long orderId;
+
+    private final OrderTransitionOutcome outcome;
+
+    private final OrderStatus previousStatus;
+
+    public OrderTransitionResult(Long orderId, OrderTransitionOutcome outcome, OrderStatus previousStatus) {
+        this.orderId = orderId;
+        this.outcome = outcome;
+        this.previousStatus = previousStatus;
+    }
+
+    public Long getOrderId() {
+        return orderId;
+    }
+
+    public OrderTransitionOutcome getOutcome() {
+        return outcome;
+    }
+
+    public OrderStatus getPreviousStatus() {
+        return previousStatus;
+    }
+}
@@ -0,0 +1,113 @@
+package com.yf.bookstore.model.outbox;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * 发件箱中的一条事件
+ * 与产生事件的业务修改在同一事务中写入，由中继任务按ID顺序投递后标记为已投递
+ */
+@Entity
+@Table(name = "tb_outbox", indexes = @Index(name = "idx_outbox_pending", columnList = "delivered_time, id"))
+public class OutboxEvent {
+
+    public static final String AGGREGATE_ORDER = "order";
+    public static final String AGGREGATE_STOCK = "stock";
+
+    public static final String ORDER_CREATED = "ORDER_CREATED";
+    public static final String ORDER_CANCELLED = "ORDER_CANCELLED";
+    public static final String ORDER_PROCESSING = "ORDER_PROCESSING";
+    public static final String ORDER_COMPLETED = "ORDER_COMPLETED";
+    public static final String STOCK_CHANGED = "STOCK_CHANGED";
+    public static final String STOCK_DELETED = "STOCK_DELETED";
+
+    @Id
+    private Long id; // 主键，按时间递增，投递顺序即ID顺序
+
+    @Column(name = "aggregate_type", nullable = false, length = 32)
+    private String aggregateType; // 聚合类型，如 order、stock
+
+    @Column(name = "aggregate_id", nullable = false, length = 64)
+    private String aggregateId; // 聚合ID，如订单ID、SKU ID
+
+    @Column(name = "event_type", nullable = false, length = 64)
+    private String eventType; // 事件类型
+
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private String payload; // JSON格式的事件内容
+
+    @Column(name = "create_time", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createTime;
+
+    @Column(name = "delivered_time")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date deliveredTime; // 投递时间，未投递时为空
+
+    public OutboxEvent() {
+    }
+
+    public OutboxEvent(String aggregateType, String aggregateId, String eventType, String payload) {
+        this.aggregateType = aggregateType;
+        this.aggregateId = aggregateId;
+        this.eventType = eventType;
+        this.payload = payload;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getAggregateType() {
+        return aggregateType;
+    }
+
+    public void setAggregateType(String aggregateType) {
+        this.aggregateType = aggregateType;
+    }
+
+    public String getAggregateId() {
+        return aggregateId;
+    }
+
+    public void setAggregateId(String aggregateId) {
+        this.aggregateId = aggregateId;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(String eventType) {
+        this.eventType = eventType;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+
+    public Date getDeliveredTime() {
+        return deliveredTime;
+    }
+
+    public void setDeliveredTime(Date deliveredTime) {
+        this.deliveredTime = deliveredTime;
+    }
+}
@@ -1,15 +1,18 @@
 package com.yf.bookstore.model.user;
 
+import com.yf.bookstore.common.HibernateIdGenerator;
+import org.hibernate.annotations.GenericGenerator;
+
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
 @Entity
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "id-generator")
+    @GenericGenerator(name = "id-generator", strategy = HibernateIdGenerator.STRATEGY)
     private Long id;
     private String username;
     private String password;
@@ -0,0 +1,267 @@
+package com.yf.bookstore.order;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yf.bookstore.exception.order.IdempotencyConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 按Idempotency-Key对写请求去重
+ * 本地Caffeine缓存保存每个key的执行结果（执行中时是未完成的future），同一节点上的并发重复请求等待同一个结果；
+ * Redis中的 idem:{key} 在节点间共享：先写入带本次令牌的占位标记，执行期间定期续期，执行成功后替换为首次响应并保留一段时间，
+ * 其他节点的重复请求等待标记被替换后直接返回首次响应。执行失败时按令牌清除占位，重试会重新执行；
+ * 续期和清除都比较令牌，占位过期后被其他执行重新占用时不会误删对方的占位
+ */
+@Component
+public class IdempotencyGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyGuard.class);
+
+    /**
+     * 响应中标记结果为重放的响应头
+     */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final String KEY_PREFIX = "idem:";
+    private static final String PENDING_PREFIX = "PENDING:";
+    private static final long POLL_MILLIS = 50;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, CompletableFuture<StoredResponse>> local;
+    private final long ttlSeconds;
+    private final long lockTtlSeconds;
+    private final long waitMillis;
+    private final RedisScript<Long> renewScript = script("renew.lua");
+    private final RedisScript<Long> releaseScript = script("release.lua");
+    private final ScheduledExecutorService renewer;
+
+    public IdempotencyGuard(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                            @Value("${order.idempotency.ttl-seconds:86400}") long ttlSeconds,
+                            @Value("${order.idempotency.lock-ttl-seconds:30}") long lockTtlSeconds,
+                            @Value("${order.idempotency.wait-ms:5000}") long waitMillis,
+                            @Value("${order.idempotency.local-max-size:100000}") long localMaxSize) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttlSeconds = ttlSeconds;
+        this.lockTtlSeconds = lockTtlSeconds;
+        this.waitMillis = waitMillis;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+        this.renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-renew");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renewer.shutdownNow();
+    }
+
+    /**
+     * 同一个key只执行一次action，重复请求返回首次的响应
+     *
+     * @param key    幂等键，调用方负责按客户等维度加上前缀
+     * @param action 实际执行的请求
+     * @return 首次执行的响应，重放时带 {@link #REPLAYED_HEADER} 响应头
+     * @throws IdempotencyConflictException 如果同一key的请求仍在执行且等待超时
+     */
+    public ResponseEntity<?> execute(String key, Supplier<ResponseEntity<?>> action) {
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> existing = local.asMap().putIfAbsent(key, mine);
+        if (existing != null) {
+            return replay(await(key, existing));
+        }
+        String token = PENDING_PREFIX + UUID.randomUUID();
+        StoredResponse stored;
+        try {
+            stored = claim(key, token);
+        } catch (RuntimeException e) {
+            local.asMap().remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        if (stored != null) {
+            mine.complete(stored);
+            return replay(stored);
+        }
+        ScheduledFuture<?> renewal = renew(key, token);
+        try {
+            ResponseEntity<?> response = action.get();
+            stored = new StoredResponse(response.getStatusCodeValue(), serialize(response.getBody()));
+            renewal.cancel(false);
+            save(key, stored);
+            mine.complete(stored);
+            return response;
+        } catch (RuntimeException e) {
+            // 只有获得执行权的请求才清除占位，重试会重新执行
+            renewal.cancel(false);
+            local.asMap().remove(key, mine);
+            release(key, token);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 在Redis中以token占位；其他节点已占位时等待其结果
+     *
+     * @return 已有的首次响应，本节点获得执行权时返回null
+     */
+    private StoredResponse claim(String key, String token) {
+        String redisKey = KEY_PREFIX + key;
+        long deadline = System.currentTimeMillis() + waitMillis;
+        try {
+            while (true) {
+                if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(redisKey, token, lockTtlSeconds, TimeUnit.SECONDS))) {
+                    return null;
+                }
+                String value = redisTemplate.opsForValue().get(redisKey);
+                if (value != null && !value.startsWith(PENDING_PREFIX)) {
+                    return StoredResponse.parse(objectMapper, value);
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new IdempotencyConflictException(key);
+                }
+                // 占位标记在执行方失败或超时后消失，下一轮即可重新占位
+                Thread.sleep(POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException(key);
+        } catch (DataAccessException e) {
+            // Redis不可用时退化为只在本节点去重
+            logger.warn("Idempotency store unavailable, deduplicating locally only: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 执行期间每隔三分之一的占位时长续期一次，执行时间超过占位时长时其他节点也不会重复执行
+     */
+    private ScheduledFuture<?> renew(String key, String token) {
+        long periodMillis = Math.max(1, TimeUnit.SECONDS.toMillis(lockTtlSeconds) / 3);
+        String ttlMillis = String.valueOf(TimeUnit.SECONDS.toMillis(lockTtlSeconds));
+        return renewer.scheduleAtFixedRate(() -> {
+            try {
+                redisTemplate.execute(renewScript, Collections.singletonList(KEY_PREFIX + key), token, ttlMillis);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to renew idempotency key {}: {}", key, e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private String serialize(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize idempotent response", e);
+        }
+    }
+
+    private void save(String key, StoredResponse stored) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + key, stored.toJson(objectMapper), ttlSeconds, TimeUnit.SECONDS);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to store idempotent response for key {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void release(String key, String token) {
+        try {
+            redisTemplate.execute(releaseScript, Collections.singletonList(KEY_PREFIX + key), token);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to release idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+
+    private StoredResponse await(String key, CompletableFuture<StoredResponse> future) {
+        try {
+            return future.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // 首次执行失败时，等待中的重复请求得到同样的错误
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException(key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException(key);
+        }
+    }
+
+    private static RedisScript<Long> script(String fileName) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource("scripts/idempotency/" + fileName));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    private static ResponseEntity<?> replay(StoredResponse stored) {
+        return ResponseEntity.status(stored.status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body);
+    }
+
+    /**
+     * 首次响应的状态码和JSON响应体
+     */
+    static final class StoredResponse {
+        final int status;
+        final String body;
+
+        StoredResponse(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        String toJson(ObjectMapper objectMapper) {
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("status", status);
+            node.put("body", body);
+            return node.toString();
+        }
+
+        static StoredResponse parse(ObjectMapper objectMapper, String json) {
+            try {
+                JsonNode node = objectMapper.readTree(json);
+                return new StoredResponse(node.get("status").asInt(), node.get("body").asText());
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Corrupted idempotent response: " + json, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.yf.bookstore.order;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLine;
+import com.yf.bookstore.model.order.OrderStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 订单归档
+ * 定期把结束超过一定天数的订单（已取消、已完成）分批移到tb_order_archive：每批在一个事务中锁定订单、
+ * 读取明细、把订单连同明细压缩后写入归档表，再从tb_order和tb_order_line删除，热表的大小只取决于近期的订单量
+ * 归档表以原订单ID为主键，按ID查询订单或状态时在热表中找不到再查归档表
+ */
+@Component
+public class OrderArchive {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderArchive.class);
+
+    private static final String SELECT_SQL = "SELECT id, customer_id, status, sku_id, price, total_amount, create_time, modify_time "
+            + "FROM tb_order WHERE status IN (?, ?) AND modify_time < ? LIMIT ? FOR UPDATE";
+    private static final String INSERT_SQL = "INSERT INTO tb_order_archive (id, customer_id, status, total_amount, create_time, archive_time, payload) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_LINES_SQL = "DELETE FROM tb_order_line WHERE order_id = ?";
+    private static final String DELETE_ORDER_SQL = "DELETE FROM tb_order WHERE id = ?";
+
+    // 每轮最多归档的批数，积压时分多轮追上，不长期占用调度线程
+    private static final int MAX_BATCHES_PER_RUN = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int afterDays;
+    private final int batchSize;
+
+    public OrderArchive(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                        @Value("${order.archive.enabled:true}") boolean enabled,
+                        @Value("${order.archive.after-days:90}") int afterDays,
+                        @Value("${order.archive.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.afterDays = afterDays;
+        this.batchSize = Math.max(1, Math.min(batchSize, 1000));
+    }
+
+    @Scheduled(fixedDelayString = "${order.archive.interval-ms:3600000}")
+    public void scheduledArchive() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int archived = archive(LocalDateTime.now().minusDays(afterDays));
+            if (archived > 0) {
+                logger.info("Archived {} order(s)", archived);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to archive orders: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把在cutoff之前结束的订单分批归档，直到没有剩余或达到每轮的批数上限，剩余的留给下一轮
+     *
+     * @param cutoff 最后修改时间早于该时间的已结束订单会被归档
+     * @return 归档的订单数
+     */
+    public synchronized int archive(LocalDateTime cutoff) {
+        int total = 0;
+        for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+            int archived = archiveBatch(Timestamp.valueOf(cutoff));
+            total += archived;
+            if (archived < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 按ID查询归档的订单，包含明细
+     */
+    public Optional<Order> find(Long orderId) {
+        List<byte[]> payloads = jdbcTemplate.query("SELECT payload FROM tb_order_archive WHERE id = ?",
+                (rs, rowNum) -> rs.getBytes(1), orderId);
+        if (payloads.isEmpty()) {
+            return Optional.empty();
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(payloads.get(0)))) {
+            return Optional.of(objectMapper.readValue(in, Order.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted archived order: " + orderId, e);
+        }
+    }
+
+    /**
+     * 按ID查询归档订单的状态，只读取状态列
+     */
+    public Optional<OrderStatus> findStatus(Long orderId) {
+        List<Integer> statuses = jdbcTemplate.query("SELECT status FROM tb_order_archive WHERE id = ?",
+                (rs, rowNum) -> rs.getInt(1), orderId);
+        return statuses.isEmpty() ? Optional.empty() : Optional.of(OrderStatus.values()[statuses.get(0)]);
+    }
+
+    private int archiveBatch(Timestamp cutoff) {
+        Integer archived = transactionTemplate.execute(status -> {
+            Map<Long, Order> orders = new LinkedHashMap<>();
+            jdbcTemplate.query(SELECT_SQL, rs -> {
+                Order order = toOrder(rs);
+                orders.put(order.getId(), order);
+            }, OrderStatus.CANCELLED.ordinal(), OrderStatus.COMPLETED.ordinal(), cutoff, batchSize);
+            if (orders.isEmpty()) {
+                return 0;
+            }
+            loadLines(orders);
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            List<Object[]> inserts = new ArrayList<>(orders.size());
+            List<Object[]> deletes = new ArrayList<>(orders.size());
+            for (Order order : orders.values()) {
+                inserts.add(new Object[]{order.getId(), order.getCustomerId(), order.getStatus().ordinal(), order.getTotalAmount(),
+                        Timestamp.valueOf(order.getCreateTime()), now, compress(order)});
+                deletes.add(new Object[]{order.getId()});
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+            jdbcTemplate.batchUpdate(DELETE_LINES_SQL, deletes);
+            jdbcTemplate.batchUpdate(DELETE_ORDER_SQL, deletes);
+            return orders.size();
+        });
+        return archived == null ? 0 : archived;
+    }
+
+    // 一次查询读取本批所有订单的明细
+    private void loadLines(Map<Long, Order> orders) {
+        String sql = "SELECT id, order_id, sku_id, quantity, price FROM tb_order_line WHERE order_id IN ("
+                + String.join(",", Collections.nCopies(orders.size(), "?")) + ") ORDER BY order_id, sku_id";
+        jdbcTemplate.query(sql, rs -> {
+            OrderLine line = new OrderLine(rs.getLong("sku_id"), rs.getInt("quantity"), rs.getBigDecimal("price"));
+            line.setId(rs.getLong("id"));
+            orders.get(rs.getLong("order_id")).addLine(line);
+        }, orders.keySet().toArray());
+    }
+
+    private static Order toOrder(ResultSet rs) throws SQLException {
+        Order order = new Order();
+        order.setId(rs.getLong("id"));
+        order.setCustomerId(rs.getString("customer_id"));
+        order.setStatus(OrderStatus.values()[rs.getInt("status")]);
+        long skuId = rs.getLong("sku_id");
+        order.setSkuId(rs.wasNull() ? null : skuId);
+        order.setPrice(rs.getBigDecimal("price"));
+        order.setTotalAmount(rs.getBigDecimal("total_amount"));
+        order.setCreateTime(rs.getTimestamp("create_time").toLocalDateTime());
+        order.setModifyTime(rs.getTimestamp("modify_time").toLocalDateTime());
+        return order;
+    }
+
+    private byte[] compress(Order order) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(out, order);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compress order " + order.getId(), e);
+        }
+        return bytes.toByteArray();
+    }
+}
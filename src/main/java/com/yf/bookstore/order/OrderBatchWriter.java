@@ -0,0 +1,82 @@
+package com.yf.bookstore.order;
+
+import com.yf.bookstore.common.IdGenerator;
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLine;
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 用JDBC批量写入订单和订单明细
+ * 主键由 {@link IdGenerator} 在写入前分配，一批订单在一个事务中用JDBC批次写入tb_order、tb_order_line和发件箱，
+ * 而不是每个订单各自提交
+ */
+@Component
+public class OrderBatchWriter {
+
+    private static final String INSERT_ORDER_SQL = "INSERT INTO tb_order (id, customer_id, status, sku_id, price, total_amount, create_time, modify_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_LINE_SQL = "INSERT INTO tb_order_line (id, order_id, sku_id, quantity, price) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final IdGenerator idGenerator;
+    private final OutboxPublisher outboxPublisher;
+
+    public OrderBatchWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, IdGenerator idGenerator,
+                            OutboxPublisher outboxPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.idGenerator = idGenerator;
+        this.outboxPublisher = outboxPublisher;
+    }
+
+    /**
+     * 为尚未分配主键的订单和明细分配主键
+     */
+    public void assignIds(Order order) {
+        if (order.getId() == null) {
+            order.setId(idGenerator.nextId());
+        }
+        for (OrderLine line : order.getLines()) {
+            if (line.getId() == null) {
+                line.setId(idGenerator.nextId());
+            }
+        }
+    }
+
+    /**
+     * 写入一批订单，尚未分配主键的订单和明细先分配主键
+     *
+     * @param orders 尚未持久化的订单
+     */
+    public void insert(List<Order> orders) {
+        List<Object[]> orderRows = new ArrayList<>(orders.size());
+        List<Object[]> lineRows = new ArrayList<>();
+        List<OutboxEvent> events = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            assignIds(order);
+            orderRows.add(new Object[]{order.getId(), order.getCustomerId(), order.getStatus().ordinal(), order.getSkuId(),
+                    order.getPrice(), order.getTotalAmount(), Timestamp.valueOf(order.getCreateTime()),
+                    Timestamp.valueOf(order.getModifyTime())});
+            for (OrderLine line : order.getLines()) {
+                lineRows.add(new Object[]{line.getId(), order.getId(), line.getSkuId(), line.getQuantity(), line.getPrice()});
+            }
+            events.add(OrderEvents.of(outboxPublisher, order, OutboxEvent.ORDER_CREATED));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_ORDER_SQL, orderRows);
+            if (!lineRows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_LINE_SQL, lineRows);
+            }
+            outboxPublisher.publishAll(events);
+        });
+    }
+}
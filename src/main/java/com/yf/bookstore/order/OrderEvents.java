@@ -0,0 +1,65 @@
+package com.yf.bookstore.order;
+
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLine;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import com.yf.bookstore.outbox.OutboxPublisher;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 订单事件的内容：订单ID、顾客、状态、总金额和明细；批量变更状态的事件只包含状态变化
+ */
+public final class OrderEvents {
+
+    private OrderEvents() {
+    }
+
+    public static OutboxEvent of(OutboxPublisher publisher, Order order, String eventType) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("orderId", order.getId());
+        payload.put("customerId", order.getCustomerId());
+        payload.put("status", order.getStatus());
+        payload.put("totalAmount", order.getTotalAmount());
+        List<Map<String, Object>> lines = new ArrayList<>(order.getLines().size());
+        for (OrderLine line : order.getLines()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("skuId", line.getSkuId());
+            item.put("quantity", line.getQuantity());
+            item.put("price", line.getPrice());
+            lines.add(item);
+        }
+        payload.put("lines", lines);
+        return publisher.event(OutboxEvent.AGGREGATE_ORDER, order.getId(), eventType, payload);
+    }
+
+    /**
+     * 订单状态变更事件，事件类型由目标状态决定
+     */
+    public static OutboxEvent statusChanged(OutboxPublisher publisher, Long orderId, String customerId,
+                                            OrderStatus from, OrderStatus to) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("orderId", orderId);
+        payload.put("customerId", customerId);
+        payload.put("previousStatus", from);
+        payload.put("status", to);
+        return publisher.event(OutboxEvent.AGGREGATE_ORDER, orderId, eventType(to), payload);
+    }
+
+    private static String eventType(OrderStatus status) {
+        switch (status) {
+            case PROCESSING:
+                return OutboxEvent.ORDER_PROCESSING;
+            case COMPLETED:
+                return OutboxEvent.ORDER_COMPLETED;
+            case CANCELLED:
+                return OutboxEvent.ORDER_CANCELLED;
+            default:
+                return OutboxEvent.ORDER_CREATED;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.yf.bookstore.order;
+
+import com.yf.bookstore.common.HierarchicalTimingWheel;
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLine;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.service.StockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 未支付订单的自动过期
+ * 每个新订单按 创建时间 + 超时时间 登记到分层时间轮，到期时成批取消仍处于已创建状态的订单，
+ * 这一批订单的库存按SKU合并后一次性归还，某一批失败时只重新登记这一批，稍后重试；启动时按 (status, create_time) 索引分页重建时间轮，
+ * 另外低频查询一次已超时的订单，兜底其他节点登记后宕机遗留的订单
+ */
+@Component
+public class OrderExpiryScheduler implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderExpiryScheduler.class);
+
+    private static final String LOAD_SQL = "SELECT id, create_time FROM tb_order WHERE status = ? "
+            + "ORDER BY create_time, id LIMIT ?";
+    private static final String LOAD_AFTER_SQL = "SELECT id, create_time FROM tb_order WHERE status = ? "
+            + "AND (create_time > ? OR (create_time = ? AND id > ?)) ORDER BY create_time, id LIMIT ?";
+    private static final String OVERDUE_SQL = "SELECT id FROM tb_order WHERE status = ? AND create_time < ? "
+            + "ORDER BY create_time LIMIT ?";
+    // 只取消仍处于已创建状态的订单，已被取消、处理或其他节点先一步过期的订单不受影响
+    private static final String CANCEL_SQL = "UPDATE tb_order SET status = ?, modify_time = ? WHERE id = ? AND status = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StockService stockService;
+    private final OutboxPublisher outboxPublisher;
+    private final OrderStatusCache statusCache;
+    private final boolean enabled;
+    private final long timeoutMillis;
+    private final int batchSize;
+    private final long scanIntervalMillis;
+    private final long retryDelayMillis;
+    private final HierarchicalTimingWheel<Long> wheel;
+    private long lastScanTime;
+
+    public OrderExpiryScheduler(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                StockService stockService, OutboxPublisher outboxPublisher, OrderStatusCache statusCache,
+                                @Value("${order.expiry.enabled:true}") boolean enabled,
+                                @Value("${order.expiry.timeout-minutes:30}") long timeoutMinutes,
+                                @Value("${order.expiry.tick-ms:1000}") long tickMillis,
+                                @Value("${order.expiry.wheel-size:64}") int wheelSize,
+                                @Value("${order.expiry.batch-size:500}") int batchSize,
+                                @Value("${order.expiry.scan-interval-ms:300000}") long scanIntervalMillis,
+                                @Value("${order.expiry.retry-delay-ms:5000}") long retryDelayMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.stockService = stockService;
+        this.outboxPublisher = outboxPublisher;
+        this.statusCache = statusCache;
+        this.enabled = enabled;
+        this.timeoutMillis = TimeUnit.MINUTES.toMillis(timeoutMinutes);
+        this.batchSize = Math.max(1, Math.min(batchSize, 1000));
+        this.scanIntervalMillis = scanIntervalMillis;
+        this.retryDelayMillis = retryDelayMillis;
+        this.wheel = new HierarchicalTimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        this.lastScanTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 启动时按创建时间分页加载所有已创建状态的订单，重新登记到时间轮
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long loaded = 0;
+        try {
+            List<Object[]> page = jdbcTemplate.query(LOAD_SQL, (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getTimestamp(2)},
+                    OrderStatus.CREATED.ordinal(), batchSize);
+            while (!page.isEmpty()) {
+                for (Object[] row : page) {
+                    schedule((Long) row[0], ((Timestamp) row[1]).toLocalDateTime());
+                }
+                loaded += page.size();
+                if (page.size() < batchSize) {
+                    break;
+                }
+                Object[] last = page.get(page.size() - 1);
+                page = jdbcTemplate.query(LOAD_AFTER_SQL, (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getTimestamp(2)},
+                        OrderStatus.CREATED.ordinal(), last[1], last[1], last[0], batchSize);
+            }
+            logger.info("Scheduled expiry for {} unpaid order(s)", loaded);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to load unpaid orders after {} order(s), relying on overdue scan: {}", loaded, e.getMessage());
+        }
+    }
+
+    /**
+     * 登记新订单的过期时间
+     *
+     * @param orderId    订单ID
+     * @param createTime 下单时间
+     */
+    public void schedule(Long orderId, LocalDateTime createTime) {
+        if (enabled) {
+            wheel.schedule(orderId, createTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() + timeoutMillis);
+        }
+    }
+
+    /**
+     * 推进时间轮，成批取消到期的订单；定期查询一次已超时的订单作为兜底
+     * 每批单独处理，一批失败不影响后面的批次，失败的这批订单重新登记到时间轮
+     */
+    @Scheduled(fixedDelayString = "${order.expiry.tick-ms:1000}")
+    public synchronized void tick() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        LinkedHashSet<Long> due = new LinkedHashSet<>(wheel.advance(now));
+        if (now - lastScanTime >= scanIntervalMillis) {
+            lastScanTime = now;
+            try {
+                due.addAll(jdbcTemplate.queryForList(OVERDUE_SQL, Long.class, OrderStatus.CREATED.ordinal(),
+                        new Timestamp(now - timeoutMillis), batchSize));
+            } catch (RuntimeException e) {
+                logger.warn("Failed to scan overdue orders: {}", e.getMessage());
+            }
+        }
+        List<Long> orderIds = new ArrayList<>(due);
+        for (int from = 0; from < orderIds.size(); from += batchSize) {
+            List<Long> batch = orderIds.subList(from, Math.min(from + batchSize, orderIds.size()));
+            try {
+                expire(batch);
+            } catch (RuntimeException e) {
+                // 这批订单已从时间轮取出，重新登记，否则只能等兜底查询
+                logger.warn("Failed to expire {} unpaid order(s), retrying in {} ms: {}",
+                        batch.size(), retryDelayMillis, e.getMessage());
+                for (Long orderId : batch) {
+                    wheel.schedule(orderId, now + retryDelayMillis);
+                }
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中取消一批订单：条件更新状态，写入取消事件，再把所有明细按SKU合并后一次归还库存
+     *
+     * @param orderIds 到期的订单ID
+     * @return 实际取消的订单数
+     */
+    public int expire(List<Long> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        Integer expired = transactionTemplate.execute(status -> {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            List<Object[]> updates = new ArrayList<>(orderIds.size());
+            for (Long orderId : orderIds) {
+                updates.add(new Object[]{OrderStatus.CANCELLED.ordinal(), now, orderId, OrderStatus.CREATED.ordinal()});
+            }
+            int[] counts = jdbcTemplate.batchUpdate(CANCEL_SQL, updates);
+            List<Long> cancelled = new ArrayList<>(orderIds.size());
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    cancelled.add(orderIds.get(i));
+                }
+            }
+            if (cancelled.isEmpty()) {
+                return 0;
+            }
+            Map<Long, Order> orders = load(cancelled);
+            List<OutboxEvent> events = new ArrayList<>(orders.size());
+            Map<Long, Integer> quantities = new TreeMap<>();
+            for (Order order : orders.values()) {
+                events.add(OrderEvents.of(outboxPublisher, order, OutboxEvent.ORDER_CANCELLED));
+                statusCache.put(order.getId(), OrderStatus.CANCELLED);
+                for (OrderLine line : order.getLines()) {
+                    quantities.merge(line.getSkuId(), line.getQuantity(), Integer::sum);
+                }
+                // 历史上的单商品订单没有明细，按订单表上的SKU归还一件
+                if (order.getLines().isEmpty() && order.getSkuId() != null) {
+                    quantities.merge(order.getSkuId(), 1, Integer::sum);
+                }
+            }
+            outboxPublisher.publishAll(events);
+            stockService.increaseStocks(quantities);
+            return cancelled.size();
+        });
+        return expired == null ? 0 : expired;
+    }
+
+    // 两次查询读取订单和明细
+    private Map<Long, Order> load(List<Long> orderIds) {
+        String placeholders = String.join(",", Collections.nCopies(orderIds.size(), "?"));
+        Map<Long, Order> orders = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT id, customer_id, sku_id, total_amount FROM tb_order WHERE id IN (" + placeholders + ")", rs -> {
+            Order order = new Order();
+            order.setId(rs.getLong("id"));
+            order.setCustomerId(rs.getString("customer_id"));
+            order.setStatus(OrderStatus.CANCELLED);
+            long skuId = rs.getLong("sku_id");
+            order.setSkuId(rs.wasNull() ? null : skuId);
+            order.setTotalAmount(rs.getBigDecimal("total_amount"));
+            orders.put(order.getId(), order);
+        }, orderIds.toArray());
+        jdbcTemplate.query("SELECT order_id, sku_id, quantity, price FROM tb_order_line WHERE order_id IN (" + placeholders + ") "
+                + "ORDER BY order_id, sku_id", rs -> {
+            orders.get(rs.getLong("order_id")).addLine(
+                    new OrderLine(rs.getLong("sku_id"), rs.getInt("quantity"), rs.getBigDecimal("price")));
+        }, orderIds.toArray());
+        return orders;
+    }
+}
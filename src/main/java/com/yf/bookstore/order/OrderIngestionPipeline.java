@@ -0,0 +1,242 @@
+package com.yf.bookstore.order;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yf.bookstore.common.RingBuffer;
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.order.OrderTicket;
+import com.yf.bookstore.service.StockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步下单管道
+ * 库存预占成功后为订单分配ID，放入有界环形队列并立即返回凭证，后台消费线程批量取出订单用JDBC批量写入tb_order，
+ * 下单延迟因此不再包含数据库提交；队列满时拒绝新订单，由调用方转换为HTTP 429
+ * 写入失败的订单归还预占的库存，凭证标记为失败
+ * 停止时先拒绝新订单，再等待消费线程写完队列中的订单；阶段低于Web服务器，服务器停止接收请求之后才开始排空队列
+ * 通过 order.ingest.mode=async 启用
+ */
+@Component
+public class OrderIngestionPipeline implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderIngestionPipeline.class);
+
+    // 队列为空时消费线程的休眠时间
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // 阶段越低越早启动、越晚停止，Web服务器的阶段为 Integer.MAX_VALUE 和 Integer.MAX_VALUE - 1
+    private static final int PHASE = Integer.MAX_VALUE - 2048;
+
+    private final OrderBatchWriter batchWriter;
+    private final StockService stockService;
+    private final OrderStatusCache statusCache;
+    private final OrderExpiryScheduler expiryScheduler;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int consumers;
+    private final RingBuffer<PendingOrder> buffer;
+    private final Cache<String, OrderTicket> tickets;
+    private final List<Thread> threads = new ArrayList<>();
+    // 正在执行publish的线程数，停止时等待它们入队或放弃后再写剩余订单
+    private final AtomicInteger publishing = new AtomicInteger();
+
+    private volatile boolean running;
+
+    public OrderIngestionPipeline(OrderBatchWriter batchWriter, StockService stockService, OrderStatusCache statusCache,
+                                  OrderExpiryScheduler expiryScheduler,
+                                  @Value("#{'${order.ingest.mode:sync}' == 'async'}") boolean enabled,
+                                  @Value("${order.ingest.buffer-size:8192}") int bufferSize,
+                                  @Value("${order.ingest.batch-size:500}") int batchSize,
+                                  @Value("${order.ingest.consumers:2}") int consumers,
+                                  @Value("${order.ingest.ticket-ttl-seconds:600}") long ticketTtlSeconds) {
+        this.batchWriter = batchWriter;
+        this.stockService = stockService;
+        this.statusCache = statusCache;
+        this.expiryScheduler = expiryScheduler;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.consumers = Math.max(1, consumers);
+        this.buffer = new RingBuffer<>(enabled ? bufferSize : 2);
+        this.tickets = Caffeine.newBuilder()
+                .expireAfterWrite(ticketTtlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 是否启用异步下单
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 是否在接收订单且队列还有空位，调用方在预占库存之前检查，避免预占后才发现无法入队
+     */
+    public boolean hasCapacity() {
+        return running && buffer.size() < buffer.capacity();
+    }
+
+    /**
+     * 提交一个库存已预占的订单，订单ID在入队前分配，调用方无需等待写入即可得到订单ID
+     *
+     * @param order      尚未持久化的订单
+     * @param quantities 已预占的各SKU数量，写入失败时归还
+     * @return 订单凭证；队列已满或管道已停止时返回null，由调用方归还库存
+     */
+    public OrderTicket publish(Order order, Map<Long, Integer> quantities) {
+        publishing.incrementAndGet();
+        try {
+            // 先登记再检查，stop看到登记数为0之后的publish一定能看到running为false
+            if (!running) {
+                return null;
+            }
+            String ticket = UUID.randomUUID().toString();
+            batchWriter.assignIds(order);
+            OrderTicket pending = OrderTicket.pending(ticket, order.getId());
+            tickets.put(ticket, pending);
+            if (!buffer.offer(new PendingOrder(ticket, order, quantities))) {
+                tickets.invalidate(ticket);
+                return null;
+            }
+            return pending;
+        } finally {
+            publishing.decrementAndGet();
+        }
+    }
+
+    /**
+     * 查询凭证状态
+     *
+     * @return 凭证，不存在或已过期时返回null
+     */
+    public OrderTicket getTicket(String ticket) {
+        return tickets.getIfPresent(ticket);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < consumers; i++) {
+            Thread thread = new Thread(this::consume, "order-ingest-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * 停止接收后等待消费线程把队列中剩余的订单写完；
+     * 消费线程退出时仍在入队的订单由当前线程等它们入队后写入
+     */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        threads.clear();
+        while (publishing.get() > 0) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void consume() {
+        List<PendingOrder> batch = new ArrayList<>(batchSize);
+        while (running || buffer.size() > 0) {
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<PendingOrder> batch) {
+        try {
+            insert(batch);
+            return;
+        } catch (RuntimeException e) {
+            logger.warn("Batched insert of {} order(s) failed, retrying one by one: {}", batch.size(), e.getMessage());
+        }
+        // 整批失败时逐个重试，只让真正有问题的订单失败
+        for (PendingOrder pending : batch) {
+            try {
+                insert(Collections.singletonList(pending));
+            } catch (RuntimeException e) {
+                fail(pending, e);
+            }
+        }
+    }
+
+    private void insert(List<PendingOrder> batch) {
+        List<Order> orders = new ArrayList<>(batch.size());
+        for (PendingOrder pending : batch) {
+            orders.add(pending.order);
+        }
+        batchWriter.insert(orders);
+        for (PendingOrder pending : batch) {
+            tickets.put(pending.ticket, OrderTicket.created(pending.ticket, pending.order.getId()));
+            statusCache.put(pending.order.getId(), OrderStatus.CREATED);
+            expiryScheduler.schedule(pending.order.getId(), pending.order.getCreateTime());
+        }
+    }
+
+    private void fail(PendingOrder pending, RuntimeException cause) {
+        logger.error("Failed to persist order for ticket {}: {}", pending.ticket, cause.getMessage(), cause);
+        try {
+            stockService.increaseStocks(pending.quantities);
+        } catch (RuntimeException e) {
+            logger.error("Failed to release stock for ticket {}: {}", pending.ticket, e.getMessage(), e);
+        }
+        tickets.put(pending.ticket, OrderTicket.failed(pending.ticket, "Failed to persist order"));
+    }
+
+    private static final class PendingOrder {
+        final String ticket;
+        final Order order;
+        final Map<Long, Integer> quantities;
+
+        PendingOrder(String ticket, Order order, Map<Long, Integer> quantities) {
+            this.ticket = ticket;
+            this.order = order;
+            this.quantities = quantities;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.yf.bookstore.order;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yf.bookstore.model.order.OrderStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 订单ID到订单状态的有界本地缓存
+ * 下单后客户端会频繁轮询订单状态，命中时不再查询数据库；未命中时只查询状态列，不加载整个订单实体
+ * 本节点上的状态变更在事务提交后写入缓存；其他节点的变更最迟在过期时间后可见
+ */
+@Component
+public class OrderStatusCache {
+
+    private final Cache<Long, OrderStatus> cache;
+
+    public OrderStatusCache(@Value("${order.status-cache.max-size:100000}") long maxSize,
+                            @Value("${order.status-cache.ttl-seconds:30}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * 查询订单状态，未命中时用loader加载
+     *
+     * @param orderId 订单ID
+     * @param loader  从数据库加载状态，订单不存在时返回null
+     * @return 订单状态，订单不存在时返回null（不缓存）
+     */
+    public OrderStatus get(Long orderId, Function<Long, OrderStatus> loader) {
+        return cache.get(orderId, loader);
+    }
+
+    /**
+     * 记录订单的新状态
+     * 在事务中调用时等到提交后才写入，回滚的变更不会进入缓存
+     */
+    public void put(Long orderId, OrderStatus status) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.put(orderId, status);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.put(orderId, status);
+            }
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package com.yf.bookstore.order;
+
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.order.OrderTransitionOutcome;
+import com.yf.bookstore.model.order.OrderTransitionResult;
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量变更订单状态
+ * 在一个事务中锁定并读取这批订单的当前状态，逐个校验能否变更为目标状态，
+ * 再按原状态分组，每组一条 UPDATE ... WHERE id IN (...) AND status = ? 完成变更，最后批量写入状态变更事件；
+ * 一批订单只需要常数条语句，不再逐个加载和保存订单实体
+ * 单个订单的取消也通过这里的条件更新完成，与批量变更、自动过期互斥，同一订单只有一方能改变状态
+ */
+@Component
+public class OrderTransitions {
+
+    private static final String SELECT_SQL = "SELECT id, customer_id, status FROM tb_order WHERE id IN (%s) FOR UPDATE";
+    private static final String UPDATE_SQL = "UPDATE tb_order SET status = ?, modify_time = ? WHERE status = ? AND id IN (%s)";
+    private static final String UPDATE_ONE_SQL = "UPDATE tb_order SET status = ?, modify_time = ? WHERE id = ? AND status = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxPublisher outboxPublisher;
+    private final OrderStatusCache statusCache;
+
+    public OrderTransitions(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                            OutboxPublisher outboxPublisher, OrderStatusCache statusCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.outboxPublisher = outboxPublisher;
+        this.statusCache = statusCache;
+    }
+
+    /**
+     * 把一批订单变更为目标状态，不允许的变更不影响其他订单
+     *
+     * @param orderIds 订单ID，重复的ID只处理一次
+     * @param target   目标状态
+     * @return 每个订单的结果，顺序与去重后的订单ID一致
+     */
+    public List<OrderTransitionResult> apply(List<Long> orderIds, OrderStatus target) {
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(orderIds));
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return transactionTemplate.execute(status -> {
+            Map<Long, String> customers = new HashMap<>();
+            Map<Long, OrderStatus> current = new HashMap<>();
+            jdbcTemplate.query(String.format(SELECT_SQL, placeholders(ids.size())), rs -> {
+                long id = rs.getLong("id");
+                customers.put(id, rs.getString("customer_id"));
+                current.put(id, OrderStatus.values()[rs.getInt("status")]);
+            }, ids.toArray());
+
+            List<OrderTransitionResult> results = new ArrayList<>(ids.size());
+            Map<OrderStatus, List<Long>> bySource = new EnumMap<>(OrderStatus.class);
+            for (Long id : ids) {
+                OrderStatus from = current.get(id);
+                OrderTransitionOutcome outcome;
+                if (from == null) {
+                    outcome = OrderTransitionOutcome.NOT_FOUND;
+                } else if (from == target) {
+                    outcome = OrderTransitionOutcome.UNCHANGED;
+                } else if (from.canTransitionTo(target)) {
+                    outcome = OrderTransitionOutcome.APPLIED;
+                    bySource.computeIfAbsent(from, s -> new ArrayList<>()).add(id);
+                } else {
+                    outcome = OrderTransitionOutcome.REJECTED;
+                }
+                results.add(new OrderTransitionResult(id, outcome, from));
+            }
+            if (bySource.isEmpty()) {
+                return results;
+            }
+
+            // 订单已被锁定，每组的更新行数与校验结果一致
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            List<OutboxEvent> events = new ArrayList<>();
+            for (Map.Entry<OrderStatus, List<Long>> group : bySource.entrySet()) {
+                List<Long> groupIds = group.getValue();
+                List<Object> args = new ArrayList<>(groupIds.size() + 3);
+                args.add(target.ordinal());
+                args.add(now);
+                args.add(group.getKey().ordinal());
+                args.addAll(groupIds);
+                jdbcTemplate.update(String.format(UPDATE_SQL, placeholders(groupIds.size())), args.toArray());
+                for (Long id : groupIds) {
+                    events.add(OrderEvents.statusChanged(outboxPublisher, id, customers.get(id), group.getKey(), target));
+                    statusCache.put(id, target);
+                }
+            }
+            outboxPublisher.publishAll(events);
+            return results;
+        });
+    }
+
+    /**
+     * 在调用方的事务中变更单个订单的状态，只有当前状态仍为from时才生效
+     * 调用方读到的状态可能已经过期，必须以本方法的结果为准决定是否归还库存、写入事件
+     *
+     * @param orderId 订单ID
+     * @param from    调用方读到的状态
+     * @param to      目标状态
+     * @param time    修改时间
+     * @return 是否由本次调用完成了变更
+     */
+    public boolean compareAndSet(Long orderId, OrderStatus from, OrderStatus to, LocalDateTime time) {
+        return jdbcTemplate.update(UPDATE_ONE_SQL, to.ordinal(), Timestamp.valueOf(time), orderId, from.ordinal()) == 1;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,27 @@
+package com.yf.bookstore.outbox;
+
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 投递到进程内的Spring事件总线，订阅方用 {@code @EventListener} 接收 {@link OutboxEvent}
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.sink", havingValue = "local", matchIfMissing = true)
+public class ApplicationEventOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ApplicationEventOutboxSink(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void deliver(List<OutboxEvent> events) {
+        events.forEach(eventPublisher::publishEvent);
+    }
+}
@@ -0,0 +1,72 @@
+package com.yf.bookstore.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.common.IdGenerator;
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 把事件写入发件箱
+ * 必须在产生事件的业务事务中调用，事件与业务修改一起提交或一起回滚，之后由 {@link OutboxRelay} 异步投递
+ */
+@Component
+public class OutboxPublisher {
+
+    private static final String INSERT_SQL = "INSERT INTO tb_outbox (id, aggregate_type, aggregate_id, event_type, payload, create_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final IdGenerator idGenerator;
+
+    public OutboxPublisher(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper, IdGenerator idGenerator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * 创建一条事件，内容序列化为JSON
+     */
+    public OutboxEvent event(String aggregateType, Object aggregateId, String eventType, Object payload) {
+        try {
+            return new OutboxEvent(aggregateType, String.valueOf(aggregateId), eventType, objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize " + eventType + " event", e);
+        }
+    }
+
+    /**
+     * 在当前事务中写入一条事件
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(OutboxEvent event) {
+        publishAll(Collections.singletonList(event));
+    }
+
+    /**
+     * 在当前事务中用一个JDBC批次写入多条事件
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publishAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            rows.add(new Object[]{idGenerator.nextId(), event.getAggregateType(), event.getAggregateId(),
+                    event.getEventType(), event.getPayload(), now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+}
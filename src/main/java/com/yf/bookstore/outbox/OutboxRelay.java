@@ -0,0 +1,113 @@
+package com.yf.bookstore.outbox;
+
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发件箱中继
+ * 定期按ID顺序锁定一批未投递的事件，投递给 {@link OutboxSink} 后在同一事务中标记为已投递；
+ * 投递失败时事务回滚，事件保持未投递状态，下一轮重试。已投递的事件保留一段时间后清理
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final String SELECT_SQL = "SELECT id, aggregate_type, aggregate_id, event_type, payload, create_time FROM tb_outbox "
+            + "WHERE delivered_time IS NULL ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String MARK_SQL = "UPDATE tb_outbox SET delivered_time = ? WHERE id = ?";
+    private static final String PRUNE_SQL = "DELETE FROM tb_outbox WHERE delivered_time < ?";
+
+    // 每轮最多连续投递的批数，积压时尽快追上又不长期占用调度线程
+    private static final int MAX_BATCHES_PER_RUN = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxSink sink;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long retentionMillis;
+    private volatile long lastPruneTime;
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, OutboxSink sink,
+                       @Value("${outbox.relay.enabled:true}") boolean enabled,
+                       @Value("${outbox.relay.batch-size:200}") int batchSize,
+                       @Value("${outbox.retention-hours:24}") long retentionHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sink = sink;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:500}")
+    public synchronized void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+                if (relayBatch() < batchSize) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to relay outbox events: {}", e.getMessage(), e);
+        }
+        prune();
+    }
+
+    /**
+     * 投递一批事件
+     *
+     * @return 本批投递的事件数
+     */
+    private int relayBatch() {
+        Integer delivered = transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> {
+                OutboxEvent event = new OutboxEvent(rs.getString("aggregate_type"), rs.getString("aggregate_id"),
+                        rs.getString("event_type"), rs.getString("payload"));
+                event.setId(rs.getLong("id"));
+                event.setCreateTime(rs.getTimestamp("create_time"));
+                return event;
+            }, batchSize);
+            if (events.isEmpty()) {
+                return 0;
+            }
+            sink.deliver(events);
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            List<Object[]> marks = new ArrayList<>(events.size());
+            for (OutboxEvent event : events) {
+                marks.add(new Object[]{now, event.getId()});
+            }
+            jdbcTemplate.batchUpdate(MARK_SQL, marks);
+            return events.size();
+        });
+        return delivered == null ? 0 : delivered;
+    }
+
+    private void prune() {
+        long now = System.currentTimeMillis();
+        if (now - lastPruneTime < TimeUnit.HOURS.toMillis(1)) {
+            return;
+        }
+        lastPruneTime = now;
+        try {
+            jdbcTemplate.update(PRUNE_SQL, new Timestamp(now - retentionMillis));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to prune delivered outbox events: {}", e.getMessage());
+        }
+    }
+}
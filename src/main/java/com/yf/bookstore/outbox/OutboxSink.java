@@ -0,0 +1,17 @@
+package com.yf.bookstore.outbox;
+
+import com.yf.bookstore.model.outbox.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * 发件箱事件的投递目标
+ * 投递至少一次：投递成功但标记失败时同一事件会再次投递，订阅方应按事件ID去重
+ */
+public interface OutboxSink {
+
+    /**
+     * 按ID顺序投递一批事件，抛出异常时整批稍后重试
+     */
+    void deliver(List<OutboxEvent> events);
+}
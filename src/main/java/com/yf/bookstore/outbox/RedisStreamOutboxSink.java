@@ -0,0 +1,68 @@
+package com.yf.bookstore.outbox;
+
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 投递到Redis Stream，每种聚合一个流 outbox:{aggregateType}，订阅方用消费组读取
+ * 一批事件通过一次管道写入，写入后按上限裁剪流的长度
+ */
+@Component
+@ConditionalOnProperty(name = "outbox.sink", havingValue = "redis")
+public class RedisStreamOutboxSink implements OutboxSink {
+
+    private static final String STREAM_PREFIX = "outbox:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final long maxLength;
+
+    public RedisStreamOutboxSink(StringRedisTemplate redisTemplate,
+                                 @Value("${outbox.redis.max-length:100000}") long maxLength) {
+        this.redisTemplate = redisTemplate;
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public void deliver(List<OutboxEvent> events) {
+        Set<String> streams = new LinkedHashSet<>();
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                for (OutboxEvent event : events) {
+                    String stream = STREAM_PREFIX + event.getAggregateType();
+                    streams.add(stream);
+                    operations.opsForStream().add(StreamRecords.string(fields(event)).withStreamKey(stream));
+                }
+                for (String stream : streams) {
+                    operations.opsForStream().trim(stream, maxLength);
+                }
+                return null;
+            }
+        });
+    }
+
+    private static Map<String, String> fields(OutboxEvent event) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("id", String.valueOf(event.getId()));
+        fields.put("aggregateType", event.getAggregateType());
+        fields.put("aggregateId", event.getAggregateId());
+        fields.put("eventType", event.getEventType());
+        fields.put("payload", event.getPayload());
+        fields.put("createTime", String.valueOf(event.getCreateTime().getTime()));
+        return fields;
+    }
+}
@@ -1,7 +1,47 @@
 package com.yf.bookstore.repository;
 
 import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.order.OrderSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    /**
+     * 查询订单并一次性加载订单明细
+     */
+    @EntityGraph(attributePaths = "lines")
+    Optional<Order> findWithLinesById(Long id);
+
+    /**
+     * 只查询订单状态列，不加载订单实体
+     */
+    @Query("SELECT o.status FROM Order o WHERE o.id = :id")
+    Optional<OrderStatus> findStatusById(@Param("id") Long id);
+
+    /**
+     * 顾客最新的订单，按 (create_time, id) 倒序，只读取索引 idx_order_customer 覆盖的列
+     */
+    @Query("SELECT new com.yf.bookstore.model.order.OrderSummary(o.id, o.status, o.totalAmount, o.createTime) "
+            + "FROM Order o WHERE o.customerId = :customerId ORDER BY o.createTime DESC, o.id DESC")
+    List<OrderSummary> findSummaries(@Param("customerId") String customerId, Pageable pageable);
+
+    /**
+     * 从游标位置之后继续读取顾客的订单，条件与排序都落在 (customer_id, create_time, id) 上，
+     * 数据库直接从索引中的该位置开始扫描，不需要跳过前面的行
+     */
+    @Query("SELECT new com.yf.bookstore.model.order.OrderSummary(o.id, o.status, o.totalAmount, o.createTime) "
+            + "FROM Order o WHERE o.customerId = :customerId "
+            + "AND (o.createTime < :createTime OR (o.createTime = :createTime AND o.id < :id)) "
+            + "ORDER BY o.createTime DESC, o.id DESC")
+    List<OrderSummary> findSummariesAfter(@Param("customerId") String customerId, @Param("createTime") LocalDateTime createTime,
+                                          @Param("id") Long id, Pageable pageable);
 }
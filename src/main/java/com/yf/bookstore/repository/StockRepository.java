@@ -2,6 +2,56 @@ package com.yf.bookstore.repository;
 
 import com.yf.bookstore.model.inventory.Stock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface StockRepository extends JpaRepository<Stock, Long> {
+    Optional<Stock> findBySkuId(Long skuId);
+
+    List<Stock> findBySkuIdIn(Collection<Long> skuIds);
+
+    /**
+     * 加锁读取库存（SELECT ... FOR UPDATE）
+     * 加锁读取的是最新提交的版本，而不是可重复读隔离级别下事务开始时的快照
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Stock s WHERE s.skuId = :skuId")
+    Optional<Stock> findForUpdateBySkuId(@Param("skuId") Long skuId);
+
+    /**
+     * 库存充足时原子扣减
+     *
+     * @return 受影响的行数，0表示库存不足或记录不存在
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Stock s SET s.stock = s.stock - :quantity, s.version = s.version + 1, s.modifyTime = CURRENT_TIMESTAMP "
+            + "WHERE s.skuId = :skuId AND s.stock >= :quantity")
+    int decreaseIfSufficient(@Param("skuId") Long skuId, @Param("quantity") int quantity);
+
+    /**
+     * 原子增加库存
+     *
+     * @return 受影响的行数，0表示记录不存在
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Stock s SET s.stock = s.stock + :quantity, s.version = s.version + 1, s.modifyTime = CURRENT_TIMESTAMP "
+            + "WHERE s.skuId = :skuId")
+    int increase(@Param("skuId") Long skuId, @Param("quantity") int quantity);
+
+    /**
+     * 版本号未变化时覆盖库存
+     *
+     * @return 受影响的行数，0表示版本冲突
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Stock s SET s.stock = :stock, s.version = s.version + 1, s.modifyTime = CURRENT_TIMESTAMP "
+            + "WHERE s.skuId = :skuId AND s.version = :version")
+    int compareAndSet(@Param("skuId") Long skuId, @Param("stock") int stock, @Param("version") long version);
 }
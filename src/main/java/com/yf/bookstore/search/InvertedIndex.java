@@ -0,0 +1,397 @@
+package com.yf.bookstore.search;
+
+import com.yf.bookstore.model.commodity.SkuSearchHit;
+import com.yf.bookstore.model.commodity.SkuSearchResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 倒排索引
+ * 每个文档分配递增的int文档号，倒排表是按文档号升序的int数组及对应的词频；
+ * 删除只标记文档号，修改等于删除后以新文档号重新加入，倒排表始终只在尾部追加。
+ * 被删除的文档超过四分之一时压缩，重新编号并去掉倒排表中的失效文档号
+ * 查询语法：空格分隔的词同时匹配，词之间的 OR 表示任一匹配，-词 排除，词* 前缀匹配；结果按TF-IDF排序
+ * 非线程安全，由调用方加锁
+ */
+public class InvertedIndex {
+
+    // 一个前缀最多展开的词数
+    private static final int MAX_PREFIX_EXPANSION = 64;
+    // 触发压缩的最少删除文档数
+    private static final int MIN_COMPACTION = 1024;
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Long, Integer> docs = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long[] skuIds = new long[16];
+    private String[] titles = new String[16];
+    private int docCount;
+    private int deletedCount;
+
+    /**
+     * 加入或替换一个文档
+     *
+     * @param skuId     SKU ID
+     * @param title     返回给调用方的标题
+     * @param termFreqs 词及其加权词频
+     */
+    public void add(long skuId, String title, Map<String, Integer> termFreqs) {
+        remove(skuId);
+        int doc = docCount++;
+        if (doc == skuIds.length) {
+            skuIds = Arrays.copyOf(skuIds, doc * 2);
+            titles = Arrays.copyOf(titles, doc * 2);
+        }
+        skuIds[doc] = skuId;
+        titles[doc] = title;
+        docs.put(skuId, doc);
+        termFreqs.forEach((term, freq) -> terms.computeIfAbsent(term, t -> new Postings()).add(doc, freq));
+    }
+
+    /**
+     * 删除一个文档
+     *
+     * @return 文档是否存在
+     */
+    public boolean remove(long skuId) {
+        Integer doc = docs.remove(skuId);
+        if (doc == null) {
+            return false;
+        }
+        deleted.set(doc);
+        deletedCount++;
+        return true;
+    }
+
+    /**
+     * 有效文档数
+     */
+    public int size() {
+        return docs.size();
+    }
+
+    /**
+     * 词典中的词数
+     */
+    public int termCount() {
+        return terms.size();
+    }
+
+    public boolean needsCompaction() {
+        return deletedCount >= MIN_COMPACTION && deletedCount * 4 > docCount;
+    }
+
+    /**
+     * 去掉已删除的文档，有效文档按原顺序重新编号
+     */
+    public void compact() {
+        if (deletedCount == 0) {
+            return;
+        }
+        int[] remap = new int[docCount];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (deleted.get(doc)) {
+                remap[doc] = -1;
+            } else {
+                skuIds[next] = skuIds[doc];
+                titles[next] = titles[doc];
+                docs.put(skuIds[next], next);
+                remap[doc] = next++;
+            }
+        }
+        Arrays.fill(titles, next, docCount, null);
+        Iterator<Postings> it = terms.values().iterator();
+        while (it.hasNext()) {
+            Postings postings = it.next();
+            postings.remap(remap);
+            if (postings.size == 0) {
+                it.remove();
+            }
+        }
+        docCount = next;
+        deleted.clear();
+        deletedCount = 0;
+    }
+
+    /**
+     * 把另一个索引（如并行构建的分段）的有效文档追加到本索引，分段中的文档号整体平移
+     */
+    public void append(InvertedIndex segment) {
+        segment.compact();
+        for (int doc = 0; doc < segment.docCount; doc++) {
+            remove(segment.skuIds[doc]);
+        }
+        int offset = docCount;
+        int required = offset + segment.docCount;
+        if (required > skuIds.length) {
+            int capacity = Math.max(required, skuIds.length * 2);
+            skuIds = Arrays.copyOf(skuIds, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+        }
+        System.arraycopy(segment.skuIds, 0, skuIds, offset, segment.docCount);
+        System.arraycopy(segment.titles, 0, titles, offset, segment.docCount);
+        for (int doc = 0; doc < segment.docCount; doc++) {
+            docs.put(segment.skuIds[doc], offset + doc);
+        }
+        segment.terms.forEach((term, postings) -> terms.computeIfAbsent(term, t -> new Postings()).append(postings, offset));
+        docCount = required;
+    }
+
+    /**
+     * 执行查询
+     *
+     * @param query 查询语句
+     * @param limit 最多返回的条数
+     * @return 匹配总数和得分最高的前limit条
+     */
+    public SkuSearchResult search(String query, int limit) {
+        List<List<Word>> groups = new ArrayList<>();
+        List<Word> excluded = new ArrayList<>();
+        parse(query, groups, excluded);
+        if (groups.isEmpty()) {
+            return new SkuSearchResult(0, Collections.emptyList());
+        }
+        Set<String> scoringTerms = new LinkedHashSet<>();
+        int[] matched = null;
+        for (List<Word> group : groups) {
+            int[] union = new int[0];
+            for (Word word : group) {
+                union = union(union, match(word, scoringTerms));
+            }
+            matched = matched == null ? union : intersect(matched, union);
+        }
+        for (Word word : excluded) {
+            matched = subtract(matched, match(word, null));
+        }
+
+        int total = 0;
+        PriorityQueue<double[]> top = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+        for (int doc : matched) {
+            if (deleted.get(doc)) {
+                continue;
+            }
+            total++;
+            if (limit <= 0) {
+                continue;
+            }
+            double score = score(doc, scoringTerms);
+            if (top.size() < limit) {
+                top.add(new double[]{score, doc});
+            } else if (score > top.peek()[0]) {
+                top.poll();
+                top.add(new double[]{score, doc});
+            }
+        }
+        List<SkuSearchHit> hits = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            double[] entry = top.poll();
+            int doc = (int) entry[1];
+            hits.add(new SkuSearchHit(skuIds[doc], titles[doc], entry[0]));
+        }
+        Collections.reverse(hits);
+        return new SkuSearchResult(total, hits);
+    }
+
+    private static void parse(String query, List<List<Word>> groups, List<Word> excluded) {
+        if (query == null) {
+            return;
+        }
+        boolean or = false;
+        for (String raw : query.trim().split("\\s+")) {
+            if ("OR".equals(raw)) {
+                or = true;
+                continue;
+            }
+            boolean negate = raw.length() > 1 && raw.charAt(0) == '-';
+            String text = negate ? raw.substring(1) : raw;
+            boolean prefix = text.length() > 1 && text.charAt(text.length() - 1) == '*';
+            List<String> tokens = Tokenizer.tokenize(prefix ? text.substring(0, text.length() - 1) : text);
+            if (!tokens.isEmpty()) {
+                Word word = new Word(tokens, prefix);
+                if (negate) {
+                    excluded.add(word);
+                } else if (or && !groups.isEmpty()) {
+                    groups.get(groups.size() - 1).add(word);
+                } else {
+                    List<Word> group = new ArrayList<>();
+                    group.add(word);
+                    groups.add(group);
+                }
+            }
+            or = false;
+        }
+    }
+
+    // 一个查询词拆出的所有词都要匹配，前缀只作用于最后一个词
+    private int[] match(Word word, Set<String> scoringTerms) {
+        int[] result = null;
+        for (int i = 0; i < word.tokens.size(); i++) {
+            String token = word.tokens.get(i);
+            int[] docs;
+            if (word.prefix && i == word.tokens.size() - 1) {
+                docs = new int[0];
+                int expanded = 0;
+                for (Map.Entry<String, Postings> entry : terms.subMap(token, token + Character.MAX_VALUE).entrySet()) {
+                    if (expanded++ == MAX_PREFIX_EXPANSION) {
+                        break;
+                    }
+                    docs = union(docs, entry.getValue().docs());
+                    if (scoringTerms != null) {
+                        scoringTerms.add(entry.getKey());
+                    }
+                }
+            } else {
+                Postings postings = terms.get(token);
+                docs = postings == null ? new int[0] : postings.docs();
+                if (scoringTerms != null) {
+                    scoringTerms.add(token);
+                }
+            }
+            result = result == null ? docs : intersect(result, docs);
+        }
+        return result;
+    }
+
+    private double score(int doc, Set<String> scoringTerms) {
+        double score = 0;
+        for (String term : scoringTerms) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                continue;
+            }
+            int freq = postings.freq(doc);
+            if (freq > 0) {
+                score += freq * Math.log(1 + (double) docs.size() / postings.size);
+            }
+        }
+        return score;
+    }
+
+    static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    static int[] union(int[] a, int[] b) {
+        if (a.length == 0) {
+            return b;
+        }
+        if (b.length == 0) {
+            return a;
+        }
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || (i < a.length && a[i] < b[j])) {
+                result[n++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    static int[] subtract(int[] a, int[] b) {
+        int[] result = new int[a.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length) {
+            if (j == b.length || a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 查询中的一个词，分词后可能包含多个词
+     */
+    private static final class Word {
+        final List<String> tokens;
+        final boolean prefix;
+
+        Word(List<String> tokens, boolean prefix) {
+            this.tokens = tokens;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * 一个词的倒排表：升序的文档号和对应的词频
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        void append(Postings other, int offset) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.docs[i] + offset, other.freqs[i]);
+            }
+        }
+
+        int[] docs() {
+            return Arrays.copyOf(docs, size);
+        }
+
+        int freq(int doc) {
+            int i = Arrays.binarySearch(docs, 0, size, doc);
+            return i < 0 ? 0 : freqs[i];
+        }
+
+        void remap(int[] remap) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = remap[docs[i]];
+                if (doc >= 0) {
+                    docs[n] = doc;
+                    freqs[n] = freqs[i];
+                    n++;
+                }
+            }
+            size = n;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.yf.bookstore.search;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.model.commodity.Sku;
+import com.yf.bookstore.model.commodity.SkuSearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * SKU搜索索引
+ * 在堆内维护标题和规格参数（own_spec的键和值）的倒排索引，查询不访问数据库；标题中的词权重更高。
+ * 创建、修改、删除SKU时增量更新，未启用的SKU不进入索引；启动时按ID区间把tb_sku分给多个线程并行构建分段，再按顺序合并。
+ * 查询持有读锁，修改持有写锁；重建期间的增量修改会在新索引上重放
+ */
+@Component
+public class SkuSearchIndex implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(SkuSearchIndex.class);
+
+    // 标题中的词相对规格参数的权重
+    private static final int TITLE_WEIGHT = 2;
+
+    private static final String RANGE_SQL = "SELECT MIN(id), MAX(id) FROM tb_sku";
+    private static final String PAGE_SQL = "SELECT id, title, own_spec FROM tb_sku WHERE id > ? AND id <= ? AND enable = ? "
+            + "ORDER BY id LIMIT ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int threads;
+    private final int pageSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private InvertedIndex index = new InvertedIndex();
+    // 重建期间的增量修改，为空表示没有在重建
+    private List<Consumer<InvertedIndex>> pending;
+
+    public SkuSearchIndex(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+                          @Value("${sku.search.enabled:true}") boolean enabled,
+                          @Value("${sku.search.rebuild-threads:4}") int threads,
+                          @Value("${sku.search.page-size:1000}") int pageSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.threads = Math.max(1, threads);
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 加入或更新一个SKU，未启用的SKU从索引中删除
+     */
+    public void index(Sku sku) {
+        if (!enabled || sku.getId() == null) {
+            return;
+        }
+        if (!sku.isEnable()) {
+            remove(sku.getId());
+            return;
+        }
+        Map<String, Integer> termFreqs = termFreqs(sku.getTitle(), sku.getOwnSpec());
+        long skuId = sku.getId();
+        String title = sku.getTitle();
+        write(index -> index.add(skuId, title, termFreqs));
+    }
+
+    /**
+     * 从索引中删除一个SKU
+     */
+    public void remove(Long skuId) {
+        if (enabled && skuId != null) {
+            write(index -> index.remove(skuId));
+        }
+    }
+
+    /**
+     * 搜索SKU
+     *
+     * @param query 查询语句，语法见 {@link InvertedIndex}
+     * @param limit 最多返回的条数
+     * @return 匹配总数和得分最高的SKU
+     */
+    public SkuSearchResult search(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            return index.search(query, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引中的SKU数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 从tb_sku重建索引，按ID区间并行构建分段后合并，完成后替换当前索引
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        InvertedIndex rebuilt = null;
+        try {
+            rebuilt = buildSegments();
+        } catch (RuntimeException e) {
+            logger.error("Failed to rebuild SKU search index: {}", e.getMessage(), e);
+        }
+        lock.writeLock().lock();
+        try {
+            if (rebuilt != null) {
+                for (Consumer<InvertedIndex> op : pending) {
+                    op.accept(rebuilt);
+                }
+                index = rebuilt;
+                logger.info("Indexed {} SKU(s), {} term(s) in {} ms", rebuilt.size(), rebuilt.termCount(),
+                        System.currentTimeMillis() - start);
+            }
+            pending = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private InvertedIndex buildSegments() {
+        InvertedIndex merged = new InvertedIndex();
+        long[] bounds = jdbcTemplate.queryForObject(RANGE_SQL,
+                (rs, rowNum) -> rs.getObject(1) == null ? null : new long[]{rs.getLong(1), rs.getLong(2)});
+        if (bounds == null) {
+            return merged;
+        }
+        long lower = bounds[0] - 1;
+        long max = bounds[1];
+        long span = Math.max(1, (max - lower) / threads + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sku-search-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<InvertedIndex>> segments = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                long from = lower + span * i;
+                long to = i == threads - 1 ? max : Math.min(max, from + span);
+                segments.add(executor.submit(() -> buildSegment(from, to)));
+            }
+            for (Future<InvertedIndex> segment : segments) {
+                merged.append(segment.get());
+            }
+            return merged;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding SKU search index", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to build SKU search index segment", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // 按ID键集分页读取 (from, to] 区间内启用的SKU
+    private InvertedIndex buildSegment(long from, long to) {
+        InvertedIndex segment = new InvertedIndex();
+        long after = from;
+        while (after < to) {
+            List<Long> ids = new ArrayList<>(pageSize);
+            jdbcTemplate.query(PAGE_SQL, rs -> {
+                long skuId = rs.getLong("id");
+                String title = rs.getString("title");
+                segment.add(skuId, title, termFreqs(title, rs.getString("own_spec")));
+                ids.add(skuId);
+            }, after, to, true, pageSize);
+            if (ids.size() < pageSize) {
+                break;
+            }
+            after = ids.get(ids.size() - 1);
+        }
+        return segment;
+    }
+
+    private void write(Consumer<InvertedIndex> op) {
+        lock.writeLock().lock();
+        try {
+            op.accept(index);
+            if (pending != null) {
+                pending.add(op);
+            }
+            if (index.needsCompaction()) {
+                index.compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Map<String, Integer> termFreqs(String title, String ownSpec) {
+        Map<String, Integer> termFreqs = new HashMap<>();
+        for (String token : Tokenizer.tokenize(title)) {
+            termFreqs.merge(token, TITLE_WEIGHT, Integer::sum);
+        }
+        if (ownSpec == null || ownSpec.isEmpty()) {
+            return termFreqs;
+        }
+        List<String> specText = new ArrayList<>();
+        try {
+            JsonNode spec = objectMapper.readTree(ownSpec);
+            if (spec.isObject()) {
+                spec.fields().forEachRemaining(field -> {
+                    specText.add(field.getKey());
+                    specText.add(field.getValue().isValueNode() ? field.getValue().asText() : field.getValue().toString());
+                });
+            } else {
+                specText.add(ownSpec);
+            }
+        } catch (IOException e) {
+            // 不是JSON的规格参数按普通文本索引
+            specText.add(ownSpec);
+        }
+        for (String text : specText) {
+            for (String token : Tokenizer.tokenize(text)) {
+                termFreqs.merge(token, 1, Integer::sum);
+            }
+        }
+        return termFreqs;
+    }
+}
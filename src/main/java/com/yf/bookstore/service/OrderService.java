@@ -2,14 +2,31 @@ package com.yf.bookstore.service;
 
 import com.yf.bookstore.model.commodity.Sku;
 import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLineRequest;
+import com.yf.bookstore.model.order.OrderPage;
 import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.order.OrderTicket;
+import com.yf.bookstore.model.order.OrderTransitionResult;
+
+import java.util.List;
 
 public interface OrderService {
 
     Order createOrder(String customerId, Sku sku);
 
+    Order createOrder(String customerId, List<OrderLineRequest> lines);
+
+    OrderTicket submitOrder(String customerId, List<OrderLineRequest> lines);
+
+    OrderTicket getOrderTicket(String ticket);
+
     Order cancelOrder(Long orderId);
 
+    Order getOrder(Long orderId);
+
     OrderStatus getOrderStatus(Long orderId);
-}
 
+    OrderPage listOrders(String customerId, String after, int limit);
+
+    List<OrderTransitionResult> transitionOrders(List<Long> orderIds, OrderStatus targetStatus);
+}
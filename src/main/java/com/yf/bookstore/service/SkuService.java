@@ -2,6 +2,8 @@ package com.yf.bookstore.service;
 
 import com.yf.bookstore.model.commodity.Sku;
 
+import java.util.Collection;
+import java.util.List;
 
 public interface SkuService {
 
@@ -12,4 +14,6 @@ public interface SkuService {
     void deleteSku(Long id);
 
     Sku getSkuById(Long id);
+
+    List<Sku> getSkusByIds(Collection<Long> ids);
 }
@@ -1,12 +1,23 @@
 package com.yf.bookstore.service;
 
 import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.model.inventory.StockAdjustment;
+import com.yf.bookstore.model.inventory.StockAdjustmentResult;
+import com.yf.bookstore.model.inventory.StockHold;
+import com.yf.bookstore.model.inventory.StockLevel;
+
+import java.util.List;
+import java.util.Map;
 
 public interface StockService {
     Stock increaseStock(Long skuId, int quantity);
 
     Stock decreaseStock(Long skuId, int quantity);
 
+    void increaseStocks(Map<Long, Integer> quantities);
+
+    void decreaseStocks(Map<Long, Integer> quantities);
+
     Stock getStockBySkuId(Long skuId);
 
     Stock deleteStock(Long skuId);
@@ -15,4 +26,14 @@ public interface StockService {
 
     Stock createStock(Stock stock);
 
+    StockHold holdStock(Long skuId, int quantity, long ttlSeconds);
+
+    StockLevel confirmHold(String holdId);
+
+    StockLevel releaseHold(String holdId);
+
+    StockLevel getStockLevel(Long skuId);
+
+    List<StockAdjustmentResult> adjustStocks(List<StockAdjustment> adjustments);
+
 }
@@ -0,0 +1,265 @@
+package com.yf.bookstore.service.impl;
+
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.inventory.RollbackRelease;
+import com.yf.bookstore.inventory.SoldOutRegistry;
+import com.yf.bookstore.inventory.StockBatchUpdater;
+import com.yf.bookstore.inventory.StockEvents;
+import com.yf.bookstore.inventory.StockHoldManager;
+import com.yf.bookstore.inventory.StockLedger;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.model.inventory.StockAdjustment;
+import com.yf.bookstore.model.inventory.StockAdjustmentResult;
+import com.yf.bookstore.model.inventory.StockHold;
+import com.yf.bookstore.model.inventory.StockLevel;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.repository.StockRepository;
+import com.yf.bookstore.service.StockService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 单节点部署使用的StockService实现
+ * 库存判断和扣减只在进程内的 {@link StockLedger} 上做CAS，不经过数据库和Redis；
+ * 每笔变更写入本地日志，由写回队列定期按SKU合并后落库到tb_stock，重启时先重放日志再从数据库加载
+ * 通过 stock.mode=memory 启用，仅适用于单实例独占库存数据的部署
+ */
+@Service
+@ConditionalOnProperty(name = "stock.mode", havingValue = "memory")
+public class InMemoryStockServiceImpl implements StockService, ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryStockServiceImpl.class);
+
+    private static final int PRELOAD_PAGE_SIZE = 1000;
+
+    private final StockRepository stockRepository;
+    private final StockWriteBehindQueue writeBehindQueue;
+    private final StockHoldManager holdManager;
+    private final SoldOutRegistry soldOutRegistry;
+    private final OutboxPublisher outboxPublisher;
+    private final StockLedger ledger;
+
+    public InMemoryStockServiceImpl(StockRepository stockRepository, StockWriteBehindQueue writeBehindQueue,
+                                    StockHoldManager holdManager, SoldOutRegistry soldOutRegistry, OutboxPublisher outboxPublisher,
+                                    @Value("${stock.ledger.initial-capacity:65536}") int initialCapacity) {
+        this.stockRepository = stockRepository;
+        this.writeBehindQueue = writeBehindQueue;
+        this.holdManager = holdManager;
+        this.soldOutRegistry = soldOutRegistry;
+        this.outboxPublisher = outboxPublisher;
+        this.ledger = new StockLedger(initialCapacity);
+    }
+
+    /**
+     * 启动时分页把tb_stock加载进账本，此时写回队列已重放完上次未落库的日志
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        Pageable pageable = PageRequest.of(0, PRELOAD_PAGE_SIZE);
+        long loaded = 0;
+        Page<Stock> page;
+        do {
+            Pageable current = pageable;
+            Map<Long, Integer> available = new HashMap<>();
+            page = writeBehindQueue.readConsistent(() -> {
+                Page<Stock> read = stockRepository.findAll(current);
+                for (Stock stock : read) {
+                    if (stock.getSkuId() != null) {
+                        available.put(stock.getSkuId(), stock.getStock() + writeBehindQueue.pendingDelta(stock.getSkuId()));
+                    }
+                }
+                return read;
+            });
+            available.forEach(ledger::putIfAbsent);
+            loaded += available.size();
+            pageable = page.nextPageable();
+        } while (page.hasNext());
+        logger.info("Loaded {} stock record(s) into the in-memory ledger", loaded);
+    }
+
+    @Override
+    public Stock increaseStock(Long skuId, int quantity) {
+        load(skuId);
+        int available = ledger.add(skuId, quantity);
+        writeBehindQueue.enqueue(skuId, quantity);
+        soldOutRegistry.onStockChanged(skuId, available);
+        return toStock(skuId, available);
+    }
+
+    @Override
+    public Stock decreaseStock(Long skuId, int quantity) {
+        Stock stock = reserve(skuId, quantity);
+        // 账本上的预占不随调用方的数据库事务回滚，登记回滚时归还
+        RollbackRelease.register(Collections.singletonMap(skuId, quantity), this::increaseStocks);
+        return stock;
+    }
+
+    @Override
+    public void increaseStocks(Map<Long, Integer> quantities) {
+        new TreeMap<>(quantities).forEach(this::increaseStock);
+    }
+
+    @Override
+    public void decreaseStocks(Map<Long, Integer> quantities) {
+        Map<Long, Integer> reserved = new TreeMap<>();
+        try {
+            for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+                reserve(entry.getKey(), entry.getValue());
+                reserved.put(entry.getKey(), entry.getValue());
+            }
+        } catch (RuntimeException e) {
+            reserved.forEach(this::increaseStock);
+            throw e;
+        }
+        RollbackRelease.register(reserved, this::increaseStocks);
+    }
+
+    private Stock reserve(Long skuId, int quantity) {
+        load(skuId);
+        int remaining = ledger.tryDecrement(skuId, quantity);
+        if (remaining < 0) {
+            throw new InsufficientStockException(skuId);
+        }
+        // 账本随进程一起丢失，调用方收到成功之前写入日志即可保证不丢
+        writeBehindQueue.enqueue(skuId, -quantity);
+        soldOutRegistry.onStockChanged(skuId, remaining);
+        return toStock(skuId, remaining);
+    }
+
+    @Override
+    public Stock getStockBySkuId(Long skuId) {
+        load(skuId);
+        return toStock(skuId, ledger.get(skuId));
+    }
+
+    @Override
+    @Transactional
+    public Stock deleteStock(Long skuId) {
+        Stock stock = stockRepository.findBySkuId(skuId)
+                .orElseThrow(() -> new IllegalArgumentException("Stock not found for SKU ID: " + skuId));
+        // 先落库未写回的增量，避免写回时把已删除的记录重新插入
+        writeBehindQueue.flush();
+        stockRepository.delete(stock);
+        outboxPublisher.publish(StockEvents.deleted(outboxPublisher, skuId));
+        ledger.remove(skuId);
+        return stock;
+    }
+
+    /**
+     * 覆盖库存：在账本上原子替换为新值，把与原值的差作为增量写入日志，由写回队列落库并发布库存事件
+     * 先落库再整体覆盖账本会丢掉两步之间并发的预占，与adjustStocks中的覆盖写入一致按增量处理
+     */
+    @Override
+    public Stock updateStock(Stock stock) {
+        Long skuId = stock.getSkuId();
+        if (!stockRepository.findBySkuId(skuId).isPresent()) {
+            throw new IllegalArgumentException("Stock not found for SKU ID: " + skuId);
+        }
+        load(skuId);
+        int delta = stock.getStock() - ledger.getAndSet(skuId, stock.getStock());
+        if (delta != 0) {
+            writeBehindQueue.enqueue(skuId, delta);
+        }
+        soldOutRegistry.onStockChanged(skuId, stock.getStock());
+        return toStock(skuId, stock.getStock());
+    }
+
+    @Override
+    @Transactional
+    public Stock createStock(Stock stock) {
+        Stock saved = stockRepository.save(stock);
+        outboxPublisher.publish(StockEvents.changed(outboxPublisher, saved.getSkuId(), null, saved.getStock()));
+        ledger.set(saved.getSkuId(), saved.getStock());
+        soldOutRegistry.onStockChanged(saved.getSkuId(), saved.getStock());
+        return saved;
+    }
+
+    @Override
+    public StockHold holdStock(Long skuId, int quantity, long ttlSeconds) {
+        return holdManager.hold(skuId, quantity, ttlSeconds);
+    }
+
+    @Override
+    public StockLevel confirmHold(String holdId) {
+        return holdManager.level(holdManager.confirm(holdId).getSkuId());
+    }
+
+    @Override
+    public StockLevel releaseHold(String holdId) {
+        return holdManager.level(holdManager.release(holdId).getSkuId());
+    }
+
+    @Override
+    public StockLevel getStockLevel(Long skuId) {
+        return holdManager.level(skuId);
+    }
+
+    /**
+     * 批量调整库存，每项在账本上原子生效并写入日志，由写回队列合并后批量落库
+     */
+    @Override
+    public List<StockAdjustmentResult> adjustStocks(List<StockAdjustment> adjustments) {
+        List<StockAdjustmentResult> results = new ArrayList<>(adjustments.size());
+        for (StockAdjustment adjustment : adjustments) {
+            String error = StockBatchUpdater.validate(adjustment);
+            if (error != null) {
+                results.add(StockAdjustmentResult.failure(adjustment == null ? null : adjustment.getSkuId(), null, error));
+                continue;
+            }
+            Long skuId = adjustment.getSkuId();
+            load(skuId);
+            int delta;
+            int available;
+            if (adjustment.getDelta() != null) {
+                delta = adjustment.getDelta();
+                available = delta >= 0 ? ledger.add(skuId, delta) : ledger.tryDecrement(skuId, -delta);
+                if (available < 0) {
+                    results.add(StockAdjustmentResult.failure(skuId, ledger.get(skuId), "Insufficient stock for SKU: " + skuId));
+                    continue;
+                }
+            } else {
+                available = adjustment.getStock();
+                delta = available - ledger.getAndSet(skuId, available);
+            }
+            if (delta != 0) {
+                writeBehindQueue.enqueue(skuId, delta);
+            }
+            soldOutRegistry.onStockChanged(skuId, available);
+            results.add(StockAdjustmentResult.success(skuId, available));
+        }
+        return results;
+    }
+
+    // 账本中没有的SKU从数据库加载一次，不存在时按0库存处理
+    private void load(Long skuId) {
+        if (ledger.get(skuId) != StockLedger.ABSENT) {
+            return;
+        }
+        ledger.putIfAbsent(skuId, writeBehindQueue.readConsistent(() -> stockRepository.findBySkuId(skuId)
+                .map(Stock::getStock).orElse(0) + writeBehindQueue.pendingDelta(skuId)));
+    }
+
+    private Stock toStock(Long skuId, int available) {
+        Stock stock = new Stock();
+        stock.setSkuId(skuId);
+        stock.setStock(available);
+        return stock;
+    }
+}
@@ -1,16 +1,47 @@
 package com.yf.bookstore.service.impl;
 
+import com.yf.bookstore.exception.commodity.SkuNotFoundException;
 import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.exception.order.InvalidOrderException;
 import com.yf.bookstore.exception.order.OrderAlreadyProcessedException;
+import com.yf.bookstore.exception.order.OrderBackpressureException;
 import com.yf.bookstore.exception.order.OrderNotFoundException;
+import com.yf.bookstore.exception.order.OrderTicketNotFoundException;
 import com.yf.bookstore.model.commodity.Sku;
 import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLine;
+import com.yf.bookstore.model.order.OrderLineRequest;
+import com.yf.bookstore.model.order.OrderPage;
 import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.order.OrderSummary;
+import com.yf.bookstore.model.order.OrderTicket;
+import com.yf.bookstore.model.order.OrderTransitionResult;
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import com.yf.bookstore.order.OrderArchive;
+import com.yf.bookstore.order.OrderCursor;
+import com.yf.bookstore.order.OrderEvents;
+import com.yf.bookstore.order.OrderExpiryScheduler;
+import com.yf.bookstore.order.OrderIngestionPipeline;
+import com.yf.bookstore.order.OrderStatusCache;
+import com.yf.bookstore.order.OrderTransitions;
+import com.yf.bookstore.outbox.OutboxPublisher;
 import com.yf.bookstore.repository.OrderRepository;
 import com.yf.bookstore.repository.SkuRepository;
 import com.yf.bookstore.service.OrderService;
 import com.yf.bookstore.service.StockService;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * 订单服务实现类
@@ -19,14 +50,34 @@ import org.springframework.stereotype.Service;
 @Service
 public class OrderServiceImpl implements OrderService {
 
+    // 订单列表每页的最大条数
+    private static final int MAX_PAGE_SIZE = 100;
+    // 一次批量变更状态的最大订单数
+    private static final int MAX_TRANSITION_SIZE = 1000;
+
     private final OrderRepository orderRepository;
     private final SkuRepository skuRepository;
     private final StockService stockService;
+    private final OrderIngestionPipeline ingestionPipeline;
+    private final OutboxPublisher outboxPublisher;
+    private final OrderStatusCache statusCache;
+    private final OrderArchive orderArchive;
+    private final OrderExpiryScheduler expiryScheduler;
+    private final OrderTransitions orderTransitions;
 
-    public OrderServiceImpl(OrderRepository orderRepository, SkuRepository skuRepository, StockService stockService) {
+    public OrderServiceImpl(OrderRepository orderRepository, SkuRepository skuRepository, StockService stockService,
+                            OrderIngestionPipeline ingestionPipeline, OutboxPublisher outboxPublisher,
+                            OrderStatusCache statusCache, OrderArchive orderArchive,
+                            OrderExpiryScheduler expiryScheduler, OrderTransitions orderTransitions) {
         this.orderRepository = orderRepository;
         this.skuRepository = skuRepository;
         this.stockService = stockService;
+        this.ingestionPipeline = ingestionPipeline;
+        this.outboxPublisher = outboxPublisher;
+        this.statusCache = statusCache;
+        this.orderArchive = orderArchive;
+        this.expiryScheduler = expiryScheduler;
+        this.orderTransitions = orderTransitions;
     }
 
     /**
@@ -37,58 +88,284 @@ public class OrderServiceImpl implements OrderService {
      * @return 创建的订单对象
      * @throws InsufficientStockException 如果库存不足
      */
+    @Transactional
     public Order createOrder(String customerId, Sku sku) {
-        // 初始化订单对象
-        Order order = new Order();
-        order.setCustomerId(customerId);
-        order.setStatus(OrderStatus.CREATED);
+        Map<Long, Integer> quantities = new TreeMap<>(Collections.singletonMap(sku.getId(), 1));
+        return placeOrder(customerId, quantities, Collections.singletonMap(sku.getId(), sku));
+    }
 
-        // 尝试减少库存
-        try {
-            stockService.decreaseStock(sku.getId(), 1); // 减少库存
-        } catch (InsufficientStockException e) {
-            // 如果库存不足，抛出异常
-            throw new InsufficientStockException(sku.getId());
-        }
+    /**
+     * 创建包含多个商品的订单
+     * 同一SKU的多行合并，所有SKU一次查询，库存按SKU顺序一次性预占，任一SKU不足时整个订单回滚
+     *
+     * @param customerId 客户ID
+     * @param lines      购买的SKU和数量
+     * @return 创建的订单对象
+     * @throws InvalidOrderException      如果订单明细为空或数量不合法
+     * @throws SkuNotFoundException       如果有SKU不存在
+     * @throws InsufficientStockException 如果有SKU库存不足
+     */
+    @Override
+    @Transactional
+    public Order createOrder(String customerId, List<OrderLineRequest> lines) {
+        Map<Long, Integer> quantities = mergeLines(lines);
+        return placeOrder(customerId, quantities, loadSkus(quantities));
+    }
 
-        // 保存订单并返回
-        return orderRepository.save(order);
+    /**
+     * 异步创建订单：预占库存后把订单放入写入队列并立即返回凭证，订单由后台批量写入数据库
+     *
+     * @param customerId 客户ID
+     * @param lines      购买的SKU和数量
+     * @return 订单凭证
+     * @throws OrderBackpressureException 如果写入队列已满
+     * @throws InsufficientStockException 如果有SKU库存不足
+     */
+    @Override
+    public OrderTicket submitOrder(String customerId, List<OrderLineRequest> lines) {
+        Map<Long, Integer> quantities = mergeLines(lines);
+        Order order = buildOrder(customerId, quantities, loadSkus(quantities));
+        if (!ingestionPipeline.hasCapacity()) {
+            throw new OrderBackpressureException();
+        }
+        reserveStock(quantities);
+        OrderTicket ticket = ingestionPipeline.publish(order, quantities);
+        if (ticket == null) {
+            // 检查之后队列被其他请求占满，归还刚预占的库存
+            stockService.increaseStocks(quantities);
+            throw new OrderBackpressureException();
+        }
+        return ticket;
     }
 
+    @Override
+    public OrderTicket getOrderTicket(String ticket) {
+        OrderTicket found = ingestionPipeline.getTicket(ticket);
+        if (found == null) {
+            throw new OrderTicketNotFoundException(ticket);
+        }
+        return found;
+    }
 
     /**
      * 取消指定的订单
      * 如果订单状态为"已创建"，则取消订单并更新库存，否则抛出异常
+     * 状态用条件更新变更，与批量变更、自动过期并发时只有一方成功，库存只归还一次
      *
      * @param orderId 订单ID
      * @return 取消后的订单对象
      * @throws OrderNotFoundException         如果找不到指定ID的订单
      * @throws OrderAlreadyProcessedException 如果订单已被处理（状态不为"已创建"）
      */
+    @Transactional
     public Order cancelOrder(Long orderId) {
-        // 通过ID查找订单，如果不存在则抛出异常
-        Order order = orderRepository.findById(orderId).orElseThrow(() -> new OrderNotFoundException(orderId));
+        // 通过ID查找订单及其明细，已归档的订单都已结束，不能再取消
+        Order order = orderRepository.findWithLinesById(orderId).orElse(null);
+        if (order == null) {
+            if (orderArchive.findStatus(orderId).isPresent()) {
+                throw new OrderAlreadyProcessedException(orderId);
+            }
+            throw new OrderNotFoundException(orderId);
+        }
+
+        // 读到的状态可能已被其他事务修改，以条件更新的结果为准
+        LocalDateTime now = LocalDateTime.now();
+        if (order.getStatus() != OrderStatus.CREATED
+                || !orderTransitions.compareAndSet(orderId, OrderStatus.CREATED, OrderStatus.CANCELLED, now)) {
+            throw new OrderAlreadyProcessedException(orderId);
+        }
+        // 同步托管实体，提交时写入的值与条件更新相同
+        order.setStatus(OrderStatus.CANCELLED);
+        order.setModifyTime(now);
 
-        // 检查订单状态是否为"已创建"
-        if (order.getStatus() == OrderStatus.CREATED) {
-            // 取消订单，设置状态为"已取消"
-            order.setStatus(OrderStatus.CANCELLED);
+        // 增加库存：把订单所有明细的数量一次性归还，取消事件与之一起提交
+        stockService.increaseStocks(quantitiesOf(order));
+        outboxPublisher.publish(OrderEvents.of(outboxPublisher, order, OutboxEvent.ORDER_CANCELLED));
+        statusCache.put(orderId, OrderStatus.CANCELLED);
+        return order;
+    }
+
+
+    /**
+     * 查询订单及其明细，热表中没有时查询归档
+     *
+     * @param orderId 订单ID
+     * @return 订单
+     * @throws OrderNotFoundException 如果找不到指定ID的订单
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Order getOrder(Long orderId) {
+        return orderRepository.findWithLinesById(orderId)
+                .or(() -> orderArchive.find(orderId))
+                .orElseThrow(() -> new OrderNotFoundException(orderId));
+    }
 
-            // 增加库存：将取消订单的商品数量重新加入库存
-            stockService.increaseStock(order.getId(), 1);
+    /**
+     * 查询订单状态，优先从状态缓存读取，未命中时只查询状态列，热表中没有时查询归档
+     *
+     * @param orderId 订单ID
+     * @return 订单状态
+     * @throws OrderNotFoundException 如果找不到指定ID的订单
+     */
+    public OrderStatus getOrderStatus(Long orderId) {
+        OrderStatus status = statusCache.get(orderId, id -> orderRepository.findStatusById(id)
+                .or(() -> orderArchive.findStatus(id))
+                .orElse(null));
+        if (status == null) {
+            throw new OrderNotFoundException(orderId);
+        }
+        return status;
+    }
 
-            // 保存更新后的订单
-            return orderRepository.save(order);
+    /**
+     * 按创建时间倒序分页列出顾客的订单
+     * 用上一页最后一个订单的 (create_time, id) 作为游标继续读取，多读一条判断是否还有下一页
+     *
+     * @param customerId 顾客ID
+     * @param after      上一页返回的游标，为空时从最新的订单开始
+     * @param limit      每页条数，超过上限时按上限处理
+     * @return 本页订单和下一页的游标
+     * @throws InvalidOrderException 如果游标无法解析
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public OrderPage listOrders(String customerId, String after, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<OrderSummary> rows;
+        if (StringUtils.hasText(after)) {
+            OrderCursor cursor = OrderCursor.decode(after);
+            rows = orderRepository.findSummariesAfter(customerId, cursor.getCreateTime(), cursor.getId(), page);
         } else {
-            // 如果订单状态不是"已创建"，抛出异常
-            throw new OrderAlreadyProcessedException(orderId);
+            rows = orderRepository.findSummaries(customerId, page);
+        }
+        if (rows.size() <= size) {
+            return new OrderPage(rows, null);
+        }
+        List<OrderSummary> items = rows.subList(0, size);
+        OrderSummary last = items.get(size - 1);
+        return new OrderPage(new ArrayList<>(items), new OrderCursor(last.getCreateTime(), last.getId()).encode());
+    }
+
+    /**
+     * 把一批订单变更为处理中或已完成，按原状态分组批量更新
+     * 取消需要归还库存，仍通过单个订单的取消接口或自动过期完成
+     *
+     * @param orderIds     订单ID
+     * @param targetStatus 目标状态
+     * @return 每个订单的变更结果
+     * @throws InvalidOrderException 如果订单ID为空、超过上限或目标状态不支持批量变更
+     */
+    @Override
+    public List<OrderTransitionResult> transitionOrders(List<Long> orderIds, OrderStatus targetStatus) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            throw new InvalidOrderException("Order IDs must not be empty");
+        }
+        if (orderIds.size() > MAX_TRANSITION_SIZE) {
+            throw new InvalidOrderException("At most " + MAX_TRANSITION_SIZE + " orders can be transitioned at once");
+        }
+        if (orderIds.contains(null)) {
+            throw new InvalidOrderException("Order IDs must not contain null");
         }
+        if (targetStatus != OrderStatus.PROCESSING && targetStatus != OrderStatus.COMPLETED) {
+            throw new InvalidOrderException("Orders can only be transitioned to PROCESSING or COMPLETED in bulk");
+        }
+        return orderTransitions.apply(orderIds, targetStatus);
     }
 
+    /**
+     * 在调用方的事务中写入订单和明细，然后预占库存，最后写入下单事件
+     * 预占放在最后一步，批量预占本身要么全部成功要么全部不扣减，预占失败时抛出的异常使订单和明细一起回滚；
+     * 预占之后的步骤失败时，数据库模式下的扣减随事务回滚，Redis计数器、热点分片和进程内账本上的预占由库存服务登记的回滚回调归还
+     */
+    private Order placeOrder(String customerId, Map<Long, Integer> quantities, Map<Long, Sku> skus) {
+        Order saved = orderRepository.save(buildOrder(customerId, quantities, skus));
+        reserveStock(quantities);
+        outboxPublisher.publish(OrderEvents.of(outboxPublisher, saved, OutboxEvent.ORDER_CREATED));
+        statusCache.put(saved.getId(), OrderStatus.CREATED);
+        // 事务回滚时订单不存在，到期时的条件更新不会命中
+        expiryScheduler.schedule(saved.getId(), saved.getCreateTime());
+        return saved;
+    }
 
-    public OrderStatus getOrderStatus(Long orderId) {
-        Order order = orderRepository.findById(orderId).orElseThrow(() -> new OrderNotFoundException(orderId));
-        return order.getStatus();
+    // 合并同一SKU的多行，按SKU排序
+    private static Map<Long, Integer> mergeLines(List<OrderLineRequest> lines) {
+        if (lines == null || lines.isEmpty()) {
+            throw new InvalidOrderException("Order must contain at least one line");
+        }
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderLineRequest line : lines) {
+            if (line == null || line.getSkuId() == null) {
+                throw new InvalidOrderException("SKU ID is required for every order line");
+            }
+            if (line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new InvalidOrderException("Quantity must be positive for SKU: " + line.getSkuId());
+            }
+            quantities.merge(line.getSkuId(), line.getQuantity(), Math::addExact);
+        }
+        return quantities;
+    }
+
+    // 一次查询加载所有SKU
+    private Map<Long, Sku> loadSkus(Map<Long, Integer> quantities) {
+        Map<Long, Sku> skus = new HashMap<>();
+        skuRepository.findAllById(quantities.keySet()).forEach(sku -> skus.put(sku.getId(), sku));
+        for (Long skuId : quantities.keySet()) {
+            if (!skus.containsKey(skuId)) {
+                throw new SkuNotFoundException(skuId);
+            }
+        }
+        return skus;
+    }
+
+    private static Order buildOrder(String customerId, Map<Long, Integer> quantities, Map<Long, Sku> skus) {
+        LocalDateTime now = LocalDateTime.now();
+        Order order = new Order();
+        order.setCustomerId(customerId);
+        order.setStatus(OrderStatus.CREATED);
+        order.setCreateTime(now);
+        order.setModifyTime(now);
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            BigDecimal price = skus.get(entry.getKey()).getPrice();
+            if (price == null) {
+                price = BigDecimal.ZERO;
+            }
+            order.addLine(new OrderLine(entry.getKey(), entry.getValue(), price));
+            total = total.add(price.multiply(BigDecimal.valueOf(entry.getValue())));
+        }
+        order.setTotalAmount(total);
+        if (order.getLines().size() == 1) {
+            // 单商品订单继续填写订单表上的SKU和单价
+            OrderLine line = order.getLines().get(0);
+            order.setSkuId(line.getSkuId());
+            order.setPrice(line.getPrice());
+        }
+        return order;
+    }
+
+    private void reserveStock(Map<Long, Integer> quantities) {
+        if (quantities.size() == 1) {
+            // 单个SKU走单品扣减，保留versioned模式和售罄标记
+            Map.Entry<Long, Integer> only = quantities.entrySet().iterator().next();
+            stockService.decreaseStock(only.getKey(), only.getValue());
+        } else {
+            stockService.decreaseStocks(quantities);
+        }
+    }
+
+    // 历史上的单商品订单没有明细，按订单表上的SKU归还一件
+    private static Map<Long, Integer> quantitiesOf(Order order) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderLine line : order.getLines()) {
+            quantities.merge(line.getSkuId(), line.getQuantity(), Integer::sum);
+        }
+        if (quantities.isEmpty() && order.getSkuId() != null) {
+            quantities.put(order.getSkuId(), 1);
+        }
+        return quantities;
     }
 
-}
\ No newline at end of file
+}
@@ -1,27 +1,52 @@
 package com.yf.bookstore.service.impl;
 
+import com.yf.bookstore.cache.TwoLevelCache;
+import com.yf.bookstore.cache.TwoLevelCacheManager;
+import com.yf.bookstore.config.CacheConfig;
+import com.yf.bookstore.exception.commodity.InvalidSkuException;
 import com.yf.bookstore.model.commodity.Sku;
 import com.yf.bookstore.repository.SkuRepository;
+import com.yf.bookstore.search.SkuSearchIndex;
 import com.yf.bookstore.service.SkuService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Sku服务的实现类
  */
 @Service
 public class SkuServiceImpl implements SkuService {
 
+    // 一次批量查询的最大SKU数
+    private static final int MAX_BATCH_SIZE = 2000;
+    // 每条IN查询的最大参数个数
+    private static final int IN_CHUNK_SIZE = 1000;
+
     private final SkuRepository skuRepository;
+    private final TwoLevelCacheManager cacheManager;
+    private final SkuSearchIndex searchIndex;
 
     /**
      * 构造函数，注入SkuRepository
      *
      * @param skuRepository Sku的数据访问层接口实现
+     * @param cacheManager  两级缓存管理器，批量查询直接读写SKU缓存
+     * @param searchIndex   SKU搜索索引，随SKU的修改增量更新
      */
     @Autowired
-    public SkuServiceImpl(SkuRepository skuRepository) {
+    public SkuServiceImpl(SkuRepository skuRepository, TwoLevelCacheManager cacheManager, SkuSearchIndex searchIndex) {
         this.skuRepository = skuRepository;
+        this.cacheManager = cacheManager;
+        this.searchIndex = searchIndex;
     }
 
     /**
@@ -32,39 +57,93 @@ public class SkuServiceImpl implements SkuService {
      */
     @Override
     public Sku createSku(Sku sku) {
-        return skuRepository.save(sku);
+        Sku saved = skuRepository.save(sku);
+        searchIndex.index(saved);
+        return saved;
     }
 
     /**
-     * 更新一个已存在的Sku
+     * 更新一个已存在的Sku，并失效各节点缓存中的旧值
      *
      * @param sku 待更新的Sku对象
      * @return 更新后的Sku对象
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.SKU_CACHE, key = "#sku.id")
     public Sku updateSku(Sku sku) {
-        return skuRepository.save(sku);
+        Sku saved = skuRepository.save(sku);
+        searchIndex.index(saved);
+        return saved;
     }
 
     /**
-     * 删除指定ID的Sku
+     * 删除指定ID的Sku，并失效各节点缓存中的旧值
      *
      * @param id Sku的ID
      */
     @Override
+    @CacheEvict(cacheNames = CacheConfig.SKU_CACHE, key = "#id")
     public void deleteSku(Long id) {
         skuRepository.deleteById(id);
+        searchIndex.remove(id);
     }
 
     /**
-     * 根据ID获取Sku
+     * 根据ID获取Sku，优先从本节点缓存和Redis缓存读取
      *
      * @param id Sku的ID
      * @return 对应的Sku对象，如果找不到则抛出异常
      * @throws RuntimeException 如果Sku不存在
      */
     @Override
+    @Cacheable(cacheNames = CacheConfig.SKU_CACHE, key = "#id")
     public Sku getSkuById(Long id) {
         return skuRepository.findById(id).orElseThrow(() -> new RuntimeException("Sku not found"));
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量获取Sku
+     * 先从缓存批量读取，未命中的SKU用一条IN查询从数据库加载（超过单条查询的参数上限时分段），再一次回填缓存
+     *
+     * @param ids Sku的ID，重复的ID只返回一次
+     * @return 按请求顺序排列的Sku，不存在的ID不在结果中
+     * @throws InvalidSkuException 如果ID超过单次查询的上限
+     */
+    @Override
+    public List<Sku> getSkusByIds(Collection<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinct.remove(null);
+        if (distinct.size() > MAX_BATCH_SIZE) {
+            throw new InvalidSkuException("At most " + MAX_BATCH_SIZE + " SKUs can be fetched at once");
+        }
+        if (distinct.isEmpty()) {
+            return new ArrayList<>();
+        }
+        TwoLevelCache cache = (TwoLevelCache) cacheManager.getCache(CacheConfig.SKU_CACHE);
+        Map<Long, Sku> skus = new HashMap<>();
+        cache.getAll(distinct).forEach((key, value) -> skus.put(Long.valueOf(key), (Sku) value));
+
+        List<Long> misses = new ArrayList<>();
+        for (Long id : distinct) {
+            if (!skus.containsKey(id)) {
+                misses.add(id);
+            }
+        }
+        Map<Long, Sku> loaded = new HashMap<>();
+        for (int from = 0; from < misses.size(); from += IN_CHUNK_SIZE) {
+            skuRepository.findAllById(misses.subList(from, Math.min(from + IN_CHUNK_SIZE, misses.size())))
+                    .forEach(sku -> loaded.put(sku.getId(), sku));
+        }
+        cache.putAll(loaded);
+        skus.putAll(loaded);
+
+        List<Sku> result = new ArrayList<>(skus.size());
+        for (Long id : distinct) {
+            Sku sku = skus.get(id);
+            if (sku != null) {
+                result.add(sku);
+            }
+        }
+        return result;
+    }
+}
@@ -1,17 +1,43 @@
 package com.yf.bookstore.service.impl;
 
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.inventory.SoldOutRegistry;
+import com.yf.bookstore.inventory.RollbackRelease;
+import com.yf.bookstore.inventory.StockBatchUpdater;
+import com.yf.bookstore.inventory.StockEvents;
+import com.yf.bookstore.inventory.StockHoldManager;
+import com.yf.bookstore.inventory.StockMetrics;
+import com.yf.bookstore.inventory.StockReconciler;
+import com.yf.bookstore.inventory.StockScript;
+import com.yf.bookstore.inventory.StockScriptRegistry;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.inventory.StripedStockCounter;
 import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.model.inventory.StockAdjustment;
+import com.yf.bookstore.model.inventory.StockAdjustmentResult;
+import com.yf.bookstore.model.inventory.StockHold;
+import com.yf.bookstore.model.inventory.StockLevel;
+import com.yf.bookstore.outbox.OutboxPublisher;
 import com.yf.bookstore.repository.StockRepository;
 import com.yf.bookstore.service.StockService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.dao.OptimisticLockingFailureException;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -19,131 +45,138 @@ import java.util.concurrent.TimeUnit;
  * 它提供了具体的方法来管理库存
  */
 @Service
+@ConditionalOnProperty(name = "stock.mode", havingValue = "default", matchIfMissing = true)
 public class StockServiceImpl implements StockService {
 
     private static final Logger logger = LoggerFactory.getLogger(StockService.class);
 
-    private final StockRepository stockRepository;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private static final long RESERVE_KEY_MISSING = -1L;
+    private static final long RESERVE_INSUFFICIENT = -2L;
 
-    public StockServiceImpl(StockRepository stockRepository, RedisTemplate<String, Object> redisTemplate) {
+    private final StockRepository stockRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final StockWriteBehindQueue writeBehindQueue;
+    private final StockScriptRegistry scriptRegistry;
+    private final StripedStockCounter stripedCounter;
+    private final StockHoldManager holdManager;
+    private final StockBatchUpdater batchUpdater;
+    private final StockMetrics stockMetrics;
+    private final StockReconciler reconciler;
+    private final SoldOutRegistry soldOutRegistry;
+    private final OutboxPublisher outboxPublisher;
+
+    // 为true时由Redis中的原子扣减决定预占结果，数据库由写回队列异步更新
+    @Value("${stock.reservation.redis-first:false}")
+    private boolean redisFirst;
+
+    // 为true时数据库扣减使用版本号条件更新加有限次重试，否则使用带库存条件的原子UPDATE
+    @Value("#{'${stock.db.mode:guarded}' == 'versioned'}")
+    private boolean versioned;
+
+    @Value("${stock.db.max-attempts:5}")
+    private int maxAttempts;
+
+    public StockServiceImpl(StockRepository stockRepository, StringRedisTemplate redisTemplate,
+                            StockWriteBehindQueue writeBehindQueue, StockScriptRegistry scriptRegistry,
+                            StripedStockCounter stripedCounter, StockHoldManager holdManager,
+                            StockBatchUpdater batchUpdater, StockMetrics stockMetrics,
+                            StockReconciler reconciler, SoldOutRegistry soldOutRegistry,
+                            OutboxPublisher outboxPublisher) {
         this.stockRepository = stockRepository;
         this.redisTemplate = redisTemplate;
+        this.writeBehindQueue = writeBehindQueue;
+        this.scriptRegistry = scriptRegistry;
+        this.stripedCounter = stripedCounter;
+        this.holdManager = holdManager;
+        this.batchUpdater = batchUpdater;
+        this.stockMetrics = stockMetrics;
+        this.reconciler = reconciler;
+        this.soldOutRegistry = soldOutRegistry;
+        this.outboxPublisher = outboxPublisher;
     }
 
     @Transactional
     public Stock increaseStock(Long skuId, int quantity) {
-        Stock stock = stockRepository.findById(skuId)
-                .orElseGet(() -> createStockIfNotExists(skuId));
-
-        stock.setStock(stock.getStock() + quantity);
-
-        // 使用乐观锁
-        Stock updatedStock = stockRepository.saveAndFlush(stock);
-
-        // Check if the optimistic lock failed
-        if (updatedStock == null) {
-            // Optimistic locking failed, rollback the transaction
-            throw new OptimisticLockingFailureException("Optimistic locking failed for stock with SKU ID: " + skuId);
+        Stock stock;
+        if (stripedCounter.isHot(skuId)) {
+            stock = toStock(skuId, stripedCounter.release(skuId, quantity));
+        } else if (redisFirst) {
+            stock = releaseInRedis(skuId, quantity);
+        } else {
+            increaseInDatabase(skuId, quantity);
+            outboxPublisher.publish(StockEvents.changed(outboxPublisher, skuId, quantity, null));
+            stock = syncCache(skuId, StockScript.RELEASE, quantity);
         }
-
-        // Atomically increase the stock in Redis using Lua script
-        String key = "stock:" + skuId;
-        // Use Lua script to atomically decrease stock
-        DefaultRedisScript<Long> luaScript = new DefaultRedisScript<>();
-        luaScript.setScriptText(
-                "if redis.call('exists', KEYS[1]) == 1 then " +
-                        "local stock = tonumber(redis.call('get', KEYS[1])) " +
-                        "if stock >= ARGV[1] then " +
-                        "    redis.call('set', KEYS[1], stock - ARGV[1]) " +
-                        "    return stock - ARGV[1] " +
-                        "else " +
-                        "    return nil " +
-                        "end " +
-                        "else " +
-                        "    return nil " +
-                        "end"
-        );
-        luaScript.setResultType(Long.class);
-
-// Try to update Redis outside of the transaction
-        Long newStockInRedis = null;
-        try {
-            newStockInRedis = redisTemplate.execute(luaScript, Collections.singletonList(key), quantity);
-        } catch (Exception e) {
-            // Handle Redis update failure
-            // Retry mechanism
-            if (!retryUpdateRedis(luaScript, updatedStock, key, quantity)) {
-                // Send mq todo
-            }
-        }
-
-        return updatedStock;
+        soldOutRegistry.onStockChanged(skuId, stock.getStock());
+        return stock;
     }
 
     @Override
     @Transactional
     public Stock decreaseStock(Long skuId, int quantity) {
-        Stock stock = stockRepository.findById(skuId)
-                .orElseGet(() -> createStockIfNotExists(skuId));
-
-        stock.setStock(stock.getStock() - quantity);
-
-        // Use optimistic lock
-        Stock updatedStock = stockRepository.saveAndFlush(stock);
+        Stock stock = reserve(skuId, quantity);
+        releaseOnRollback(Collections.singletonMap(skuId, quantity));
+        return stock;
+    }
 
-        // Check if the optimistic lock failed
-        if (updatedStock == null) {
-            // Optimistic locking failed, rollback the transaction
-            throw new OptimisticLockingFailureException("Optimistic locking failed for stock with SKU ID: " + skuId);
+    @Override
+    @Transactional
+    public void increaseStocks(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
         }
-
-        // Atomically decrease the stock in Redis using Lua script
-        String key = "stock:" + skuId;
-        DefaultRedisScript<Long> luaScript = new DefaultRedisScript<>();
-        luaScript.setScriptText(
-                "if redis.call('exists', KEYS[1]) == 1 then " +
-                        "local stock = tonumber(redis.call('get', KEYS[1])) " +
-                        "if stock >= ARGV[1] then " +
-                        "    redis.call('set', KEYS[1], stock - ARGV[1]) " +
-                        "    return stock - ARGV[1] " +
-                        "else " +
-                        "    return nil " +
-                        "end " +
-                        "else " +
-                        "    return nil " +
-                        "end"
-        );
-        luaScript.setResultType(Long.class);
-
-        // Try to update Redis outside of the transaction
-        Long newStockInRedis = null;
-        try {
-            newStockInRedis = redisTemplate.execute(luaScript, Collections.singletonList(key), quantity);
-        } catch (Exception e) {
-            // Handle Redis update failure
-            // Log the error and continue
-            logger.error("Failed to update Redis: {}", e.getMessage(), e);
-            // Retry mechanism
-            if (!retryUpdateRedis(luaScript, updatedStock, key, -quantity)) {
-                // Send mq todo
-            }
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        if (sorted.keySet().stream().anyMatch(stripedCounter::isHot)) {
+            sorted.forEach(this::increaseStock);
+            return;
+        }
+        if (redisFirst) {
+            sorted.forEach(writeBehindQueue::enqueue);
+            scriptRegistry.execute(StockScript.RELEASE_MULTI, stockKeys(sorted), quantityArgs(sorted));
+        } else {
+            applyInDatabase(sorted, 1);
         }
+        sorted.keySet().forEach(soldOutRegistry::onRestocked);
+    }
 
-        return updatedStock;
+    @Override
+    @Transactional
+    public void decreaseStocks(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        // 按SKU排序，保证多个SKU的加锁顺序一致
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        if (sorted.keySet().stream().anyMatch(stripedCounter::isHot)) {
+            reserveOneByOne(sorted);
+            return;
+        }
+        if (redisFirst) {
+            reserveAllInRedis(sorted);
+            releaseOnRollback(sorted);
+            notifyRemaining(sorted.keySet(), redisTemplate.opsForValue().multiGet(stockKeys(sorted)));
+            return;
+        }
+        applyInDatabase(sorted, -1);
+        // 扣减已在本事务中生效，读回剩余库存判断是否售罄
+        batchUpdater.stocks(new ArrayList<>(sorted.keySet())).forEach(soldOutRegistry::onStockChanged);
     }
 
     @Override
     @Transactional
     public Stock deleteStock(Long skuId) {
-        Stock stock = stockRepository.findById(skuId)
+        Stock stock = stockRepository.findBySkuId(skuId)
                 .orElseThrow(() -> new IllegalArgumentException("Stock not found for SKU ID: " + skuId));
 
         stockRepository.delete(stock);
+        outboxPublisher.publish(StockEvents.deleted(outboxPublisher, skuId));
 
         // Remove from Redis
         String key = "stock:" + skuId;
         redisTemplate.delete(key);
+        if (stripedCounter.isHot(skuId)) {
+            stripedCounter.reset(skuId);
+        }
 
         return stock;
     }
@@ -151,46 +184,108 @@ public class StockServiceImpl implements StockService {
     @Override
     @Transactional
     public Stock createStock(Stock stock) {
-        return stockRepository.save(stock);
+        Stock saved = stockRepository.save(stock);
+        outboxPublisher.publish(StockEvents.changed(outboxPublisher, saved.getSkuId(), null, saved.getStock()));
+        soldOutRegistry.onStockChanged(saved.getSkuId(), saved.getStock());
+        return saved;
+    }
+
+    @Override
+    public StockHold holdStock(Long skuId, int quantity, long ttlSeconds) {
+        return holdManager.hold(skuId, quantity, ttlSeconds);
+    }
+
+    @Override
+    public StockLevel confirmHold(String holdId) {
+        return holdManager.level(holdManager.confirm(holdId).getSkuId());
+    }
+
+    @Override
+    public StockLevel releaseHold(String holdId) {
+        return holdManager.level(holdManager.release(holdId).getSkuId());
+    }
+
+    @Override
+    public StockLevel getStockLevel(Long skuId) {
+        return holdManager.level(skuId);
+    }
+
+    /**
+     * 批量调整库存，数据库在一个事务中批量写入（库存事件随之写入发件箱），提交后把各SKU的净变化通过一次管道同步到Redis
+     */
+    @Override
+    public List<StockAdjustmentResult> adjustStocks(List<StockAdjustment> adjustments) {
+        // 未写回的增量只在redis-first和热点分片下存在，数据库模式下恒为0
+        StockBatchUpdater.Outcome outcome = writeBehindQueue.readConsistent(
+                () -> batchUpdater.apply(adjustments, writeBehindQueue::pendingDelta));
+        syncCounters(outcome.getDeltas());
+        notifySoldOut(outcome.getResults());
+        return outcome.getResults();
     }
 
 
     @Override
     @Transactional
     public Stock updateStock(Stock stock) {
-        Stock newStock = stockRepository.findById(stock.getSkuId())
+        Stock newStock = stockRepository.findBySkuId(stock.getSkuId())
                 .orElseThrow(() -> new IllegalArgumentException("Stock not found for SKU ID: " + stock.getSkuId()));
 
+        if (redisFirst || stripedCounter.isHot(stock.getSkuId())) {
+            Stock overwritten = overwriteAsDelta(stock.getSkuId(), stock.getStock());
+            soldOutRegistry.onStockChanged(overwritten.getSkuId(), overwritten.getStock());
+            return overwritten;
+        }
 
         // Update in Redis
         String key = "stock:" + stock.getSkuId();
-        DefaultRedisScript<Long> luaScript = new DefaultRedisScript<>();
-        luaScript.setScriptText(
-                "if redis.call('exists', KEYS[1]) == 1 then " +
-                        "redis.call('set', KEYS[1], ARGV[1]) " +
-                        "return true " +
-                        "else " +
-                        "return false " +
-                        "end"
-        );
-        luaScript.setResultType(Long.class);
-
-        // Update Redis
-        Object updatedInRedis = redisTemplate.execute(luaScript, Collections.singletonList(key), newStock);
-
-        if (!(Boolean) updatedInRedis) {
+        Long updatedInRedis = scriptRegistry.execute(StockScript.SET_IF_EXISTS, Collections.singletonList(key),
+                Collections.singletonList(String.valueOf(stock.getStock())));
+
+        if (updatedInRedis == null || updatedInRedis == 0) {
             logger.warn("Failed to update Redis for stock with SKU ID: {}", stock.getSkuId());
         }
 
-        return stockRepository.save(stock);
+        // 修改托管实体而不是保存请求中的对象，版本号由JPA维护
+        newStock.setStock(stock.getStock());
+        newStock.setModifyTime(new Date());
+        Stock saved = stockRepository.save(newStock);
+        outboxPublisher.publish(StockEvents.changed(outboxPublisher, saved.getSkuId(), null, saved.getStock()));
+        soldOutRegistry.onStockChanged(saved.getSkuId(), saved.getStock());
+        return saved;
+    }
+
+    /**
+     * 计数器领先于数据库时（redis-first或热点分片），覆盖写入换算成 新库存 − 当前计数器 的增量，
+     * 与预占一样先写入写回队列再加到计数器上，保持 计数器 = 数据库库存 + 未写回增量；
+     * 直接覆盖计数器和tb_stock会让队列中尚未写回的增量再叠加一次
+     * 读取与累加之间并发的预占同样按增量生效，结果相当于覆盖发生在这些预占之前；库存事件由写回时发布
+     */
+    private Stock overwriteAsDelta(Long skuId, int target) {
+        int delta = target - getStockBySkuId(skuId).getStock();
+        if (delta == 0) {
+            return toStock(skuId, target);
+        }
+        writeBehindQueue.enqueue(skuId, delta);
+        if (stripedCounter.isHot(skuId)) {
+            // 分片按数据库库存加上未写回的增量重新拆分，其中已包含这笔增量
+            stripedCounter.reset(skuId);
+            return toStock(skuId, stripedCounter.total(skuId));
+        }
+        Long available = scriptRegistry.execute(StockScript.RELEASE, Collections.singletonList("stock:" + skuId),
+                Collections.singletonList(String.valueOf(delta)));
+        if (available == null || available == RESERVE_KEY_MISSING) {
+            // 计数器已过期时，下次加载会包含这笔尚未写回的增量
+            return getStockBySkuId(skuId);
+        }
+        return toStock(skuId, available.intValue());
     }
 
-    private boolean retryUpdateRedis(DefaultRedisScript<Long> luaScript, Stock updatedStock, String key, int quantity) {
+    private boolean retryUpdateRedis(StockScript script, String key, int quantity) {
         int maxRetries = 3; // Maximum number of retries
         int retryCount = 0;
         while (retryCount < maxRetries) {
             try {
-                Long newStockInRedis = redisTemplate.execute(new DefaultRedisScript<>(luaScript.getScriptAsString(), Long.class), Collections.singletonList(key), quantity);
+                Long newStockInRedis = scriptRegistry.execute(script, Collections.singletonList(key), Collections.singletonList(String.valueOf(quantity)));
                 if (newStockInRedis != null) {
                     return true;
                 }
@@ -203,19 +298,332 @@ public class StockServiceImpl implements StockService {
     }
 
     public Stock getStockBySkuId(Long skuId) {
+        if (stripedCounter.isHot(skuId)) {
+            return toStock(skuId, stripedCounter.total(skuId));
+        }
         // Try to get from Redis cache
-        Object stockObj = redisTemplate.opsForValue().get("stock:" + skuId);
-        if (stockObj instanceof Stock) {
-            return (Stock) stockObj;
+        String key = "stock:" + skuId;
+        String cached = redisTemplate.opsForValue().get(key);
+        if (cached != null) {
+            return toStock(skuId, Integer.parseInt(cached));
         }
 
         // If not in cache, retrieve from database
-        Stock stock = stockRepository.findById(skuId)
+        Stock stock = stockRepository.findBySkuId(skuId)
                 .orElseGet(() -> createStockIfNotExists(skuId));
 
+        if (redisFirst) {
+            // Redis is the source of truth, so the counter must include deltas that are not yet written back
+            return toStock(skuId, loadCounter(skuId));
+        }
+
         // Save to Redis cache
-        redisTemplate.opsForValue().set("stock:" + skuId, stock, 5, TimeUnit.MINUTES);
+        redisTemplate.opsForValue().set(key, String.valueOf(stock.getStock()), 5, TimeUnit.MINUTES);
+
+        return stock;
+    }
+
+    /**
+     * 在Redis中原子扣减库存，扣减结果即为预占结果
+     * 增量先写入写回日志再执行扣减，被拒绝时写入反向增量抵消
+     */
+    private Stock reserveInRedis(Long skuId, int quantity) {
+        String key = "stock:" + skuId;
+        boolean loaded = false;
+        while (true) {
+            writeBehindQueue.enqueue(skuId, -quantity);
+            Long remaining = scriptRegistry.execute(StockScript.RESERVE, Collections.singletonList(key), Collections.singletonList(String.valueOf(quantity)));
+            if (remaining != null && remaining >= 0) {
+                return toStock(skuId, remaining.intValue());
+            }
+            writeBehindQueue.enqueue(skuId, quantity);
+            if (remaining == null || remaining == RESERVE_INSUFFICIENT || loaded) {
+                throw new InsufficientStockException(skuId);
+            }
+            // 计数器不存在时从数据库加载一次后重试
+            loadCounter(skuId);
+            loaded = true;
+        }
+    }
+
+    /**
+     * 一次脚本调用原子扣减多个SKU，任一SKU不足时全部不扣减
+     */
+    private void reserveAllInRedis(Map<Long, Integer> sorted) {
+        List<Long> skuIds = new ArrayList<>(sorted.keySet());
+        List<String> keys = stockKeys(sorted);
+        List<String> args = quantityArgs(sorted);
+        boolean loaded = false;
+        while (true) {
+            sorted.forEach((skuId, quantity) -> writeBehindQueue.enqueue(skuId, -quantity));
+            Long result = scriptRegistry.execute(StockScript.RESERVE_MULTI, keys, args);
+            if (result != null && result == 0) {
+                return;
+            }
+            sorted.forEach(writeBehindQueue::enqueue);
+            if (result == null) {
+                throw new InsufficientStockException(skuIds.get(0));
+            }
+            if (result > 0 || loaded) {
+                throw new InsufficientStockException(skuIds.get((int) Math.abs(result) - 1));
+            }
+            // 有计数器不存在时批量从数据库加载一次后重试
+            Map<Long, Integer> available = writeBehindQueue.readConsistent(() -> {
+                Map<Long, Integer> stored = new HashMap<>();
+                stockRepository.findBySkuIdIn(skuIds).forEach(stock -> stored.put(stock.getSkuId(), stock.getStock()));
+                Map<Long, Integer> withPending = new HashMap<>();
+                for (Long skuId : skuIds) {
+                    withPending.put(skuId, stored.getOrDefault(skuId, 0) + writeBehindQueue.pendingDelta(skuId));
+                }
+                return withPending;
+            });
+            available.forEach(this::initCounter);
+            loaded = true;
+        }
+    }
+
+    /**
+     * 按SKU所在的位置扣减单个SKU，不登记回滚补偿
+     */
+    private Stock reserve(Long skuId, int quantity) {
+        Stock stock;
+        if (stripedCounter.isHot(skuId)) {
+            stock = toStock(skuId, stripedCounter.reserve(skuId, quantity));
+        } else if (redisFirst) {
+            stock = reserveInRedis(skuId, quantity);
+        } else {
+            decreaseInDatabase(skuId, quantity);
+            outboxPublisher.publish(StockEvents.changed(outboxPublisher, skuId, -quantity, null));
+            stock = syncCache(skuId, StockScript.RESERVE, quantity);
+        }
+        soldOutRegistry.onStockChanged(skuId, stock.getStock());
+        return stock;
+    }
+
+    /**
+     * 含热点SKU时无法用一个脚本覆盖所有分片，逐个扣减，失败时归还已扣减的部分；全部成功后整体登记回滚补偿
+     */
+    private void reserveOneByOne(Map<Long, Integer> sorted) {
+        Map<Long, Integer> reserved = new TreeMap<>();
+        try {
+            for (Map.Entry<Long, Integer> entry : sorted.entrySet()) {
+                reserve(entry.getKey(), entry.getValue());
+                reserved.put(entry.getKey(), entry.getValue());
+            }
+        } catch (RuntimeException e) {
+            reserved.forEach(this::increaseStock);
+            throw e;
+        }
+        releaseOnRollback(reserved);
+    }
+
+    /**
+     * Redis计数器和热点分片上的预占不随调用方的数据库事务回滚，登记回滚时归还；
+     * 数据库模式下普通SKU的扣减属于同一事务，不需要补偿
+     */
+    private void releaseOnRollback(Map<Long, Integer> reserved) {
+        Map<Long, Integer> outside = new TreeMap<>();
+        reserved.forEach((skuId, quantity) -> {
+            if (redisFirst || stripedCounter.isHot(skuId)) {
+                outside.put(skuId, quantity);
+            }
+        });
+        RollbackRelease.register(outside, this::increaseStocks);
+    }
+
+    /**
+     * 数据库模式下按SKU顺序用一个JDBC批次条件更新，任一SKU不足时整个事务回滚；Redis中的计数器只是缓存，直接一次性失效
+     * 多SKU批量扣减本身就带库存条件，versioned模式也不再逐行读版本号
+     */
+    private void applyInDatabase(Map<Long, Integer> sorted, int sign) {
+        if (sign > 0) {
+            batchUpdater.increaseAll(sorted);
+        } else {
+            Long insufficient = batchUpdater.decreaseAll(sorted);
+            if (insufficient != null) {
+                throw new InsufficientStockException(insufficient);
+            }
+        }
+        Map<Long, Integer> deltas = new TreeMap<>();
+        sorted.forEach((skuId, quantity) -> deltas.put(skuId, sign * quantity));
+        outboxPublisher.publishAll(StockEvents.deltas(outboxPublisher, deltas));
+        redisTemplate.delete(stockKeys(sorted));
+    }
+
+    private void increaseInDatabase(Long skuId, int quantity) {
+        if (stockRepository.increase(skuId, quantity) == 0) {
+            createStockIfNotExists(skuId);
+            stockRepository.increase(skuId, quantity);
+        }
+    }
+
+    /**
+     * 数据库扣减：默认一条带库存条件的UPDATE完成判断和扣减；
+     * versioned模式下先读库存和版本号，再按版本号条件更新，冲突时用加锁读取最新版本后重试，次数有上限
+     * 普通读取在MySQL可重复读下每次都返回事务快照中的同一版本，重试必须用加锁的当前读；
+     * 重试之间不休眠，避免在订单事务中持有连接和锁等待
+     *
+     * @throws InsufficientStockException 如果库存不足或记录不存在
+     * @throws OptimisticLockingFailureException 如果版本冲突超过重试次数
+     */
+    private void decreaseInDatabase(Long skuId, int quantity) {
+        if (!versioned) {
+            if (stockRepository.decreaseIfSufficient(skuId, quantity) == 0) {
+                throw new InsufficientStockException(skuId);
+            }
+            return;
+        }
+        Stock stock = stockRepository.findBySkuId(skuId).orElseThrow(() -> new InsufficientStockException(skuId));
+        for (int attempt = 1; ; attempt++) {
+            if (stock.getStock() < quantity) {
+                throw new InsufficientStockException(skuId);
+            }
+            if (stockRepository.compareAndSet(skuId, stock.getStock() - quantity, stock.getVersion()) > 0) {
+                return;
+            }
+            stockMetrics.recordConflict(skuId);
+            if (attempt >= maxAttempts) {
+                stockMetrics.recordRetriesExhausted(skuId);
+                throw new OptimisticLockingFailureException("Optimistic locking failed for stock with SKU ID: " + skuId
+                        + " after " + attempt + " attempts");
+            }
+            stock = stockRepository.findForUpdateBySkuId(skuId).orElseThrow(() -> new InsufficientStockException(skuId));
+        }
+    }
+
+    /**
+     * 数据库更新后同步Redis缓存，返回更新后的库存
+     * 缓存的计数器不存在或与数据库不一致时以数据库为准
+     */
+    private Stock syncCache(Long skuId, StockScript script, int quantity) {
+        String key = "stock:" + skuId;
+        Long cached = null;
+        try {
+            cached = scriptRegistry.execute(script, Collections.singletonList(key), Collections.singletonList(String.valueOf(quantity)));
+        } catch (Exception e) {
+            // Handle Redis update failure
+            logger.error("Failed to update Redis: {}", e.getMessage(), e);
+            // Retry mechanism
+            if (!retryUpdateRedis(script, key, quantity)) {
+                // 交给对账任务尽快核对并修复该计数器
+                reconciler.markSuspect(skuId);
+            }
+        }
+        if (cached != null && cached >= 0) {
+            return toStock(skuId, cached.intValue());
+        }
+        if (cached != null && cached == RESERVE_INSUFFICIENT) {
+            // 缓存落后于数据库，直接失效
+            redisTemplate.delete(key);
+        }
+        return stockRepository.findBySkuId(skuId).orElseGet(() -> toStock(skuId, 0));
+    }
+
+    /**
+     * 把已提交的净变化累加到Redis计数器上，保持 计数器 = 数据库库存 + 未写回增量；
+     * 未加载的计数器下次从数据库加载，热点SKU的分片按新库存重新拆分
+     */
+    private void syncCounters(Map<Long, Integer> deltas) {
+        List<List<String>> keys = new ArrayList<>(deltas.size());
+        List<List<String>> args = new ArrayList<>(deltas.size());
+        for (Map.Entry<Long, Integer> delta : deltas.entrySet()) {
+            if (stripedCounter.isHot(delta.getKey())) {
+                stripedCounter.reset(delta.getKey());
+            } else {
+                keys.add(Collections.singletonList("stock:" + delta.getKey()));
+                args.add(Collections.singletonList(String.valueOf(delta.getValue())));
+            }
+        }
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            scriptRegistry.executePipelined(StockScript.RELEASE, keys, args);
+        } catch (RuntimeException e) {
+            logger.error("Failed to apply batch adjustments to Redis, evicting counters: {}", e.getMessage(), e);
+            List<String> evicted = new ArrayList<>(keys.size());
+            keys.forEach(evicted::addAll);
+            redisTemplate.delete(evicted);
+        }
+    }
+
+    private void notifySoldOut(List<StockAdjustmentResult> results) {
+        for (StockAdjustmentResult result : results) {
+            if (result.isSuccess()) {
+                soldOutRegistry.onStockChanged(result.getSkuId(), result.getStock());
+            }
+        }
+    }
+
+    /**
+     * 批量扣减后按MGET读到的计数器更新售罄状态，计数器已不存在的SKU跳过
+     */
+    private void notifyRemaining(Collection<Long> skuIds, List<String> counters) {
+        if (counters == null) {
+            return;
+        }
+        Iterator<String> values = counters.iterator();
+        for (Long skuId : skuIds) {
+            String value = values.hasNext() ? values.next() : null;
+            if (value != null) {
+                soldOutRegistry.onStockChanged(skuId, Integer.parseInt(value));
+            }
+        }
+    }
+
+    private static List<String> stockKeys(Map<Long, Integer> quantities) {
+        List<String> keys = new ArrayList<>(quantities.size());
+        for (Long skuId : quantities.keySet()) {
+            keys.add("stock:" + skuId);
+        }
+        return keys;
+    }
+
+    private static List<String> quantityArgs(Map<Long, Integer> quantities) {
+        List<String> args = new ArrayList<>(quantities.size());
+        for (Integer quantity : quantities.values()) {
+            args.add(String.valueOf(quantity));
+        }
+        return args;
+    }
+
+    private Stock releaseInRedis(Long skuId, int quantity) {
+        String key = "stock:" + skuId;
+        writeBehindQueue.enqueue(skuId, quantity);
+        Long available = scriptRegistry.execute(StockScript.RELEASE, Collections.singletonList(key), Collections.singletonList(String.valueOf(quantity)));
+        if (available == null || available == RESERVE_KEY_MISSING) {
+            // 计数器未加载时，下次加载会包含这笔尚未写回的增量
+            return getStockBySkuId(skuId);
+        }
+        return toStock(skuId, available.intValue());
+    }
+
+    /**
+     * 用数据库库存加上未写回的增量初始化Redis计数器，已存在时保持不变
+     *
+     * @return 计数器当前值
+     */
+    private int loadCounter(Long skuId) {
+        return initCounter(skuId, writeBehindQueue.readConsistent(() -> stockRepository.findBySkuId(skuId)
+                .map(Stock::getStock).orElse(0) + writeBehindQueue.pendingDelta(skuId)));
+    }
+
+    // 计数器不存在时按已包含未写回增量的可用库存创建
+    private int initCounter(Long skuId, int available) {
+        String key = "stock:" + skuId;
+        String initial = String.valueOf(available);
+        Boolean created = redisTemplate.opsForValue().setIfAbsent(key, initial);
+        if (Boolean.TRUE.equals(created)) {
+            return Integer.parseInt(initial);
+        }
+        String current = redisTemplate.opsForValue().get(key);
+        return Integer.parseInt(current != null ? current : initial);
+    }
 
+    private Stock toStock(Long skuId, int available) {
+        Stock stock = new Stock();
+        stock.setSkuId(skuId);
+        stock.setStock(available);
         return stock;
     }
 
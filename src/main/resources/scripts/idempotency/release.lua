@@ -0,0 +1,8 @@
+-- 占位仍属于本次执行时删除，已被替换为响应或被其他执行重新占位时不动
+-- KEYS[1]: idem:{key}  ARGV[1]: 占位令牌
+-- 返回: 1 已删除, 0 占位已不属于本次执行
+if redis.call('get', KEYS[1]) ~= ARGV[1] then
+    return 0
+end
+redis.call('del', KEYS[1])
+return 1
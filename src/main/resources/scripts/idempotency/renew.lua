@@ -0,0 +1,8 @@
+-- 占位仍属于本次执行时延长过期时间
+-- KEYS[1]: idem:{key}  ARGV[1]: 占位令牌  ARGV[2]: 过期时间（毫秒）
+-- 返回: 1 已延长, 0 占位已不属于本次执行
+if redis.call('get', KEYS[1]) ~= ARGV[1] then
+    return 0
+end
+redis.call('pexpire', KEYS[1], ARGV[2])
+return 1
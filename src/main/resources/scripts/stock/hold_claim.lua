@@ -0,0 +1,16 @@
+-- 认领一笔库存预留：确认时计入已售，释放或过期时只移除预留，库存由调用方归还
+-- 确认、释放和过期清理并发时只有一方能认领成功
+-- KEYS[1]: stock-hold:{holdId}  KEYS[2]: stock-hold:expiry  KEYS[3]: stock-level:held  KEYS[4]: stock-level:sold
+-- ARGV[1]: holdId  ARGV[2]: 1 确认, 0 释放
+-- 返回: 预留数量, 0 预留不存在（已过期或已处理）
+local hold = redis.call('hmget', KEYS[1], 'skuId', 'quantity')
+if not hold[1] then
+    return 0
+end
+redis.call('del', KEYS[1])
+redis.call('zrem', KEYS[2], ARGV[1])
+redis.call('hincrby', KEYS[3], hold[1], -tonumber(hold[2]))
+if ARGV[2] == '1' then
+    redis.call('hincrby', KEYS[4], hold[1], hold[2])
+end
+return tonumber(hold[2])
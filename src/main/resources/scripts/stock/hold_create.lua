@@ -0,0 +1,8 @@
+-- 登记一笔库存预留，库存已由调用方从可用库存中扣出
+-- KEYS[1]: stock-hold:{holdId}  KEYS[2]: stock-hold:expiry  KEYS[3]: stock-level:held
+-- ARGV[1]: holdId  ARGV[2]: skuId  ARGV[3]: 数量  ARGV[4]: 过期时间（毫秒时间戳）
+-- 返回: 1
+redis.call('hset', KEYS[1], 'skuId', ARGV[2], 'quantity', ARGV[3], 'expireAt', ARGV[4])
+redis.call('zadd', KEYS[2], ARGV[4], ARGV[1])
+redis.call('hincrby', KEYS[3], ARGV[2], ARGV[3])
+return 1
@@ -0,0 +1,7 @@
+-- 归还单个SKU的库存计数器
+-- KEYS[1]: stock:{skuId}  ARGV[1]: 归还数量
+-- 返回: -1 计数器不存在, 否则为归还后的库存
+if redis.call('exists', KEYS[1]) == 0 then
+    return -1
+end
+return redis.call('incrby', KEYS[1], ARGV[1])
@@ -0,0 +1,11 @@
+-- 原子归还多个SKU的库存计数器，不存在的计数器跳过
+-- KEYS[i]: stock:{skuId}  ARGV[i]: 对应的归还数量
+-- 返回: 实际更新的计数器个数
+local updated = 0
+for i = 1, #KEYS do
+    if redis.call('exists', KEYS[i]) == 1 then
+        redis.call('incrby', KEYS[i], ARGV[i])
+        updated = updated + 1
+    end
+end
+return updated
@@ -0,0 +1,11 @@
+-- 扣减单个SKU的库存计数器
+-- KEYS[1]: stock:{skuId}  ARGV[1]: 扣减数量
+-- 返回: -1 计数器不存在, -2 库存不足, 否则为扣减后的库存
+local current = redis.call('get', KEYS[1])
+if not current then
+    return -1
+end
+if tonumber(current) < tonumber(ARGV[1]) then
+    return -2
+end
+return redis.call('decrby', KEYS[1], ARGV[1])
@@ -0,0 +1,16 @@
+-- 原子扣减多个SKU的库存计数器，全部满足才扣减
+-- KEYS[i]: stock:{skuId}  ARGV[i]: 对应的扣减数量
+-- 返回: 0 成功, -i 第i个计数器不存在, i 第i个SKU库存不足
+for i = 1, #KEYS do
+    local current = redis.call('get', KEYS[i])
+    if not current then
+        return -i
+    end
+    if tonumber(current) < tonumber(ARGV[i]) then
+        return i
+    end
+end
+for i = 1, #KEYS do
+    redis.call('decrby', KEYS[i], ARGV[i])
+end
+return 0
@@ -0,0 +1,8 @@
+-- 计数器存在时覆盖为新值
+-- KEYS[1]: stock:{skuId}  ARGV[1]: 新库存
+-- 返回: 1 已更新, 0 计数器不存在
+if redis.call('exists', KEYS[1]) == 0 then
+    return 0
+end
+redis.call('set', KEYS[1], ARGV[1])
+return 1
@@ -0,0 +1,17 @@
+-- 一次性创建热点SKU的全部分片
+-- KEYS[i]: stock:{skuId}:{i}  ARGV[i]: 第i个分片的初始库存
+-- 返回: 1 已创建, 0 分片已全部存在未改动, 2 只有部分分片存在，已整体按新值重建
+local existing = 0
+for i = 1, #KEYS do
+    existing = existing + redis.call('exists', KEYS[i])
+end
+if existing == #KEYS then
+    return 0
+end
+for i = 1, #KEYS do
+    redis.call('set', KEYS[i], ARGV[i])
+end
+if existing == 0 then
+    return 1
+end
+return 2
@@ -0,0 +1,23 @@
+-- 把其他分片的库存原子地搬运到目标分片，搬运途中不会丢失也不会少计
+-- KEYS[1]: 目标分片 stock:{skuId}:{i}  KEYS[2..n]: 来源分片，按优先顺序  ARGV[1]: 最多搬运的数量
+-- 返回: -1 目标分片不存在, 否则为实际搬运的数量
+if redis.call('exists', KEYS[1]) == 0 then
+    return -1
+end
+local wanted = tonumber(ARGV[1])
+local moved = 0
+for i = 2, #KEYS do
+    if moved >= wanted then
+        break
+    end
+    local current = tonumber(redis.call('get', KEYS[i]) or '0')
+    local take = math.min(current, wanted - moved)
+    if take > 0 then
+        redis.call('decrby', KEYS[i], take)
+        moved = moved + take
+    end
+end
+if moved > 0 then
+    redis.call('incrby', KEYS[1], moved)
+end
+return moved
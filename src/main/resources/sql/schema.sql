@@ -1,8 +1,8 @@
 CREATE TABLE `tb_sku` (
-  `id` bigint(20) NOT NULL AUTO_INCREMENT COMMENT 'sku id',
+  `id` bigint(20) NOT NULL COMMENT 'sku id，由应用按雪花算法生成',
   `title` varchar(255) NOT NULL COMMENT '商品标题',
   `images` varchar(1000) DEFAULT '' COMMENT '商品的图片，多个图片以‘,’分割',
-  `price` bigint(15) NOT NULL DEFAULT '0' COMMENT '销售价格，单位为分',
+  `price` decimal(10, 2) NOT NULL DEFAULT 0 COMMENT '销售价格，单位为元',
   `indexes` varchar(100) COMMENT '特有规格属性在spu属性模板中的对应下标组合',
   `own_spec` varchar(1000) COMMENT 'sku的特有规格参数，json格式，反序列化时应使用linkedHashMap，保证有序',
   `enable` tinyint(1) NOT NULL DEFAULT '1' COMMENT '是否有效，0无效，1有效',
@@ -12,18 +12,64 @@ CREATE TABLE `tb_sku` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='sku表,该表表示具体的商品实体';
 
 CREATE TABLE `tb_stock` (
+  `id` bigint(20) NOT NULL COMMENT '主键，由应用按雪花算法生成',
   `sku_id` bigint(20) NOT NULL COMMENT '库存对应的商品sku id',
   `stock` int(9) NOT NULL COMMENT '库存数量',
-  PRIMARY KEY (`sku_id`)
+  `version` bigint(20) NOT NULL DEFAULT 0 COMMENT '版本号，每次修改库存时递增',
+  `create_time` datetime COMMENT '添加时间',
+  `modify_time` datetime COMMENT '最后修改时间',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_sku_id` (`sku_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='库存表';
 
 CREATE TABLE tb_order (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     customer_id VARCHAR(255) NOT NULL,
     status INT NOT NULL,
-    sku_id BIGINT NOT NULL,
-    price DECIMAL(10, 2) NOT NULL,
+    sku_id BIGINT NULL,
+    price DECIMAL(10, 2) NULL,
     total_amount DECIMAL(10, 2) NOT NULL,
     create_time TIMESTAMP NOT NULL,
-    modify_time TIMESTAMP NOT NULL
+    modify_time TIMESTAMP NOT NULL,
+    KEY idx_order_customer (customer_id, create_time, id, status, total_amount),
+    KEY idx_order_status_modified (status, modify_time),
+    KEY idx_order_status_created (status, create_time)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='订单表';
+
+CREATE TABLE tb_order_line (
+    id BIGINT PRIMARY KEY,
+    order_id BIGINT NOT NULL,
+    sku_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    price DECIMAL(10, 2) NOT NULL,
+    KEY idx_order_id (order_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='订单明细表';
+
+CREATE TABLE `tb_stock_flush_segment` (
+  `segment_key` varchar(64) NOT NULL COMMENT '库存日志段标识',
+  `flush_time` datetime NOT NULL COMMENT '写回时间',
+  PRIMARY KEY (`segment_key`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='库存写回日志段标记表';
+
+CREATE TABLE `tb_outbox` (
+  `id` bigint NOT NULL COMMENT '事件ID，按时间递增',
+  `aggregate_type` varchar(32) NOT NULL COMMENT '聚合类型',
+  `aggregate_id` varchar(64) NOT NULL COMMENT '聚合ID',
+  `event_type` varchar(64) NOT NULL COMMENT '事件类型',
+  `payload` text NOT NULL COMMENT 'JSON格式的事件内容',
+  `create_time` datetime NOT NULL COMMENT '创建时间',
+  `delivered_time` datetime NULL COMMENT '投递时间，未投递时为空',
+  PRIMARY KEY (`id`),
+  KEY `idx_outbox_pending` (`delivered_time`, `id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='事件发件箱';
+
+CREATE TABLE `tb_order_archive` (
+  `id` bigint NOT NULL COMMENT '原订单ID',
+  `customer_id` varchar(255) NOT NULL COMMENT '客户ID',
+  `status` int NOT NULL COMMENT '归档时的订单状态',
+  `total_amount` decimal(10, 2) NOT NULL COMMENT '总金额',
+  `create_time` datetime NOT NULL COMMENT '下单时间',
+  `archive_time` datetime NOT NULL COMMENT '归档时间',
+  `payload` mediumblob NOT NULL COMMENT 'gzip压缩的订单JSON，包含明细',
+  PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8 COMMENT='订单归档表';
@@ -0,0 +1,60 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.common.ConcurrentBitSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentBitSetTest {
+
+    @Test
+    void testSetAndClearReportTransitions() {
+        ConcurrentBitSet bits = new ConcurrentBitSet();
+
+        assertTrue(bits.set(42));
+        assertFalse(bits.set(42));
+        assertTrue(bits.get(42));
+        assertFalse(bits.get(43));
+        assertTrue(bits.clear(42));
+        assertFalse(bits.clear(42));
+        assertFalse(bits.get(42));
+    }
+
+    @Test
+    void testSparseIndexesAcrossPages() {
+        ConcurrentBitSet bits = new ConcurrentBitSet();
+        long snowflake = 1_234_567_890_123_456_789L;
+
+        bits.set(0);
+        bits.set(4095);
+        bits.set(4096);
+        bits.set(snowflake);
+
+        List<Long> indexes = new ArrayList<>();
+        bits.forEach(indexes::add);
+        indexes.sort(Long::compare);
+        assertEquals(Arrays.asList(0L, 4095L, 4096L, snowflake), indexes);
+        assertEquals(4, bits.cardinality());
+    }
+
+    @Test
+    void testConcurrentSetsInSameWordAreNotLost() throws InterruptedException {
+        ConcurrentBitSet bits = new ConcurrentBitSet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 64 * 8; i++) {
+            long index = i;
+            executor.execute(() -> bits.set(index));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(64 * 8, bits.cardinality());
+    }
+}
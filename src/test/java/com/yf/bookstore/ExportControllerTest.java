@@ -0,0 +1,74 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.controller.ExportController;
+import com.yf.bookstore.exception.export.ExportBusyException;
+import com.yf.bookstore.export.NdjsonExporter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportControllerTest {
+
+    private ExportController controller;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO tb_stock VALUES (1, 100, 7, 0, NULL, NULL)");
+        NdjsonExporter exporter = new NdjsonExporter(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), new ObjectMapper(), 100);
+        // 最多同时两个导出
+        controller = new ExportController(exporter, 2);
+    }
+
+    @Test
+    void testRejectsExportsBeyondLimitUntilOneFinishes() throws IOException {
+        ResponseEntity<StreamingResponseBody> first = controller.exportStocks(false);
+        ResponseEntity<StreamingResponseBody> second = controller.exportSkus(true);
+        ExportBusyException e = assertThrows(ExportBusyException.class, () -> controller.exportOrders(false));
+        assertEquals(429, e.getStatusCode());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        first.getBody().writeTo(out);
+        assertTrue(out.size() > 0);
+
+        assertNotNull(controller.exportOrders(false).getBody());
+        assertThrows(ExportBusyException.class, () -> controller.exportStocks(false));
+        second.getBody().writeTo(new ByteArrayOutputStream());
+    }
+
+    @Test
+    void testFailedExportReleasesPermit() {
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            StreamingResponseBody body = controller.exportStocks(false).getBody();
+            assertThrows(IOException.class, () -> body.writeTo(broken));
+        }
+        assertNotNull(controller.exportStocks(false).getBody());
+        assertNotNull(controller.exportStocks(false).getBody());
+        assertThrows(ExportBusyException.class, () -> controller.exportStocks(false));
+    }
+}
@@ -0,0 +1,97 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.common.HierarchicalTimingWheel;
+import com.yf.bookstore.common.TimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long START = 1_000_000L;
+
+    @Test
+    void testLongDeadlinesMoveDownThroughLevels() {
+        // 每层4格 x 10ms：第0层一圈40ms，第1层一圈160ms，第2层一圈640ms
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, START);
+        wheel.schedule("near", START + 25);
+        wheel.schedule("far", START + 500);
+        wheel.schedule("farther", START + 2_000);
+
+        assertTrue(wheel.advance(START).isEmpty());
+        assertTrue(wheel.levels() >= 3);
+        assertEquals(Collections.singletonList("near"), wheel.advance(START + 30));
+        for (long t = START + 40; t < START + 500; t += 10) {
+            assertTrue(wheel.advance(t).isEmpty(), "nothing due at " + (t - START));
+        }
+        assertEquals(Collections.singletonList("far"), wheel.advance(START + 500));
+        assertEquals(1, wheel.size());
+        assertEquals(Collections.singletonList("farther"), wheel.advance(START + 2_005));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testPartialTickIsRescanned() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(100, 8, START);
+        wheel.schedule("a", START + 150);
+        wheel.schedule("b", START + 190);
+
+        assertEquals(Collections.singletonList("a"), wheel.advance(START + 160));
+        assertEquals(Collections.singletonList("b"), wheel.advance(START + 195));
+    }
+
+    @Test
+    void testOverdueAndCancelledItems() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, START);
+        wheel.advance(START + 1_000);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", START + 5_000);
+        wheel.schedule("overdue", START + 10);
+        cancelled.cancel();
+
+        assertEquals(Collections.singletonList("overdue"), wheel.advance(START + 1_010));
+        assertTrue(wheel.advance(START + 6_000).isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testRandomDeadlinesExpireInTickOrderAndNeverEarly() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(10, 8, START);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            long deadline = START + 1 + random.nextInt(100_000);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+        List<Long> expired = new ArrayList<>();
+        for (long now = START; now <= START + 100_010; now += 10) {
+            for (Long deadline : wheel.advance(now)) {
+                assertTrue(deadline <= now, "expired early");
+                assertTrue(deadline > now - 10, "expired late");
+                expired.add(deadline);
+            }
+        }
+        Collections.sort(deadlines);
+        Collections.sort(expired);
+        assertEquals(deadlines, expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testSkippedTimeExpiresEverythingDue() {
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(10, 4, START);
+        wheel.schedule(1, START + 300);
+        wheel.schedule(2, START + 3_000);
+        wheel.advance(START);
+
+        List<Integer> expired = wheel.advance(START + 10_000);
+        Collections.sort(expired);
+        assertEquals(Arrays.asList(1, 2), expired);
+    }
+}
@@ -0,0 +1,162 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.order.IdempotencyGuard;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class IdempotencyGuardTest {
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger renewals = new AtomicInteger();
+    private StringRedisTemplate redisTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        when(ops.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(ops).set(anyString(), anyString(), anyLong(), any(TimeUnit.class));
+        // renew.lua 带令牌和过期时间两个参数，release.lua 只带令牌，都只在占位仍属于该令牌时生效
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(invocation -> {
+            String key = invocation.<List<String>>getArgument(1).get(0);
+            String token = invocation.getArgument(2);
+            if (!token.equals(redis.get(key))) {
+                return 0L;
+            }
+            if (invocation.getArguments().length == 4) {
+                renewals.incrementAndGet();
+            } else {
+                redis.remove(key, token);
+            }
+            return 1L;
+        });
+    }
+
+    private IdempotencyGuard guard() {
+        return guard(30);
+    }
+
+    private IdempotencyGuard guard(long lockTtlSeconds) {
+        return new IdempotencyGuard(redisTemplate, new ObjectMapper(), 60, lockTtlSeconds, 2000, 1000);
+    }
+
+    @Test
+    void testConcurrentDuplicatesExecuteOnce() throws Exception {
+        IdempotencyGuard guard = guard();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(() -> guard.execute("c1:k1", () -> {
+                    executions.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return ResponseEntity.ok(Collections.singletonMap("orderId", 42));
+                }));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> future : futures) {
+                ResponseEntity<?> response = (ResponseEntity<?>) future.get(5, TimeUnit.SECONDS);
+                assertEquals(200, response.getStatusCodeValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void testReplaysResponseStoredByAnotherNode() {
+        guard().execute("c1:k2", () -> ResponseEntity.accepted().body(Collections.singletonMap("ticket", "t-1")));
+
+        AtomicInteger executions = new AtomicInteger();
+        ResponseEntity<?> replayed = guard().execute("c1:k2", () -> {
+            executions.incrementAndGet();
+            return ResponseEntity.ok().build();
+        });
+
+        assertEquals(0, executions.get());
+        assertEquals(202, replayed.getStatusCodeValue());
+        assertEquals("{\"ticket\":\"t-1\"}", replayed.getBody());
+        assertEquals("true", replayed.getHeaders().getFirst(IdempotencyGuard.REPLAYED_HEADER));
+    }
+
+    @Test
+    void testFailedAttemptCanBeRetried() {
+        IdempotencyGuard guard = guard();
+        assertThrows(InsufficientStockException.class, () -> guard.execute("c1:k3", () -> {
+            throw new InsufficientStockException(1L);
+        }));
+        assertFalse(redis.containsKey("idem:c1:k3"));
+
+        ResponseEntity<?> response = guard.execute("c1:k3", () -> ResponseEntity.ok("done"));
+        assertEquals("done", response.getBody());
+    }
+
+    @Test
+    void testFailedAttemptKeepsClaimTakenOverByAnotherNode() {
+        IdempotencyGuard guard = guard();
+        assertThrows(InsufficientStockException.class, () -> guard.execute("c1:k4", () -> {
+            // 本次占位已过期，其他节点重新占位
+            redis.put("idem:c1:k4", "PENDING:other");
+            throw new InsufficientStockException(1L);
+        }));
+
+        assertEquals("PENDING:other", redis.get("idem:c1:k4"));
+    }
+
+    @Test
+    void testClaimIsRenewedWhileActionRuns() {
+        IdempotencyGuard guard = guard(1);
+        try {
+            ResponseEntity<?> response = guard.execute("c1:k5", () -> {
+                try {
+                    Thread.sleep(800);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ResponseEntity.ok("slow");
+            });
+            assertEquals("slow", response.getBody());
+        } finally {
+            guard.shutdown();
+        }
+        assertTrue(renewals.get() >= 1);
+        assertFalse(redis.get("idem:c1:k5").startsWith("PENDING:"));
+    }
+}
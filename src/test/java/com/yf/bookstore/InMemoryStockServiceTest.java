@@ -0,0 +1,260 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.inventory.SoldOutRegistry;
+import com.yf.bookstore.inventory.StockHoldManager;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.model.inventory.StockAdjustment;
+import com.yf.bookstore.model.inventory.StockAdjustmentResult;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.repository.StockRepository;
+import com.yf.bookstore.service.impl.InMemoryStockServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class InMemoryStockServiceTest {
+
+    @Mock
+    private StockRepository stockRepository;
+
+    @Mock
+    private StockWriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private StockHoldManager holdManager;
+
+    @Mock
+    private SoldOutRegistry soldOutRegistry;
+
+    @Mock
+    private OutboxPublisher outboxPublisher;
+
+    private InMemoryStockServiceImpl stockService;
+
+    @BeforeEach
+    void setUp() {
+        when(writeBehindQueue.readConsistent(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        stockService = new InMemoryStockServiceImpl(stockRepository, writeBehindQueue, holdManager, soldOutRegistry, outboxPublisher, 16);
+    }
+
+    private Stock stock(Long skuId, int quantity) {
+        Stock stock = new Stock();
+        stock.setSkuId(skuId);
+        stock.setStock(quantity);
+        return stock;
+    }
+
+    @Test
+    void increaseStock_StockExists_UpdatesStock() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 10)));
+
+        Stock updatedStock = stockService.increaseStock(1L, 5);
+
+        assertEquals(15, updatedStock.getStock());
+        verify(writeBehindQueue, times(1)).enqueue(1L, 5);
+    }
+
+    @Test
+    void increaseStock_StockDoesNotExist_CreatesNewStock() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.empty());
+
+        Stock updatedStock = stockService.increaseStock(1L, 5);
+
+        assertEquals(1L, updatedStock.getSkuId());
+        assertEquals(5, updatedStock.getStock());
+    }
+
+    @Test
+    void decreaseStock_StockExists_UpdatesStock() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 10)));
+
+        Stock updatedStock = stockService.decreaseStock(1L, 5);
+
+        assertEquals(5, updatedStock.getStock());
+        verify(writeBehindQueue, times(1)).enqueue(1L, -5);
+        verify(stockRepository, never()).saveAndFlush(any(Stock.class));
+    }
+
+    @Test
+    void decreaseStock_InsufficientStock_ThrowsWithoutJournaling() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 3)));
+
+        assertThrows(InsufficientStockException.class, () -> stockService.decreaseStock(1L, 5));
+        assertEquals(3, stockService.getStockBySkuId(1L).getStock());
+        verify(writeBehindQueue, never()).enqueue(anyLong(), anyInt());
+    }
+
+    @Test
+    void decreaseStock_ConcurrentOrders_NeverOversells() throws InterruptedException {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 100)));
+        stockService.getStockBySkuId(1L);
+
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> {
+                try {
+                    stockService.decreaseStock(1L, 1);
+                    sold.incrementAndGet();
+                } catch (InsufficientStockException ignored) {
+                    // 售罄
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(100, sold.get());
+        assertEquals(0, stockService.getStockBySkuId(1L).getStock());
+    }
+
+    @Test
+    void decreaseStocks_OneSkuInsufficient_RestoresOthers() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 10)));
+        when(stockRepository.findBySkuId(2L)).thenReturn(Optional.of(stock(2L, 1)));
+
+        Map<Long, Integer> quantities = new HashMap<>();
+        quantities.put(1L, 4);
+        quantities.put(2L, 2);
+
+        assertThrows(InsufficientStockException.class, () -> stockService.decreaseStocks(quantities));
+        assertEquals(10, stockService.getStockBySkuId(1L).getStock());
+        assertEquals(1, stockService.getStockBySkuId(2L).getStock());
+    }
+
+    @Test
+    void decreaseStocks_TransactionRolledBack_RestoresLedger() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 10)));
+        when(stockRepository.findBySkuId(2L)).thenReturn(Optional.of(stock(2L, 5)));
+        Map<Long, Integer> quantities = new HashMap<>();
+        quantities.put(1L, 4);
+        quantities.put(2L, 5);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            stockService.decreaseStocks(quantities);
+            assertEquals(6, stockService.getStockBySkuId(1L).getStock());
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(10, stockService.getStockBySkuId(1L).getStock());
+        assertEquals(5, stockService.getStockBySkuId(2L).getStock());
+        verify(writeBehindQueue).enqueue(1L, 4);
+        verify(writeBehindQueue).enqueue(2L, 5);
+    }
+
+    @Test
+    void deleteStock_StockExists_DeletesStock() {
+        Stock stock = stock(1L, 10);
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock));
+
+        Stock deletedStock = stockService.deleteStock(1L);
+
+        assertEquals(1L, deletedStock.getSkuId());
+        verify(stockRepository, times(1)).delete(stock);
+    }
+
+    @Test
+    void createStock_NewStock_CreatesStock() {
+        Stock stock = stock(1L, 10);
+        when(stockRepository.save(any(Stock.class))).thenReturn(stock);
+
+        Stock createdStock = stockService.createStock(stock);
+
+        assertEquals(10, createdStock.getStock());
+        assertEquals(10, stockService.getStockBySkuId(1L).getStock());
+        verify(stockRepository, never()).findBySkuId(1L);
+    }
+
+    @Test
+    void updateStock_StockExists_UpdatesStock() {
+        Stock stock = stock(1L, 10);
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 3)));
+        when(stockRepository.save(any(Stock.class))).thenReturn(stock);
+
+        Stock updatedStock = stockService.updateStock(stock);
+
+        assertEquals(10, updatedStock.getStock());
+        assertEquals(10, stockService.getStockBySkuId(1L).getStock());
+    }
+
+    @Test
+    void updateStock_AfterReservations_EnqueuesDifferenceFromLedger() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 10)));
+        stockService.decreaseStock(1L, 4);
+
+        // 账本为6，队列中-4尚未写回，覆盖为20相当于+14
+        Stock updatedStock = stockService.updateStock(stock(1L, 20));
+
+        assertEquals(20, updatedStock.getStock());
+        assertEquals(20, stockService.getStockBySkuId(1L).getStock());
+        verify(writeBehindQueue).enqueue(1L, 14);
+        verify(writeBehindQueue, never()).flush();
+        verify(stockRepository, never()).save(any(Stock.class));
+    }
+
+    @Test
+    void getStockBySkuId_StockNotLoaded_LoadsOnceIncludingPendingDeltas() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 10)));
+        when(writeBehindQueue.pendingDelta(1L)).thenReturn(-2);
+
+        assertEquals(8, stockService.getStockBySkuId(1L).getStock());
+        assertEquals(8, stockService.getStockBySkuId(1L).getStock());
+        verify(stockRepository, times(1)).findBySkuId(1L);
+    }
+
+    @Test
+    void adjustStocks_MixedItems_ReportsPerItemResults() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(1L, 10)));
+        when(stockRepository.findBySkuId(2L)).thenReturn(Optional.of(stock(2L, 3)));
+
+        List<StockAdjustmentResult> results = stockService.adjustStocks(Arrays.asList(
+                new StockAdjustment(1L, -4, null),
+                new StockAdjustment(2L, -5, null),
+                new StockAdjustment(2L, null, 20),
+                new StockAdjustment(3L, null, null)));
+
+        assertTrue(results.get(0).isSuccess());
+        assertEquals(6, results.get(0).getStock());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals(3, results.get(1).getStock());
+        assertTrue(results.get(2).isSuccess());
+        assertFalse(results.get(3).isSuccess());
+        assertEquals(20, stockService.getStockBySkuId(2L).getStock());
+        verify(writeBehindQueue).enqueue(1L, -4);
+        verify(writeBehindQueue).enqueue(2L, 17);
+        verify(writeBehindQueue, never()).enqueue(2L, -5);
+    }
+}
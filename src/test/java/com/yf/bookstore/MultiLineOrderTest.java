@@ -0,0 +1,217 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.exception.commodity.SkuNotFoundException;
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.exception.order.InvalidOrderException;
+import com.yf.bookstore.exception.order.OrderAlreadyProcessedException;
+import com.yf.bookstore.exception.order.OrderBackpressureException;
+import com.yf.bookstore.exception.order.OrderNotFoundException;
+import com.yf.bookstore.model.commodity.Sku;
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLine;
+import com.yf.bookstore.model.order.OrderLineRequest;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.order.OrderArchive;
+import com.yf.bookstore.order.OrderExpiryScheduler;
+import com.yf.bookstore.order.OrderIngestionPipeline;
+import com.yf.bookstore.order.OrderStatusCache;
+import com.yf.bookstore.order.OrderTransitions;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.repository.OrderRepository;
+import com.yf.bookstore.repository.SkuRepository;
+import com.yf.bookstore.service.StockService;
+import com.yf.bookstore.service.impl.OrderServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MultiLineOrderTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private SkuRepository skuRepository;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private OrderIngestionPipeline ingestionPipeline;
+
+    @Mock
+    private OutboxPublisher outboxPublisher;
+
+    @Mock
+    private OrderArchive orderArchive;
+
+    @Mock
+    private OrderExpiryScheduler expiryScheduler;
+
+    @Mock
+    private OrderTransitions orderTransitions;
+
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        orderService = new OrderServiceImpl(orderRepository, skuRepository, stockService, ingestionPipeline, outboxPublisher,
+                new OrderStatusCache(100, 30), orderArchive, expiryScheduler, orderTransitions);
+        when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            if (order.getId() == null) {
+                order.setId(100L);
+            }
+            return order;
+        });
+        when(skuRepository.findAllById(any())).thenReturn(Arrays.asList(sku(1L, "10.00"), sku(2L, "2.50")));
+        when(orderTransitions.compareAndSet(anyLong(), any(), any(), any())).thenReturn(true);
+    }
+
+    private static Sku sku(Long id, String price) {
+        Sku sku = new Sku();
+        sku.setId(id);
+        sku.setPrice(new BigDecimal(price));
+        return sku;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReservesAllLinesInOneCallInSkuOrder() {
+        Order order = orderService.createOrder("c1", Arrays.asList(
+                new OrderLineRequest(2L, 3), new OrderLineRequest(1L, 1), new OrderLineRequest(2L, 1)));
+
+        ArgumentCaptor<Map<Long, Integer>> captor = ArgumentCaptor.forClass(Map.class);
+        verify(stockService, times(1)).decreaseStocks(captor.capture());
+        assertEquals(Arrays.asList(1L, 2L), new ArrayList<>(captor.getValue().keySet()));
+        assertEquals(4, captor.getValue().get(2L));
+
+        assertEquals(OrderStatus.CREATED, order.getStatus());
+        assertEquals(2, order.getLines().size());
+        assertEquals(0, new BigDecimal("20.00").compareTo(order.getTotalAmount()));
+        assertNull(order.getSkuId());
+    }
+
+    @Test
+    void testInsufficientStockPropagatesForRollback() {
+        doThrow(new InsufficientStockException(2L)).when(stockService).decreaseStocks(anyMap());
+
+        assertThrows(InsufficientStockException.class, () -> orderService.createOrder("c1", Arrays.asList(
+                new OrderLineRequest(1L, 1), new OrderLineRequest(2L, 1))));
+    }
+
+    @Test
+    void testRejectsUnknownSkuAndInvalidQuantity() {
+        assertThrows(SkuNotFoundException.class, () -> orderService.createOrder("c1", Arrays.asList(
+                new OrderLineRequest(1L, 1), new OrderLineRequest(3L, 1))));
+        assertThrows(InvalidOrderException.class, () -> orderService.createOrder("c1",
+                Collections.singletonList(new OrderLineRequest(1L, 0))));
+        verify(stockService, never()).decreaseStocks(anyMap());
+    }
+
+    @Test
+    void testCancelReleasesEveryLine() {
+        Order order = new Order();
+        order.setId(7L);
+        order.setStatus(OrderStatus.CREATED);
+        order.addLine(new OrderLine(1L, 2, BigDecimal.ONE));
+        order.addLine(new OrderLine(2L, 5, BigDecimal.ONE));
+        when(orderRepository.findWithLinesById(7L)).thenReturn(Optional.of(order));
+
+        orderService.cancelOrder(7L);
+
+        Map<Long, Integer> expected = new TreeMap<>();
+        expected.put(1L, 2);
+        expected.put(2L, 5);
+        verify(stockService).increaseStocks(expected);
+        assertEquals(OrderStatus.CANCELLED, order.getStatus());
+    }
+
+    @Test
+    void testStatusIsServedFromCacheAfterFirstLookup() {
+        when(orderRepository.findStatusById(9L)).thenReturn(Optional.of(OrderStatus.CREATED));
+
+        assertEquals(OrderStatus.CREATED, orderService.getOrderStatus(9L));
+        assertEquals(OrderStatus.CREATED, orderService.getOrderStatus(9L));
+
+        verify(orderRepository, times(1)).findStatusById(9L);
+        verify(orderRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void testCancelUpdatesCachedStatus() {
+        Order order = new Order();
+        order.setId(7L);
+        order.setStatus(OrderStatus.CREATED);
+        order.addLine(new OrderLine(1L, 1, BigDecimal.ONE));
+        when(orderRepository.findWithLinesById(7L)).thenReturn(Optional.of(order));
+        when(orderRepository.findStatusById(7L)).thenReturn(Optional.of(OrderStatus.CREATED));
+        assertEquals(OrderStatus.CREATED, orderService.getOrderStatus(7L));
+
+        orderService.cancelOrder(7L);
+
+        assertEquals(OrderStatus.CANCELLED, orderService.getOrderStatus(7L));
+        verify(orderRepository, times(1)).findStatusById(7L);
+    }
+
+    @Test
+    void testLookupsFallThroughToArchive() {
+        when(orderArchive.findStatus(6L)).thenReturn(Optional.of(OrderStatus.COMPLETED));
+
+        assertEquals(OrderStatus.COMPLETED, orderService.getOrderStatus(6L));
+        assertThrows(OrderAlreadyProcessedException.class, () -> orderService.cancelOrder(6L));
+        verify(stockService, never()).increaseStocks(anyMap());
+    }
+
+    @Test
+    void testUnknownOrderStatusIsNotCached() {
+        when(orderRepository.findStatusById(8L)).thenReturn(Optional.empty());
+
+        assertThrows(OrderNotFoundException.class, () -> orderService.getOrderStatus(8L));
+        assertThrows(OrderNotFoundException.class, () -> orderService.getOrderStatus(8L));
+        verify(orderRepository, times(2)).findStatusById(8L);
+    }
+
+    @Test
+    void testSubmitReleasesStockWhenBufferFillsUp() {
+        when(ingestionPipeline.hasCapacity()).thenReturn(true);
+        when(ingestionPipeline.publish(any(Order.class), anyMap())).thenReturn(null);
+
+        assertThrows(OrderBackpressureException.class, () -> orderService.submitOrder("c1", Arrays.asList(
+                new OrderLineRequest(1L, 1), new OrderLineRequest(2L, 2))));
+        verify(stockService).decreaseStocks(anyMap());
+        verify(stockService).increaseStocks(anyMap());
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void testSubmitRejectsBeforeReservingWhenBufferIsFull() {
+        when(ingestionPipeline.hasCapacity()).thenReturn(false);
+
+        assertThrows(OrderBackpressureException.class, () -> orderService.submitOrder("c1",
+                Collections.singletonList(new OrderLineRequest(1L, 1))));
+        verify(stockService, never()).decreaseStock(any(), anyInt());
+    }
+}
@@ -0,0 +1,152 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.export.NdjsonExporter;
+import com.yf.bookstore.model.order.OrderStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NdjsonExporterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private JdbcTemplate jdbcTemplate;
+    private NdjsonExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        // 每次只取两行，验证跨批读取
+        exporter = new NdjsonExporter(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                objectMapper, 2);
+    }
+
+    private List<JsonNode> parse(ByteArrayOutputStream out) throws IOException {
+        String text = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        List<JsonNode> records = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            if (!line.isEmpty()) {
+                records.add(objectMapper.readTree(line));
+            }
+        }
+        assertTrue(text.isEmpty() || text.endsWith("\n"));
+        return records;
+    }
+
+    @Test
+    void testExportsSkusOnePerLineInIdOrder() throws IOException {
+        Timestamp now = Timestamp.valueOf("2024-05-01 10:00:00");
+        for (long id = 5; id >= 1; id--) {
+            jdbcTemplate.update("INSERT INTO tb_sku (id, title, price, own_spec, enable, create_time, modify_time) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    id, "书\n" + id, id * 10, "{\"作者\":\"某人\"}", id % 2 == 1, now, now);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(5, exporter.exportSkus(out));
+
+        List<JsonNode> skus = parse(out);
+        assertEquals(5, skus.size());
+        for (int i = 0; i < skus.size(); i++) {
+            assertEquals(i + 1, skus.get(i).get("id").asLong());
+        }
+        JsonNode first = skus.get(0);
+        assertEquals("书\n1", first.get("title").asText());
+        assertEquals(0, first.get("price").decimalValue().compareTo(BigDecimal.TEN));
+        assertEquals("{\"作者\":\"某人\"}", first.get("ownSpec").asText());
+        assertTrue(first.get("enable").asBoolean());
+        assertTrue(first.get("indexes").isNull());
+        assertEquals("2024-05-01T10:00", first.get("createTime").asText());
+    }
+
+    @Test
+    void testExportsStocks() throws IOException {
+        jdbcTemplate.update("INSERT INTO tb_stock VALUES (1, 100, 7, 3, NULL, NULL)");
+        jdbcTemplate.update("INSERT INTO tb_stock VALUES (2, 200, 0, 0, NULL, NULL)");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, exporter.exportStocks(out));
+
+        List<JsonNode> stocks = parse(out);
+        assertEquals(100, stocks.get(0).get("skuId").asLong());
+        assertEquals(7, stocks.get(0).get("stock").asInt());
+        assertEquals(3, stocks.get(0).get("version").asLong());
+        assertTrue(stocks.get(0).get("createTime").isNull());
+        assertEquals(0, stocks.get(1).get("stock").asInt());
+    }
+
+    @Test
+    void testExportsOrdersWithEmbeddedLines() throws IOException {
+        jdbcTemplate.update("INSERT INTO tb_order VALUES (1, 'c1', ?, NULL, NULL, 30.00, NOW(), NOW())", OrderStatus.CREATED.ordinal());
+        jdbcTemplate.update("INSERT INTO tb_order VALUES (2, 'c2', ?, 100, 9.90, 9.90, NOW(), NOW())", OrderStatus.COMPLETED.ordinal());
+        jdbcTemplate.update("INSERT INTO tb_order VALUES (3, 'c1', ?, NULL, NULL, 12.00, NOW(), NOW())", OrderStatus.CANCELLED.ordinal());
+        jdbcTemplate.update("INSERT INTO tb_order_line VALUES (11, 1, 100, 1, 10.00)");
+        jdbcTemplate.update("INSERT INTO tb_order_line VALUES (12, 1, 200, 2, 10.00)");
+        jdbcTemplate.update("INSERT INTO tb_order_line VALUES (13, 1, 300, 1, 0.00)");
+        jdbcTemplate.update("INSERT INTO tb_order_line VALUES (31, 3, 400, 3, 4.00)");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, exporter.exportOrders(out));
+
+        List<JsonNode> orders = parse(out);
+        assertEquals(3, orders.size());
+        JsonNode first = orders.get(0);
+        assertEquals("CREATED", first.get("status").asText());
+        assertTrue(first.get("skuId").isNull());
+        assertEquals(3, first.get("lines").size());
+        assertEquals(200, first.get("lines").get(1).get("skuId").asLong());
+        assertEquals(2, first.get("lines").get(1).get("quantity").asInt());
+
+        // 历史上的单商品订单没有明细
+        JsonNode second = orders.get(1);
+        assertEquals("COMPLETED", second.get("status").asText());
+        assertEquals(100, second.get("skuId").asLong());
+        assertEquals(0, second.get("lines").size());
+
+        assertEquals("CANCELLED", orders.get(2).get("status").asText());
+        assertEquals(1, orders.get(2).get("lines").size());
+    }
+
+    @Test
+    void testEmptyTableWritesNothing() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, exporter.exportOrders(out));
+        assertEquals(0, out.size());
+    }
+
+    @Test
+    void testWriteFailureAbortsExport() {
+        for (long id = 1; id <= 50; id++) {
+            jdbcTemplate.update("INSERT INTO tb_stock VALUES (?, ?, 1, 0, NULL, NULL)", id, id);
+        }
+        // 模拟客户端在写出第一块数据时断开
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        IOException e = assertThrows(IOException.class, () -> exporter.exportStocks(broken));
+        assertEquals("Broken pipe", e.getMessage());
+    }
+}
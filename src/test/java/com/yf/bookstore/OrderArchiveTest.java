@@ -0,0 +1,98 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.order.OrderArchive;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderArchiveTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 1, 0, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private OrderArchive archive;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        archive = new OrderArchive(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                objectMapper, true, 90, 2);
+    }
+
+    private void order(long id, OrderStatus status, LocalDateTime modifyTime, long... skuIds) {
+        jdbcTemplate.update("INSERT INTO tb_order (id, customer_id, status, total_amount, create_time, modify_time) "
+                        + "VALUES (?, 'c1', ?, 12.50, ?, ?)", id, status.ordinal(),
+                Timestamp.valueOf(modifyTime.minusDays(1)), Timestamp.valueOf(modifyTime));
+        for (long skuId : skuIds) {
+            jdbcTemplate.update("INSERT INTO tb_order_line (id, order_id, sku_id, quantity, price) VALUES (?, ?, ?, 2, 1.25)",
+                    id * 100 + skuId, id, skuId);
+        }
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    @Test
+    void testMovesOnlyOldTerminalOrdersInBatches() {
+        order(1, OrderStatus.COMPLETED, NOW.minusDays(200), 10, 11);
+        order(2, OrderStatus.CANCELLED, NOW.minusDays(100), 10);
+        order(3, OrderStatus.COMPLETED, NOW.minusDays(95));
+        order(4, OrderStatus.CREATED, NOW.minusDays(300), 12);
+        order(5, OrderStatus.COMPLETED, NOW.minusDays(10));
+
+        assertEquals(3, archive.archive(NOW.minusDays(90)));
+
+        assertEquals(2, count("tb_order"));
+        assertEquals(1, count("tb_order_line"));
+        assertEquals(3, count("tb_order_archive"));
+        assertEquals(0, archive.archive(NOW.minusDays(90)));
+    }
+
+    @Test
+    void testArchivedOrderCanBeLookedUpWithLines() {
+        order(1, OrderStatus.COMPLETED, NOW.minusDays(200), 10, 11);
+        archive.archive(NOW.minusDays(90));
+
+        Order found = archive.find(1L).orElseThrow(AssertionError::new);
+        assertEquals("c1", found.getCustomerId());
+        assertEquals(OrderStatus.COMPLETED, found.getStatus());
+        assertEquals(0, new BigDecimal("12.50").compareTo(found.getTotalAmount()));
+        assertEquals(NOW.minusDays(201), found.getCreateTime());
+        assertEquals(2, found.getLines().size());
+        assertEquals(11L, found.getLines().get(1).getSkuId());
+        assertEquals(OrderStatus.COMPLETED, archive.findStatus(1L).orElse(null));
+
+        assertFalse(archive.find(2L).isPresent());
+        assertFalse(archive.findStatus(2L).isPresent());
+    }
+
+    @Test
+    void testArchiveStopsAfterBatchLimitPerRun() {
+        for (long id = 1; id <= 23; id++) {
+            order(id, OrderStatus.COMPLETED, NOW.minusDays(100));
+        }
+
+        assertEquals(20, archive.archive(NOW.minusDays(90)));
+        assertEquals(3, count("tb_order"));
+        assertEquals(3, archive.archive(NOW.minusDays(90)));
+        assertEquals(0, count("tb_order"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.common.SnowflakeIdGenerator;
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLine;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.order.OrderBatchWriter;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderBatchWriterTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private OrderBatchWriter batchWriter;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(0);
+        batchWriter = new OrderBatchWriter(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                idGenerator, new OutboxPublisher(jdbcTemplate, new ObjectMapper(), idGenerator));
+    }
+
+    private static Order order(String customerId, Long... skuIds) {
+        Order order = new Order();
+        order.setCustomerId(customerId);
+        order.setStatus(OrderStatus.CREATED);
+        order.setTotalAmount(BigDecimal.TEN);
+        order.setCreateTime(LocalDateTime.now());
+        order.setModifyTime(LocalDateTime.now());
+        for (Long skuId : skuIds) {
+            order.addLine(new OrderLine(skuId, 1, BigDecimal.ONE));
+        }
+        return order;
+    }
+
+    @Test
+    void testInsertsOrdersAndLinesWithAssignedIds() {
+        Order first = order("a", 1L, 2L);
+        Order second = order("b", 3L);
+
+        batchWriter.insert(Arrays.asList(first, second));
+
+        assertNotNull(first.getId());
+        assertNotNull(second.getId());
+        assertNotEquals(first.getId(), second.getId());
+        assertEquals("b", jdbcTemplate.queryForObject("SELECT customer_id FROM tb_order WHERE id = ?", String.class, second.getId()));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_order_line WHERE order_id = ?", Integer.class, first.getId()));
+        assertEquals(3L, jdbcTemplate.queryForObject("SELECT sku_id FROM tb_order_line WHERE order_id = ?", Long.class, second.getId()));
+        assertEquals("ORDER_CREATED", jdbcTemplate.queryForObject("SELECT event_type FROM tb_outbox WHERE aggregate_id = ?",
+                String.class, String.valueOf(first.getId())));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_outbox", Integer.class));
+    }
+
+    @Test
+    void testFailedBatchWritesNothing() {
+        Order valid = order("a", 1L);
+        Order invalid = order(null, 2L);
+
+        assertThrows(RuntimeException.class, () -> batchWriter.insert(Arrays.asList(valid, invalid)));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_order", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_order_line", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_outbox", Integer.class));
+    }
+}
@@ -0,0 +1,196 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.exception.order.OrderAlreadyProcessedException;
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLine;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.order.OrderArchive;
+import com.yf.bookstore.order.OrderExpiryScheduler;
+import com.yf.bookstore.order.OrderIngestionPipeline;
+import com.yf.bookstore.order.OrderStatusCache;
+import com.yf.bookstore.order.OrderTransitions;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.repository.OrderRepository;
+import com.yf.bookstore.repository.SkuRepository;
+import com.yf.bookstore.service.StockService;
+import com.yf.bookstore.service.impl.OrderServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+class OrderExpirySchedulerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private StockService stockService;
+    private OrderStatusCache statusCache;
+    private OrderExpiryScheduler scheduler;
+    private OrderRepository orderRepository;
+    private OrderServiceImpl orderService;
+    private TransactionTemplate transactionTemplate;
+    private OutboxPublisher outboxPublisher;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        stockService = mock(StockService.class);
+        statusCache = new OrderStatusCache(100, 30);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        outboxPublisher = mock(OutboxPublisher.class);
+        // 超时1分钟，每格10ms，兜底查询间隔为0即每次推进都查询
+        scheduler = new OrderExpiryScheduler(jdbcTemplate, transactionTemplate,
+                stockService, outboxPublisher, statusCache, true, 1, 10, 8, 2, 0, 0);
+        // 取消接口使用真实的条件更新，订单实体由模拟的仓库返回
+        orderRepository = mock(OrderRepository.class);
+        orderService = new OrderServiceImpl(orderRepository, mock(SkuRepository.class), stockService,
+                mock(OrderIngestionPipeline.class), outboxPublisher, statusCache, mock(OrderArchive.class), scheduler,
+                new OrderTransitions(jdbcTemplate, transactionTemplate, outboxPublisher, statusCache));
+    }
+
+    // 取消接口读到的订单实体，状态为读取时的状态
+    private void loadedAs(long id, OrderStatus status, long skuId) {
+        Order order = new Order();
+        order.setId(id);
+        order.setCustomerId("c1");
+        order.setStatus(status);
+        order.addLine(new OrderLine(skuId, 2, BigDecimal.ONE));
+        when(orderRepository.findWithLinesById(id)).thenReturn(Optional.of(order));
+    }
+
+    private void order(long id, OrderStatus status, LocalDateTime createTime, Long legacySkuId, long... lineSkuIds) {
+        jdbcTemplate.update("INSERT INTO tb_order (id, customer_id, status, sku_id, total_amount, create_time, modify_time) "
+                + "VALUES (?, 'c1', ?, ?, 1, ?, ?)", id, status.ordinal(), legacySkuId,
+                Timestamp.valueOf(createTime), Timestamp.valueOf(createTime));
+        for (long skuId : lineSkuIds) {
+            jdbcTemplate.update("INSERT INTO tb_order_line (id, order_id, sku_id, quantity, price) VALUES (?, ?, ?, 2, 1)",
+                    id * 100 + skuId, id, skuId);
+        }
+    }
+
+    private OrderStatus status(long id) {
+        return OrderStatus.values()[jdbcTemplate.queryForObject("SELECT status FROM tb_order WHERE id = ?", Integer.class, id)];
+    }
+
+    @Test
+    void testExpiresOnlyCreatedOrdersAndRestoresStockPerSku() {
+        LocalDateTime old = LocalDateTime.now().minusHours(1);
+        order(1, OrderStatus.CREATED, old, null, 10, 11);
+        order(2, OrderStatus.CREATED, old, null, 10);
+        order(3, OrderStatus.CREATED, old, 12L);
+        order(4, OrderStatus.CANCELLED, old, null, 10);
+
+        assertEquals(3, scheduler.expire(Arrays.asList(1L, 2L, 3L, 4L)));
+
+        Map<Long, Integer> expected = new TreeMap<>();
+        expected.put(10L, 4);
+        expected.put(11L, 2);
+        expected.put(12L, 1);
+        verify(stockService, times(1)).increaseStocks(expected);
+        assertEquals(OrderStatus.CANCELLED, status(1));
+        assertEquals(OrderStatus.CANCELLED, status(3));
+        assertEquals(OrderStatus.CANCELLED, statusCache.get(2L, id -> null));
+
+        // 已过期的订单不会重复归还库存
+        assertEquals(0, scheduler.expire(Arrays.asList(1L, 2L)));
+        verify(stockService, times(1)).increaseStocks(anyMap());
+    }
+
+    @Test
+    void testRebuildsWheelFromDatabaseOnStartup() {
+        order(1, OrderStatus.CREATED, LocalDateTime.now().minusMinutes(5), null, 10);
+        order(2, OrderStatus.CREATED, LocalDateTime.now().minusMinutes(3), null, 10);
+        order(3, OrderStatus.CREATED, LocalDateTime.now().minusMinutes(2), null, 10);
+        order(4, OrderStatus.CREATED, LocalDateTime.now().plusMinutes(10), null, 10);
+        order(5, OrderStatus.COMPLETED, LocalDateTime.now().minusMinutes(5), null, 10);
+
+        scheduler.run(null);
+        scheduler.tick();
+
+        assertEquals(OrderStatus.CANCELLED, status(1));
+        assertEquals(OrderStatus.CANCELLED, status(2));
+        assertEquals(OrderStatus.CANCELLED, status(3));
+        assertEquals(OrderStatus.CREATED, status(4));
+        assertEquals(OrderStatus.COMPLETED, status(5));
+    }
+
+    @Test
+    void testScheduledOrderExpiresWhenDue() throws InterruptedException {
+        LocalDateTime createTime = LocalDateTime.now().minusSeconds(59).minusNanos(900_000_000);
+        order(1, OrderStatus.CREATED, createTime, null, 10);
+        scheduler.schedule(1L, createTime);
+
+        Thread.sleep(300);
+        scheduler.tick();
+
+        assertEquals(OrderStatus.CANCELLED, status(1));
+    }
+
+    @Test
+    void testCancelAfterExpiryDoesNotRestoreStockAgain() {
+        order(1, OrderStatus.CREATED, LocalDateTime.now().minusHours(1), null, 10);
+        // 取消接口读到已创建状态后，过期任务先一步取消了订单
+        loadedAs(1, OrderStatus.CREATED, 10);
+        assertEquals(1, scheduler.expire(Collections.singletonList(1L)));
+
+        assertThrows(OrderAlreadyProcessedException.class, () -> orderService.cancelOrder(1L));
+
+        verify(stockService, times(1)).increaseStocks(anyMap());
+        assertEquals(OrderStatus.CANCELLED, status(1));
+    }
+
+    @Test
+    void testExpiryAfterCancelDoesNotRestoreStockAgain() {
+        order(1, OrderStatus.CREATED, LocalDateTime.now().minusHours(1), null, 10);
+        loadedAs(1, OrderStatus.CREATED, 10);
+
+        assertEquals(OrderStatus.CANCELLED, orderService.cancelOrder(1L).getStatus());
+        assertEquals(0, scheduler.expire(Collections.singletonList(1L)));
+
+        verify(stockService, times(1)).increaseStocks(Collections.singletonMap(10L, 2));
+        assertEquals(OrderStatus.CANCELLED, status(1));
+    }
+
+    @Test
+    void testFailedBatchIsRescheduledWithoutBlockingLaterBatches() throws InterruptedException {
+        // 不做兜底查询，只有时间轮里的订单会被处理
+        OrderExpiryScheduler wheelOnly = new OrderExpiryScheduler(jdbcTemplate, transactionTemplate,
+                stockService, outboxPublisher, statusCache, true, 1, 10, 8, 2, Long.MAX_VALUE, 0);
+        LocalDateTime createTime = LocalDateTime.now().minusHours(1);
+        for (long id = 1; id <= 4; id++) {
+            order(id, OrderStatus.CREATED, createTime, null, 10);
+            wheelOnly.schedule(id, createTime);
+        }
+        doThrow(new IllegalStateException("stock unavailable")).doNothing().when(stockService).increaseStocks(anyMap());
+
+        Thread.sleep(20);
+        wheelOnly.tick();
+
+        // 第一批回滚，第二批照常取消
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_order WHERE status = ?",
+                Integer.class, OrderStatus.CREATED.ordinal()));
+
+        Thread.sleep(20);
+        wheelOnly.tick();
+
+        for (long id = 1; id <= 4; id++) {
+            assertEquals(OrderStatus.CANCELLED, status(id));
+        }
+        verify(stockService, times(3)).increaseStocks(anyMap());
+    }
+}
@@ -0,0 +1,124 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.exception.order.InvalidOrderException;
+import com.yf.bookstore.model.order.OrderPage;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.order.OrderSummary;
+import com.yf.bookstore.order.OrderCursor;
+import com.yf.bookstore.order.OrderArchive;
+import com.yf.bookstore.order.OrderExpiryScheduler;
+import com.yf.bookstore.order.OrderIngestionPipeline;
+import com.yf.bookstore.order.OrderStatusCache;
+import com.yf.bookstore.order.OrderTransitions;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.repository.OrderRepository;
+import com.yf.bookstore.repository.SkuRepository;
+import com.yf.bookstore.service.StockService;
+import com.yf.bookstore.service.impl.OrderServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OrderHistoryTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123456000);
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private SkuRepository skuRepository;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private OrderIngestionPipeline ingestionPipeline;
+
+    @Mock
+    private OutboxPublisher outboxPublisher;
+
+    @Mock
+    private OrderArchive orderArchive;
+
+    @Mock
+    private OrderExpiryScheduler expiryScheduler;
+
+    @Mock
+    private OrderTransitions orderTransitions;
+
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        orderService = new OrderServiceImpl(orderRepository, skuRepository, stockService, ingestionPipeline, outboxPublisher,
+                new OrderStatusCache(100, 30), orderArchive, expiryScheduler, orderTransitions);
+    }
+
+    // 从第from个开始倒序的count个订单，时间越新ID越大
+    private static List<OrderSummary> summaries(int from, int count) {
+        List<OrderSummary> rows = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            rows.add(new OrderSummary(1000L - i, OrderStatus.CREATED, BigDecimal.ONE, BASE.minusMinutes(i)));
+        }
+        return rows;
+    }
+
+    @Test
+    void testFirstPageReturnsCursorOfLastItem() {
+        when(orderRepository.findSummaries("c1", PageRequest.of(0, 3))).thenReturn(summaries(0, 3));
+
+        OrderPage page = orderService.listOrders("c1", null, 2);
+
+        assertEquals(2, page.getItems().size());
+        OrderCursor cursor = OrderCursor.decode(page.getNextCursor());
+        assertEquals(BASE.minusMinutes(1), cursor.getCreateTime());
+        assertEquals(999L, cursor.getId());
+    }
+
+    @Test
+    void testNextPageContinuesAfterCursor() {
+        String after = new OrderCursor(BASE.minusMinutes(1), 999L).encode();
+        when(orderRepository.findSummariesAfter(eq("c1"), eq(BASE.minusMinutes(1)), eq(999L), any()))
+                .thenReturn(summaries(2, 1));
+
+        OrderPage page = orderService.listOrders("c1", after, 2);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(998L, page.getItems().get(0).getId());
+        assertNull(page.getNextCursor());
+        verify(orderRepository, never()).findSummaries(any(), any());
+    }
+
+    @Test
+    void testLimitIsCapped() {
+        when(orderRepository.findSummaries(eq("c1"), any())).thenReturn(new ArrayList<>());
+
+        orderService.listOrders("c1", null, 10_000);
+
+        verify(orderRepository).findSummaries("c1", PageRequest.of(0, 101));
+    }
+
+    @Test
+    void testRejectsMalformedCursor() {
+        assertThrows(InvalidOrderException.class, () -> orderService.listOrders("c1", "not-a-cursor", 20));
+        assertThrows(InvalidOrderException.class, () -> orderService.listOrders("c1", "%%%", 20));
+    }
+}
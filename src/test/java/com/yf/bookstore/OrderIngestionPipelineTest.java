@@ -0,0 +1,135 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderTicket;
+import com.yf.bookstore.order.OrderBatchWriter;
+import com.yf.bookstore.order.OrderExpiryScheduler;
+import com.yf.bookstore.order.OrderIngestionPipeline;
+import com.yf.bookstore.order.OrderStatusCache;
+import com.yf.bookstore.service.StockService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OrderIngestionPipelineTest {
+
+    @Mock
+    private OrderBatchWriter batchWriter;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private OrderStatusCache statusCache;
+
+    @Mock
+    private OrderExpiryScheduler expiryScheduler;
+
+    private final List<Long> inserted = Collections.synchronizedList(new ArrayList<>());
+    private OrderIngestionPipeline pipeline;
+    private long nextId = 1;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        doAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            order.setId(nextId++);
+            return null;
+        }).when(batchWriter).assignIds(any(Order.class));
+        doAnswer(invocation -> {
+            ((List<Order>) invocation.getArgument(0)).forEach(order -> inserted.add(order.getId()));
+            return null;
+        }).when(batchWriter).insert(anyList());
+        pipeline = new OrderIngestionPipeline(batchWriter, stockService, statusCache, expiryScheduler, true, 16, 4, 1, 600);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.stop();
+    }
+
+    private static Order order() {
+        Order order = new Order();
+        order.setCreateTime(LocalDateTime.now());
+        return order;
+    }
+
+    private static Map<Long, Integer> quantities() {
+        return Collections.singletonMap(1L, 1);
+    }
+
+    @Test
+    void testRejectsOrdersBeforeStart() {
+        assertFalse(pipeline.hasCapacity());
+        assertNull(pipeline.publish(order(), quantities()));
+        verify(batchWriter, never()).assignIds(any(Order.class));
+    }
+
+    @Test
+    void testStopWritesQueuedOrdersAndRejectsNewOnes() {
+        pipeline.start();
+        assertTrue(pipeline.hasCapacity());
+        OrderTicket ticket = pipeline.publish(order(), quantities());
+        assertNotNull(ticket);
+
+        pipeline.stop();
+
+        assertEquals(Collections.singletonList(ticket.getOrderId()), inserted);
+        assertFalse(pipeline.hasCapacity());
+        assertNull(pipeline.publish(order(), quantities()));
+        assertEquals(1, inserted.size());
+    }
+
+    @Test
+    void testStopDrainsOrdersPublishedWhileConsumersExit() throws InterruptedException {
+        pipeline.start();
+        CountDownLatch assigning = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            assigning.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            ((Order) invocation.getArgument(0)).setId(99L);
+            return null;
+        }).when(batchWriter).assignIds(any(Order.class));
+        Thread publisher = new Thread(() -> pipeline.publish(order(), quantities()));
+        publisher.start();
+        assertTrue(assigning.await(5, TimeUnit.SECONDS));
+
+        // 发布线程已通过检查但尚未入队，消费线程会先退出
+        Thread stopper = new Thread(pipeline::stop);
+        stopper.start();
+        Thread.sleep(50);
+        release.countDown();
+        stopper.join(5000);
+        publisher.join(5000);
+
+        assertFalse(stopper.isAlive());
+        assertEquals(Collections.singletonList(99L), inserted);
+    }
+
+    @Test
+    void testStopsAfterWebServer() {
+        assertTrue(pipeline.getPhase() < SmartLifecycle.DEFAULT_PHASE - 1);
+    }
+}
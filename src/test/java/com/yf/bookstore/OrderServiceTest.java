@@ -6,6 +6,10 @@ import com.yf.bookstore.exception.order.OrderNotFoundException;
 import com.yf.bookstore.model.commodity.Sku;
 import com.yf.bookstore.model.order.Order;
 import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.order.OrderArchive;
+import com.yf.bookstore.order.OrderExpiryScheduler;
+import com.yf.bookstore.order.OrderStatusCache;
+import com.yf.bookstore.order.OrderTransitions;
 import com.yf.bookstore.repository.OrderRepository;
 import com.yf.bookstore.repository.SkuRepository;
 import com.yf.bookstore.service.OrderService;
@@ -36,6 +40,18 @@ public class OrderServiceTest {
     @Mock
     private StockService stockService;
 
+    @Mock
+    private OrderStatusCache statusCache;
+
+    @Mock
+    private OrderArchive orderArchive;
+
+    @Mock
+    private OrderExpiryScheduler expiryScheduler;
+
+    @Mock
+    private OrderTransitions orderTransitions;
+
     @InjectMocks
     private OrderServiceImpl orderService;
 
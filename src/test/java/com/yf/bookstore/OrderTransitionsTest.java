@@ -0,0 +1,185 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.common.SnowflakeIdGenerator;
+import com.yf.bookstore.exception.order.OrderAlreadyProcessedException;
+import com.yf.bookstore.model.order.Order;
+import com.yf.bookstore.model.order.OrderLine;
+import com.yf.bookstore.model.order.OrderStatus;
+import com.yf.bookstore.model.order.OrderTransitionOutcome;
+import com.yf.bookstore.model.order.OrderTransitionResult;
+import com.yf.bookstore.order.OrderArchive;
+import com.yf.bookstore.order.OrderExpiryScheduler;
+import com.yf.bookstore.order.OrderIngestionPipeline;
+import com.yf.bookstore.order.OrderStatusCache;
+import com.yf.bookstore.order.OrderTransitions;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.repository.OrderRepository;
+import com.yf.bookstore.repository.SkuRepository;
+import com.yf.bookstore.service.StockService;
+import com.yf.bookstore.service.impl.OrderServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+class OrderTransitionsTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private OrderStatusCache statusCache;
+    private OrderTransitions transitions;
+    private TransactionTemplate transactionTemplate;
+    private OrderRepository orderRepository;
+    private StockService stockService;
+    private OrderServiceImpl orderService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(0);
+        statusCache = new OrderStatusCache(100, 30);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        OutboxPublisher outboxPublisher = new OutboxPublisher(jdbcTemplate, new ObjectMapper(), idGenerator);
+        transitions = new OrderTransitions(jdbcTemplate, transactionTemplate, outboxPublisher, statusCache);
+        // 取消接口与批量变更共用同一个数据库，订单实体由模拟的仓库返回
+        orderRepository = mock(OrderRepository.class);
+        stockService = mock(StockService.class);
+        orderService = new OrderServiceImpl(orderRepository, mock(SkuRepository.class), stockService,
+                mock(OrderIngestionPipeline.class), outboxPublisher, statusCache, mock(OrderArchive.class),
+                mock(OrderExpiryScheduler.class), transitions);
+    }
+
+    // 取消接口读到的订单实体，状态为读取时的状态
+    private void loadedAs(long id, OrderStatus status) {
+        Order order = new Order();
+        order.setId(id);
+        order.setCustomerId("c1");
+        order.setStatus(status);
+        order.addLine(new OrderLine(10L, 1, BigDecimal.ONE));
+        when(orderRepository.findWithLinesById(id)).thenReturn(Optional.of(order));
+    }
+
+    private int events(String type) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_outbox WHERE event_type = ?", Integer.class, type);
+    }
+
+    private void order(long id, OrderStatus status) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update("INSERT INTO tb_order (id, customer_id, status, total_amount, create_time, modify_time) "
+                + "VALUES (?, 'c1', ?, 1, ?, ?)", id, status.ordinal(), now, now);
+    }
+
+    private OrderStatus status(long id) {
+        return OrderStatus.values()[jdbcTemplate.queryForObject("SELECT status FROM tb_order WHERE id = ?", Integer.class, id)];
+    }
+
+    @Test
+    void testCanTransitionTo() {
+        assertTrue(OrderStatus.CREATED.canTransitionTo(OrderStatus.PROCESSING));
+        assertTrue(OrderStatus.CREATED.canTransitionTo(OrderStatus.CANCELLED));
+        assertTrue(OrderStatus.PROCESSING.canTransitionTo(OrderStatus.COMPLETED));
+        assertFalse(OrderStatus.CREATED.canTransitionTo(OrderStatus.COMPLETED));
+        assertFalse(OrderStatus.PROCESSING.canTransitionTo(OrderStatus.CANCELLED));
+        assertFalse(OrderStatus.CANCELLED.canTransitionTo(OrderStatus.PROCESSING));
+        assertFalse(OrderStatus.COMPLETED.canTransitionTo(OrderStatus.PROCESSING));
+    }
+
+    @Test
+    void testAppliesValidTransitionsAndReportsOutcomes() {
+        order(1, OrderStatus.CREATED);
+        order(2, OrderStatus.CREATED);
+        order(3, OrderStatus.PROCESSING);
+        order(4, OrderStatus.CANCELLED);
+
+        List<OrderTransitionResult> results = transitions.apply(Arrays.asList(1L, 2L, 3L, 4L, 5L, 1L), OrderStatus.PROCESSING);
+
+        assertEquals(5, results.size());
+        assertEquals(OrderTransitionOutcome.APPLIED, results.get(0).getOutcome());
+        assertEquals(OrderStatus.CREATED, results.get(0).getPreviousStatus());
+        assertEquals(OrderTransitionOutcome.APPLIED, results.get(1).getOutcome());
+        assertEquals(OrderTransitionOutcome.UNCHANGED, results.get(2).getOutcome());
+        assertEquals(OrderTransitionOutcome.REJECTED, results.get(3).getOutcome());
+        assertEquals(OrderTransitionOutcome.NOT_FOUND, results.get(4).getOutcome());
+        assertNull(results.get(4).getPreviousStatus());
+
+        assertEquals(OrderStatus.PROCESSING, status(1));
+        assertEquals(OrderStatus.PROCESSING, status(2));
+        assertEquals(OrderStatus.CANCELLED, status(4));
+        assertEquals(OrderStatus.PROCESSING, statusCache.get(1L, id -> null));
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM tb_outbox WHERE event_type = 'ORDER_PROCESSING'", Integer.class));
+    }
+
+    @Test
+    void testCompletesProcessingOrdersOnly() {
+        order(1, OrderStatus.PROCESSING);
+        order(2, OrderStatus.CREATED);
+
+        List<OrderTransitionResult> results = transitions.apply(Arrays.asList(1L, 2L), OrderStatus.COMPLETED);
+
+        assertEquals(OrderTransitionOutcome.APPLIED, results.get(0).getOutcome());
+        assertEquals(OrderTransitionOutcome.REJECTED, results.get(1).getOutcome());
+        assertEquals(OrderStatus.COMPLETED, status(1));
+        assertEquals(OrderStatus.CREATED, status(2));
+        assertEquals("1", jdbcTemplate.queryForObject(
+                "SELECT aggregate_id FROM tb_outbox WHERE event_type = 'ORDER_COMPLETED'", String.class));
+    }
+
+    @Test
+    void testCancelWithStaleStatusLosesToTransition() {
+        order(1, OrderStatus.CREATED);
+        // 取消接口读到已创建状态之后，批量变更先提交
+        loadedAs(1, OrderStatus.CREATED);
+        transitions.apply(Arrays.asList(1L), OrderStatus.PROCESSING);
+
+        assertThrows(OrderAlreadyProcessedException.class, () -> orderService.cancelOrder(1L));
+
+        assertEquals(OrderStatus.PROCESSING, status(1));
+        verify(stockService, never()).increaseStocks(anyMap());
+        assertEquals(0, events("ORDER_CANCELLED"));
+    }
+
+    @Test
+    void testTransitionWaitsForUncommittedCancel() throws Exception {
+        order(1, OrderStatus.CREATED);
+        loadedAs(1, OrderStatus.CREATED);
+
+        CompletableFuture<List<OrderTransitionResult>> transition = transactionTemplate.execute(status -> {
+            orderService.cancelOrder(1L);
+            // 取消尚未提交时批量变更开始，锁定订单时等待取消的事务结束
+            CompletableFuture<List<OrderTransitionResult>> pending = CompletableFuture.supplyAsync(
+                    () -> transitions.apply(Arrays.asList(1L), OrderStatus.PROCESSING));
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            assertFalse(pending.isDone());
+            return pending;
+        });
+
+        List<OrderTransitionResult> results = transition.get(5, TimeUnit.SECONDS);
+        assertEquals(OrderTransitionOutcome.REJECTED, results.get(0).getOutcome());
+        assertEquals(OrderStatus.CANCELLED, results.get(0).getPreviousStatus());
+        assertEquals(OrderStatus.CANCELLED, status(1));
+        verify(stockService, times(1)).increaseStocks(anyMap());
+        assertEquals(1, events("ORDER_CANCELLED"));
+        assertEquals(0, events("ORDER_PROCESSING"));
+    }
+}
@@ -0,0 +1,103 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.common.SnowflakeIdGenerator;
+import com.yf.bookstore.model.outbox.OutboxEvent;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.outbox.OutboxRelay;
+import com.yf.bookstore.outbox.OutboxSink;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxRelayTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private OutboxPublisher publisher;
+    private final List<OutboxEvent> delivered = new ArrayList<>();
+    private final AtomicBoolean failing = new AtomicBoolean();
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        publisher = new OutboxPublisher(jdbcTemplate, new ObjectMapper(), new SnowflakeIdGenerator(0));
+    }
+
+    private OutboxRelay relay(int batchSize) {
+        OutboxSink sink = events -> {
+            if (failing.get()) {
+                throw new IllegalStateException("sink down");
+            }
+            delivered.addAll(events);
+        };
+        return new OutboxRelay(jdbcTemplate, transactionTemplate, sink, true, batchSize, 24);
+    }
+
+    private void publish(int count) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < count; i++) {
+                publisher.publish(publisher.event(OutboxEvent.AGGREGATE_STOCK, i, OutboxEvent.STOCK_CHANGED,
+                        Collections.singletonMap("delta", i)));
+            }
+        });
+    }
+
+    private int pending() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_outbox WHERE delivered_time IS NULL", Integer.class);
+    }
+
+    @Test
+    void testDeliversInIdOrderAcrossBatches() {
+        publish(5);
+
+        relay(2).relay();
+
+        assertEquals(5, delivered.size());
+        for (int i = 0; i < delivered.size(); i++) {
+            assertEquals(String.valueOf(i), delivered.get(i).getAggregateId());
+            assertEquals("{\"delta\":" + i + "}", delivered.get(i).getPayload());
+        }
+        assertEquals(0, pending());
+    }
+
+    @Test
+    void testFailedDeliveryIsRetried() {
+        publish(3);
+        OutboxRelay relay = relay(10);
+
+        failing.set(true);
+        relay.relay();
+        assertEquals(3, pending());
+
+        failing.set(false);
+        relay.relay();
+        assertEquals(3, delivered.size());
+        assertEquals(0, pending());
+    }
+
+    @Test
+    void testRolledBackEventsAreNeverDelivered() {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            publisher.publish(publisher.event(OutboxEvent.AGGREGATE_ORDER, 1L, OutboxEvent.ORDER_CREATED,
+                    Collections.emptyMap()));
+            throw new IllegalStateException("business failure");
+        }));
+
+        relay(10).relay();
+
+        assertTrue(delivered.isEmpty());
+    }
+}
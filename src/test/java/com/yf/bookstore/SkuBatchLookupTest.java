@@ -0,0 +1,108 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.cache.TwoLevelCacheManager;
+import com.yf.bookstore.config.CacheConfig;
+import com.yf.bookstore.exception.commodity.InvalidSkuException;
+import com.yf.bookstore.model.commodity.Sku;
+import com.yf.bookstore.repository.SkuRepository;
+import com.yf.bookstore.search.SkuSearchIndex;
+import com.yf.bookstore.service.impl.SkuServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SkuBatchLookupTest {
+
+    @Mock
+    private SkuRepository skuRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private SkuSearchIndex searchIndex;
+
+    private TwoLevelCacheManager cacheManager;
+    private SkuServiceImpl skuService;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new TwoLevelCacheManager(new ConcurrentMapCacheManager(), redisTemplate, 100, 60);
+        skuService = new SkuServiceImpl(skuRepository, cacheManager, searchIndex);
+        when(skuRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<Sku> skus = new ArrayList<>();
+            for (Object id : (Iterable<?>) invocation.getArgument(0)) {
+                // 999不存在
+                if ((Long) id != 999L) {
+                    skus.add(sku((Long) id));
+                }
+            }
+            return skus;
+        });
+    }
+
+    private static Sku sku(Long id) {
+        Sku sku = new Sku();
+        sku.setId(id);
+        sku.setTitle("sku-" + id);
+        return sku;
+    }
+
+    private static List<Long> ids(List<Sku> skus) {
+        return skus.stream().map(Sku::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testLoadsMissesWithOneQueryAndKeepsRequestOrder() {
+        List<Sku> skus = skuService.getSkusByIds(Arrays.asList(3L, 1L, 999L, 2L, 1L));
+
+        assertEquals(Arrays.asList(3L, 1L, 2L), ids(skus));
+        verify(skuRepository, times(1)).findAllById(anyIterable());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testServesCachedSkusWithoutQuery() {
+        skuService.getSkusByIds(Arrays.asList(1L, 2L));
+        clearInvocations(skuRepository);
+
+        assertEquals(Arrays.asList(2L, 1L), ids(skuService.getSkusByIds(Arrays.asList(2L, 1L))));
+        verify(skuRepository, never()).findAllById(anyIterable());
+
+        // 部分命中时只查询未命中的SKU
+        skuService.getSkusByIds(Arrays.asList(1L, 4L));
+        verify(skuRepository).findAllById(Collections.singletonList(4L));
+
+        Map<String, Object> stats = (Map<String, Object>) cacheManager.stats().get(CacheConfig.SKU_CACHE);
+        assertEquals(3L, stats.get("l1Hits"));
+    }
+
+    @Test
+    void testRejectsOversizedBatch() {
+        List<Long> ids = new ArrayList<>();
+        for (long i = 0; i <= 2000; i++) {
+            ids.add(i);
+        }
+        assertThrows(InvalidSkuException.class, () -> skuService.getSkusByIds(ids));
+        assertTrue(skuService.getSkusByIds(Collections.emptyList()).isEmpty());
+    }
+}
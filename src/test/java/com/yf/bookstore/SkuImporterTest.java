@@ -0,0 +1,191 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.commodity.SkuImporter;
+import com.yf.bookstore.common.SnowflakeIdGenerator;
+import com.yf.bookstore.exception.commodity.InvalidSkuException;
+import com.yf.bookstore.model.commodity.Sku;
+import com.yf.bookstore.model.commodity.SkuImportReport;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.search.SkuSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SkuImporterTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SkuSearchIndex searchIndex;
+    private SkuImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(0);
+        searchIndex = mock(SkuSearchIndex.class);
+        // 每批两行，最多两个未完成的批次
+        importer = new SkuImporter(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                idGenerator, new OutboxPublisher(jdbcTemplate, new ObjectMapper(), idGenerator), searchIndex,
+                new ObjectMapper(), 2, 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importer.shutdown();
+    }
+
+    private SkuImportReport importText(String format, String text) {
+        return importer.importSkus(format, new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    @Test
+    void testImportsCsvInBatchesAndReportsRejectedRows() {
+        String csv = "title,price,stock,own_spec\n"
+                + "Java编程思想,108.00,10,\"{\"\"作者\"\":\"\"Bruce Eckel\"\", \"\"装帧\"\":\"\"平装\"\"}\"\n"
+                + "\"Effective Java, 3rd\",99,5,\n"
+                + ",10,1,\n"
+                + "\n"
+                + "Refactoring,-1,1,\n"
+                + "Clean Code,50,abc,\n"
+                + "SICP,60,0,not json\n"
+                + "Too,many,columns,here,!\n"
+                + "\"多行\n标题\",1,1,\n"
+                + "Python,45,7,";
+
+        SkuImportReport report = importText("csv", csv);
+
+        assertNull(report.getAborted());
+        assertEquals(9, report.getRowsRead());
+        assertEquals(4, report.getImported());
+        assertEquals(5, report.getRejected());
+        assertEquals(2, report.getBatches());
+        assertEquals(4, report.getErrors().get(0).getLine());
+        assertEquals("title is required", report.getErrors().get(0).getMessage());
+        assertEquals(9, report.getErrors().get(4).getLine());
+
+        assertEquals(4, count("tb_sku"));
+        assertEquals(4, count("tb_stock"));
+        assertEquals(4, count("tb_outbox"));
+        assertEquals(new BigDecimal("108.00"), jdbcTemplate.queryForObject(
+                "SELECT price FROM tb_sku WHERE title = 'Java编程思想'", BigDecimal.class));
+        assertEquals(5, jdbcTemplate.queryForObject("SELECT s.stock FROM tb_stock s JOIN tb_sku k ON k.id = s.sku_id "
+                + "WHERE k.title = 'Effective Java, 3rd'", Integer.class));
+        assertEquals("多行\n标题", jdbcTemplate.queryForObject("SELECT title FROM tb_sku WHERE price = 1", String.class));
+        verify(searchIndex, times(4)).index(any(Sku.class));
+    }
+
+    @Test
+    void testRejectsPricesThatDoNotFitTheColumn() {
+        String csv = "title,price,stock\n"
+                + "A,99999999.99,1\n"
+                + "B,100000000,1\n"
+                + "C,1.999,1\n"
+                + "D,1.500,1\n";
+
+        SkuImportReport report = importText("csv", csv);
+
+        assertEquals(2, report.getImported());
+        assertEquals(2, report.getRejected());
+        assertEquals("price exceeds 8 integer digits: 100000000", report.getErrors().get(0).getMessage());
+        assertEquals("price has more than 2 decimal places: 1.999", report.getErrors().get(1).getMessage());
+        assertEquals(new BigDecimal("1.50"), jdbcTemplate.queryForObject(
+                "SELECT price FROM tb_sku WHERE title = 'D'", BigDecimal.class));
+    }
+
+    @Test
+    void testImportsNdjson() {
+        String ndjson = "{\"title\":\"Kotlin实战\",\"price\":69,\"stock\":3,\"ownSpec\":{\"装帧\":\"平装\"}}\n"
+                + "{\"title\":\"Disabled\",\"enable\":false}\n"
+                + "not json\n"
+                + "[1, 2]\n";
+
+        SkuImportReport report = importText("ndjson", ndjson);
+
+        assertEquals(4, report.getRowsRead());
+        assertEquals(2, report.getImported());
+        assertEquals(2, report.getRejected());
+        assertEquals("{\"装帧\":\"平装\"}", jdbcTemplate.queryForObject(
+                "SELECT own_spec FROM tb_sku WHERE title = 'Kotlin实战'", String.class));
+        assertFalse(jdbcTemplate.queryForObject("SELECT enable FROM tb_sku WHERE title = 'Disabled'", Boolean.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT s.stock FROM tb_stock s JOIN tb_sku k ON k.id = s.sku_id "
+                + "WHERE k.title = 'Disabled'", Integer.class));
+    }
+
+    @Test
+    void testKeepsRowsParsedBeforeMalformedInput() {
+        SkuImportReport report = importText("csv", "title,stock\nA,1\nB,2\nC,3\n\"D,4\n");
+
+        assertNotNull(report.getAborted());
+        assertEquals(3, report.getImported());
+        assertEquals(3, count("tb_sku"));
+
+        assertNotNull(importText("csv", "name,stock\nA,1\n").getAborted());
+        assertThrows(InvalidSkuException.class, () -> importText("xml", "<skus/>"));
+    }
+
+    @Test
+    void testLargeImportKeepsBatchesBounded() {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 1001; i++) {
+            ndjson.append("{\"title\":\"sku-").append(i).append("\",\"stock\":").append(i).append("}\n");
+        }
+
+        SkuImportReport report = importText("ndjson", ndjson.toString());
+
+        assertEquals(1001, report.getImported());
+        assertEquals(501, report.getBatches());
+        assertEquals(1001, count("tb_stock"));
+        assertTrue(report.getRowsPerSecond() > 0);
+    }
+
+    @Test
+    void testRejectsOverlongNdjsonLineAndContinues() {
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < 70 * 1024; i++) {
+            title.append('x');
+        }
+        String ndjson = "{\"title\":\"A\"}\n"
+                + "{\"title\":\"" + title + "\"}\r\n"
+                + "{\"title\":\"B\"}\r\n";
+
+        SkuImportReport report = importText("ndjson", ndjson);
+
+        assertNull(report.getAborted());
+        assertEquals(3, report.getRowsRead());
+        assertEquals(2, report.getImported());
+        assertEquals(2, report.getErrors().get(0).getLine());
+        assertEquals("Line exceeds 65536 characters", report.getErrors().get(0).getMessage());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_sku WHERE title = 'B'", Integer.class));
+    }
+
+    @Test
+    void testAbortsCsvOnOverlongRecord() {
+        StringBuilder csv = new StringBuilder("title,stock\nA,1\n\"");
+        // 未闭合的引号不会把剩余的输入都读进一个字段
+        for (int i = 0; i < 70 * 1024; i++) {
+            csv.append(i % 80 == 0 ? '\n' : 'x');
+        }
+
+        SkuImportReport report = importText("csv", csv.toString());
+
+        assertTrue(report.getAborted().contains("exceeds 65536 characters"), report.getAborted());
+        assertEquals(1, report.getImported());
+    }
+}
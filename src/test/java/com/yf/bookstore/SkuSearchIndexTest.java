@@ -0,0 +1,106 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.model.commodity.Sku;
+import com.yf.bookstore.model.commodity.SkuSearchHit;
+import com.yf.bookstore.model.commodity.SkuSearchResult;
+import com.yf.bookstore.search.SkuSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SkuSearchIndexTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SkuSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        insert(1, "Java编程思想", "{\"作者\":\"Bruce Eckel\",\"装帧\":\"平装\"}", true);
+        insert(2, "Effective Java 第三版", "{\"作者\":\"Joshua Bloch\",\"装帧\":\"精装\"}", true);
+        insert(3, "JavaScript高级程序设计", "{\"装帧\":\"平装\"}", true);
+        insert(4, "Python编程 从入门到实践", "not json", true);
+        insert(5, "Java并发编程实战", "{\"装帧\":\"平装\"}", false);
+        insert(6, "深入理解Java虚拟机", "{\"作者\":\"周志明\",\"装帧\":\"精装\"}", true);
+        // 两个线程、每页两行，覆盖分段和分页
+        searchIndex = new SkuSearchIndex(jdbcTemplate, new ObjectMapper(), true, 2, 2);
+        searchIndex.rebuild();
+    }
+
+    private void insert(long id, String title, String ownSpec, boolean enable) {
+        jdbcTemplate.update("INSERT INTO tb_sku (id, title, own_spec, enable, create_time, modify_time) "
+                + "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)", id, title, ownSpec, enable);
+    }
+
+    private List<Long> search(String query) {
+        return searchIndex.search(query, 10).getHits().stream().map(SkuSearchHit::getSkuId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    void testRebuildIndexesEnabledSkusOnly() {
+        assertEquals(5, searchIndex.size());
+        assertEquals(Arrays.asList(1L, 2L, 6L), search("java"));
+    }
+
+    @Test
+    void testBooleanAndPrefixQueries() {
+        assertEquals(Arrays.asList(1L), search("java 平装"));
+        assertEquals(Arrays.asList(2L, 6L), search("java -平装"));
+        assertEquals(Arrays.asList(1L, 3L, 4L), search("编程 OR 程序"));
+        assertEquals(Arrays.asList(1L, 2L, 3L, 6L), search("jav*"));
+        assertEquals(Arrays.asList(2L), search("bloch"));
+        assertEquals(Arrays.asList(4L), search("JSON"));
+        assertTrue(search("-java").isEmpty());
+        assertTrue(search("kotlin").isEmpty());
+    }
+
+    @Test
+    void testRanksTitleMatchesAboveSpecMatches() {
+        jdbcTemplate.update("DELETE FROM tb_sku");
+        insert(10, "精装版画册", "{\"装帧\":\"平装\"}", true);
+        insert(11, "画册", "{\"装帧\":\"精装\"}", true);
+        insert(12, "散文集", "{\"装帧\":\"平装\"}", true);
+        searchIndex.rebuild();
+
+        SkuSearchResult result = searchIndex.search("精装", 10);
+        assertEquals(2, result.getTotal());
+        assertEquals(10L, result.getHits().get(0).getSkuId());
+        assertTrue(result.getHits().get(0).getScore() > result.getHits().get(1).getScore());
+
+        assertEquals(1, searchIndex.search("平装", 1).getHits().size());
+        assertEquals(2, searchIndex.search("平装", 1).getTotal());
+    }
+
+    @Test
+    void testIncrementalUpdates() {
+        Sku sku = new Sku();
+        sku.setId(7L);
+        sku.setTitle("Kotlin实战");
+        sku.setOwnSpec("{\"装帧\":\"平装\"}");
+        sku.setEnable(true);
+        searchIndex.index(sku);
+        assertEquals(Arrays.asList(7L), search("kotlin"));
+
+        sku.setTitle("Kotlin核心编程");
+        searchIndex.index(sku);
+        assertEquals(Arrays.asList(7L), search("核心"));
+        assertTrue(search("实战").isEmpty());
+
+        sku.setEnable(false);
+        searchIndex.index(sku);
+        assertTrue(search("kotlin").isEmpty());
+
+        searchIndex.remove(1L);
+        assertEquals(Arrays.asList(2L, 6L), search("java"));
+        assertEquals(4, searchIndex.size());
+    }
+}
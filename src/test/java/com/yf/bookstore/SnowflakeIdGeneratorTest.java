@@ -0,0 +1,69 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.common.SnowflakeIdGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnowflakeIdGeneratorTest {
+
+    @Test
+    void testIdsAreIncreasingAndCarryWorkerAndTime() {
+        long now = System.currentTimeMillis();
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(37, () -> now);
+
+        long previous = generator.nextId();
+        for (int i = 0; i < 10000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        assertEquals(37, SnowflakeIdGenerator.workerIdOf(previous));
+        // 同一毫秒内超过4096个ID时借用后续毫秒
+        assertTrue(SnowflakeIdGenerator.timestampOf(previous) > now);
+        assertTrue(SnowflakeIdGenerator.timestampOf(previous) <= now + 3);
+    }
+
+    @Test
+    void testToleratesSmallClockRollbackButRejectsLargeOne() {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(1, clock::get);
+        long before = generator.nextId();
+
+        clock.addAndGet(-10);
+        assertTrue(generator.nextId() > before);
+
+        clock.addAndGet(-5000);
+        assertThrows(IllegalStateException.class, generator::nextId);
+    }
+
+    @Test
+    void testConcurrentCallersNeverCollide() throws InterruptedException {
+        SnowflakeIdGenerator generator = new SnowflakeIdGenerator(2);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        int threads = 4;
+        int perThread = 50000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    ids.add(generator.nextId());
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertEquals(threads * perThread, ids.size());
+    }
+
+    @Test
+    void testRejectsWorkerIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeIdGenerator(SnowflakeIdGenerator.MAX_WORKER_ID + 1));
+    }
+}
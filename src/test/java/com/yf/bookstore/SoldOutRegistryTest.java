@@ -0,0 +1,62 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.inventory.SoldOutRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class SoldOutRegistryTest {
+
+    private StringRedisTemplate redisTemplate;
+    private SoldOutRegistry registry;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        registry = new SoldOutRegistry(redisTemplate, mock(ObjectProvider.class));
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(TestDatabase.create()));
+    }
+
+    @Test
+    void testAppliesImmediatelyOutsideTransaction() {
+        registry.onStockChanged(1L, 0);
+        assertTrue(registry.isSoldOut(1L));
+
+        registry.onRestocked(1L);
+        assertFalse(registry.isSoldOut(1L));
+        verify(redisTemplate, times(2)).convertAndSend(eq(SoldOutRegistry.CHANNEL), anyString());
+    }
+
+    @Test
+    void testAppliesOnlyAfterCommit() {
+        transactionTemplate.execute(status -> {
+            registry.onStockChanged(1L, 0);
+            assertFalse(registry.isSoldOut(1L));
+            return null;
+        });
+
+        assertTrue(registry.isSoldOut(1L));
+        verify(redisTemplate).convertAndSend(SoldOutRegistry.CHANNEL, "+1");
+    }
+
+    @Test
+    void testRolledBackChangeIsDropped() {
+        transactionTemplate.execute(status -> {
+            registry.onStockChanged(1L, 0);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertFalse(registry.isSoldOut(1L));
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+}
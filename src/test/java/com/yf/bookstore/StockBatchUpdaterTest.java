@@ -0,0 +1,124 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.common.SnowflakeIdGenerator;
+import com.yf.bookstore.inventory.StockBatchUpdater;
+import com.yf.bookstore.model.inventory.StockAdjustment;
+import com.yf.bookstore.model.inventory.StockAdjustmentResult;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockBatchUpdaterTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private StockBatchUpdater batchUpdater;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO tb_stock (id, sku_id, stock) VALUES (1, 1, 10), (2, 2, 3)");
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(0);
+        batchUpdater = new StockBatchUpdater(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                idGenerator, new OutboxPublisher(jdbcTemplate, new ObjectMapper(), idGenerator));
+    }
+
+    private int stored(long skuId) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM tb_stock WHERE sku_id = ?", Integer.class, skuId);
+    }
+
+    @Test
+    void testAppliesDeltasAndAbsoluteValuesInOrder() {
+        StockBatchUpdater.Outcome outcome = batchUpdater.apply(Arrays.asList(
+                new StockAdjustment(1L, -4, null),
+                new StockAdjustment(2L, null, 7),
+                new StockAdjustment(2L, 1, null),
+                new StockAdjustment(3L, null, 5)), skuId -> 0);
+
+        assertTrue(outcome.getResults().stream().allMatch(StockAdjustmentResult::isSuccess));
+        assertEquals(6, stored(1L));
+        assertEquals(8, stored(2L));
+        assertEquals(5, stored(3L));
+        assertEquals(-4, outcome.getDeltas().get(1L));
+        assertEquals(5, outcome.getDeltas().get(2L));
+        assertEquals(5, outcome.getDeltas().get(3L));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tb_outbox WHERE event_type = 'STOCK_CHANGED'", Integer.class));
+    }
+
+    @Test
+    void testRejectsItemsThatWouldOversell() {
+        List<StockAdjustmentResult> results = batchUpdater.apply(Arrays.asList(
+                new StockAdjustment(1L, -11, null),
+                new StockAdjustment(1L, -10, null),
+                new StockAdjustment(2L, -1, 1)), skuId -> 0).getResults();
+
+        assertFalse(results.get(0).isSuccess());
+        assertEquals(10, results.get(0).getStock());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertEquals(0, stored(1L));
+        assertEquals(3, stored(2L));
+    }
+
+    @Test
+    void testGuardsAgainstPendingDeltas() {
+        // 数据库10，尚有8未写回的扣减，可用只有2
+        List<StockAdjustmentResult> results = batchUpdater.apply(Arrays.asList(
+                new StockAdjustment(1L, -5, null)), skuId -> skuId == 1L ? -8 : 0).getResults();
+
+        assertFalse(results.get(0).isSuccess());
+        assertEquals(2, results.get(0).getStock());
+        assertEquals(10, stored(1L));
+    }
+
+    @Test
+    void testDecreaseAllReportsFirstInsufficientSku() {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        quantities.put(1L, 4);
+        quantities.put(2L, 5);
+
+        assertEquals(2L, batchUpdater.decreaseAll(quantities));
+
+        quantities.put(2L, 3);
+        quantities.remove(1L);
+        assertNull(batchUpdater.decreaseAll(quantities));
+        assertEquals(0, stored(2L));
+    }
+
+    @Test
+    void testIncreaseAllInsertsMissingRows() {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        quantities.put(1L, 2);
+        quantities.put(9L, 4);
+
+        batchUpdater.increaseAll(quantities);
+
+        assertEquals(12, stored(1L));
+        assertEquals(4, stored(9L));
+    }
+
+    @Test
+    void testStocksReadsCurrentValuesAndSkipsMissing() {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        quantities.put(2L, 3);
+        batchUpdater.decreaseAll(quantities);
+
+        Map<Long, Integer> stocks = batchUpdater.stocks(Arrays.asList(1L, 2L, 9L));
+
+        assertEquals(2, stocks.size());
+        assertEquals(10, stocks.get(1L));
+        assertEquals(0, stocks.get(2L));
+    }
+}
@@ -0,0 +1,273 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.inventory.StockCacheWarmer;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.inventory.StripedStockCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StockCacheWarmerTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisStringCommands stringCommands;
+
+    @Mock
+    private StockWriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private StripedStockCounter stripedCounter;
+
+    private JdbcTemplate jdbcTemplate;
+
+    // 模拟Redis：SET NX只写入不存在的key，同时按调用顺序记录写入的key和过期时间
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+    private final List<Expiration> expirations = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger pipelines = new AtomicInteger();
+    private volatile CountDownLatch gate;
+
+    private StockCacheWarmer warmer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(writeBehindQueue.readConsistent(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        jdbcTemplate = new JdbcTemplate(TestDatabase.create());
+        when(connection.stringCommands()).thenReturn(stringCommands);
+        when(stringCommands.set(any(byte[].class), any(byte[].class), any(Expiration.class), any())).thenAnswer(invocation -> {
+            String key = new String((byte[]) invocation.getArgument(0), StandardCharsets.UTF_8);
+            written.add(key);
+            expirations.add(invocation.getArgument(2));
+            return redis.putIfAbsent(key, new String((byte[]) invocation.getArgument(1), StandardCharsets.UTF_8)) == null;
+        });
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            CountDownLatch waiting = gate;
+            if (waiting != null) {
+                waiting.await(10, TimeUnit.SECONDS);
+            }
+            pipelines.incrementAndGet();
+            ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection);
+            return Collections.emptyList();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (gate != null) {
+            gate.countDown();
+        }
+        if (warmer != null) {
+            warmer.shutdown();
+        }
+    }
+
+    private StockCacheWarmer warmer(int threads, int pageSize, int hotSkus, long budgetMillis, boolean redisFirst) {
+        warmer = new StockCacheWarmer(jdbcTemplate, redisTemplate, writeBehindQueue, stripedCounter, true, threads,
+                pageSize, hotSkus, 7, budgetMillis, 300, redisFirst);
+        return warmer;
+    }
+
+    private void stocks(long... skuIds) {
+        for (long skuId : skuIds) {
+            jdbcTemplate.update("INSERT INTO tb_stock (id, sku_id, stock) VALUES (?, ?, ?)", skuId, skuId, (int) (skuId % 100));
+        }
+    }
+
+    private void orders(long skuId, int count, int daysAgo) {
+        Timestamp time = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(daysAgo));
+        for (int i = 0; i < count; i++) {
+            long orderId = skuId * 1000 + daysAgo * 100 + i;
+            jdbcTemplate.update("INSERT INTO tb_order (id, customer_id, status, sku_id, total_amount, create_time, modify_time) "
+                    + "VALUES (?, 'c1', 0, ?, 1, ?, ?)", orderId, skuId, time, time);
+            jdbcTemplate.update("INSERT INTO tb_order_line VALUES (?, ?, ?, 1, 1)", orderId, orderId, skuId);
+        }
+    }
+
+    // 多商品订单的sku_id为空，只在明细中出现
+    private void multiLineOrder(long orderId, long... skuIds) {
+        Timestamp time = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update("INSERT INTO tb_order (id, customer_id, status, total_amount, create_time, modify_time) "
+                + "VALUES (?, 'c1', 0, 1, ?, ?)", orderId, time, time);
+        for (int i = 0; i < skuIds.length; i++) {
+            jdbcTemplate.update("INSERT INTO tb_order_line VALUES (?, ?, ?, 1, 1)", orderId * 10 + i, orderId, skuIds[i]);
+        }
+    }
+
+    // 历史上的单商品订单没有明细
+    private void legacyOrder(long orderId, long skuId) {
+        Timestamp time = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.update("INSERT INTO tb_order (id, customer_id, status, sku_id, total_amount, create_time, modify_time) "
+                + "VALUES (?, 'c1', 0, ?, 1, ?, ?)", orderId, skuId, time, time);
+    }
+
+    private void awaitWarmed(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (redis.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // 留出时间暴露重复写入
+        Thread.sleep(50);
+    }
+
+    @Test
+    void testRangesCoverEveryRowExactlyOnce() throws InterruptedException {
+        // 稀疏的sku_id，区间边界落在行之间
+        long[] skuIds = {3, 4, 5, 17, 18, 250, 251, 999, 1000, 1001, 5000};
+        stocks(skuIds);
+
+        warmer(3, 2, 0, 1000, false).run(null);
+        awaitWarmed(skuIds.length);
+
+        assertEquals(skuIds.length, redis.size());
+        assertEquals(skuIds.length, written.size());
+        for (long skuId : skuIds) {
+            assertEquals(String.valueOf(skuId % 100), redis.get("stock:" + skuId));
+        }
+    }
+
+    @Test
+    void testPagesAreLoadedInSeparatePipelines() throws InterruptedException {
+        stocks(1, 2, 3, 4, 5, 6, 7);
+
+        warmer(1, 3, 0, 1000, false).run(null);
+        awaitWarmed(7);
+
+        assertEquals(7, redis.size());
+        // 一个区间：3 + 3 + 1
+        assertEquals(3, pipelines.get());
+    }
+
+    @Test
+    void testCountersIncludePendingDeltasAndSkipStripedSkus() throws InterruptedException {
+        stocks(1, 2, 3);
+        when(writeBehindQueue.pendingDelta(2L)).thenReturn(-2);
+        when(stripedCounter.isHot(3L)).thenReturn(true);
+
+        warmer(2, 10, 0, 1000, false).run(null);
+        awaitWarmed(2);
+
+        assertEquals("1", redis.get("stock:1"));
+        assertEquals("0", redis.get("stock:2"));
+        assertFalse(redis.containsKey("stock:3"));
+    }
+
+    @Test
+    void testExistingCountersAreNotOverwritten() throws InterruptedException {
+        stocks(1, 2);
+        redis.put("stock:1", "42");
+
+        warmer(1, 10, 0, 1000, false).run(null);
+        awaitWarmed(2);
+
+        assertEquals("42", redis.get("stock:1"));
+        assertEquals("2", redis.get("stock:2"));
+    }
+
+    @Test
+    void testHotSkusAreWarmedFirstByRecentOrderCount() throws InterruptedException {
+        stocks(1, 2, 3, 4);
+        orders(3, 5, 1);
+        orders(1, 3, 2);
+        orders(2, 1, 1);
+        // 窗口之外的订单不计入
+        orders(4, 10, 30);
+
+        warmer(1, 10, 2, 1000, false).run(null);
+
+        // run返回时热点SKU已写入，其余在后台继续
+        assertEquals(new HashSet<>(Arrays.asList("stock:3", "stock:1")), new HashSet<>(written.subList(0, 2)));
+        awaitWarmed(4);
+        assertEquals(4, redis.size());
+    }
+
+    @Test
+    void testHotSkusCountMultiLineAndLegacyOrders() {
+        stocks(1, 2, 3, 4, 5);
+        // SKU 4和5只出现在多商品订单的明细中
+        for (long id = 1; id <= 3; id++) {
+            multiLineOrder(900 + id, 4, 5);
+        }
+        // SKU 3只有历史订单
+        legacyOrder(801, 3);
+        legacyOrder(802, 3);
+        legacyOrder(803, 3);
+        // 单商品订单同时有sku_id和明细，只计一次，重复计入时会排在前面
+        orders(1, 2, 1);
+
+        warmer(1, 10, 3, 1000, false).run(null);
+
+        assertEquals(new HashSet<>(Arrays.asList("stock:3", "stock:4", "stock:5")), new HashSet<>(written.subList(0, 3)));
+    }
+
+    @Test
+    void testSlowHotPassDoesNotBlockStartupBeyondBudget() throws InterruptedException {
+        stocks(1, 2);
+        orders(1, 2, 1);
+        gate = new CountDownLatch(1);
+
+        long start = System.currentTimeMillis();
+        warmer(1, 10, 10, 100, false).run(null);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue(elapsed < 2000, "run took " + elapsed + " ms");
+        assertTrue(redis.isEmpty());
+        // 预热在后台继续完成
+        gate.countDown();
+        awaitWarmed(2);
+        assertEquals(2, redis.size());
+    }
+
+    @Test
+    void testExpirationDependsOnMode() throws InterruptedException {
+        stocks(1);
+        warmer(1, 10, 0, 1000, true).run(null);
+        awaitWarmed(1);
+        assertTrue(expirations.get(0).isPersistent());
+
+        redis.clear();
+        expirations.clear();
+        warmer.shutdown();
+        warmer(1, 10, 0, 1000, false).run(null);
+        awaitWarmed(1);
+        long seconds = expirations.get(0).getExpirationTimeInSeconds();
+        assertTrue(seconds >= 300 && seconds < 360, "ttl " + seconds);
+    }
+}
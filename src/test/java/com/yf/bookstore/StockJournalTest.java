@@ -0,0 +1,76 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.inventory.StockJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private StockJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        journal = new StockJournal(directory.toString(), true);
+        journal.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void testConcurrentAppendsAreAllRecorded() throws InterruptedException {
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            long skuId = t % 2 + 1;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    journal.append(skuId, -1);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        long sealed = journal.rotate();
+        Map<Long, Integer> deltas = journal.read(sealed);
+        assertEquals(-threads / 2 * perThread, deltas.get(1L));
+        assertEquals(-threads / 2 * perThread, deltas.get(2L));
+    }
+
+    @Test
+    void testAppendsAfterRotateGoToNewSegment() {
+        journal.append(1L, 5);
+        long first = journal.rotate();
+        journal.append(1L, -2);
+        long second = journal.rotate();
+
+        assertEquals(5, journal.read(first).get(1L));
+        assertEquals(-2, journal.read(second).get(1L));
+        List<Long> sealed = journal.sealedSegments();
+        assertEquals(2, sealed.size());
+        assertTrue(sealed.contains(first) && sealed.contains(second));
+    }
+}
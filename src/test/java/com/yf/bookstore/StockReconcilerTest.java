@@ -0,0 +1,122 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.inventory.StockMetrics;
+import com.yf.bookstore.inventory.StockReconciler;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.inventory.StripedStockCounter;
+import io.lettuce.core.KeyScanCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StockReconcilerTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private StockWriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private StripedStockCounter stripedCounter;
+
+    private StockMetrics stockMetrics;
+
+    private StockReconciler reconciler;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        when(writeBehindQueue.readConsistent(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO tb_stock (id, sku_id, stock) VALUES (1, 1, 10), (2, 2, 5)");
+
+        KeyScanCursor<byte[]> finished = new KeyScanCursor<>();
+        finished.setCursor("0");
+        finished.setFinished(true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenReturn(finished);
+
+        stockMetrics = new StockMetrics();
+        reconciler = new StockReconciler(jdbcTemplate, redisTemplate, writeBehindQueue, stripedCounter, stockMetrics,
+                true, 100, false);
+    }
+
+    @Test
+    void testStableDriftIsRepairedOnRecheck() {
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList("7", "5"), Arrays.asList("7"));
+
+        reconciler.step();
+        verify(redisTemplate, never()).delete(anyString());
+
+        reconciler.step();
+        verify(redisTemplate).delete("stock:1");
+        verify(redisTemplate, never()).delete("stock:2");
+    }
+
+    @Test
+    void testTransientDriftIsNotRepaired() {
+        // 第二次读取时并发中的扣减已经完成，差异消失
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList("7", "5"), Arrays.asList("10"));
+
+        reconciler.step();
+        reconciler.step();
+
+        verify(redisTemplate, never()).delete(anyString());
+    }
+
+    @Test
+    void testUnloadedCountersAreNotDrift() {
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList(null, "5"));
+
+        reconciler.step();
+        reconciler.step();
+
+        verify(redisTemplate, never()).delete(anyString());
+        assertEquals(0L, ((Map<?, ?>) stockMetrics.snapshot().get("reconciliation")).get("driftDetected"));
+    }
+
+    @Test
+    void testRedisFirstDriftIsReportedButNotRepaired() {
+        // 其他节点未写回的增量不在本节点的期望值中，计数器不能按它修正
+        reconciler = new StockReconciler(jdbcTemplate, redisTemplate, writeBehindQueue, stripedCounter, stockMetrics,
+                true, 100, true);
+        when(valueOperations.multiGet(anyList())).thenReturn(Arrays.asList("7", "5"), Arrays.asList("7"));
+
+        reconciler.step();
+        reconciler.step();
+
+        verify(redisTemplate, never()).delete(anyString());
+        verify(valueOperations, never()).increment(anyString(), anyLong());
+        Map<?, ?> reconciliation = (Map<?, ?>) stockMetrics.snapshot().get("reconciliation");
+        assertEquals(1L, reconciliation.get("driftDetected"));
+        assertEquals(0L, reconciliation.get("driftRepaired"));
+        assertEquals(1L, reconciliation.get("driftUnrepaired"));
+    }
+}
@@ -0,0 +1,254 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.inventory.SoldOutRegistry;
+import com.yf.bookstore.inventory.StockBatchUpdater;
+import com.yf.bookstore.inventory.StockHoldManager;
+import com.yf.bookstore.inventory.StockMetrics;
+import com.yf.bookstore.inventory.StockReconciler;
+import com.yf.bookstore.inventory.StockScript;
+import com.yf.bookstore.inventory.StockScriptRegistry;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.inventory.StripedStockCounter;
+import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.repository.StockRepository;
+import com.yf.bookstore.service.impl.StockServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StockRedisFirstTest {
+
+    @Mock
+    private StockRepository stockRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private StockWriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private StockScriptRegistry scriptRegistry;
+
+    @Mock
+    private StripedStockCounter stripedCounter;
+
+    @Mock
+    private SoldOutRegistry soldOutRegistry;
+
+    @Mock
+    private OutboxPublisher outboxPublisher;
+
+    @Mock
+    private StockBatchUpdater batchUpdater;
+
+    private StockServiceImpl stockService;
+
+    @BeforeEach
+    void setUp() {
+        when(writeBehindQueue.readConsistent(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        stockService = new StockServiceImpl(stockRepository, redisTemplate, writeBehindQueue, scriptRegistry,
+                stripedCounter, mock(StockHoldManager.class), batchUpdater, new StockMetrics(),
+                mock(StockReconciler.class), soldOutRegistry, outboxPublisher);
+        ReflectionTestUtils.setField(stockService, "redisFirst", true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        Stock stored = new Stock();
+        stored.setSkuId(1L);
+        stored.setStock(5);
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stored));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    // 模拟调用方事务结束，触发登记的回调
+    private static void completeTransaction(int status) {
+        TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), status);
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private Stock request(int quantity) {
+        Stock stock = new Stock();
+        stock.setSkuId(1L);
+        stock.setStock(quantity);
+        return stock;
+    }
+
+    @Test
+    void updateStock_PendingDeltas_AppliesDifferenceThroughQueue() {
+        // 数据库为5，队列中还有+2未写回，计数器为7
+        when(valueOperations.get("stock:1")).thenReturn("7");
+        when(scriptRegistry.execute(StockScript.RELEASE, Collections.singletonList("stock:1"),
+                Collections.singletonList("3"))).thenReturn(10L);
+
+        Stock updated = stockService.updateStock(request(10));
+
+        assertEquals(10, updated.getStock());
+        verify(writeBehindQueue).enqueue(1L, 3);
+        verify(scriptRegistry, never()).execute(eq(StockScript.SET_IF_EXISTS), any(), any());
+        verify(stockRepository, never()).save(any());
+        verify(outboxPublisher, never()).publish(any());
+        verify(soldOutRegistry).onStockChanged(1L, 10);
+    }
+
+    @Test
+    void updateStock_LowerThanCounter_EnqueuesNegativeDelta() {
+        when(valueOperations.get("stock:1")).thenReturn("7");
+        when(scriptRegistry.execute(StockScript.RELEASE, Collections.singletonList("stock:1"),
+                Collections.singletonList("-7"))).thenReturn(0L);
+
+        assertEquals(0, stockService.updateStock(request(0)).getStock());
+        verify(writeBehindQueue).enqueue(1L, -7);
+    }
+
+    @Test
+    void updateStock_SameAsCounter_ChangesNothing() {
+        when(valueOperations.get("stock:1")).thenReturn("7");
+
+        assertEquals(7, stockService.updateStock(request(7)).getStock());
+        verify(writeBehindQueue, never()).enqueue(anyLong(), anyInt());
+        verify(scriptRegistry, never()).execute(any(), any(), any());
+    }
+
+    @Test
+    void updateStock_HotSku_ResplitsStripesAfterEnqueueingDelta() {
+        when(stripedCounter.isHot(1L)).thenReturn(true);
+        when(stripedCounter.total(1L)).thenReturn(7, 10);
+
+        assertEquals(10, stockService.updateStock(request(10)).getStock());
+        verify(writeBehindQueue).enqueue(1L, 3);
+        verify(stripedCounter).reset(1L);
+        verify(stockRepository, never()).save(any());
+    }
+
+    @Test
+    void decreaseStock_TransactionRolledBack_ReleasesCounter() {
+        when(scriptRegistry.execute(StockScript.RESERVE, Collections.singletonList("stock:1"),
+                Collections.singletonList("2"))).thenReturn(3L);
+        TransactionSynchronizationManager.initSynchronization();
+
+        stockService.decreaseStock(1L, 2);
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(writeBehindQueue).enqueue(1L, -2);
+        verify(writeBehindQueue).enqueue(1L, 2);
+        verify(scriptRegistry).execute(StockScript.RELEASE_MULTI, Collections.singletonList("stock:1"),
+                Collections.singletonList("2"));
+    }
+
+    @Test
+    void decreaseStock_TransactionCommitted_KeepsReservation() {
+        when(scriptRegistry.execute(StockScript.RESERVE, Collections.singletonList("stock:1"),
+                Collections.singletonList("2"))).thenReturn(3L);
+        TransactionSynchronizationManager.initSynchronization();
+
+        stockService.decreaseStock(1L, 2);
+        completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(writeBehindQueue, never()).enqueue(1L, 2);
+        verify(scriptRegistry, never()).execute(eq(StockScript.RELEASE_MULTI), any(), any());
+    }
+
+    @Test
+    void decreaseStocks_TransactionRolledBack_ReleasesAllCounters() {
+        when(scriptRegistry.execute(eq(StockScript.RESERVE_MULTI), any(), any())).thenReturn(0L);
+        Map<Long, Integer> quantities = new TreeMap<>();
+        quantities.put(1L, 2);
+        quantities.put(2L, 1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        stockService.decreaseStocks(quantities);
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(writeBehindQueue).enqueue(1L, 2);
+        verify(writeBehindQueue).enqueue(2L, 1);
+        verify(scriptRegistry).execute(StockScript.RELEASE_MULTI, Arrays.asList("stock:1", "stock:2"), Arrays.asList("2", "1"));
+    }
+
+    @Test
+    void decreaseStocks_DatabaseModeWithHotSku_ReleasesOnlyStripes() {
+        ReflectionTestUtils.setField(stockService, "redisFirst", false);
+        when(stripedCounter.isHot(1L)).thenReturn(true);
+        when(stripedCounter.reserve(1L, 2)).thenReturn(8);
+        when(stockRepository.decreaseIfSufficient(2L, 1)).thenReturn(1);
+        Map<Long, Integer> quantities = new TreeMap<>();
+        quantities.put(1L, 2);
+        quantities.put(2L, 1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        stockService.decreaseStocks(quantities);
+        completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        // 普通SKU的扣减随数据库事务回滚，只归还热点分片
+        verify(stripedCounter).release(1L, 2);
+        verify(stockRepository, never()).increase(anyLong(), anyInt());
+    }
+
+    @Test
+    void decreaseStocks_LastUnitsTaken_MarksSoldOut() {
+        when(scriptRegistry.execute(eq(StockScript.RESERVE_MULTI), any(), any())).thenReturn(0L);
+        when(valueOperations.multiGet(Arrays.asList("stock:1", "stock:2"))).thenReturn(Arrays.asList("3", "0"));
+        Map<Long, Integer> quantities = new TreeMap<>();
+        quantities.put(1L, 2);
+        quantities.put(2L, 1);
+
+        stockService.decreaseStocks(quantities);
+
+        verify(soldOutRegistry).onStockChanged(1L, 3);
+        verify(soldOutRegistry).onStockChanged(2L, 0);
+    }
+
+    @Test
+    void decreaseStocks_DatabaseMode_MarksSoldOutFromRemainingRows() {
+        ReflectionTestUtils.setField(stockService, "redisFirst", false);
+        Map<Long, Integer> remaining = new TreeMap<>();
+        remaining.put(1L, 0);
+        remaining.put(2L, 4);
+        when(batchUpdater.decreaseAll(any())).thenReturn(null);
+        when(batchUpdater.stocks(Arrays.asList(1L, 2L))).thenReturn(remaining);
+        Map<Long, Integer> quantities = new TreeMap<>();
+        quantities.put(1L, 2);
+        quantities.put(2L, 1);
+
+        stockService.decreaseStocks(quantities);
+
+        verify(batchUpdater).decreaseAll(quantities);
+        verify(soldOutRegistry).onStockChanged(1L, 0);
+        verify(soldOutRegistry).onStockChanged(2L, 4);
+    }
+}
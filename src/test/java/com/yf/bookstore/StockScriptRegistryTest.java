@@ -0,0 +1,144 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.inventory.StockScript;
+import com.yf.bookstore.inventory.StockScriptRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StockScriptRegistryTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisScriptingCommands scriptingCommands;
+
+    private StockScriptRegistry registry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(redisTemplate.execute(any(RedisCallback.class)))
+                .thenAnswer(invocation -> ((RedisCallback<?>) invocation.getArgument(0)).doInRedis(connection));
+        when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+        registry = new StockScriptRegistry(redisTemplate);
+    }
+
+    private static byte[] source(StockScript script) throws IOException {
+        return StreamUtils.copyToByteArray(new ClassPathResource("scripts/stock/" + script.getFileName()).getInputStream());
+    }
+
+    private static String sha1(byte[] source) throws NoSuchAlgorithmException {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-1").digest(source)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static RedisSystemException noScript() {
+        return new RedisSystemException("Error in execution",
+                new IllegalStateException("NOSCRIPT No matching script. Please use EVAL."));
+    }
+
+    @Test
+    void testPreloadRegistersEveryScriptWithItsSha() throws Exception {
+        ArgumentCaptor<byte[]> sources = ArgumentCaptor.forClass(byte[].class);
+        when(scriptingCommands.scriptLoad(sources.capture())).thenAnswer(invocation -> sha1(invocation.getArgument(0)));
+
+        registry.preload();
+
+        assertEquals(StockScript.values().length, sources.getAllValues().size());
+        assertArrayEquals(source(StockScript.RESERVE), sources.getAllValues().get(StockScript.RESERVE.ordinal()));
+    }
+
+    @Test
+    void testExecuteUsesEvalShaOfScriptSource() throws Exception {
+        when(scriptingCommands.evalSha(anyString(), eq(ReturnType.INTEGER), anyInt(), ArgumentMatchers.<byte[]>any())).thenReturn(7L);
+
+        assertEquals(7L, registry.execute(StockScript.RESERVE, Collections.singletonList("stock:1"),
+                Collections.singletonList("2")));
+
+        ArgumentCaptor<byte[]> keysAndArgs = ArgumentCaptor.forClass(byte[].class);
+        verify(scriptingCommands).evalSha(eq(sha1(source(StockScript.RESERVE))), eq(ReturnType.INTEGER), eq(1),
+                keysAndArgs.capture());
+        assertEquals("stock:1", new String(keysAndArgs.getAllValues().get(0)));
+        assertEquals("2", new String(keysAndArgs.getAllValues().get(1)));
+        verify(scriptingCommands, never()).scriptLoad(any());
+    }
+
+    @Test
+    void testNoScriptReloadsOnceAndRetries() throws Exception {
+        String sha = sha1(source(StockScript.RELEASE));
+        when(scriptingCommands.evalSha(eq(sha), eq(ReturnType.INTEGER), anyInt(), ArgumentMatchers.<byte[]>any()))
+                .thenThrow(noScript())
+                .thenReturn(12L);
+        when(scriptingCommands.scriptLoad(any())).thenReturn(sha);
+
+        assertEquals(12L, registry.execute(StockScript.RELEASE, Collections.singletonList("stock:1"),
+                Collections.singletonList("2")));
+
+        verify(scriptingCommands, times(1)).scriptLoad(source(StockScript.RELEASE));
+        verify(scriptingCommands, times(2)).evalSha(eq(sha), eq(ReturnType.INTEGER), eq(1), ArgumentMatchers.<byte[]>any());
+    }
+
+    @Test
+    void testOtherErrorsAreNotRetried() {
+        when(scriptingCommands.evalSha(anyString(), eq(ReturnType.INTEGER), anyInt(), ArgumentMatchers.<byte[]>any()))
+                .thenThrow(new RedisSystemException("ERR wrong number of arguments", null));
+
+        assertThrows(RedisSystemException.class, () -> registry.execute(StockScript.RESERVE,
+                Collections.singletonList("stock:1"), Collections.singletonList("2")));
+        verify(scriptingCommands, never()).scriptLoad(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPipelineNoScriptReloadsAllAndRetries() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(noScript())
+                .thenReturn(Arrays.asList(3L, null));
+
+        List<Long> results = registry.executePipelined(StockScript.RELEASE,
+                Arrays.asList(Collections.singletonList("stock:1"), Collections.singletonList("stock:2")),
+                Arrays.asList(Collections.singletonList("1"), Collections.singletonList("1")));
+
+        assertEquals(Arrays.asList(3L, null), results);
+        verify(scriptingCommands, times(StockScript.values().length)).scriptLoad(any());
+        verify(redisTemplate, times(2)).executePipelined(any(RedisCallback.class));
+    }
+}
@@ -1,5 +1,6 @@
 package com.yf.bookstore;
 
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
 import com.yf.bookstore.model.inventory.Stock;
 import com.yf.bookstore.repository.StockRepository;
 import com.yf.bookstore.service.StockService;
@@ -12,8 +13,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.concurrent.TimeUnit;
@@ -29,7 +29,7 @@ class StockServiceTest {
     private StockRepository stockRepository;
 
     @Autowired
-    private RedisTemplate<String, Object> redisTemplate;
+    private StringRedisTemplate redisTemplate;
 
     @InjectMocks
     private StockServiceImpl stockService;
@@ -46,15 +46,15 @@ class StockServiceTest {
 
         Stock stock = new Stock();
         stock.setSkuId(skuId);
-        stock.setStock(10);
+        stock.setStock(15);
 
-        when(stockRepository.findById(skuId)).thenReturn(java.util.Optional.of(stock));
-        when(stockRepository.saveAndFlush(any(Stock.class))).thenReturn(stock);
+        when(stockRepository.increase(skuId, quantity)).thenReturn(1);
+        when(stockRepository.findBySkuId(skuId)).thenReturn(java.util.Optional.of(stock));
 
         Stock updatedStock = stockService.increaseStock(skuId, quantity);
 
         assertEquals(15, updatedStock.getStock());
-        verify(stockRepository, times(1)).saveAndFlush(any(Stock.class));
+        verify(stockRepository, times(1)).increase(skuId, quantity);
     }
 
     @Test
@@ -62,30 +62,13 @@ class StockServiceTest {
         Long skuId = 1L;
         int quantity = 5;
 
-        when(stockRepository.findById(skuId)).thenReturn(java.util.Optional.empty());
+        when(stockRepository.increase(skuId, quantity)).thenReturn(0, 1);
         when(stockRepository.save(any(Stock.class))).thenReturn(new Stock());
 
-        Stock updatedStock = stockService.increaseStock(skuId, quantity);
+        stockService.increaseStock(skuId, quantity);
 
-        assertNotNull(updatedStock);
-        assertEquals(skuId, updatedStock.getSkuId());
-        assertEquals(quantity, updatedStock.getStock());
         verify(stockRepository, times(1)).save(any(Stock.class));
-    }
-
-    @Test
-    void increaseStock_OptimisticLockingFailureException() {
-        Long skuId = 1L;
-        int quantity = 5;
-
-        Stock stock = new Stock();
-        stock.setSkuId(skuId);
-        stock.setStock(10);
-
-        when(stockRepository.findById(skuId)).thenReturn(java.util.Optional.of(stock));
-        when(stockRepository.saveAndFlush(any(Stock.class))).thenReturn(null);
-
-        assertThrows(OptimisticLockingFailureException.class, () -> stockService.increaseStock(skuId, quantity));
+        verify(stockRepository, times(2)).increase(skuId, quantity);
     }
 
     @Test
@@ -95,30 +78,26 @@ class StockServiceTest {
 
         Stock stock = new Stock();
         stock.setSkuId(skuId);
-        stock.setStock(10);
+        stock.setStock(5);
 
-        when(stockRepository.findById(skuId)).thenReturn(java.util.Optional.of(stock));
-        when(stockRepository.saveAndFlush(any(Stock.class))).thenReturn(stock);
+        when(stockRepository.decreaseIfSufficient(skuId, quantity)).thenReturn(1);
+        when(stockRepository.findBySkuId(skuId)).thenReturn(java.util.Optional.of(stock));
 
         Stock updatedStock = stockService.decreaseStock(skuId, quantity);
 
         assertEquals(5, updatedStock.getStock());
-        verify(stockRepository, times(1)).saveAndFlush(any(Stock.class));
+        verify(stockRepository, times(1)).decreaseIfSufficient(skuId, quantity);
+        verify(stockRepository, never()).saveAndFlush(any(Stock.class));
     }
 
     @Test
-    void decreaseStock_OptimisticLockingFailureException() {
+    void decreaseStock_InsufficientStock_ThrowsException() {
         Long skuId = 1L;
         int quantity = 5;
 
-        Stock stock = new Stock();
-        stock.setSkuId(skuId);
-        stock.setStock(10);
-
-        when(stockRepository.findById(skuId)).thenReturn(java.util.Optional.of(stock));
-        when(stockRepository.saveAndFlush(any(Stock.class))).thenReturn(null);
+        when(stockRepository.decreaseIfSufficient(skuId, quantity)).thenReturn(0);
 
-        assertThrows(OptimisticLockingFailureException.class, () -> stockService.decreaseStock(skuId, quantity));
+        assertThrows(InsufficientStockException.class, () -> stockService.decreaseStock(skuId, quantity));
     }
 
     @Test
@@ -129,7 +108,7 @@ class StockServiceTest {
         stock.setSkuId(skuId);
         stock.setStock(10);
 
-        when(stockRepository.findById(skuId)).thenReturn(java.util.Optional.of(stock));
+        when(stockRepository.findBySkuId(skuId)).thenReturn(java.util.Optional.of(stock));
         doNothing().when(stockRepository).delete(any(Stock.class));
 
         Stock deletedStock = stockService.deleteStock(skuId);
@@ -161,7 +140,7 @@ class StockServiceTest {
         stock.setSkuId(1L);
         stock.setStock(10);
 
-        when(stockRepository.findById(stock.getSkuId())).thenReturn(java.util.Optional.of(stock));
+        when(stockRepository.findBySkuId(stock.getSkuId())).thenReturn(java.util.Optional.of(stock));
         when(stockRepository.save(any(Stock.class))).thenReturn(stock);
 
         Stock updatedStock = stockService.updateStock(stock);
@@ -179,11 +158,12 @@ class StockServiceTest {
         stock.setSkuId(skuId);
         stock.setStock(10);
 
-        when(redisTemplate.opsForValue().get("stock:" + skuId)).thenReturn(stock);
+        when(redisTemplate.opsForValue().get("stock:" + skuId)).thenReturn("10");
 
         Stock retrievedStock = stockService.getStockBySkuId(skuId);
 
-        assertEquals(stock, retrievedStock);
+        assertEquals(skuId, retrievedStock.getSkuId());
+        assertEquals(stock.getStock(), retrievedStock.getStock());
         verify(redisTemplate, times(1)).opsForValue().get("stock:" + skuId);
     }
 
@@ -195,12 +175,12 @@ class StockServiceTest {
         stock.setStock(10);
 
         when(redisTemplate.opsForValue().get("stock:" + skuId)).thenReturn(null);
-        when(stockRepository.findById(skuId)).thenReturn(java.util.Optional.of(stock));
+        when(stockRepository.findBySkuId(skuId)).thenReturn(java.util.Optional.of(stock));
 
         Stock retrievedStock = stockService.getStockBySkuId(skuId);
 
         assertEquals(stock, retrievedStock);
-        verify(redisTemplate, times(1)).opsForValue().set("stock:" + skuId, stock, 5, TimeUnit.MINUTES);
+        verify(redisTemplate, times(1)).opsForValue().set("stock:" + skuId, "10", 5, TimeUnit.MINUTES);
     }
 
     @Test
@@ -208,14 +188,14 @@ class StockServiceTest {
         Long skuId = 1L;
 
         when(redisTemplate.opsForValue().get("stock:" + skuId)).thenReturn(null);
-        when(stockRepository.findById(skuId)).thenReturn(java.util.Optional.empty());
+        when(stockRepository.findBySkuId(skuId)).thenReturn(java.util.Optional.empty());
         when(stockRepository.save(any(Stock.class))).thenReturn(new Stock());
 
         Stock retrievedStock = stockService.getStockBySkuId(skuId);
 
         assertNotNull(retrievedStock);
         assertEquals(skuId, retrievedStock.getSkuId());
-        verify(redisTemplate, times(1)).opsForValue().set("stock:" + skuId, retrievedStock, 5, TimeUnit.MINUTES);
+        verify(redisTemplate, times(1)).opsForValue().set("stock:" + skuId, String.valueOf(retrievedStock.getStock()), 5, TimeUnit.MINUTES);
     }
 }
 
@@ -0,0 +1,134 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.inventory.SoldOutRegistry;
+import com.yf.bookstore.inventory.StockBatchUpdater;
+import com.yf.bookstore.inventory.StockHoldManager;
+import com.yf.bookstore.inventory.StockMetrics;
+import com.yf.bookstore.inventory.StockReconciler;
+import com.yf.bookstore.inventory.StockScriptRegistry;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.inventory.StripedStockCounter;
+import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.repository.StockRepository;
+import com.yf.bookstore.service.impl.StockServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 在H2上用真实的JPA仓库制造版本冲突：订单事务读到库存后，另一个事务抢先提交了修改
+ */
+class StockVersionConflictTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private TransactionTemplate transactionTemplate;
+    private StockRepository repository;
+    private StockMetrics stockMetrics;
+    private StockServiceImpl stockService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO tb_stock (id, sku_id, stock, version) VALUES (1, 1, 10, 0)");
+
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(dataSource);
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        // 不扫描类路径，只登记库存实体
+        factoryBean.setPackagesToScan();
+        factoryBean.setPersistenceUnitPostProcessors(unit -> unit.addManagedClassName(Stock.class.getName()));
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        factoryBean.setJpaProperties(properties);
+        factoryBean.afterPropertiesSet();
+        EntityManagerFactory factory = factoryBean.getObject();
+
+        // H2的可重复读会给读到的行加锁，无法模拟MySQL不加锁的快照读，这里使用默认的读已提交
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(factory));
+        repository = new JpaRepositoryFactory(SharedEntityManagerCreator.createSharedEntityManager(factory))
+                .getRepository(StockRepository.class);
+
+        stockMetrics = new StockMetrics();
+    }
+
+    @AfterEach
+    void tearDown() {
+        factoryBean.destroy();
+    }
+
+    private StockServiceImpl service(StockRepository stockRepository) {
+        StockScriptRegistry scriptRegistry = mock(StockScriptRegistry.class);
+        // Redis中没有计数器，更新后的库存从数据库读取
+        when(scriptRegistry.execute(any(), any(), any())).thenReturn(-1L);
+        StockServiceImpl service = new StockServiceImpl(stockRepository, mock(StringRedisTemplate.class),
+                mock(StockWriteBehindQueue.class), scriptRegistry, mock(StripedStockCounter.class),
+                mock(StockHoldManager.class), mock(StockBatchUpdater.class), stockMetrics, mock(StockReconciler.class),
+                mock(SoldOutRegistry.class), mock(OutboxPublisher.class));
+        ReflectionTestUtils.setField(service, "versioned", true);
+        ReflectionTestUtils.setField(service, "maxAttempts", 2);
+        return service;
+    }
+
+    private int stock() {
+        return jdbcTemplate.queryForObject("SELECT stock FROM tb_stock WHERE sku_id = 1", Integer.class);
+    }
+
+    @Test
+    void testConcurrentCommitBetweenReadAndUpdateIsRetriedWithCurrentVersion() {
+        StockRepository racing = mock(StockRepository.class, AdditionalAnswers.delegatesTo(repository));
+        AtomicBoolean raced = new AtomicBoolean();
+        doAnswer(invocation -> {
+            Optional<Stock> read = repository.findBySkuId(1L);
+            if (raced.compareAndSet(false, true)) {
+                // 第一次读到版本0之后，另一个事务补货并提交
+                CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                        status -> repository.increase(1L, 3))).join();
+            }
+            return read;
+        }).when(racing).findBySkuId(1L);
+        stockService = service(racing);
+
+        transactionTemplate.executeWithoutResult(status -> stockService.decreaseStock(1L, 5));
+
+        assertEquals(8, stock());
+        assertEquals(1, stockMetrics.conflicts(1L));
+        verify(racing).findForUpdateBySkuId(1L);
+        assertEquals(2L, jdbcTemplate.queryForObject("SELECT version FROM tb_stock WHERE sku_id = 1", Long.class));
+    }
+
+    @Test
+    void testWithoutConflictUpdatesOnFirstAttempt() {
+        StockRepository spied = mock(StockRepository.class, AdditionalAnswers.delegatesTo(repository));
+        stockService = service(spied);
+
+        transactionTemplate.executeWithoutResult(status -> stockService.decreaseStock(1L, 4));
+
+        assertEquals(6, stock());
+        assertEquals(0, stockMetrics.conflicts(1L));
+        verify(spied, never()).findForUpdateBySkuId(any());
+    }
+}
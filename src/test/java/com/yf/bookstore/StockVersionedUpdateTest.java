@@ -0,0 +1,129 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.inventory.StockBatchUpdater;
+import com.yf.bookstore.inventory.SoldOutRegistry;
+import com.yf.bookstore.inventory.StockHoldManager;
+import com.yf.bookstore.inventory.StockMetrics;
+import com.yf.bookstore.inventory.StockReconciler;
+import com.yf.bookstore.inventory.StockScriptRegistry;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.inventory.StripedStockCounter;
+import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import com.yf.bookstore.repository.StockRepository;
+import com.yf.bookstore.service.impl.StockServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StockVersionedUpdateTest {
+
+    @Mock
+    private StockRepository stockRepository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private StockWriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private StockScriptRegistry scriptRegistry;
+
+    @Mock
+    private StripedStockCounter stripedCounter;
+
+    @Mock
+    private StockHoldManager holdManager;
+
+    @Mock
+    private SoldOutRegistry soldOutRegistry;
+
+    @Mock
+    private StockBatchUpdater batchUpdater;
+
+    @Mock
+    private StockReconciler reconciler;
+
+    @Mock
+    private OutboxPublisher outboxPublisher;
+
+    private StockMetrics stockMetrics;
+
+    private StockServiceImpl stockService;
+
+    @BeforeEach
+    void setUp() {
+        when(writeBehindQueue.readConsistent(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        stockMetrics = new StockMetrics();
+        stockService = new StockServiceImpl(stockRepository, redisTemplate, writeBehindQueue, scriptRegistry,
+                stripedCounter, holdManager, batchUpdater, stockMetrics, reconciler,
+                soldOutRegistry, outboxPublisher);
+        ReflectionTestUtils.setField(stockService, "versioned", true);
+        ReflectionTestUtils.setField(stockService, "maxAttempts", 3);
+        // Redis中没有计数器，更新后的库存从数据库读取
+        when(scriptRegistry.execute(any(), any(), any())).thenReturn(-1L);
+    }
+
+    private Stock stock(int quantity, long version) {
+        Stock stock = new Stock();
+        stock.setSkuId(1L);
+        stock.setStock(quantity);
+        stock.setVersion(version);
+        return stock;
+    }
+
+    @Test
+    void decreaseStock_VersionConflict_RetriesWithFreshVersion() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(10, 1)), Optional.of(stock(3, 3)));
+        when(stockRepository.findForUpdateBySkuId(1L)).thenReturn(Optional.of(stock(8, 2)));
+        when(stockRepository.compareAndSet(1L, 5, 1L)).thenReturn(0);
+        when(stockRepository.compareAndSet(1L, 3, 2L)).thenReturn(1);
+
+        Stock updated = stockService.decreaseStock(1L, 5);
+
+        assertEquals(3, updated.getStock());
+        assertEquals(1, stockMetrics.conflicts(1L));
+        verify(stockRepository, never()).decreaseIfSufficient(anyLong(), anyInt());
+    }
+
+    @Test
+    void decreaseStock_ConflictsExhaustRetries_ThrowsException() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(10, 1)));
+        when(stockRepository.findForUpdateBySkuId(1L)).thenReturn(Optional.of(stock(10, 1)));
+        when(stockRepository.compareAndSet(eq(1L), anyInt(), anyLong())).thenReturn(0);
+
+        assertThrows(OptimisticLockingFailureException.class, () -> stockService.decreaseStock(1L, 5));
+        assertEquals(3, stockMetrics.conflicts(1L));
+        verify(stockRepository, times(3)).compareAndSet(1L, 5, 1L);
+    }
+
+    @Test
+    void decreaseStock_InsufficientStock_DoesNotRetry() {
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock(2, 1)));
+
+        assertThrows(InsufficientStockException.class, () -> stockService.decreaseStock(1L, 5));
+        verify(stockRepository, never()).compareAndSet(anyLong(), anyInt(), anyLong());
+        assertEquals(0, stockMetrics.conflicts(1L));
+    }
+}
@@ -0,0 +1,103 @@
+package com.yf.bookstore;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yf.bookstore.common.SnowflakeIdGenerator;
+import com.yf.bookstore.inventory.StockJournal;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.outbox.OutboxPublisher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class StockWriteBehindQueueTest {
+
+    @TempDir
+    Path directory;
+
+    private JdbcTemplate jdbcTemplate;
+    private StockJournal journal;
+    private OutboxPublisher outboxPublisher;
+    private StockWriteBehindQueue queue;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = TestDatabase.create();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("INSERT INTO tb_stock (id, sku_id, stock) VALUES (1, 1, 10)");
+        journal = new StockJournal(directory.toString(), false);
+        journal.open();
+        SnowflakeIdGenerator idGenerator = new SnowflakeIdGenerator(0);
+        outboxPublisher = spy(new OutboxPublisher(jdbcTemplate, new ObjectMapper(), idGenerator));
+        queue = new StockWriteBehindQueue(journal, jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), idGenerator, outboxPublisher);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        journal.close();
+    }
+
+    private int stored() {
+        return jdbcTemplate.queryForObject("SELECT stock FROM tb_stock WHERE sku_id = 1", Integer.class);
+    }
+
+    private int available() {
+        return queue.readConsistent(() -> stored() + queue.pendingDelta(1L));
+    }
+
+    @Test
+    void testFlushMovesDeltasFromQueueToTable() {
+        queue.enqueue(1L, -3);
+        queue.enqueue(1L, 1);
+        assertEquals(-2, queue.pendingDelta(1L));
+        assertEquals(8, available());
+
+        queue.flush();
+
+        assertEquals(0, queue.pendingDelta(1L));
+        assertEquals(8, stored());
+        assertEquals(8, available());
+    }
+
+    @Test
+    void testConsistentReadWaitsForSegmentBeingFlushed() throws Exception {
+        queue.enqueue(1L, -3);
+        CountDownLatch persisting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 在落库事务中、移出队列之前停住
+        doAnswer(invocation -> {
+            persisting.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(outboxPublisher).publishAll(anyList());
+        Future<?> flush = executor.submit(queue::flush);
+        assertTrue(persisting.await(5, TimeUnit.SECONDS));
+
+        Future<Integer> read = executor.submit(this::available);
+        assertThrows(TimeoutException.class, () -> read.get(100, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        flush.get(5, TimeUnit.SECONDS);
+        assertEquals(7, read.get(5, TimeUnit.SECONDS));
+        assertEquals(7, stored());
+    }
+}
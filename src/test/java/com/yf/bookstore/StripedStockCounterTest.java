@@ -0,0 +1,283 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.exception.inventory.InsufficientStockException;
+import com.yf.bookstore.inventory.StockScript;
+import com.yf.bookstore.inventory.StockScriptRegistry;
+import com.yf.bookstore.inventory.StockWriteBehindQueue;
+import com.yf.bookstore.inventory.StripedStockCounter;
+import com.yf.bookstore.model.inventory.Stock;
+import com.yf.bookstore.repository.StockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StripedStockCounterTest {
+
+    private static final int STRIPES = 4;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private StockScriptRegistry scriptRegistry;
+
+    @Mock
+    private StockWriteBehindQueue writeBehindQueue;
+
+    @Mock
+    private StockRepository stockRepository;
+
+    // 用内存中的Map模拟Redis，脚本按lua中的语义执行
+    private final Map<String, Integer> redis = new ConcurrentHashMap<>();
+
+    private StripedStockCounter counter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(writeBehindQueue.readConsistent(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArgument(0)).get());
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(any())).thenAnswer(invocation -> {
+            List<String> values = new ArrayList<>();
+            for (String key : (List<String>) invocation.getArgument(0)) {
+                Integer value = redis.get(key);
+                values.add(value == null ? null : String.valueOf(value));
+            }
+            return values;
+        });
+        when(valueOperations.increment(anyString(), anyLong())).thenAnswer(invocation ->
+                (long) redis.merge(invocation.getArgument(0), ((Long) invocation.getArgument(1)).intValue(), Integer::sum));
+        when(redisTemplate.delete(any(List.class))).thenAnswer(invocation -> {
+            ((List<String>) invocation.getArgument(0)).forEach(redis::remove);
+            return (long) STRIPES;
+        });
+        when(scriptRegistry.execute(any(), any(), any())).thenAnswer(invocation ->
+                run(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        counter = new StripedStockCounter(redisTemplate, scriptRegistry, writeBehindQueue, stockRepository, "1", STRIPES);
+    }
+
+    private synchronized Long run(StockScript script, List<String> keys, List<String> args) {
+        switch (script) {
+            case RESERVE: {
+                Integer current = redis.get(keys.get(0));
+                if (current == null) {
+                    return -1L;
+                }
+                int quantity = Integer.parseInt(args.get(0));
+                if (current < quantity) {
+                    return -2L;
+                }
+                redis.put(keys.get(0), current - quantity);
+                return (long) (current - quantity);
+            }
+            case RELEASE: {
+                Integer current = redis.get(keys.get(0));
+                if (current == null) {
+                    return -1L;
+                }
+                redis.put(keys.get(0), current + Integer.parseInt(args.get(0)));
+                return (long) redis.get(keys.get(0));
+            }
+            case STRIPE_INIT: {
+                long existing = keys.stream().filter(redis::containsKey).count();
+                if (existing == keys.size()) {
+                    return 0L;
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    redis.put(keys.get(i), Integer.parseInt(args.get(i)));
+                }
+                return existing == 0 ? 1L : 2L;
+            }
+            case STRIPE_MOVE: {
+                if (!redis.containsKey(keys.get(0))) {
+                    return -1L;
+                }
+                int wanted = Integer.parseInt(args.get(0));
+                int moved = 0;
+                for (int i = 1; i < keys.size() && moved < wanted; i++) {
+                    int take = Math.min(redis.getOrDefault(keys.get(i), 0), wanted - moved);
+                    if (take > 0) {
+                        redis.merge(keys.get(i), -take, Integer::sum);
+                        moved += take;
+                    }
+                }
+                redis.merge(keys.get(0), moved, Integer::sum);
+                return (long) moved;
+            }
+            default:
+                throw new IllegalArgumentException("Unexpected script " + script);
+        }
+    }
+
+    private void stored(int quantity) {
+        Stock stock = new Stock();
+        stock.setSkuId(1L);
+        stock.setStock(quantity);
+        when(stockRepository.findBySkuId(1L)).thenReturn(Optional.of(stock));
+    }
+
+    private int stripe(int i) {
+        return redis.getOrDefault("stock:1:" + i, 0);
+    }
+
+    // 当前线程扣减后库存减少的分片
+    private int reservedStripe(int[] before) {
+        for (int i = 0; i < STRIPES; i++) {
+            if (stripe(i) < before[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int[] snapshot() {
+        int[] values = new int[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            values[i] = stripe(i);
+        }
+        return values;
+    }
+
+    @Test
+    void testInitializeSplitsStoredPlusPendingEvenly() {
+        stored(10);
+        when(writeBehindQueue.pendingDelta(1L)).thenReturn(3);
+
+        assertEquals(13, counter.total(1L));
+        assertArrayEquals(new int[]{4, 3, 3, 3}, snapshot());
+    }
+
+    @Test
+    void testSameThreadKeepsUsingOneStripe() {
+        stored(100);
+        counter.total(1L);
+
+        int[] before = snapshot();
+        counter.reserve(1L, 1);
+        int first = reservedStripe(before);
+        before = snapshot();
+        counter.reserve(1L, 1);
+
+        assertTrue(first >= 0 && first < STRIPES);
+        assertEquals(first, reservedStripe(before));
+        assertEquals(98, counter.total(1L));
+    }
+
+    @Test
+    void testThreadsSpreadOverStripes() throws Exception {
+        stored(1000);
+        counter.total(1L);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            futures.add(executor.submit(() -> counter.reserve(1L, 1)));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(1000 - 64, counter.total(1L));
+        int touched = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            if (stripe(i) < 250) {
+                touched++;
+            }
+        }
+        assertTrue(touched > 1);
+    }
+
+    @Test
+    void testEmptyStripeBorrowsFromOthers() {
+        stored(8);
+        counter.total(1L);
+        int[] before = snapshot();
+        counter.reserve(1L, 1);
+        int own = reservedStripe(before);
+        // 把当前线程的分片扣空，其余分片还有库存
+        redis.put("stock:1:" + own, 0);
+
+        counter.reserve(1L, 3);
+
+        // 8 - 1（首次扣减）- 1（清空的剩余）- 3
+        assertEquals(3, counter.total(1L));
+        assertTrue(stripe(own) >= 0);
+        verify(writeBehindQueue, never()).enqueue(1L, 3);
+        // 来源扣减和目标增加在同一个脚本中完成
+        verify(scriptRegistry, times(1)).execute(eq(StockScript.STRIPE_MOVE), any(), any());
+        verify(valueOperations, never()).increment(anyString(), anyLong());
+    }
+
+    @Test
+    void testInsufficientTotalFailsAndCompensatesJournal() {
+        stored(4);
+        counter.total(1L);
+
+        assertThrows(InsufficientStockException.class, () -> counter.reserve(1L, 5));
+
+        assertEquals(4, counter.total(1L));
+        verify(writeBehindQueue).enqueue(1L, -5);
+        verify(writeBehindQueue).enqueue(1L, 5);
+    }
+
+    @Test
+    void testExistingStripesAreNotReinitialized() {
+        stored(8);
+        counter.total(1L);
+        counter.reserve(1L, 2);
+        stored(100);
+
+        assertEquals(6, counter.total(1L));
+        verify(scriptRegistry, times(1)).execute(eq(StockScript.STRIPE_INIT), any(), any());
+    }
+
+    @Test
+    void testPartiallyMissingStripesAreRebuiltNotOvercounted() {
+        stored(8);
+        counter.total(1L);
+        // 一个分片被淘汰，剩余分片仍为2
+        redis.remove("stock:1:0");
+
+        assertEquals(8, counter.total(1L));
+        assertArrayEquals(new int[]{2, 2, 2, 2}, snapshot());
+    }
+
+    @Test
+    void testResetRebuildsFromDatabase() {
+        stored(8);
+        counter.total(1L);
+        counter.reset(1L);
+        stored(5);
+
+        assertEquals(5, counter.total(1L));
+        assertArrayEquals(new int[]{2, 1, 1, 1}, snapshot());
+    }
+}
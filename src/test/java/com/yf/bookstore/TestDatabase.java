@@ -0,0 +1,30 @@
+package com.yf.bookstore;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.util.UUID;
+
+/**
+ * 测试用的H2内存数据库
+ * 以MySQL兼容模式执行 sql/schema.sql 建表，测试与生产使用同一份表结构
+ */
+final class TestDatabase {
+
+    private TestDatabase() {
+    }
+
+    /**
+     * 创建一个独立的内存数据库并建好所有表
+     */
+    static DriverManagerDataSource create() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("sql/schema.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        DatabasePopulatorUtils.execute(populator, dataSource);
+        return dataSource;
+    }
+}
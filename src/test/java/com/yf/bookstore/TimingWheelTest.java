@@ -0,0 +1,66 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.common.TimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void testAdvanceReturnsOnlyExpiredItems() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8);
+        long now = System.currentTimeMillis();
+        wheel.schedule("soon", now + 20);
+        wheel.schedule("later", now + 500);
+
+        assertTrue(wheel.advance(now).isEmpty());
+        assertEquals(Arrays.asList("soon"), wheel.advance(now + 30));
+        assertEquals(1, wheel.size());
+        assertEquals(Arrays.asList("later"), wheel.advance(now + 510));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testDeadlinesBeyondOneRevolution() {
+        // 8格 x 10ms，一圈80ms，超过一圈的任务在经过多圈后才到期
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, 8);
+        long now = System.currentTimeMillis();
+        wheel.schedule(1, now + 250);
+
+        for (long t = now; t < now + 250; t += 10) {
+            assertTrue(wheel.advance(t).isEmpty());
+        }
+        assertEquals(Arrays.asList(1), wheel.advance(now + 260));
+    }
+
+    @Test
+    void testCancelledItemsAreNotReturned() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8);
+        long now = System.currentTimeMillis();
+        TimingWheel.Timeout<String> timeout = wheel.schedule("cancelled", now + 20);
+        wheel.schedule("kept", now + 20);
+        timeout.cancel();
+
+        List<String> expired = wheel.advance(now + 100);
+
+        assertEquals(Arrays.asList("kept"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testLateAdvanceCatchesUpAllBuckets() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, 8);
+        long now = System.currentTimeMillis();
+        wheel.advance(now);
+        for (int i = 1; i <= 20; i++) {
+            wheel.schedule(i, now + i * 7);
+        }
+        wheel.advance(now + 1);
+
+        assertEquals(20, wheel.advance(now + 1000).size());
+    }
+}
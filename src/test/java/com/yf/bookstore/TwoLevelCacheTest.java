@@ -0,0 +1,116 @@
+package com.yf.bookstore;
+
+import com.yf.bookstore.cache.TwoLevelCacheManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class TwoLevelCacheTest {
+
+    private ConcurrentMapCacheManager remote;
+    private StringRedisTemplate redisTemplate;
+    private TwoLevelCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCacheManager();
+        redisTemplate = mock(StringRedisTemplate.class);
+        cacheManager = new TwoLevelCacheManager(remote, redisTemplate, 100, 60);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> stats(String name) {
+        return (Map<String, Object>) cacheManager.stats().get(name);
+    }
+
+    @Test
+    void testReadsFromLocalThenRemote() {
+        Cache cache = cacheManager.getCache("skus");
+        assertNull(cache.get(1L));
+
+        remote.getCache("skus").put(1L, "sku-1");
+        assertEquals("sku-1", cache.get(1L).get());
+        // 二级命中后回填一级，之后不再访问Redis
+        remote.getCache("skus").evict(1L);
+        assertEquals("sku-1", cache.get(1L).get());
+
+        Map<String, Object> stats = stats("skus");
+        assertEquals(1L, stats.get("l1Hits"));
+        assertEquals(1L, stats.get("l2Hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(2.0 / 3, (double) stats.get("hitRatio"), 1e-9);
+    }
+
+    @Test
+    void testLoaderPopulatesBothLevels() {
+        Cache cache = cacheManager.getCache("skus");
+        assertEquals("sku-1", cache.get(1L, () -> "sku-1"));
+        assertEquals("sku-1", cache.get(1L, () -> "other"));
+        assertEquals("sku-1", remote.getCache("skus").get(1L).get());
+    }
+
+    @Test
+    void testEvictRemovesBothLevelsAndNotifiesPeers() {
+        Cache cache = cacheManager.getCache("skus");
+        cache.put(1L, "sku-1");
+        cache.evict(1L);
+
+        assertNull(cache.get(1L));
+        assertNull(remote.getCache("skus").get(1L));
+        verify(redisTemplate, times(1)).convertAndSend(eq(TwoLevelCacheManager.CHANNEL), anyString());
+    }
+
+    @Test
+    void testPutDoesNotNotifyPeers() {
+        Cache cache = cacheManager.getCache("skus");
+        cache.put(1L, "sku-1");
+        cache.get(2L, () -> "sku-2");
+
+        assertEquals("sku-1", remote.getCache("skus").get(1L).get());
+        verify(redisTemplate, never()).convertAndSend(anyString(), any());
+    }
+
+    @Test
+    void testPeerEvictionDropsLocalEntryOnly() {
+        Cache cache = cacheManager.getCache("skus");
+        cache.put(1L, "sku-1");
+        // 模拟其他节点更新后只留下Redis中的新值
+        remote.getCache("skus").put(1L, "sku-1-v2");
+        assertEquals("sku-1", cache.get(1L).get());
+
+        cacheManager.onMessage(message("peer|skus|1"), null);
+
+        assertEquals("sku-1-v2", cache.get(1L).get());
+    }
+
+    @Test
+    void testIgnoresUnknownAndMalformedMessages() {
+        Cache cache = cacheManager.getCache("skus");
+        cache.put(1L, "sku-1");
+        remote.getCache("skus").put(1L, "sku-1-v2");
+
+        cacheManager.onMessage(message("garbage"), null);
+        cacheManager.onMessage(message("peer|other|1"), null);
+        assertEquals("sku-1", cache.get(1L).get());
+
+        cacheManager.onMessage(message("peer|skus"), null);
+        assertEquals("sku-1-v2", cache.get(1L).get());
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(TwoLevelCacheManager.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}